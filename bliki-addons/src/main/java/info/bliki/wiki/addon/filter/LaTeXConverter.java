@@ -5,6 +5,7 @@ import info.bliki.htmlcleaner.ContentToken;
 import info.bliki.htmlcleaner.EndTagToken;
 import info.bliki.htmlcleaner.TagNode;
 import info.bliki.wiki.addon.latex.PropertyManager;
+import info.bliki.wiki.filter.AbstractTextConverter;
 import info.bliki.wiki.filter.ITextConverter;
 import info.bliki.wiki.filter.WPCell;
 import info.bliki.wiki.filter.WPList;
@@ -21,7 +22,6 @@ import info.bliki.wiki.tags.WPTag;
 import info.bliki.wiki.tags.util.TagStack;
 
 import java.io.IOException;
-import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 
@@ -29,7 +29,7 @@ import java.util.Map;
  * A converter which renders the internal node representation as LaTeX text
  *
  */
-public class LaTeXConverter implements ITextConverter {
+public class LaTeXConverter extends AbstractTextConverter {
 
     public static final String TEMP_BRACES = "TEMP-BRACES";
 
@@ -51,39 +51,31 @@ public class LaTeXConverter implements ITextConverter {
     /** replacements for whole Strings */
     static final String[] STRINGS_TO_REPLACE = new String[] { "..." };
 
-    public void nodesToText(List<?> nodes, Appendable resultBuffer, IWikiModel model) throws IOException {
-        if (nodes != null && !nodes.isEmpty()) {
-            Iterator<?> childrenIt = nodes.iterator();
-            while (childrenIt.hasNext()) {
-                Object item = childrenIt.next();
-                if (item != null) {
-                    if (item instanceof List) {
-                        nodesToText((List<?>) item, resultBuffer, model);
-                    } else if (item instanceof ContentToken) {
-                        ContentToken contentToken = (ContentToken) item;
-                        resultBuffer.append(texEscapeString(contentToken.getContent()));
-                    } else if (item instanceof HTMLTag) {
-                        renderLaTeX(((HTMLTag) item), this, resultBuffer, model);
-                    } else if (item instanceof TagNode) {
-                        TagNode node = (TagNode) item;
-                        Map map = node.getObjectAttributes();
-                        if (map != null && map.size() > 0) {
-                            Object attValue = map.get("wikiobject");
-                            if (attValue instanceof ImageFormat) {
-                                // imageNodeToText(node, (ImageFormat) attValue, resultBuffer,
-                                // model);
-                            }
-                        } else {
-                            nodeToLaTeX(node, resultBuffer, model);
-                        }
-                    } else if (item instanceof EndTagToken) {
-                        //
-                        if (item instanceof BrTag) {
-                            resultBuffer.append(PropertyManager.get("LineBreak"));
-                        }
-                    }
-                }
-            }
+    @Override
+    protected void visitContent(ContentToken contentToken, Appendable resultBuffer, IWikiModel model) throws IOException {
+        resultBuffer.append(texEscapeString(contentToken.getContent()));
+    }
+
+    @Override
+    protected void visitTag(TagNode node, Appendable resultBuffer, IWikiModel model) throws IOException {
+        nodeToLaTeX(node, resultBuffer, model);
+    }
+
+    @Override
+    protected void visitHTMLTag(HTMLTag node, Appendable resultBuffer, IWikiModel model) throws IOException {
+        renderLaTeX(node, this, resultBuffer, model);
+    }
+
+    @Override
+    protected void visitImage(TagNode imageTagNode, ImageFormat imageFormat, Appendable resultBuffer, IWikiModel model)
+            throws IOException {
+        // imageNodeToText(imageTagNode, imageFormat, resultBuffer, model);
+    }
+
+    @Override
+    protected void visitEndTag(EndTagToken endTag, Appendable resultBuffer, IWikiModel model) throws IOException {
+        if (endTag instanceof BrTag) {
+            resultBuffer.append(PropertyManager.get("LineBreak"));
         }
     }
 
@@ -15,4 +15,29 @@ public interface ScribuntoEngine {
      * @throws ScribuntoException if the module could not be loaded
      */
     ScribuntoModule fetchModuleFromParser(String moduleName) throws ScribuntoException;
+
+    /**
+     * Reset the resources used by the modules of the current page, called
+     * before a new page is parsed.
+     */
+    void resetUsage();
+
+    /**
+     * @return the resources used by the modules since {@link #resetUsage()},
+     *         or <code>null</code> if they aren't measured
+     */
+    default ScribuntoUsage getUsage() {
+        return null;
+    }
+
+    /**
+     * Add the resources which the modules of the current page used outside
+     * of this engine, e.g. an <code>#invoke</code> which was evaluated by the
+     * {@link info.bliki.extensions.scribunto.template.ParallelInvoker}.
+     *
+     * @return <code>false</code> if a limit of the page is exceeded
+     */
+    default boolean addUsage(ScribuntoUsage usage) {
+        return true;
+    }
 }
@@ -0,0 +1,40 @@
+package info.bliki.extensions.scribunto.engine;
+
+/**
+ * The resources used by the modules of a page.
+ *
+ * @see ScribuntoEngine#getUsage()
+ */
+public class ScribuntoUsage {
+    private final long instructions;
+    private final long nanos;
+    private final long allocatedBytes;
+
+    public ScribuntoUsage(long instructions, long nanos, long allocatedBytes) {
+        this.instructions = instructions;
+        this.nanos = nanos;
+        this.allocatedBytes = allocatedBytes;
+    }
+
+    /**
+     * @return the number of executed instructions, or <code>0</code> if they
+     *         weren't counted
+     */
+    public long getInstructions() {
+        return instructions;
+    }
+
+    /**
+     * @return the wall time
+     */
+    public long getNanos() {
+        return nanos;
+    }
+
+    /**
+     * @return the allocated memory, or <code>0</code> if it wasn't measured
+     */
+    public long getAllocatedBytes() {
+        return allocatedBytes;
+    }
+}
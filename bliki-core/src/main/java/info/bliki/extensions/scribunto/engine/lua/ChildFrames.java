@@ -0,0 +1,72 @@
+package info.bliki.extensions.scribunto.engine.lua;
+
+import info.bliki.extensions.scribunto.template.Frame;
+import org.luaj.vm2.LuaError;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The frames created by modules with <code>frame:newChild()</code>.
+ *
+ * Frames are scoped to the <code>#invoke</code> which created them and are
+ * released when it returns, so a long-lived engine doesn't keep them.
+ */
+class ChildFrames {
+    /**
+     * Same limit as Scribunto.
+     */
+    static final int MAX_FRAMES = 100;
+
+    private final Map<String, Frame> frames = new HashMap<>();
+    private final List<String> ids = new ArrayList<>();
+    private final List<Integer> marks = new ArrayList<>();
+    private int counter;
+
+    /**
+     * Start the scope of an <code>#invoke</code>.
+     */
+    void enter() {
+        marks.add(ids.size());
+    }
+
+    /**
+     * Release the frames created since the matching {@link #enter()}.
+     */
+    void exit() {
+        final int mark = marks.remove(marks.size() - 1);
+        while (ids.size() > mark) {
+            frames.remove(ids.remove(ids.size() - 1));
+        }
+        if (marks.isEmpty() && frames.isEmpty()) {
+            counter = 0;
+        }
+    }
+
+    /**
+     * @return the id of the new frame
+     * @throws LuaError if there are too many frames
+     */
+    String add(Frame frame) {
+        if (frames.size() >= MAX_FRAMES) {
+            throw new LuaError("newChild: too many frames");
+        }
+        final String id = "frame" + (++counter);
+        frames.put(id, frame);
+        ids.add(id);
+        return id;
+    }
+
+    /**
+     * @return the frame or <code>null</code> if it doesn't exist (anymore)
+     */
+    Frame get(String id) {
+        return frames.get(id);
+    }
+
+    int size() {
+        return frames.size();
+    }
+}
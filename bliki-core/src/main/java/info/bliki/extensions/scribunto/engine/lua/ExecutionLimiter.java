@@ -0,0 +1,162 @@
+package info.bliki.extensions.scribunto.engine.lua;
+
+import info.bliki.extensions.scribunto.engine.ScribuntoUsage;
+import org.luaj.vm2.Varargs;
+import org.luaj.vm2.lib.DebugLib;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+/**
+ * Enforces the {@link LuaLimits} through the instruction hook of the debug
+ * library.
+ *
+ * Once a limit is exceeded every following instruction fails again, so the
+ * error can't be swallowed by <code>pcall</code>.
+ */
+class ExecutionLimiter extends DebugLib {
+    /**
+     * Number of instructions between checks of the time and memory limits.
+     */
+    private static final int CHECK_INTERVAL = 1000;
+    private static final com.sun.management.ThreadMXBean THREAD_MX_BEAN = threadMXBean();
+
+    private final LuaLimits limits;
+    private int depth;
+
+    private long pageInstructions;
+    private long pageNanos;
+    private long pageAllocatedBytes;
+
+    private long instructions;
+    private long nextCheck;
+    private long startNanos;
+    private long startAllocatedBytes;
+
+    ExecutionLimiter(LuaLimits limits) {
+        this.limits = limits;
+    }
+
+    /**
+     * Start accounting for an <code>#invoke</code>; nested calls are counted
+     * as part of the outermost one.
+     */
+    void startInvoke() {
+        if (depth++ == 0) {
+            instructions = 0;
+            nextCheck = 0;
+            startNanos = System.nanoTime();
+            startAllocatedBytes = allocatedBytes();
+        }
+    }
+
+    void endInvoke() {
+        if (--depth == 0) {
+            pageInstructions += instructions;
+            pageNanos += System.nanoTime() - startNanos;
+            pageAllocatedBytes += allocatedBytes() - startAllocatedBytes;
+        }
+    }
+
+    /**
+     * Reset the usage of the page, unless an <code>#invoke</code> is running.
+     */
+    void resetPage() {
+        if (depth == 0) {
+            pageInstructions = 0;
+            pageNanos = 0;
+            pageAllocatedBytes = 0;
+        }
+    }
+
+    ScribuntoUsage getPageUsage() {
+        return new ScribuntoUsage(pageInstructions, pageNanos, pageAllocatedBytes);
+    }
+
+    /**
+     * Add resources which were used for the page outside of this limiter.
+     *
+     * @return <code>false</code> if a limit of the page is exceeded
+     */
+    boolean addPageUsage(ScribuntoUsage usage) {
+        pageInstructions += usage.getInstructions();
+        pageNanos += usage.getNanos();
+        pageAllocatedBytes += usage.getAllocatedBytes();
+        return !exceeds(pageInstructions, limits.getMaxInstructionsPerPage())
+            && !exceeds(pageNanos / 1000000, limits.getMaxTimePerPage())
+            && !exceeds(pageAllocatedBytes, limits.getMaxAllocatedBytesPerPage());
+    }
+
+    @Override
+    public void onInstruction(int pc, Varargs v, int top) {
+        super.onInstruction(pc, v, top);
+        if (++instructions >= nextCheck) {
+            checkLimits();
+        }
+    }
+
+    private void checkLimits() {
+        if (depth == 0) {
+            nextCheck = instructions + CHECK_INTERVAL;
+            return;
+        }
+        final long maxInstructions = min(limits.getMaxInstructionsPerInvoke(),
+            remaining(limits.getMaxInstructionsPerPage(), pageInstructions));
+        if (instructions >= maxInstructions) {
+            fail(LuaLimitError.INSTRUCTIONS_EXCEEDED);
+        }
+
+        final long elapsedMillis = (System.nanoTime() - startNanos) / 1000000;
+        if (elapsedMillis >= min(limits.getMaxTimePerInvoke(),
+                remaining(limits.getMaxTimePerPage(), pageNanos / 1000000))) {
+            fail(LuaLimitError.TIME_EXPIRED);
+        }
+
+        final long maxAllocatedBytes = min(limits.getMaxAllocatedBytesPerInvoke(),
+            remaining(limits.getMaxAllocatedBytesPerPage(), pageAllocatedBytes));
+        if (maxAllocatedBytes != Long.MAX_VALUE && allocatedBytes() - startAllocatedBytes >= maxAllocatedBytes) {
+            fail(LuaLimitError.NOT_ENOUGH_MEMORY);
+        }
+
+        nextCheck = Math.min(instructions + CHECK_INTERVAL, maxInstructions);
+    }
+
+    private void fail(String reason) {
+        nextCheck = instructions;
+        throw new LuaLimitError(reason);
+    }
+
+    /**
+     * @return the smaller limit, where <code>0</code> means no limit
+     */
+    private static long min(long limit1, long limit2) {
+        return Math.min(limit1 > 0 ? limit1 : Long.MAX_VALUE, limit2 > 0 ? limit2 : Long.MAX_VALUE);
+    }
+
+    private static boolean exceeds(long used, long limit) {
+        return limit > 0 && used >= limit;
+    }
+
+    private static long remaining(long limit, long used) {
+        return limit > 0 ? Math.max(limit - used, 1) : 0;
+    }
+
+    private long allocatedBytes() {
+        if (THREAD_MX_BEAN == null
+            || limits.getMaxAllocatedBytesPerInvoke() <= 0 && limits.getMaxAllocatedBytesPerPage() <= 0) {
+            return 0;
+        }
+        return THREAD_MX_BEAN.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    private static com.sun.management.ThreadMXBean threadMXBean() {
+        final ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean) {
+            final com.sun.management.ThreadMXBean sunBean = (com.sun.management.ThreadMXBean) bean;
+            if (sunBean.isThreadAllocatedMemorySupported() && sunBean.isThreadAllocatedMemoryEnabled()) {
+                return sunBean;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,193 @@
+package info.bliki.extensions.scribunto.engine.lua;
+
+import info.bliki.wiki.filter.ParsedPageName;
+import org.luaj.vm2.LuaError;
+import org.luaj.vm2.LuaTable;
+import org.luaj.vm2.LuaValue;
+import org.luaj.vm2.Varargs;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Cache for the results of <code>mw.loadData</code>.
+ *
+ * The data returned by a module is copied into read-only tables once, which
+ * can then be shared between engines and threads. An entry is only returned
+ * as long as the source of the module is unchanged.
+ *
+ * See <a href="https://www.mediawiki.org/wiki/Extension:Scribunto/Lua_reference_manual#mw.loadData">mw.loadData</a>
+ */
+public class LoadedDataCache {
+    private static final int DEFAULT_MAX_ENTRIES = 64;
+
+    /**
+     * The cache used by default by all engines.
+     */
+    public static final LoadedDataCache SHARED = new LoadedDataCache(DEFAULT_MAX_ENTRIES);
+
+    private final Map<ParsedPageName, Entry> cache;
+
+    public LoadedDataCache(final int maxEntries) {
+        this.cache = Collections.synchronizedMap(new LinkedHashMap<ParsedPageName, Entry>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<ParsedPageName, Entry> eldest) {
+                return size() > maxEntries;
+            }
+        });
+    }
+
+    /**
+     * @param source the current source of the data module
+     * @return the cached data, or <code>null</code> if the module hasn't been
+     *         loaded yet or its source has changed since
+     */
+    public LuaValue get(ParsedPageName pageName, byte[] source) {
+        final Entry entry = cache.get(pageName);
+        if (entry == null) {
+            return null;
+        }
+        if (!Arrays.equals(entry.source, source)) {
+            cache.remove(pageName);
+            return null;
+        }
+        return entry.data;
+    }
+
+    /**
+     * Freeze the data returned by a module and cache it.
+     *
+     * @param source the source of the data module
+     * @param data the value returned by the module
+     * @return the read-only copy of the data
+     * @throws LuaError if the data contains functions, userdata or tables with
+     *         a metatable
+     */
+    public LuaValue put(ParsedPageName pageName, byte[] source, LuaValue data) {
+        final LuaValue frozen = freeze(data, new IdentityHashMap<LuaValue, ReadOnlyTable>());
+        cache.put(pageName, new Entry(source, frozen));
+        return frozen;
+    }
+
+    public int size() {
+        return cache.size();
+    }
+
+    public void clear() {
+        cache.clear();
+    }
+
+    private static LuaValue freeze(LuaValue value, Map<LuaValue, ReadOnlyTable> seen) {
+        switch (value.type()) {
+            case LuaValue.TNIL:
+            case LuaValue.TBOOLEAN:
+            case LuaValue.TNUMBER:
+            case LuaValue.TSTRING:
+                return value;
+            case LuaValue.TTABLE:
+                ReadOnlyTable copy = seen.get(value);
+                if (copy == null) {
+                    if (value.getmetatable() != null) {
+                        throw new LuaError("data for mw.loadData contains a table with a metatable");
+                    }
+                    final LuaTable table = (LuaTable) value;
+                    copy = new ReadOnlyTable(table.length(), table.keyCount());
+                    seen.put(value, copy);
+                    LuaValue key = LuaValue.NIL;
+                    while (true) {
+                        Varargs next = table.next(key);
+                        if ((key = next.arg1()).isnil()) {
+                            break;
+                        }
+                        copy.put(freeze(key, seen), freeze(next.arg(2), seen));
+                    }
+                    copy.frozen = true;
+                }
+                return copy;
+            default:
+                throw new LuaError("data for mw.loadData contains unsupported data type '" + value.typename() + "'");
+        }
+    }
+
+    private static class Entry {
+        final byte[] source;
+        final LuaValue data;
+
+        Entry(byte[] source, LuaValue data) {
+            this.source = source;
+            this.data = data;
+        }
+    }
+
+    /**
+     * A table which can't be modified once it is filled; reading it from
+     * several threads is safe.
+     */
+    static class ReadOnlyTable extends LuaTable {
+        private boolean frozen;
+
+        ReadOnlyTable(int narray, int nhash) {
+            super(narray, nhash);
+        }
+
+        private void put(LuaValue key, LuaValue value) {
+            super.rawset(key, value);
+        }
+
+        private void checkWritable() {
+            if (frozen) {
+                error("table from mw.loadData is read-only");
+            }
+        }
+
+        @Override public void set(int key, LuaValue value) {
+            checkWritable();
+            super.set(key, value);
+        }
+
+        @Override public void set(LuaValue key, LuaValue value) {
+            checkWritable();
+            super.set(key, value);
+        }
+
+        @Override public void rawset(int key, LuaValue value) {
+            checkWritable();
+            super.rawset(key, value);
+        }
+
+        @Override public void rawset(LuaValue key, LuaValue value) {
+            checkWritable();
+            super.rawset(key, value);
+        }
+
+        @Override public void hashset(LuaValue key, LuaValue value) {
+            checkWritable();
+            super.hashset(key, value);
+        }
+
+        @Override public void insert(int pos, LuaValue value) {
+            checkWritable();
+            super.insert(pos, value);
+        }
+
+        @Override public LuaValue remove(int pos) {
+            checkWritable();
+            return super.remove(pos);
+        }
+
+        @Override public void sort(LuaValue comparator) {
+            checkWritable();
+            super.sort(comparator);
+        }
+
+        @Override public LuaValue setmetatable(LuaValue metatable) {
+            checkWritable();
+            return super.setmetatable(metatable);
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package info.bliki.extensions.scribunto.engine.lua;
+
+import org.luaj.vm2.LuaError;
+
+/**
+ * Thrown when a module exceeds one of the {@link LuaLimits}.
+ */
+public class LuaLimitError extends LuaError {
+    private static final long serialVersionUID = 1L;
+
+    public static final String TIME_EXPIRED = "the time allocated for running scripts has expired";
+    public static final String INSTRUCTIONS_EXCEEDED = "the instruction limit for running scripts has been exceeded";
+    public static final String NOT_ENOUGH_MEMORY = "not enough memory";
+
+    private final String reason;
+
+    public LuaLimitError(String reason) {
+        super(reason);
+        this.reason = reason;
+    }
+
+    /**
+     * @return the reason without position information
+     */
+    public String getReason() {
+        return reason;
+    }
+
+    /**
+     * @return the error as it is rendered by MediaWiki
+     */
+    public String toWikiText() {
+        return "<strong class=\"error\"><span class=\"scribunto-error\">Lua error: " + reason + ".</span></strong>";
+    }
+}
@@ -0,0 +1,104 @@
+package info.bliki.extensions.scribunto.engine.lua;
+
+/**
+ * Resource limits for running Lua modules, per <code>#invoke</code> and per
+ * page. A limit of <code>0</code> disables the check. All limits are disabled
+ * by default; the limits are enforced by an instruction hook, which is only
+ * installed if a limit is set.
+ *
+ * See <a href="https://www.mediawiki.org/wiki/Extension:Scribunto#Configuration">$wgScribuntoEngineConf</a>
+ */
+public class LuaLimits {
+    private long maxInstructionsPerInvoke;
+    private long maxInstructionsPerPage;
+    private long maxTimePerInvoke;
+    private long maxTimePerPage;
+    private long maxAllocatedBytesPerInvoke;
+    private long maxAllocatedBytesPerPage;
+
+    public long getMaxInstructionsPerInvoke() {
+        return maxInstructionsPerInvoke;
+    }
+
+    /**
+     * @param maxInstructions the number of Lua VM instructions a single
+     *        <code>#invoke</code> may execute
+     */
+    public void setMaxInstructionsPerInvoke(long maxInstructions) {
+        this.maxInstructionsPerInvoke = maxInstructions;
+    }
+
+    public long getMaxInstructionsPerPage() {
+        return maxInstructionsPerPage;
+    }
+
+    /**
+     * @param maxInstructions the number of Lua VM instructions all
+     *        <code>#invoke</code> calls of a page may execute
+     */
+    public void setMaxInstructionsPerPage(long maxInstructions) {
+        this.maxInstructionsPerPage = maxInstructions;
+    }
+
+    public long getMaxTimePerInvoke() {
+        return maxTimePerInvoke;
+    }
+
+    /**
+     * @param maxTime the wall time in milliseconds a single
+     *        <code>#invoke</code> may run
+     */
+    public void setMaxTimePerInvoke(long maxTime) {
+        this.maxTimePerInvoke = maxTime;
+    }
+
+    public long getMaxTimePerPage() {
+        return maxTimePerPage;
+    }
+
+    /**
+     * @param maxTime the wall time in milliseconds all <code>#invoke</code>
+     *        calls of a page may run
+     */
+    public void setMaxTimePerPage(long maxTime) {
+        this.maxTimePerPage = maxTime;
+    }
+
+    public long getMaxAllocatedBytesPerInvoke() {
+        return maxAllocatedBytesPerInvoke;
+    }
+
+    /**
+     * Limit the memory allocated by a single <code>#invoke</code>. This counts
+     * all allocations of the rendering thread, including garbage, and is only
+     * enforced on JVMs which support measuring them.
+     *
+     * @param maxBytes the number of bytes
+     */
+    public void setMaxAllocatedBytesPerInvoke(long maxBytes) {
+        this.maxAllocatedBytesPerInvoke = maxBytes;
+    }
+
+    public long getMaxAllocatedBytesPerPage() {
+        return maxAllocatedBytesPerPage;
+    }
+
+    /**
+     * Limit the memory allocated by all <code>#invoke</code> calls of a page.
+     *
+     * @param maxBytes the number of bytes
+     * @see #setMaxAllocatedBytesPerInvoke(long)
+     */
+    public void setMaxAllocatedBytesPerPage(long maxBytes) {
+        this.maxAllocatedBytesPerPage = maxBytes;
+    }
+
+    /**
+     * @return <code>true</code> if any limit is set
+     */
+    public boolean isEnabled() {
+        return maxInstructionsPerInvoke > 0 || maxInstructionsPerPage > 0
+            || maxTimePerInvoke > 0 || maxTimePerPage > 0
+            || maxAllocatedBytesPerInvoke > 0 || maxAllocatedBytesPerPage > 0;
+    }
+}
@@ -0,0 +1,310 @@
+package info.bliki.extensions.scribunto.engine.lua;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Collects the time spent in Lua modules, per module and per function
+ * called with <code>#invoke</code>.
+ *
+ * A profiler can be shared by several models and threads; the numbers are
+ * accumulated until {@link #reset()} is called.
+ *
+ * @see info.bliki.wiki.model.IConfiguration#setLuaProfiler(LuaProfiler)
+ */
+public class LuaProfiler {
+    private final ConcurrentMap<String, ModuleProfile> modules = new ConcurrentHashMap<>();
+
+    /**
+     * @return copies of the profiles of all modules with the current numbers,
+     *         the slowest (by self time) first
+     */
+    public List<ModuleProfile> getModuleProfiles() {
+        List<ModuleProfile> result = new ArrayList<>(modules.size());
+        for (ModuleProfile module : modules.values()) {
+            // the numbers of a copy don't change while the list is sorted
+            result.add(module.snapshot());
+        }
+        Collections.sort(result, new Comparator<ModuleProfile>() {
+            @Override public int compare(ModuleProfile p1, ModuleProfile p2) {
+                return Long.compare(p2.getSelfNanos(), p1.getSelfNanos());
+            }
+        });
+        return result;
+    }
+
+    /**
+     * @return the profile of the module or <code>null</code> if it hasn't been
+     *         used
+     */
+    public ModuleProfile getModuleProfile(String module) {
+        return modules.get(module);
+    }
+
+    /**
+     * @return copies of the profiles of all functions with the current numbers,
+     *         the slowest (by self time) first
+     */
+    public List<FunctionProfile> getFunctionProfiles() {
+        List<FunctionProfile> result = new ArrayList<>();
+        for (ModuleProfile module : modules.values()) {
+            for (FunctionProfile function : module.functions.values()) {
+                // the numbers of a copy don't change while the list is sorted
+                result.add(function.snapshot());
+            }
+        }
+        Collections.sort(result, new Comparator<FunctionProfile>() {
+            @Override public int compare(FunctionProfile p1, FunctionProfile p2) {
+                return Long.compare(p2.getSelfNanos(), p1.getSelfNanos());
+            }
+        });
+        return result;
+    }
+
+    public void reset() {
+        modules.clear();
+    }
+
+    /**
+     * Format the slowest functions like the "Lua Profile" of the MediaWiki
+     * limit report.
+     *
+     * @param maxEntries the number of functions in the report
+     */
+    public String getReport(int maxEntries) {
+        final List<FunctionProfile> profiles = getFunctionProfiles();
+        long total = 0;
+        for (FunctionProfile profile : profiles) {
+            total += profile.getSelfNanos();
+        }
+        final StringBuilder buffer = new StringBuilder("Lua Profile:\n");
+        for (int i = 0; i < profiles.size() && i < maxEntries; i++) {
+            final FunctionProfile profile = profiles.get(i);
+            buffer.append(String.format("    %-50s %8d ms %6.1f%% %6d calls\n",
+                profile.getModule() + "." + profile.getFunction(),
+                profile.getSelfNanos() / 1000000,
+                total == 0 ? 0.0 : 100.0 * profile.getSelfNanos() / total,
+                profile.getCalls()));
+        }
+        return buffer.toString();
+    }
+
+    Call enter(String module, String function) {
+        return new Call(module(module).function(function));
+    }
+
+    void exit(Call call) {
+        final long total = System.nanoTime() - call.start;
+        call.profile.add(total, total - call.callbackNanos);
+    }
+
+    void compiled(String module, long nanos) {
+        final ModuleProfile profile = module(module);
+        profile.compiles.incrementAndGet();
+        profile.compileNanos.addAndGet(nanos);
+    }
+
+    private ModuleProfile module(String module) {
+        ModuleProfile profile = modules.get(module);
+        if (profile == null) {
+            final ModuleProfile newProfile = new ModuleProfile(module);
+            profile = modules.putIfAbsent(module, newProfile);
+            if (profile == null) {
+                profile = newProfile;
+            }
+        }
+        return profile;
+    }
+
+    /**
+     * The profile of a module; the times are the sums of the times of its
+     * functions.
+     */
+    public static class ModuleProfile {
+        private final String name;
+        private final ConcurrentMap<String, FunctionProfile> functions = new ConcurrentHashMap<>();
+        private final AtomicLong compiles = new AtomicLong();
+        private final AtomicLong compileNanos = new AtomicLong();
+
+        ModuleProfile(String name) {
+            this.name = name;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public Map<String, FunctionProfile> getFunctionProfiles() {
+            return Collections.unmodifiableMap(functions);
+        }
+
+        public long getCalls() {
+            long calls = 0;
+            for (FunctionProfile function : functions.values()) {
+                calls += function.getCalls();
+            }
+            return calls;
+        }
+
+        public long getTotalNanos() {
+            long nanos = 0;
+            for (FunctionProfile function : functions.values()) {
+                nanos += function.getTotalNanos();
+            }
+            return nanos;
+        }
+
+        public long getSelfNanos() {
+            long nanos = 0;
+            for (FunctionProfile function : functions.values()) {
+                nanos += function.getSelfNanos();
+            }
+            return nanos;
+        }
+
+        /**
+         * @return how often the module has been compiled
+         */
+        public long getCompiles() {
+            return compiles.get();
+        }
+
+        public long getCompileNanos() {
+            return compileNanos.get();
+        }
+
+        /**
+         * @return a copy with the current numbers, which isn't updated
+         */
+        ModuleProfile snapshot() {
+            ModuleProfile copy = new ModuleProfile(name);
+            for (Map.Entry<String, FunctionProfile> entry : functions.entrySet()) {
+                copy.functions.put(entry.getKey(), entry.getValue().snapshot());
+            }
+            copy.compiles.set(compiles.get());
+            copy.compileNanos.set(compileNanos.get());
+            return copy;
+        }
+
+        private FunctionProfile function(String function) {
+            FunctionProfile profile = functions.get(function);
+            if (profile == null) {
+                final FunctionProfile newProfile = new FunctionProfile(name, function);
+                profile = functions.putIfAbsent(function, newProfile);
+                if (profile == null) {
+                    profile = newProfile;
+                }
+            }
+            return profile;
+        }
+    }
+
+    /**
+     * The profile of a function called with <code>#invoke</code>.
+     *
+     * The total time includes the callbacks to the parser
+     * (<code>frame:expandTemplate()</code>, <code>frame:preprocess()</code>),
+     * which are excluded from the self time.
+     */
+    public static class FunctionProfile {
+        private final String module;
+        private final String function;
+        private final AtomicLong calls = new AtomicLong();
+        private final AtomicLong totalNanos = new AtomicLong();
+        private final AtomicLong selfNanos = new AtomicLong();
+        private final AtomicLong expandTemplateCalls = new AtomicLong();
+        private final AtomicLong preprocessCalls = new AtomicLong();
+        private final AtomicLong callbackNanos = new AtomicLong();
+
+        FunctionProfile(String module, String function) {
+            this.module = module;
+            this.function = function;
+        }
+
+        public String getModule() {
+            return module;
+        }
+
+        public String getFunction() {
+            return function;
+        }
+
+        public long getCalls() {
+            return calls.get();
+        }
+
+        public long getTotalNanos() {
+            return totalNanos.get();
+        }
+
+        public long getSelfNanos() {
+            return selfNanos.get();
+        }
+
+        public long getExpandTemplateCalls() {
+            return expandTemplateCalls.get();
+        }
+
+        public long getPreprocessCalls() {
+            return preprocessCalls.get();
+        }
+
+        public long getCallbackNanos() {
+            return callbackNanos.get();
+        }
+
+        /**
+         * @return a copy with the current numbers, which isn't updated
+         */
+        FunctionProfile snapshot() {
+            FunctionProfile copy = new FunctionProfile(module, function);
+            copy.calls.set(calls.get());
+            copy.totalNanos.set(totalNanos.get());
+            copy.selfNanos.set(selfNanos.get());
+            copy.expandTemplateCalls.set(expandTemplateCalls.get());
+            copy.preprocessCalls.set(preprocessCalls.get());
+            copy.callbackNanos.set(callbackNanos.get());
+            return copy;
+        }
+
+        private void add(long total, long self) {
+            calls.incrementAndGet();
+            totalNanos.addAndGet(total);
+            selfNanos.addAndGet(self);
+        }
+    }
+
+    /**
+     * A running <code>#invoke</code>.
+     */
+    static class Call {
+        private final FunctionProfile profile;
+        private final long start = System.nanoTime();
+        private long callbackNanos;
+
+        Call(FunctionProfile profile) {
+            this.profile = profile;
+        }
+
+        void expandTemplate(long nanos) {
+            profile.expandTemplateCalls.incrementAndGet();
+            callback(nanos);
+        }
+
+        void preprocess(long nanos) {
+            profile.preprocessCalls.incrementAndGet();
+            callback(nanos);
+        }
+
+        private void callback(long nanos) {
+            callbackNanos += nanos;
+            profile.callbackNanos.addAndGet(nanos);
+        }
+    }
+}
@@ -0,0 +1,174 @@
+package info.bliki.extensions.scribunto.engine.lua;
+
+import org.luaj.vm2.LuaFunction;
+import org.luaj.vm2.LuaValue;
+import org.luaj.vm2.Prototype;
+import org.luaj.vm2.luajc.JavaGen;
+import org.luaj.vm2.luajc.JavaLoader;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Compiles frequently used modules to JVM bytecode with luaj's LuaJC
+ * compiler, so that they can be optimized by the JIT.
+ *
+ * A module is compiled in a background thread once its chunk has been
+ * loaded {@link #getThreshold()} times; until then, and if the module can't
+ * be compiled, it is run by the interpreter. The generated classes are shared
+ * by all engines using the same compiler.
+ *
+ * The compiler needs <a href="https://commons.apache.org/proper/commons-bcel/">BCEL</a>
+ * on the classpath; without it all modules are interpreted.
+ *
+ * @see info.bliki.wiki.model.IConfiguration#setModuleCompiler(ModuleCompiler)
+ */
+public class ModuleCompiler {
+    private static final Logger logger = LoggerFactory.getLogger(ModuleCompiler.class);
+    public static final int DEFAULT_THRESHOLD = 50;
+    private static final boolean SUPPORTED = isBcelAvailable();
+
+    private final int threshold;
+    private final Map<Prototype, Entry> entries = Collections.synchronizedMap(new WeakHashMap<Prototype, Entry>());
+    private final ExecutorService executor;
+
+    public ModuleCompiler() {
+        this(DEFAULT_THRESHOLD);
+    }
+
+    /**
+     * @param threshold the number of times a module is loaded before it is
+     *        compiled
+     */
+    public ModuleCompiler(int threshold) {
+        this.threshold = threshold;
+        this.executor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+            @Override public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "bliki-luajc");
+                thread.setDaemon(true);
+                thread.setPriority(Thread.MIN_PRIORITY);
+                return thread;
+            }
+        });
+    }
+
+    /**
+     * @return <code>true</code> if modules can be compiled in this JVM
+     */
+    public static boolean isSupported() {
+        return SUPPORTED;
+    }
+
+    public int getThreshold() {
+        return threshold;
+    }
+
+    /**
+     * @return <code>true</code> if the compiled version of the chunk is
+     *         available
+     */
+    public boolean isCompiled(Prototype prototype) {
+        final Entry entry = entries.get(prototype);
+        return entry != null && entry.compiled != null;
+    }
+
+    /**
+     * Stop the compiler thread; modules which are already compiled can still
+     * be loaded.
+     */
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Count a use of the chunk and return its compiled version, if available.
+     *
+     * @param environment the globals of the engine
+     * @return the compiled chunk, or <code>null</code> if it should be run by
+     *         the interpreter
+     */
+    public LuaFunction load(Prototype prototype, LuaValue environment) {
+        Entry entry;
+        synchronized (entries) {
+            entry = entries.get(prototype);
+            if (entry == null) {
+                entry = new Entry();
+                entries.put(prototype, entry);
+            }
+        }
+        final Compiled compiled = entry.compiled;
+        if (compiled != null) {
+            return compiled.loader.load(compiled.className, environment);
+        }
+        if (SUPPORTED && entry.calls.incrementAndGet() == threshold && !executor.isShutdown()) {
+            executor.execute(new CompileTask(prototype, entry));
+        }
+        return null;
+    }
+
+    private static String className(Prototype prototype) {
+        final String source = prototype.source == null ? "" : prototype.source.tojstring();
+        final StringBuilder buffer = new StringBuilder("luajc_");
+        for (int i = 0; i < source.length(); i++) {
+            final char ch = source.charAt(i);
+            buffer.append(ch < 128 && Character.isJavaIdentifierPart(ch) ? ch : '_');
+        }
+        return buffer.toString();
+    }
+
+    private static boolean isBcelAvailable() {
+        try {
+            Class.forName("org.apache.bcel.generic.ClassGen", false, JavaGen.class.getClassLoader());
+            return true;
+        } catch (ClassNotFoundException | LinkageError e) {
+            return false;
+        }
+    }
+
+    private static class Entry {
+        final AtomicInteger calls = new AtomicInteger();
+        volatile Compiled compiled;
+    }
+
+    private static class Compiled {
+        final JavaLoader loader;
+        final String className;
+
+        Compiled(JavaLoader loader, String className) {
+            this.loader = loader;
+            this.className = className;
+        }
+    }
+
+    private static class CompileTask implements Runnable {
+        private final Prototype prototype;
+        private final Entry entry;
+
+        CompileTask(Prototype prototype, Entry entry) {
+            this.prototype = prototype;
+            this.entry = entry;
+        }
+
+        @Override public void run() {
+            final String className = className(prototype);
+            try {
+                final long start = System.currentTimeMillis();
+                final JavaGen gen = new JavaGen(prototype, className, String.valueOf(prototype.source), false);
+                final JavaLoader loader = new JavaLoader();
+                // defines and verifies the classes
+                loader.load(gen, LuaValue.NIL);
+                entry.compiled = new Compiled(loader, className);
+                logger.debug("compiled " + prototype.source + " in " + (System.currentTimeMillis() - start) + " ms");
+            } catch (RuntimeException | LinkageError e) {
+                logger.info("could not compile " + prototype.source + ", using the interpreter", e);
+            }
+        }
+    }
+}
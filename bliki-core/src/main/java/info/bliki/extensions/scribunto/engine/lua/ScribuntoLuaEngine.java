@@ -3,11 +3,13 @@ package info.bliki.extensions.scribunto.engine.lua;
 import info.bliki.extensions.scribunto.ScribuntoException;
 import info.bliki.extensions.scribunto.engine.ScribuntoEngineBase;
 import info.bliki.extensions.scribunto.engine.ScribuntoModule;
+import info.bliki.extensions.scribunto.engine.ScribuntoUsage;
 import info.bliki.extensions.scribunto.engine.lua.interfaces.MwHtml;
 import info.bliki.extensions.scribunto.engine.lua.interfaces.MwInit;
 import info.bliki.extensions.scribunto.engine.lua.interfaces.MwInterface;
 import info.bliki.extensions.scribunto.engine.lua.interfaces.MwLanguage;
 import info.bliki.extensions.scribunto.engine.lua.interfaces.MwMessage;
+import info.bliki.extensions.scribunto.engine.lua.interfaces.MwNativeLibrary;
 import info.bliki.extensions.scribunto.engine.lua.interfaces.MwSite;
 import info.bliki.extensions.scribunto.engine.lua.interfaces.MwText;
 import info.bliki.extensions.scribunto.engine.lua.interfaces.MwTitle;
@@ -38,14 +40,20 @@ import org.luaj.vm2.lib.ZeroArgFunction;
 import org.luaj.vm2.lib.jse.JsePlatform;
 
 import javax.annotation.Nonnull;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.StringWriter;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Deque;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.TreeMap;
 
 import static info.bliki.wiki.filter.MagicWord.processMagicWord;
 import static java.nio.charset.StandardCharsets.UTF_8;
@@ -56,12 +64,23 @@ import static java.nio.charset.StandardCharsets.UTF_8;
 public class ScribuntoLuaEngine extends ScribuntoEngineBase implements MwInterface {
     private static final int MAX_EXPENSIVE_CALLS = 10;
     private static final boolean ENABLE_LUA_DEBUG_LIBRARY = false;
+    private static volatile boolean compilerIgnoredLogged;
     private final Globals globals;
     private Frame currentFrame;
-    private Map<String,Frame> childFrames = new HashMap<>();
+    private final ChildFrames childFrames = new ChildFrames();
     private int expensiveFunctionCount;
 
     private final CompiledScriptCache compiledScriptCache;
+    private final LoadedDataCache loadedDataCache;
+    /**
+     * The data loaded by the current page, cleared in {@link #resetUsage()}
+     * so the source of the data modules is checked again for the next page
+     */
+    private final Map<ParsedPageName, LuaValue> loadedData = new HashMap<>();
+    private final ExecutionLimiter limiter;
+    private final ModuleCompiler moduleCompiler;
+    private final LuaProfiler profiler;
+    private final Deque<LuaProfiler.Call> profiledCalls = new ArrayDeque<>();
     private final MwInterface[] interfaces;
 
     public ScribuntoLuaEngine(IWikiModel model, CompiledScriptCache cache) {
@@ -69,14 +88,23 @@ public class ScribuntoLuaEngine extends ScribuntoEngineBase implements MwInterfa
     }
 
     public ScribuntoLuaEngine(IWikiModel model, CompiledScriptCache cache, boolean debug) {
-        this(model, cache, debug ? JsePlatform.debugGlobals() : JsePlatform.standardGlobals());
+        this(model, cache, LoadedDataCache.SHARED, debug);
+    }
+
+    public ScribuntoLuaEngine(IWikiModel model, CompiledScriptCache cache, LoadedDataCache loadedDataCache, boolean debug) {
+        this(model, cache, loadedDataCache, debug ? JsePlatform.debugGlobals() : JsePlatform.standardGlobals());
     }
 
-    private ScribuntoLuaEngine(IWikiModel model, CompiledScriptCache compiledScriptCache, Globals globals) {
+    private ScribuntoLuaEngine(IWikiModel model, CompiledScriptCache compiledScriptCache,
+                               LoadedDataCache loadedDataCache, Globals globals) {
         super(model);
         this.compiledScriptCache = compiledScriptCache;
+        this.loadedDataCache = loadedDataCache;
         this.globals = globals;
         this.globals.finder = new LuaResourceFinder(globals.finder);
+        this.limiter = installLimiter(globals, model.getLuaLimits());
+        this.moduleCompiler = moduleCompiler(model.getModuleCompiler(), limiter);
+        this.profiler = model.getLuaProfiler();
         extendGlobals(globals);
 
         this.interfaces = getMwInterfaces(model);
@@ -88,6 +116,39 @@ public class ScribuntoLuaEngine extends ScribuntoEngineBase implements MwInterfa
         }
     }
 
+    private static ExecutionLimiter installLimiter(Globals globals, LuaLimits limits) {
+        if (limits == null) {
+            limits = new LuaLimits();
+        }
+        if (!limits.isEnabled()) {
+            return null;
+        }
+        final boolean debug = globals.debuglib != null;
+        final ExecutionLimiter limiter = new ExecutionLimiter(limits);
+        globals.load(limiter);
+        if (!debug) {
+            // only needed for the instruction hook
+            globals.set("debug", LuaValue.NIL);
+            globals.get("package").get("loaded").set("debug", LuaValue.NIL);
+        }
+        return limiter;
+    }
+
+    /**
+     * Compiled code doesn't run the instruction hook which enforces the
+     * limits, so the compiler isn't used if any limit is set.
+     */
+    private ModuleCompiler moduleCompiler(ModuleCompiler compiler, ExecutionLimiter limiter) {
+        if (compiler != null && limiter != null) {
+            if (!compilerIgnoredLogged) {
+                compilerIgnoredLogged = true;
+                logger.warn("the Lua modules are interpreted, since the module compiler can't enforce the Lua limits");
+            }
+            return null;
+        }
+        return compiler;
+    }
+
     protected MwInterface[] getMwInterfaces(IWikiModel model) {
         return new MwInterface[]{
                 new MwSite(model),
@@ -103,6 +164,7 @@ public class ScribuntoLuaEngine extends ScribuntoEngineBase implements MwInterfa
 
     @Override public ScribuntoModule fetchModuleFromParser(String moduleName) throws ScribuntoException {
         ParsedPageName pageName = pageNameForModule(moduleName, moduleNamespace);
+        model.addDependency(pageName);
 
         Prototype prototype = compiledScriptCache.getPrototypeForChunkname(pageName);
         if (prototype == null) {
@@ -120,6 +182,72 @@ public class ScribuntoLuaEngine extends ScribuntoEngineBase implements MwInterfa
         return "mw";
     }
 
+    @Override
+    public void resetUsage() {
+        loadedData.clear();
+        if (limiter != null) {
+            limiter.resetPage();
+        }
+    }
+
+    @Override
+    public ScribuntoUsage getUsage() {
+        return limiter != null ? limiter.getPageUsage() : null;
+    }
+
+    @Override
+    public boolean addUsage(ScribuntoUsage usage) {
+        return limiter == null || limiter.addPageUsage(usage);
+    }
+
+    /**
+     * Start accounting the resources used by an <code>#invoke</code> against
+     * the {@link LuaLimits}.
+     */
+    protected void startInvoke() {
+        childFrames.enter();
+        if (limiter != null) {
+            limiter.startInvoke();
+        }
+    }
+
+    /**
+     * Release the child frames created by the <code>#invoke</code>.
+     */
+    protected void endInvoke() {
+        childFrames.exit();
+        if (limiter != null) {
+            limiter.endInvoke();
+        }
+    }
+
+    /**
+     * Start measuring the time of an <code>#invoke</code>, if a
+     * {@link LuaProfiler} is configured.
+     */
+    void startProfiling(ParsedPageName module, String functionName) {
+        if (profiler != null) {
+            profiledCalls.push(profiler.enter(module.fullPagename(), functionName));
+        }
+    }
+
+    void endProfiling() {
+        if (profiler != null) {
+            profiler.exit(profiledCalls.pop());
+        }
+    }
+
+    private void profileCallback(boolean expandTemplate, long start) {
+        final LuaProfiler.Call call = profiledCalls.peek();
+        if (call != null) {
+            if (expandTemplate) {
+                call.expandTemplate(System.nanoTime() - start);
+            } else {
+                call.preprocess(System.nanoTime() - start);
+            }
+        }
+    }
+
     protected Globals getGlobals() {
         return globals;
     }
@@ -127,11 +255,13 @@ public class ScribuntoLuaEngine extends ScribuntoEngineBase implements MwInterfa
     protected LuaValue loadFunction(String functionName, Prototype prototype, Frame frame) throws ScribuntoException {
         try {
             currentFrame = frame;
-            LuaValue function =  new LuaClosure(prototype, globals).checkfunction().call().get(functionName);
+            LuaValue function = newChunk(prototype).call().get(functionName);
             if (function.isnil()) {
                 throw new ScribuntoException("no such function '"+functionName+"'");
             }
             return function;
+        } catch (LuaLimitError e) {
+            throw e;
         } catch (LuaError e) {
             throw new ScribuntoException(e);
         } finally {
@@ -167,6 +297,7 @@ public class ScribuntoLuaEngine extends ScribuntoEngineBase implements MwInterfa
 
         stubTitleBlacklist();
         stubExecuteModule();
+        stubLoadData();
         stubWikiBase();
     }
 
@@ -212,6 +343,16 @@ public class ScribuntoLuaEngine extends ScribuntoEngineBase implements MwInterfa
         });
     }
 
+    private void stubLoadData() {
+        // data modules are loaded once and shared between engines
+        final LuaValue mw = globals.get("mw");
+        mw.set("loadData", new OneArgFunction() {
+            @Override public LuaValue call(LuaValue module) {
+                return loadData(pageNameForModule(module.checkjstring(), model.getNamespace().getMain()));
+            }
+        });
+    }
+
     private void stubWikiBase() {
         // fake https://www.mediawiki.org/wiki/Extension:Wikibase
         final LuaValue mw = globals.get("mw");
@@ -255,6 +396,9 @@ public class ScribuntoLuaEngine extends ScribuntoEngineBase implements MwInterfa
                 globals.set("mw_interface", luaInterface.getInterface());
                 setupInterface.call(luaInterface.getSetupOptions());
             }
+            if (luaInterface instanceof MwNativeLibrary && pkg.istable()) {
+                ((MwNativeLibrary) luaInterface).replaceLuaFunctions(pkg.checktable());
+            }
         }
     }
 
@@ -321,11 +465,11 @@ public class ScribuntoLuaEngine extends ScribuntoEngineBase implements MwInterfa
                     }
 
                 } else {
-                    MagicWord.MagicWordE magic = MagicWord.getMagicWord(functionName);
-                    if (magic != null) {
+                    Object magic = model.getMagicWord(functionName);
+                    if (magic instanceof MagicWord.MagicWordE) {
                         final LuaTable arguments = args.checktable();
                         final String argument = arguments.get(1).checkjstring();
-                        final String processed = processMagicWord(magic, argument, model);
+                        final String processed = processMagicWord((MagicWord.MagicWordE) magic, argument, model);
                         return processed == null ? NIL : toLuaString(processed);
                     } else {
                         return NIL;
@@ -346,7 +490,8 @@ public class ScribuntoLuaEngine extends ScribuntoEngineBase implements MwInterfa
     private LuaValue incrementExpensiveFunctionCount() {
         return new ZeroArgFunction() {
             @Override public LuaValue call() {
-                if (++expensiveFunctionCount > MAX_EXPENSIVE_CALLS) {
+                if (!model.getLimitReport().incrementExpensiveFunctionCount()
+                        || ++expensiveFunctionCount > MAX_EXPENSIVE_CALLS) {
                     error("too many expensive function calls");
                 }
                 return NIL;
@@ -357,11 +502,14 @@ public class ScribuntoLuaEngine extends ScribuntoEngineBase implements MwInterfa
     private LuaValue preprocess() {
         return new TwoArgFunction() {
             @Override public LuaValue call(LuaValue frameId, LuaValue text) {
+                final long start = System.nanoTime();
                 try {
                     return toLuaString(model.render(text.checkjstring()));
                 } catch (IOException e) {
                     logger.error("error rendering", e);
                     return LuaValue.NIL;
+                } finally {
+                    profileCallback(false, start);
                 }
             }
         };
@@ -372,11 +520,14 @@ public class ScribuntoLuaEngine extends ScribuntoEngineBase implements MwInterfa
             @Override
             public LuaValue call(LuaValue frameId, LuaValue title, LuaValue args) {
                 StringWriter writer = new StringWriter();
+                final long start = System.nanoTime();
                 try {
                     model.substituteTemplateCall(title.tojstring(), luaParams(args), writer);
                     return toLuaString(writer.toString());
                 } catch (IOException e) {
                     throw new RuntimeException(e);
+                } finally {
+                    profileCallback(true, start);
                 }
             }
         };
@@ -393,21 +544,23 @@ public class ScribuntoLuaEngine extends ScribuntoEngineBase implements MwInterfa
 
     private Frame getFrameById(LuaValue luaFrameId) {
         assert(currentFrame != null);
-        final String frameId = luaFrameId.checkjstring();
-        Frame frame = null;
-        if (frameId.equals("parent")) {
-            frame = currentFrame.getParent();
-        } else if (frameId.equals("current")) {
-            frame = currentFrame;
-        } else if (childFrames.containsKey(frameId)) {
-            frame = childFrames.get(frameId);
-        }
+        final Frame frame = findFrame(luaFrameId.checkjstring());
         if (frame == null) {
             throw new AssertionError("No frame set: "+ luaFrameId);
         }
         return frame;
     }
 
+    private Frame findFrame(String frameId) {
+        if (frameId.equals("parent")) {
+            return currentFrame == null ? null : currentFrame.getParent();
+        } else if (frameId.equals("current")) {
+            return currentFrame;
+        } else {
+            return childFrames.get(frameId);
+        }
+    }
+
     private LuaValue getFrameTitle() {
         return new OneArgFunction() {
             @Override
@@ -434,13 +587,12 @@ public class ScribuntoLuaEngine extends ScribuntoEngineBase implements MwInterfa
             @Override
             public LuaValue call(LuaValue frameId, LuaValue title, LuaValue args) {
                 final Frame childFrame =
-                        currentFrame.newChild(
+                        currentFrame.newLazyChild(
                             new ParsedPageName(currentFrame.getPage().namespace, title.checkjstring(), true),
-                            luaParams(args),
+                            lazyLuaParams(args),
                             currentFrame.isSubsting());
 
-                childFrames.put(childFrame.getFrameId(), childFrame);
-                return toLuaString(childFrame.getFrameId());
+                return toLuaString(childFrames.add(childFrame));
             }
         };
     }
@@ -448,8 +600,9 @@ public class ScribuntoLuaEngine extends ScribuntoEngineBase implements MwInterfa
     private LuaValue frameExists() {
         return new OneArgFunction() {
             @Override
-            public LuaValue call(LuaValue arg) {
-                return TRUE;
+            public LuaValue call(LuaValue frameId) {
+                final String id = frameId.checkjstring();
+                return valueOf(id.equals("empty") || findFrame(id) != null);
             }
         };
     }
@@ -464,14 +617,13 @@ public class ScribuntoLuaEngine extends ScribuntoEngineBase implements MwInterfa
     }
 
     private LuaValue loadModule(ParsedPageName chunkName) throws LuaError {
+        model.addDependency(chunkName);
         Prototype prototype = compiledScriptCache.getPrototypeForChunkname(chunkName);
         if (prototype != null) {
-            return new LuaClosure(prototype, globals);
+            return newChunk(prototype);
         } else {
             try (InputStream is = findPackage(chunkName)) {
-                return new LuaClosure(
-                    loadAndCache(is, chunkName),
-                    globals);
+                return newChunk(loadAndCache(is, chunkName));
             } catch (ScribuntoException | IOException e) {
                 logger.error("error loading '"+chunkName+"'", e);
                 throw new LuaError(e);
@@ -479,10 +631,57 @@ public class ScribuntoLuaEngine extends ScribuntoEngineBase implements MwInterfa
         }
     }
 
+    private LuaValue loadData(ParsedPageName chunkName) throws LuaError {
+        model.addDependency(chunkName);
+        LuaValue data = loadedData.get(chunkName);
+        if (data != null) {
+            return data;
+        }
+        final byte[] source;
+        try (InputStream is = findPackage(chunkName)) {
+            source = readFully(is);
+        } catch (IOException e) {
+            logger.error("error loading '"+chunkName+"'", e);
+            throw new LuaError(e);
+        }
+        data = loadedDataCache.get(chunkName, source);
+        if (data == null) {
+            logger.debug("loading data " + chunkName);
+            final LuaValue chunk = globals.load(new ByteArrayInputStream(source), chunkName.fullPagename(), "bt", globals);
+            data = loadedDataCache.put(chunkName, source, chunk.call());
+        }
+        loadedData.put(chunkName, data);
+        return data;
+    }
+
+    private static byte[] readFully(InputStream is) throws IOException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final byte[] buffer = new byte[8192];
+        int read;
+        while ((read = is.read(buffer)) != -1) {
+            out.write(buffer, 0, read);
+        }
+        return out.toByteArray();
+    }
+
+    private LuaFunction newChunk(Prototype prototype) {
+        if (moduleCompiler != null) {
+            final LuaFunction compiled = moduleCompiler.load(prototype, globals);
+            if (compiled != null) {
+                return compiled;
+            }
+        }
+        return new LuaClosure(prototype, globals);
+    }
+
     private Prototype loadAndCache(InputStream code, ParsedPageName chunkName) throws ScribuntoException {
         try {
             logger.debug("compiling " + chunkName);
+            final long start = System.nanoTime();
             Prototype prototype = globals.compilePrototype(code, chunkName.fullPagename());
+            if (profiler != null) {
+                profiler.compiled(chunkName.fullPagename(), System.nanoTime() - start);
+            }
             compiledScriptCache.cachePrototype(chunkName, prototype);
 
             return prototype;
@@ -588,8 +787,14 @@ public class ScribuntoLuaEngine extends ScribuntoEngineBase implements MwInterfa
         return LuaString.valueOf(string.getBytes(UTF_8));
     }
 
+    /**
+     * The named parameters are ordered by name and followed by the numbered
+     * ones, so that the same arguments always result in the same template
+     * cache key.
+     */
     private static Map<String,String> luaParams(LuaValue args) {
-        Map<String,String> parameters = new HashMap<>();
+        Map<String,String> named = new TreeMap<>();
+        Map<Integer,String> numbered = new TreeMap<>();
         final LuaTable table = args.checktable();
         LuaValue key = LuaValue.NIL;
         while (true) {
@@ -598,7 +803,37 @@ public class ScribuntoLuaEngine extends ScribuntoEngineBase implements MwInterfa
                 break;
 
             LuaValue value = next.arg(2);
-            parameters.put(key.checkjstring(), value.checkjstring());
+            if (key.isinttype() && key.toint() > 0) {
+                numbered.put(key.toint(), value.checkjstring());
+            } else {
+                named.put(key.checkjstring(), value.checkjstring());
+            }
+        }
+        Map<String,String> parameters = new LinkedHashMap<>(named);
+        for (Map.Entry<Integer,String> entry : numbered.entrySet()) {
+            parameters.put(entry.getKey().toString(), entry.getValue());
+        }
+        return parameters;
+    }
+
+    /**
+     * The arguments are only decoded when they are accessed through the frame.
+     */
+    private static Map<String, Frame.LazyArgument> lazyLuaParams(LuaValue args) {
+        Map<String, Frame.LazyArgument> parameters = new HashMap<>();
+        final LuaTable table = args.checktable();
+        LuaValue key = LuaValue.NIL;
+        while (true) {
+            Varargs next = table.next(key);
+            if ((key = next.arg1()).isnil())
+                break;
+
+            final LuaString value = next.arg(2).checkstring();
+            parameters.put(key.checkjstring(), new Frame.LazyArgument() {
+                @Override public String expand() {
+                    return new String(value.m_bytes, value.m_offset, value.m_length, UTF_8);
+                }
+            });
         }
         return parameters;
     }
@@ -26,14 +26,24 @@ public class ScribuntoLuaModule implements ScribuntoModule {
     }
 
     @Override public String invoke(String functionName, Frame frame) throws ScribuntoException {
-        final LuaValue function = getEngine().loadFunction(functionName, prototype, frame);
+        getEngine().startInvoke();
+        getEngine().startProfiling(pageName, functionName);
+        try {
+            final LuaValue function = getEngine().loadFunction(functionName, prototype, frame);
 
-        final long execStart = System.currentTimeMillis();
-        final String result = getEngine().executeFunctionChunk(function, frame);
-        final long execDuration = System.currentTimeMillis() - execStart;
-        logExecution(functionName, execDuration);
+            final long execStart = System.currentTimeMillis();
+            final String result = getEngine().executeFunctionChunk(function, frame);
+            final long execDuration = System.currentTimeMillis() - execStart;
+            logExecution(functionName, execDuration);
 
-        return result;
+            return result;
+        } catch (LuaLimitError e) {
+            logger.warn(toString() + " " + functionName + ": " + e.getReason());
+            return e.toWikiText();
+        } finally {
+            getEngine().endProfiling();
+            getEngine().endInvoke();
+        }
     }
 
     @Override public String toString() {
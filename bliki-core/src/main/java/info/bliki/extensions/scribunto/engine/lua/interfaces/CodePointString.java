@@ -0,0 +1,151 @@
+package info.bliki.extensions.scribunto.engine.lua.interfaces;
+
+import org.luaj.vm2.Buffer;
+import org.luaj.vm2.LuaString;
+
+/**
+ * A UTF-8 encoded Lua string decoded into its code points.
+ *
+ * Code point indexes are 0-based; substrings are created as views of the
+ * original Lua string, so they don't copy the bytes.
+ */
+final class CodePointString {
+    final LuaString string;
+    final int[] codePoints;
+    /**
+     * The byte offset of each code point plus the length of the string, or
+     * <code>null</code> for ASCII strings.
+     */
+    private final int[] offsets;
+
+    private CodePointString(LuaString string, int[] codePoints, int[] offsets) {
+        this.string = string;
+        this.codePoints = codePoints;
+        this.offsets = offsets;
+    }
+
+    /**
+     * Decode a Lua string.
+     *
+     * @return <code>null</code> if the string isn't valid UTF-8
+     */
+    static CodePointString decode(LuaString string) {
+        final byte[] bytes = string.m_bytes;
+        final int start = string.m_offset;
+        final int end = start + string.m_length;
+        int i = start;
+        while (i < end && bytes[i] >= 0) {
+            i++;
+        }
+        if (i == end) {
+            int[] codePoints = new int[string.m_length];
+            for (int j = 0; j < codePoints.length; j++) {
+                codePoints[j] = bytes[start + j];
+            }
+            return new CodePointString(string, codePoints, null);
+        }
+
+        int[] codePoints = new int[string.m_length];
+        int[] offsets = new int[string.m_length + 1];
+        int count = 0;
+        i = start;
+        while (i < end) {
+            offsets[count] = i - start;
+            int b = bytes[i] & 0xFF;
+            int codePoint;
+            int length;
+            int min;
+            if (b < 0x80) {
+                codePoints[count++] = b;
+                i++;
+                continue;
+            } else if (b < 0xC2) {
+                return null;
+            } else if (b < 0xE0) {
+                codePoint = b & 0x1F;
+                length = 2;
+                min = 0x80;
+            } else if (b < 0xF0) {
+                codePoint = b & 0x0F;
+                length = 3;
+                min = 0x800;
+            } else if (b < 0xF5) {
+                codePoint = b & 0x07;
+                length = 4;
+                min = 0x10000;
+            } else {
+                return null;
+            }
+            if (i + length > end) {
+                return null;
+            }
+            for (int j = 1; j < length; j++) {
+                int c = bytes[i + j] & 0xFF;
+                if ((c & 0xC0) != 0x80) {
+                    return null;
+                }
+                codePoint = (codePoint << 6) | (c & 0x3F);
+            }
+            if (codePoint < min || codePoint > Character.MAX_CODE_POINT
+                    || (codePoint >= Character.MIN_SURROGATE && codePoint <= Character.MAX_SURROGATE)) {
+                return null;
+            }
+            codePoints[count++] = codePoint;
+            i += length;
+        }
+        offsets[count] = string.m_length;
+        int[] trimmed = new int[count];
+        System.arraycopy(codePoints, 0, trimmed, 0, count);
+        return new CodePointString(string, trimmed, offsets);
+    }
+
+    int length() {
+        return codePoints.length;
+    }
+
+    /**
+     * @return the byte offset of the code point at <code>index</code>
+     */
+    int offset(int index) {
+        return offsets == null ? index : offsets[index];
+    }
+
+    /**
+     * @return the code points from <code>start</code> (inclusive) to
+     *         <code>end</code> (exclusive)
+     */
+    LuaString substring(int start, int end) {
+        return string.substring(offset(start), offset(end));
+    }
+
+    /**
+     * Append the UTF-8 encoding of a code point to the buffer.
+     */
+    static void appendCodePoint(Buffer buffer, int codePoint) {
+        if (codePoint < 0x80) {
+            buffer.append((byte) codePoint);
+        } else if (codePoint < 0x800) {
+            buffer.append((byte) (0xC0 | (codePoint >> 6)));
+            buffer.append((byte) (0x80 | (codePoint & 0x3F)));
+        } else if (codePoint < 0x10000) {
+            buffer.append((byte) (0xE0 | (codePoint >> 12)));
+            buffer.append((byte) (0x80 | ((codePoint >> 6) & 0x3F)));
+            buffer.append((byte) (0x80 | (codePoint & 0x3F)));
+        } else {
+            buffer.append((byte) (0xF0 | (codePoint >> 18)));
+            buffer.append((byte) (0x80 | ((codePoint >> 12) & 0x3F)));
+            buffer.append((byte) (0x80 | ((codePoint >> 6) & 0x3F)));
+            buffer.append((byte) (0x80 | (codePoint & 0x3F)));
+        }
+    }
+
+    /**
+     * Append the code points from <code>start</code> (inclusive) to
+     * <code>end</code> (exclusive) to the buffer.
+     */
+    void appendTo(Buffer buffer, int start, int end) {
+        if (start < end) {
+            buffer.append(substring(start, end));
+        }
+    }
+}
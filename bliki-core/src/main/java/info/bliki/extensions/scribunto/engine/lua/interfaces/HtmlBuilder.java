@@ -0,0 +1,438 @@
+package info.bliki.extensions.scribunto.engine.lua.interfaces;
+
+import org.luaj.vm2.Buffer;
+import org.luaj.vm2.LuaError;
+import org.luaj.vm2.LuaString;
+import org.luaj.vm2.LuaTable;
+import org.luaj.vm2.LuaValue;
+import org.luaj.vm2.Varargs;
+import org.luaj.vm2.lib.VarArgFunction;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * A Java version of the builder objects of <code>mw.html</code>.
+ *
+ * The nodes, attributes and styles are kept in Java lists, and the whole tree
+ * is written to a single buffer when it is converted with
+ * <code>tostring()</code>.
+ */
+class HtmlBuilder extends LuaTable {
+    private static final Set<String> SELF_CLOSING_TAGS = new HashSet<>(Arrays.asList(
+        "area", "base", "br", "col", "command", "embed", "hr", "img", "input",
+        "keygen", "link", "meta", "param", "source", "track", "wbr"));
+    private static final LuaString CLASS = LuaString.valueOf("class");
+    private static final LuaString STYLE = LuaString.valueOf("style");
+
+    private final LuaTable metatable;
+    private final LuaString tagName;
+    private final HtmlBuilder parent;
+    private final boolean selfClosing;
+    private final List<LuaValue> nodes = new ArrayList<>();
+    private final List<LuaString> attributeNames = new ArrayList<>();
+    private final List<LuaString> attributeValues = new ArrayList<>();
+    /**
+     * Properties added with <code>css()</code> are stored as name/value
+     * pairs, text added with <code>cssText()</code> as a single string.
+     */
+    private List<LuaString[]> styles = new ArrayList<>();
+
+    private HtmlBuilder(LuaTable metatable, LuaString tagName, HtmlBuilder parent, boolean selfClosing) {
+        this.metatable = metatable;
+        this.tagName = tagName;
+        this.parent = parent;
+        this.selfClosing = selfClosing;
+        setmetatable(metatable);
+    }
+
+    /**
+     * @return the metatable shared by the builders of an engine
+     */
+    static LuaTable newMetatable() {
+        final LuaTable methods = new LuaTable();
+        methods.set("node", new Method("node") {
+            @Override Varargs invoke(HtmlBuilder builder, Varargs args) {
+                final LuaValue node = args.arg(2);
+                if (node.toboolean()) {
+                    builder.nodes.add(node);
+                }
+                return builder;
+            }
+        });
+        methods.set("wikitext", new Method("wikitext") {
+            @Override Varargs invoke(HtmlBuilder builder, Varargs args) {
+                for (int i = 2; i <= args.narg(); i++) {
+                    final LuaValue value = args.arg(i);
+                    if (value.isnil()) {
+                        break;
+                    }
+                    builder.nodes.add(checkString(value, i - 1));
+                }
+                return builder;
+            }
+        });
+        methods.set("newline", new Method("newline") {
+            @Override Varargs invoke(HtmlBuilder builder, Varargs args) {
+                builder.nodes.add(LuaString.valueOf("\n"));
+                return builder;
+            }
+        });
+        methods.set("tag", new Method("tag") {
+            @Override Varargs invoke(HtmlBuilder builder, Varargs args) {
+                final HtmlBuilder child = create(builder.metatable, args.arg(2), args.arg(3), builder);
+                builder.nodes.add(child);
+                return child;
+            }
+        });
+        methods.set("getAttr", new Method("getAttr") {
+            @Override Varargs invoke(HtmlBuilder builder, Varargs args) {
+                final LuaValue name = args.arg(2);
+                if (!name.isstring() || name.isnumber()) {
+                    throw argumentError(1, "string expected, got " + name.typename());
+                }
+                final int index = builder.attributeNames.indexOf(name.strvalue());
+                return index < 0 ? NIL : builder.attributeValues.get(index);
+            }
+        });
+        methods.set("attr", new Method("attr") {
+            @Override Varargs invoke(HtmlBuilder builder, Varargs args) {
+                final LuaValue name = args.arg(2);
+                final LuaValue value = args.arg(3);
+                if (name.istable()) {
+                    if (!value.isnil()) {
+                        throw argumentError(2, "if argument #1 is a table, argument #2 must be left empty");
+                    }
+                    forEach(name.checktable(), builder, this, 1,
+                        "table keys must be strings, and values must be strings or numbers");
+                    return builder;
+                }
+                builder.attr(name, value);
+                return builder;
+            }
+        });
+        methods.set("addClass", new Method("addClass") {
+            @Override Varargs invoke(HtmlBuilder builder, Varargs args) {
+                final LuaValue value = args.arg(2);
+                if (value.isnil()) {
+                    return builder;
+                }
+                final LuaString className = checkString(value, 1);
+                final int index = builder.attributeNames.indexOf(CLASS);
+                if (index < 0) {
+                    builder.attributeNames.add(CLASS);
+                    builder.attributeValues.add(className);
+                } else {
+                    final Buffer buffer = new Buffer();
+                    buffer.append(builder.attributeValues.get(index)).append(" ").append(className);
+                    builder.attributeValues.set(index, buffer.tostring().strvalue());
+                }
+                return builder;
+            }
+        });
+        methods.set("css", new Method("css") {
+            @Override Varargs invoke(HtmlBuilder builder, Varargs args) {
+                final LuaValue name = args.arg(2);
+                final LuaValue value = args.arg(3);
+                if (name.istable()) {
+                    if (!value.isnil()) {
+                        throw argumentError(2, "if argument #1 is a table, argument #2 must be left empty");
+                    }
+                    forEach(name.checktable(), builder, this, 1,
+                        "table keys and values must be strings or numbers");
+                    return builder;
+                }
+                builder.css(checkString(name, 1), value.isnil() ? null : checkString(value, 2));
+                return builder;
+            }
+        });
+        methods.set("cssText", new Method("cssText") {
+            @Override Varargs invoke(HtmlBuilder builder, Varargs args) {
+                final LuaValue css = args.arg(2);
+                if (!css.isnil()) {
+                    builder.styles.add(new LuaString[]{checkString(css, 1)});
+                }
+                return builder;
+            }
+        });
+        methods.set("done", new Method("done") {
+            @Override Varargs invoke(HtmlBuilder builder, Varargs args) {
+                return builder.parent != null ? builder.parent : builder;
+            }
+        });
+        methods.set("allDone", new Method("allDone") {
+            @Override Varargs invoke(HtmlBuilder builder, Varargs args) {
+                while (builder.parent != null) {
+                    builder = builder.parent;
+                }
+                return builder;
+            }
+        });
+
+        final LuaTable metatable = new LuaTable();
+        metatable.set(INDEX, methods);
+        metatable.set(TOSTRING, new Method("tostring") {
+            @Override Varargs invoke(HtmlBuilder builder, Varargs args) {
+                final Buffer buffer = new Buffer(256);
+                builder.build(buffer);
+                return buffer.tostring();
+            }
+        });
+        return metatable;
+    }
+
+    /**
+     * <code>mw.html.create(tagName, args)</code>
+     */
+    static HtmlBuilder create(LuaTable metatable, LuaValue tagName, LuaValue args, HtmlBuilder parent) {
+        if (!tagName.isnil() && (!tagName.isstring() || tagName.isnumber())) {
+            throw new LuaError("bad argument #1 to 'mw.html.create' (string expected, got " + tagName.typename() + ")");
+        }
+        if (!args.isnil() && !args.istable()) {
+            throw new LuaError("bad argument #2 to 'mw.html.create' (table expected, got " + args.typename() + ")");
+        }
+        LuaString name = tagName.isnil() ? null : tagName.strvalue();
+        if (name != null && name.m_length == 0) {
+            name = null;
+        } else if (name != null && !isValidTag(name)) {
+            throw new LuaError("invalid tag name '" + name.tojstring() + "'");
+        }
+        final boolean selfClosing = name != null && SELF_CLOSING_TAGS.contains(name.tojstring())
+            || !args.isnil() && args.get("selfClosing").toboolean();
+        if (parent == null && !args.isnil() && args.get("parent") instanceof HtmlBuilder) {
+            parent = (HtmlBuilder) args.get("parent");
+        }
+        return new HtmlBuilder(metatable, name, parent, selfClosing);
+    }
+
+    private void attr(LuaValue name, LuaValue value) {
+        final LuaString attributeName = checkName(name);
+        if (!value.isnil()) {
+            checkString(value, 2, "attr");
+        }
+        if (attributeName.equals(STYLE)) {
+            // replaces all styles added with css() and cssText()
+            styles = new ArrayList<>();
+            if (!value.isnil()) {
+                styles.add(new LuaString[]{value.strvalue()});
+            }
+            return;
+        }
+        if (!isValidAttributeName(attributeName)) {
+            throw new LuaError("bad argument #1 to 'attr' (invalid attribute name '" + attributeName.tojstring() + "')");
+        }
+        final int index = attributeNames.indexOf(attributeName);
+        if (index >= 0) {
+            if (value.isnil()) {
+                attributeNames.remove(index);
+                attributeValues.remove(index);
+            } else {
+                attributeValues.set(index, value.strvalue());
+            }
+        } else if (!value.isnil()) {
+            attributeNames.add(attributeName);
+            attributeValues.add(value.strvalue());
+        }
+    }
+
+    private void css(LuaString name, LuaString value) {
+        for (int i = 0; i < styles.size(); i++) {
+            final LuaString[] property = styles.get(i);
+            if (property.length == 2 && property[0].equals(name)) {
+                if (value != null) {
+                    property[1] = value;
+                } else {
+                    styles.remove(i);
+                }
+                return;
+            }
+        }
+        if (value != null) {
+            styles.add(new LuaString[]{name, value});
+        }
+    }
+
+    private void build(Buffer buffer) {
+        if (tagName != null) {
+            buffer.append("<").append(tagName);
+            for (int i = 0; i < attributeNames.size(); i++) {
+                buffer.append(" ").append(attributeNames.get(i)).append("=\"");
+                htmlEncode(buffer, attributeValues.get(i));
+                buffer.append("\"");
+            }
+            if (!styles.isEmpty()) {
+                buffer.append(" style=\"");
+                for (int i = 0; i < styles.size(); i++) {
+                    if (i > 0) {
+                        buffer.append(";");
+                    }
+                    final LuaString[] property = styles.get(i);
+                    if (property.length == 1) {
+                        htmlEncode(buffer, property[0]);
+                    } else {
+                        htmlEncode(buffer, cssEncode(property[0]));
+                        buffer.append(":");
+                        htmlEncode(buffer, cssEncode(property[1]));
+                    }
+                }
+                buffer.append("\"");
+            }
+            if (selfClosing) {
+                buffer.append(" />");
+                return;
+            }
+            buffer.append(">");
+        }
+        for (LuaValue node : nodes) {
+            if (node instanceof HtmlBuilder) {
+                ((HtmlBuilder) node).build(buffer);
+            } else {
+                final LuaValue tostring = node.metatag(TOSTRING);
+                buffer.append(tostring.isnil() ? node.tostring().strvalue() : tostring.call(node).strvalue());
+            }
+        }
+        if (tagName != null) {
+            buffer.append("</").append(tagName).append(">");
+        }
+    }
+
+    private static void htmlEncode(Buffer buffer, LuaString s) {
+        int start = 0;
+        for (int i = 0; i < s.m_length; i++) {
+            final String entity;
+            switch (s.luaByte(i)) {
+                case '<': entity = "&lt;"; break;
+                case '>': entity = "&gt;"; break;
+                case '&': entity = "&amp;"; break;
+                case '"': entity = "&quot;"; break;
+                default: continue;
+            }
+            buffer.append(s.substring(start, i)).append(entity);
+            start = i + 1;
+        }
+        buffer.append(start == 0 ? s : s.substring(start, s.m_length));
+    }
+
+    /**
+     * Escape the characters outside of <code>[\32-\57\60-\127]</code> (e.g.
+     * <code>:</code> and <code>;</code>) as CSS escapes.
+     */
+    private static LuaString cssEncode(LuaString s) {
+        Buffer buffer = null;
+        int start = 0;
+        int i = 0;
+        while (i < s.m_length) {
+            final int ch = s.luaByte(i);
+            if (ch >= 32 && ch <= 57 || ch >= 60 && ch <= 127) {
+                i++;
+                continue;
+            }
+            if (buffer == null) {
+                buffer = new Buffer(s.m_length + 16);
+            }
+            buffer.append(s.substring(start, i));
+            final int length = ch < 0x80 ? 1 : ch < 0xE0 ? 2 : ch < 0xF0 ? 3 : 4;
+            final int end = Math.min(i + length, s.m_length);
+            final String character = new String(s.m_bytes, s.m_offset + i, end - i, UTF_8);
+            buffer.append("\\").append(Integer.toHexString(character.codePointAt(0)).toUpperCase()).append(" ");
+            i = end;
+            start = i;
+        }
+        if (buffer == null) {
+            return s;
+        }
+        buffer.append(s.substring(start, s.m_length));
+        return buffer.tostring().strvalue();
+    }
+
+    private static boolean isValidTag(LuaString name) {
+        for (int i = 0; i < name.m_length; i++) {
+            final int ch = name.luaByte(i);
+            if (!(ch >= 'a' && ch <= 'z' || ch >= 'A' && ch <= 'Z' || ch >= '0' && ch <= '9')) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isValidAttributeName(LuaString name) {
+        if (name.m_length == 0) {
+            return false;
+        }
+        for (int i = 0; i < name.m_length; i++) {
+            final int ch = name.luaByte(i);
+            if (ch < 32 || ch == 127 || ch == ' ' || "\"'<>/=".indexOf(ch) >= 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static LuaString checkName(LuaValue name) {
+        if (!name.isstring() || name.isnumber()) {
+            throw new LuaError("bad argument #1 to 'attr' (string expected, got " + name.typename() + ")");
+        }
+        return name.strvalue();
+    }
+
+    private static LuaString checkString(LuaValue value, int index, String method) {
+        if (!value.isstring()) {
+            throw new LuaError("bad argument #" + index + " to '" + method + "' (string or number expected, got "
+                + value.typename() + ")");
+        }
+        return value.strvalue();
+    }
+
+    /**
+     * Call the method for each key and value of the table.
+     */
+    private static void forEach(LuaTable table, HtmlBuilder builder, Method method, int index, String message) {
+        LuaValue key = NIL;
+        while (true) {
+            final Varargs next = table.next(key);
+            if ((key = next.arg1()).isnil()) {
+                break;
+            }
+            try {
+                method.invoke(builder, varargsOf(builder, key, next.arg(2)));
+            } catch (LuaError e) {
+                throw method.argumentError(index, message);
+            }
+        }
+    }
+
+    /**
+     * A method called with <code>builder:name(...)</code>.
+     */
+    private abstract static class Method extends VarArgFunction {
+        private final String name;
+
+        Method(String name) {
+            this.name = name;
+        }
+
+        @Override
+        public Varargs invoke(Varargs args) {
+            final LuaValue self = args.arg1();
+            if (!(self instanceof HtmlBuilder)) {
+                throw new LuaError("bad argument #1 to '" + name + "' (mw.html builder expected, got " + self.typename() + ")");
+            }
+            return invoke((HtmlBuilder) self, args);
+        }
+
+        abstract Varargs invoke(HtmlBuilder builder, Varargs args);
+
+        LuaString checkString(LuaValue value, int index) {
+            return HtmlBuilder.checkString(value, index, name);
+        }
+
+        LuaError argumentError(int index, String message) {
+            return new LuaError("bad argument #" + index + " to '" + name + "' (" + message + ")");
+        }
+    }
+}
@@ -2,8 +2,15 @@ package info.bliki.extensions.scribunto.engine.lua.interfaces;
 
 import org.luaj.vm2.LuaTable;
 import org.luaj.vm2.LuaValue;
+import org.luaj.vm2.lib.TwoArgFunction;
 
-public class MwHtml implements MwInterface {
+/**
+ * The <code>mw.html</code> library. The builder objects are implemented in
+ * Java by {@link HtmlBuilder}.
+ *
+ * See <a href="https://www.mediawiki.org/wiki/Extension:Scribunto/Lua_reference_manual#HTML_library">HTML library</a>
+ */
+public class MwHtml implements MwInterface, MwNativeLibrary {
     /**
      * string Prefix and suffix for temporary replacement strings
      * for the multipass parser.
@@ -34,6 +41,17 @@ public class MwHtml implements MwInterface {
         return new LuaTable();
     }
 
+    @Override
+    public void replaceLuaFunctions(LuaTable library) {
+        final LuaTable metatable = HtmlBuilder.newMetatable();
+        library.set("create", new TwoArgFunction() {
+            @Override
+            public LuaValue call(LuaValue tagName, LuaValue args) {
+                return HtmlBuilder.create(metatable, tagName, args, null);
+            }
+        });
+    }
+
     @Override
     public LuaValue getSetupOptions() {
         LuaTable opts = new LuaTable();
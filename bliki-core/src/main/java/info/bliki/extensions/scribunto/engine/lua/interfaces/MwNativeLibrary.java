@@ -0,0 +1,16 @@
+package info.bliki.extensions.scribunto.engine.lua.interfaces;
+
+import org.luaj.vm2.LuaTable;
+
+/**
+ * An interface whose Lua library is partly implemented in Java.
+ */
+public interface MwNativeLibrary {
+
+    /**
+     * Replace functions of the library after it has been set up.
+     *
+     * @param library the table returned by the Lua code of the library
+     */
+    void replaceLuaFunctions(LuaTable library);
+}
@@ -1,12 +1,26 @@
 package info.bliki.extensions.scribunto.engine.lua.interfaces;
 
+import org.luaj.vm2.LuaError;
+import org.luaj.vm2.LuaString;
 import org.luaj.vm2.LuaTable;
 import org.luaj.vm2.LuaValue;
+import org.luaj.vm2.Varargs;
 import org.luaj.vm2.lib.OneArgFunction;
 import org.luaj.vm2.lib.TwoArgFunction;
+import org.luaj.vm2.lib.VarArgFunction;
 import org.luaj.vm2.lib.ZeroArgFunction;
 
-public class MwText implements MwInterface {
+import java.io.ByteArrayOutputStream;
+
+/**
+ * The <code>mw.text</code> library. The most frequently used functions of the
+ * Lua implementation are replaced by Java versions, see
+ * {@link #replaceLuaFunctions(LuaTable)}.
+ *
+ * See <a href="https://www.mediawiki.org/wiki/Extension:Scribunto/Lua_reference_manual#Text_library">Text library</a>
+ */
+public class MwText implements MwInterface, MwNativeLibrary {
+    private static final String PATTERN_SPECIALS = "^$*+?.([%-";
     @Override
     public String name() {
         return "mw.text";
@@ -25,6 +39,214 @@ public class MwText implements MwInterface {
         return table;
     }
 
+    /**
+     * Replaces <code>split</code>, <code>trim</code> and <code>nowiki</code>.
+     * <code>split</code> and <code>trim</code> fall back to the Lua versions
+     * for Ustring patterns and custom character sets.
+     */
+    @Override
+    public void replaceLuaFunctions(LuaTable library) {
+        library.set("split", split(library.get("split")));
+        library.set("trim", trim(library.get("trim")));
+        library.set("nowiki", nowiki());
+    }
+
+    private LuaValue split(final LuaValue luaSplit) {
+        return new VarArgFunction() {
+            @Override
+            public Varargs invoke(Varargs args) {
+                final LuaString text = checkString("split", 1, args.arg1());
+                final LuaString separator = checkString("split", 2, args.arg(2));
+                if (separator.m_length == 0 || !args.arg(3).toboolean() && hasPatternSpecials(separator)) {
+                    return luaSplit.invoke(args);
+                }
+                return split(text, separator);
+            }
+        };
+    }
+
+    /**
+     * Split the string at each occurrence of the plain separator.
+     */
+    static LuaTable split(LuaString text, LuaString separator) {
+        final LuaTable result = new LuaTable();
+        int start = 0;
+        int index;
+        int n = 0;
+        while ((index = indexOf(text, separator, start)) >= 0) {
+            result.rawset(++n, text.substring(start, index));
+            start = index + separator.m_length;
+        }
+        result.rawset(++n, text.substring(start, text.m_length));
+        return result;
+    }
+
+    private LuaValue trim(final LuaValue luaTrim) {
+        return new VarArgFunction() {
+            @Override
+            public Varargs invoke(Varargs args) {
+                if (!args.arg(2).isnil()) {
+                    return luaTrim.invoke(args);
+                }
+                return trim(checkString("trim", 1, args.arg1()));
+            }
+        };
+    }
+
+    /**
+     * Remove the tabs, line breaks, form feeds and spaces at the start and the
+     * end of the string.
+     */
+    static LuaString trim(LuaString s) {
+        int start = 0;
+        int end = s.m_length;
+        while (start < end && isWhitespace(s.luaByte(start))) {
+            start++;
+        }
+        while (end > start && isWhitespace(s.luaByte(end - 1))) {
+            end--;
+        }
+        return start == 0 && end == s.m_length ? s : s.substring(start, end);
+    }
+
+    private LuaValue nowiki() {
+        return new OneArgFunction() {
+            @Override
+            public LuaValue call(LuaValue s) {
+                return nowiki(checkString("nowiki", 1, s));
+            }
+        };
+    }
+
+    /**
+     * Escape the characters which would be interpreted as wikitext, in the
+     * same way as the Lua version.
+     */
+    static LuaString nowiki(LuaString s) {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream(s.m_length + 16);
+        final int length = s.m_length;
+        for (int i = 0; i < length; i++) {
+            final int ch = s.luaByte(i);
+            final boolean lineStart = i == 0 || s.luaByte(i - 1) == '\n' || s.luaByte(i - 1) == '\r';
+            switch (ch) {
+                case '"': case '&': case '\'': case '<': case '=': case '>':
+                case '[': case ']': case '{': case '|': case '}':
+                    appendEntity(out, ch);
+                    continue;
+                case '#': case '*': case ':': case ';':
+                    if (lineStart) {
+                        appendEntity(out, ch);
+                        continue;
+                    }
+                    if (ch == ':' && startsWith(s, i + 1, "//")) {
+                        appendEntity(out, ch);
+                        continue;
+                    }
+                    break;
+                case '-':
+                    if (lineStart && startsWith(s, i, "----")) {
+                        appendEntity(out, ch);
+                        continue;
+                    }
+                    break;
+                case '_':
+                    if (i + 1 < length && s.luaByte(i + 1) == '_') {
+                        out.write('_');
+                        appendEntity(out, '_');
+                        i++;
+                        continue;
+                    }
+                    break;
+                case 'I': case 'R': case 'P':
+                    final int magicLength = magicLinkLength(s, i);
+                    if (magicLength > 0) {
+                        out.write(s.m_bytes, s.m_offset + i, magicLength);
+                        appendEntity(out, s.luaByte(i + magicLength));
+                        i += magicLength;
+                        continue;
+                    }
+                    break;
+                default:
+                    break;
+            }
+            out.write(ch);
+        }
+        return LuaString.valueOf(out.toByteArray());
+    }
+
+    /**
+     * @return the length of the magic link keyword (<code>ISBN</code>,
+     *         <code>RFC</code> or <code>PMID</code>) which starts at the index
+     *         and is followed by whitespace, or <code>0</code>
+     */
+    private static int magicLinkLength(LuaString s, int index) {
+        for (String keyword : new String[]{"ISBN", "RFC", "PMID"}) {
+            final int end = index + keyword.length();
+            if (end < s.m_length && startsWith(s, index, keyword)) {
+                final int ch = s.luaByte(end);
+                // \v is matched by %s but not replaced by the Lua version
+                return ch == ' ' || ch == '\t' || ch == '\n' || ch == '\f' || ch == '\r' ? keyword.length() : 0;
+            }
+        }
+        return 0;
+    }
+
+    private static void appendEntity(ByteArrayOutputStream out, int ch) {
+        out.write('&');
+        out.write('#');
+        final String code = Integer.toString(ch);
+        for (int i = 0; i < code.length(); i++) {
+            out.write(code.charAt(i));
+        }
+        out.write(';');
+    }
+
+    private static boolean startsWith(LuaString s, int index, String prefix) {
+        if (index + prefix.length() > s.m_length) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length(); i++) {
+            if (s.luaByte(index + i) != prefix.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int indexOf(LuaString s, LuaString separator, int from) {
+        final int last = s.m_length - separator.m_length;
+        outer:
+        for (int i = from; i <= last; i++) {
+            for (int j = 0; j < separator.m_length; j++) {
+                if (s.luaByte(i + j) != separator.luaByte(j)) {
+                    continue outer;
+                }
+            }
+            return i;
+        }
+        return -1;
+    }
+
+    private static boolean hasPatternSpecials(LuaString pattern) {
+        for (int i = 0; i < pattern.m_length; i++) {
+            if (PATTERN_SPECIALS.indexOf(pattern.luaByte(i)) >= 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isWhitespace(int ch) {
+        return ch == '\t' || ch == '\r' || ch == '\n' || ch == '\f' || ch == ' ';
+    }
+
+    private static LuaString checkString(String name, int index, LuaValue arg) {
+        if (!arg.isstring()) {
+            throw new LuaError("bad argument #" + index + " to '" + name + "' (string expected, got " + arg.typename() + ")");
+        }
+        return arg.strvalue();
+    }
+
     // Replaces MediaWiki <nowiki> strip markers with the corresponding text.
     // Other types of strip markers are not changed.
     private LuaValue unstripNoWiki() {
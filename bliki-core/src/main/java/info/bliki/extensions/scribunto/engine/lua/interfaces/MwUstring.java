@@ -1,9 +1,58 @@
 package info.bliki.extensions.scribunto.engine.lua.interfaces;
 
+import org.luaj.vm2.Buffer;
+import org.luaj.vm2.LuaError;
+import org.luaj.vm2.LuaString;
 import org.luaj.vm2.LuaTable;
 import org.luaj.vm2.LuaValue;
+import org.luaj.vm2.Varargs;
+import org.luaj.vm2.lib.VarArgFunction;
 
+import java.text.Normalizer;
+
+import static info.bliki.extensions.scribunto.engine.lua.ScribuntoLuaEngine.toLuaString;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Java implementation of the <code>mw.ustring</code> functions, which replace
+ * the pure Lua implementation of the <code>ustring</code> library.
+ *
+ * Strings are decoded into code points and Lua patterns are matched by the
+ * compiled {@link UstringPattern}s. The string and pattern length limits are
+ * the ones passed to the Lua side by {@link #getSetupOptions()}.
+ *
+ * See <a href="https://www.mediawiki.org/wiki/Extension:Scribunto/Lua_reference_manual#Ustring_library">Ustring library</a>
+ */
 public class MwUstring implements MwInterface {
+    // https://www.mediawiki.org/wiki/Manual:$wgMaxArticleSize
+    // stringLengthLimit = $wgMaxArticleSize * 1024;
+    public static final int DEFAULT_STRING_LENGTH_LIMIT = 2048 * 1024;
+    public static final int DEFAULT_PATTERN_LENGTH_LIMIT = 10000;
+
+    private final int stringLengthLimit;
+    private final int patternLengthLimit;
+
+    /**
+     * The last decoded string; iterating with <code>gmatch</code> or
+     * <code>find</code> passes the same string over and over again.
+     */
+    private CodePointString lastDecoded;
+
+    public MwUstring() {
+        this(DEFAULT_STRING_LENGTH_LIMIT, DEFAULT_PATTERN_LENGTH_LIMIT);
+    }
+
+    /**
+     * @param stringLengthLimit
+     *          the maximum length of a string argument in bytes
+     * @param patternLengthLimit
+     *          the maximum length of a pattern in bytes
+     */
+    public MwUstring(int stringLengthLimit, int patternLengthLimit) {
+        this.stringLengthLimit = stringLengthLimit;
+        this.patternLengthLimit = patternLengthLimit;
+    }
+
     @Override
     public String name() {
         return "mw.ustring";
@@ -11,16 +60,521 @@ public class MwUstring implements MwInterface {
 
     @Override
     public LuaTable getInterface() {
-        return new LuaTable();
+        LuaTable table = new LuaTable();
+        table.set("isutf8", isutf8());
+        table.set("byteoffset", byteoffset());
+        table.set("codepoint", codepoint());
+        table.set("gcodepoint_init", gcodepointInit());
+        table.set("toNFC", normalize("toNFC", Normalizer.Form.NFC));
+        table.set("toNFD", normalize("toNFD", Normalizer.Form.NFD));
+        table.set("toNFKC", normalize("toNFKC", Normalizer.Form.NFKC));
+        table.set("toNFKD", normalize("toNFKD", Normalizer.Form.NFKD));
+        table.set("char", uchar());
+        table.set("len", len());
+        table.set("sub", sub());
+        table.set("upper", upper());
+        table.set("lower", lower());
+        table.set("find", find());
+        table.set("match", match());
+        table.set("gmatch_init", gmatchInit());
+        table.set("gmatch_callback", gmatchCallback());
+        table.set("gsub", gsub());
+        return table;
     }
 
     @Override
     public LuaValue getSetupOptions() {
         LuaTable table = new LuaTable();
-        // https://www.mediawiki.org/wiki/Manual:$wgMaxArticleSize
-        // stringLengthLimit = $wgMaxArticleSize * 1024;
-        table.set("stringLengthLimit",  2048 * 1024);
-        table.set("patternLengthLimit", 10000);
+        table.set("stringLengthLimit", stringLengthLimit);
+        table.set("patternLengthLimit", patternLengthLimit);
         return table;
     }
+
+    private LuaValue isutf8() {
+        return new VarArgFunction() {
+            @Override
+            public Varargs invoke(Varargs args) {
+                return valueOf(decode(checkString("isutf8", args.arg1())) != null);
+            }
+        };
+    }
+
+    private LuaValue byteoffset() {
+        return new VarArgFunction() {
+            @Override
+            public Varargs invoke(Varargs args) {
+                LuaString s = checkString("byteoffset", args.arg1());
+                int l = optInt("byteoffset", args, 2, 1);
+                int length = s.m_length;
+                int i = optInt("byteoffset", args, 3, l > 0 ? 1 : (l < 0 ? length : 1));
+                if (i < 0) {
+                    i = length + i + 1;
+                }
+                if (i < 1 || i > length) {
+                    return NIL;
+                }
+                // the start of the character which contains byte i
+                int position = i - 1;
+                while (position > 0 && isContinuationByte(s, position)) {
+                    position--;
+                }
+                if (l > 0 && position == i - 1) {
+                    l--;
+                }
+                while (l > 0) {
+                    position++;
+                    while (position < length && isContinuationByte(s, position)) {
+                        position++;
+                    }
+                    if (position >= length) {
+                        return NIL;
+                    }
+                    l--;
+                }
+                while (l < 0) {
+                    if (position == 0) {
+                        return NIL;
+                    }
+                    position--;
+                    while (position > 0 && isContinuationByte(s, position)) {
+                        position--;
+                    }
+                    l++;
+                }
+                return valueOf(position + 1);
+            }
+        };
+    }
+
+    private LuaValue codepoint() {
+        return new VarArgFunction() {
+            @Override
+            public Varargs invoke(Varargs args) {
+                return varargsOf(codepoints("codepoint", args));
+            }
+        };
+    }
+
+    private LuaValue gcodepointInit() {
+        return new VarArgFunction() {
+            @Override
+            public Varargs invoke(Varargs args) {
+                return listOf(codepoints("gcodepoint_init", args));
+            }
+        };
+    }
+
+    private LuaValue[] codepoints(String name, Varargs args) {
+        CodePointString s = checkUtf8(name, args.arg1());
+        int i = optInt(name, args, 2, 1);
+        int j = optInt(name, args, 3, i);
+        int length = s.length();
+        if (i < 0) {
+            i = length + i + 1;
+        }
+        if (j < 0) {
+            j = length + j + 1;
+        }
+        i = Math.max(i, 1);
+        j = Math.min(j, length);
+        if (j < i) {
+            return new LuaValue[0];
+        }
+        LuaValue[] result = new LuaValue[j - i + 1];
+        for (int k = 0; k < result.length; k++) {
+            result[k] = LuaValue.valueOf(s.codePoints[i - 1 + k]);
+        }
+        return result;
+    }
+
+    private LuaValue normalize(final String name, final Normalizer.Form form) {
+        return new VarArgFunction() {
+            @Override
+            public Varargs invoke(Varargs args) {
+                LuaString s = checkString(name, args.arg1());
+                if (decode(s) == null) {
+                    return NIL;
+                }
+                String string = new String(s.m_bytes, s.m_offset, s.m_length, UTF_8);
+                return toLuaString(Normalizer.normalize(string, form));
+            }
+        };
+    }
+
+    private LuaValue uchar() {
+        return new VarArgFunction() {
+            @Override
+            public Varargs invoke(Varargs args) {
+                if (args.narg() > stringLengthLimit) {
+                    throw new LuaError("too many arguments to 'char'");
+                }
+                Buffer buffer = new Buffer(args.narg());
+                for (int k = 1; k <= args.narg(); k++) {
+                    LuaValue arg = args.arg(k);
+                    if (!arg.isnumber()) {
+                        throw typeError("char", k, "number", arg);
+                    }
+                    double value = Math.floor(arg.todouble());
+                    if (value < 0 || value > Character.MAX_CODE_POINT) {
+                        throw new LuaError("bad argument #" + k + " to 'char' (value out of range)");
+                    }
+                    CodePointString.appendCodePoint(buffer, (int) value);
+                }
+                return buffer.tostring();
+            }
+        };
+    }
+
+    private LuaValue len() {
+        return new VarArgFunction() {
+            @Override
+            public Varargs invoke(Varargs args) {
+                CodePointString s = decode(checkString("len", args.arg1()));
+                return s == null ? NIL : valueOf(s.length());
+            }
+        };
+    }
+
+    private LuaValue sub() {
+        return new VarArgFunction() {
+            @Override
+            public Varargs invoke(Varargs args) {
+                CodePointString s = checkUtf8("sub", args.arg1());
+                int i = optInt("sub", args, 2, 1);
+                int j = optInt("sub", args, 3, -1);
+                int length = s.length();
+                if (i < 0) {
+                    i = length + i + 1;
+                }
+                if (j < 0) {
+                    j = length + j + 1;
+                }
+                if (j > length) {
+                    j = length;
+                }
+                if (i < 1) {
+                    i = 1;
+                }
+                if (j < i) {
+                    return EMPTYSTRING;
+                }
+                return s.substring(i - 1, j);
+            }
+        };
+    }
+
+    private LuaValue upper() {
+        return new VarArgFunction() {
+            @Override
+            public Varargs invoke(Varargs args) {
+                return changeCase(checkUtf8("upper", args.arg1()), true);
+            }
+        };
+    }
+
+    private LuaValue lower() {
+        return new VarArgFunction() {
+            @Override
+            public Varargs invoke(Varargs args) {
+                return changeCase(checkUtf8("lower", args.arg1()), false);
+            }
+        };
+    }
+
+    private static LuaValue changeCase(CodePointString s, boolean upper) {
+        Buffer buffer = new Buffer(s.string.m_length);
+        for (int codePoint : s.codePoints) {
+            CodePointString.appendCodePoint(buffer, upper ? Character.toUpperCase(codePoint) : Character.toLowerCase(codePoint));
+        }
+        return buffer.tostring();
+    }
+
+    private LuaValue find() {
+        return new VarArgFunction() {
+            @Override
+            public Varargs invoke(Varargs args) {
+                CodePointString s = checkUtf8("find", args.arg1());
+                LuaString pattern = checkPattern("find", args.arg(2));
+                int init = init("find", args, s);
+                if (args.arg(4).toboolean()) {
+                    CodePointString p = decode(pattern);
+                    int start = indexOf(s, p, init);
+                    if (start < 0) {
+                        return NIL;
+                    }
+                    return varargsOf(valueOf(start + 1), valueOf(start + p.length()));
+                }
+                UstringPattern.Matcher matcher = compile("find", pattern).matcher(s);
+                if (!matcher.find(init)) {
+                    return NIL;
+                }
+                LuaValue[] result = new LuaValue[2 + matcher.captureCount()];
+                result[0] = valueOf(matcher.start() + 1);
+                result[1] = valueOf(matcher.end());
+                for (int i = 0; i < matcher.captureCount(); i++) {
+                    result[2 + i] = matcher.capture(i, false);
+                }
+                return varargsOf(result);
+            }
+        };
+    }
+
+    private LuaValue match() {
+        return new VarArgFunction() {
+            @Override
+            public Varargs invoke(Varargs args) {
+                CodePointString s = checkUtf8("match", args.arg1());
+                LuaString pattern = checkPattern("match", args.arg(2));
+                int init = init("match", args, s);
+                UstringPattern.Matcher matcher = compile("match", pattern).matcher(s);
+                if (!matcher.find(init)) {
+                    return NIL;
+                }
+                return varargsOf(captures(matcher));
+            }
+        };
+    }
+
+    private LuaValue gmatchInit() {
+        return new VarArgFunction() {
+            @Override
+            public Varargs invoke(Varargs args) {
+                checkUtf8("gmatch", args.arg1());
+                LuaString pattern = checkPattern("gmatch", args.arg(2));
+                // check the pattern now, the callback only reports errors while iterating
+                gmatchPattern(pattern);
+                return varargsOf(pattern, NIL);
+            }
+        };
+    }
+
+    private LuaValue gmatchCallback() {
+        return new VarArgFunction() {
+            @Override
+            public Varargs invoke(Varargs args) {
+                CodePointString s = checkUtf8("gmatch", args.arg1());
+                UstringPattern pattern = gmatchPattern(args.arg(2).checkstring());
+                // the position is the last argument
+                int position = args.arg(args.narg()).checkint();
+                UstringPattern.Matcher matcher = pattern.matcher(s);
+                for (int i = position; i <= s.length(); i++) {
+                    if (matcher.matchAt(i)) {
+                        int end = matcher.end();
+                        return varargsOf(valueOf(end == i ? end + 1 : end), listOf(captures(matcher)));
+                    }
+                }
+                return varargsOf(valueOf(position), new LuaTable());
+            }
+        };
+    }
+
+    /**
+     * A leading <code>^</code> doesn't anchor a <code>gmatch</code> pattern.
+     */
+    private UstringPattern gmatchPattern(LuaString pattern) {
+        if (pattern.m_length > 0 && pattern.luaByte(0) == '^') {
+            UstringPattern compiled = UstringPattern.compileUnanchored(pattern);
+            if (compiled == null) {
+                throw new LuaError("bad argument #2 to 'gmatch' (string is not UTF-8)");
+            }
+            return compiled;
+        }
+        return compile("gmatch", pattern);
+    }
+
+    private LuaValue gsub() {
+        return new VarArgFunction() {
+            @Override
+            public Varargs invoke(Varargs args) {
+                CodePointString s = checkUtf8("gsub", args.arg1());
+                LuaString pattern = checkPattern("gsub", args.arg(2));
+                LuaValue replacement = args.arg(3);
+                if (!replacement.isstring() && !replacement.istable() && !replacement.isfunction()) {
+                    throw new LuaError("bad argument #3 to 'gsub' (string/function/table expected)");
+                }
+                int maxReplacements = optInt("gsub", args, 4, Integer.MAX_VALUE);
+                if (maxReplacements < 1) {
+                    return varargsOf(s.string, valueOf(0));
+                }
+                UstringPattern compiled = compile("gsub", pattern);
+                UstringPattern.Matcher matcher = compiled.matcher(s);
+                Buffer result = new Buffer(s.string.m_length);
+                int position = 0;
+                int count = 0;
+                while (count < maxReplacements) {
+                    boolean found = matcher.matchAt(position);
+                    if (found) {
+                        count++;
+                        appendReplacement(result, matcher, replacement);
+                    }
+                    if (found && matcher.end() > position) {
+                        position = matcher.end();
+                    } else if (position < s.length()) {
+                        s.appendTo(result, position, position + 1);
+                        position++;
+                    } else {
+                        break;
+                    }
+                    if (compiled.isAnchored()) {
+                        break;
+                    }
+                }
+                s.appendTo(result, position, s.length());
+                return varargsOf(result.tostring(), valueOf(count));
+            }
+        };
+    }
+
+    private static void appendReplacement(Buffer result, UstringPattern.Matcher matcher, LuaValue replacement) {
+        LuaValue value;
+        if (replacement.isstring()) {
+            LuaString string = replacement.strvalue();
+            int length = string.m_length;
+            for (int i = 0; i < length; i++) {
+                int b = string.luaByte(i);
+                if (b != '%' || i + 1 == length) {
+                    result.append((byte) b);
+                    continue;
+                }
+                b = string.luaByte(++i);
+                if (b == '0') {
+                    result.append(matcher.match());
+                } else if (b >= '1' && b <= '9') {
+                    result.append(matcher.capture(b - '1', true).tostring().checkstring());
+                } else {
+                    result.append((byte) b);
+                }
+            }
+            return;
+        }
+        LuaValue key = matcher.capture(0, true);
+        if (replacement.istable()) {
+            value = replacement.get(key);
+        } else {
+            value = replacement.invoke(captures(matcher)).arg1();
+        }
+        if (!value.toboolean()) {
+            result.append(matcher.match());
+        } else if (value.isstring()) {
+            result.append(value.strvalue());
+        } else {
+            throw new LuaError("invalid replacement value (a " + value.typename() + ")");
+        }
+    }
+
+    private static LuaValue[] captures(UstringPattern.Matcher matcher) {
+        int count = Math.max(1, matcher.captureCount());
+        LuaValue[] captures = new LuaValue[count];
+        for (int i = 0; i < count; i++) {
+            captures[i] = matcher.capture(i, true);
+        }
+        return captures;
+    }
+
+    /**
+     * @return the 0-based start index for <code>find</code> and
+     *         <code>match</code>
+     */
+    private static int init(String name, Varargs args, CodePointString s) {
+        int init = optInt(name, args, 3, 1);
+        int length = s.length();
+        if (init < 0) {
+            init = length + init + 1;
+        } else if (init > length + 1) {
+            init = length + 1;
+        }
+        return init < 1 ? 0 : init - 1;
+    }
+
+    private static int indexOf(CodePointString s, CodePointString p, int from) {
+        int[] source = s.codePoints;
+        int[] target = p.codePoints;
+        int last = source.length - target.length;
+        outer:
+        for (int i = from; i <= last; i++) {
+            for (int j = 0; j < target.length; j++) {
+                if (source[i + j] != target[j]) {
+                    continue outer;
+                }
+            }
+            return i;
+        }
+        return -1;
+    }
+
+    private static boolean isContinuationByte(LuaString s, int index) {
+        return (s.luaByte(index) & 0xC0) == 0x80;
+    }
+
+    private UstringPattern compile(String name, LuaString pattern) {
+        UstringPattern compiled = UstringPattern.compile(pattern);
+        if (compiled == null) {
+            throw new LuaError("bad argument #2 to '" + name + "' (string is not UTF-8)");
+        }
+        return compiled;
+    }
+
+    private CodePointString decode(LuaString s) {
+        CodePointString decoded = lastDecoded;
+        if (decoded != null && decoded.string == s) {
+            return decoded;
+        }
+        decoded = CodePointString.decode(s);
+        if (decoded != null) {
+            lastDecoded = decoded;
+        }
+        return decoded;
+    }
+
+    private LuaString checkString(String name, LuaValue arg) {
+        if (!arg.isstring()) {
+            throw typeError(name, 1, "string", arg);
+        }
+        LuaString s = arg.strvalue();
+        if (s.m_length > stringLengthLimit) {
+            throw new LuaError("bad argument #1 to '" + name + "' (string is longer than " + stringLengthLimit + " bytes)");
+        }
+        return s;
+    }
+
+    private CodePointString checkUtf8(String name, LuaValue arg) {
+        CodePointString s = decode(checkString(name, arg));
+        if (s == null) {
+            throw new LuaError("bad argument #1 to '" + name + "' (string is not UTF-8)");
+        }
+        return s;
+    }
+
+    private LuaString checkPattern(String name, LuaValue arg) {
+        if (!arg.isstring()) {
+            throw typeError(name, 2, "string", arg);
+        }
+        LuaString pattern = arg.strvalue();
+        if (pattern.m_length > patternLengthLimit) {
+            throw new LuaError("bad argument #2 to '" + name + "' (pattern is longer than " + patternLengthLimit + " bytes)");
+        }
+        return pattern;
+    }
+
+    private static int optInt(String name, Varargs args, int index, int defaultValue) {
+        LuaValue arg = args.arg(index);
+        if (arg.isnil()) {
+            return defaultValue;
+        }
+        if (arg.type() != LuaValue.TNUMBER) {
+            throw typeError(name, index, "number", arg);
+        }
+        double value = arg.todouble();
+        if (value >= Integer.MAX_VALUE) {
+            return Integer.MAX_VALUE;
+        }
+        if (value <= Integer.MIN_VALUE) {
+            return Integer.MIN_VALUE;
+        }
+        return (int) value;
+    }
+
+    private static LuaError typeError(String name, int index, String expected, LuaValue arg) {
+        return new LuaError("bad argument #" + index + " to '" + name + "' (" + expected + " expected, got " + arg.typename() + ")");
+    }
 }
@@ -0,0 +1,809 @@
+package info.bliki.extensions.scribunto.engine.lua.interfaces;
+
+import org.luaj.vm2.LuaError;
+import org.luaj.vm2.LuaString;
+import org.luaj.vm2.LuaValue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A compiled <a href="https://www.lua.org/manual/5.1/manual.html#5.4.1">Lua
+ * pattern</a>, which is matched against the code points of a string as
+ * required by <code>mw.ustring</code>.
+ *
+ * The character classes are the Unicode versions used by Scribunto, e.g.
+ * <code>%a</code> matches all letters and <code>%d</code> all decimal digits.
+ * Compiled patterns are immutable and cached, the state of a match is kept
+ * in a {@link Matcher}.
+ */
+final class UstringPattern {
+    static final int MAX_CAPTURES = 32;
+
+    /** Maximum recursion depth of the matcher, like in the Lua string library. */
+    private static final int MAX_MATCH_DEPTH = 200;
+
+    /** Maximum number of entries of each pattern cache. */
+    private static final int CACHE_SIZE = 1024;
+
+    private static final Map<LuaString, UstringPattern> cache = newCache();
+
+    /** The patterns compiled with a literal leading <code>^</code>. */
+    private static final Map<LuaString, UstringPattern> unanchoredCache = newCache();
+
+    private static final int CAP_UNFINISHED = -1;
+    private static final int CAP_POSITION = -2;
+
+    private static final int SINGLE = 0;
+    private static final int OPEN = 1;
+    private static final int OPEN_POSITION = 2;
+    private static final int CLOSE = 3;
+    private static final int BALANCE = 4;
+    private static final int FRONTIER = 5;
+    private static final int BACK_REFERENCE = 6;
+    private static final int END_ANCHOR = 7;
+
+    private final Node[] nodes;
+    private final boolean anchored;
+    /**
+     * The code point every match has to start with or <code>-1</code>.
+     */
+    private final int firstCodePoint;
+
+    /**
+     * Get the compiled form of a pattern.
+     *
+     * @param pattern
+     *          the UTF-8 encoded pattern
+     * @return the (possibly cached) compiled pattern or <code>null</code> if
+     *         the pattern isn't valid UTF-8
+     * @throws LuaError
+     *           if the pattern is malformed
+     */
+    static UstringPattern compile(LuaString pattern) {
+        return compile(cache, pattern, true);
+    }
+
+    /**
+     * Get the compiled form of a pattern, whose leading <code>^</code> is
+     * matched literally as in <code>gmatch</code>.
+     *
+     * @see #compile(LuaString)
+     */
+    static UstringPattern compileUnanchored(LuaString pattern) {
+        return compile(unanchoredCache, pattern, false);
+    }
+
+    private static UstringPattern compile(Map<LuaString, UstringPattern> patterns, LuaString pattern, boolean allowAnchor) {
+        UstringPattern compiled = patterns.get(pattern);
+        if (compiled == null) {
+            compiled = compile(pattern, allowAnchor);
+            if (compiled != null) {
+                // don't keep a larger byte array alive, which only contains the pattern
+                if (pattern.m_offset != 0 || pattern.m_bytes.length != pattern.m_length) {
+                    pattern = LuaString.valueOf(pattern.m_bytes, pattern.m_offset, pattern.m_length);
+                }
+                patterns.put(pattern, compiled);
+            }
+        }
+        return compiled;
+    }
+
+    /**
+     * Compile a pattern without caching it.
+     *
+     * @param pattern
+     *          the UTF-8 encoded pattern
+     * @param allowAnchor
+     *          if <code>false</code> a leading <code>^</code> is matched
+     *          literally as in <code>gmatch</code>
+     * @return the compiled pattern or <code>null</code> if the pattern isn't
+     *         valid UTF-8
+     */
+    static UstringPattern compile(LuaString pattern, boolean allowAnchor) {
+        CodePointString codePoints = CodePointString.decode(pattern);
+        if (codePoints == null) {
+            return null;
+        }
+        return new UstringPattern(codePoints.codePoints, allowAnchor);
+    }
+
+    private static Map<LuaString, UstringPattern> newCache() {
+        return Collections.synchronizedMap(new LinkedHashMap<LuaString, UstringPattern>(64, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<LuaString, UstringPattern> eldest) {
+                return size() > CACHE_SIZE;
+            }
+        });
+    }
+
+    private UstringPattern(int[] p, boolean allowAnchor) {
+        int i = 0;
+        anchored = allowAnchor && p.length > 0 && p[0] == '^';
+        if (anchored) {
+            i++;
+        }
+        List<Node> list = new ArrayList<>();
+        int captures = 0;
+        boolean[] closed = new boolean[MAX_CAPTURES];
+        int[] open = new int[MAX_CAPTURES];
+        int openCount = 0;
+        while (i < p.length) {
+            int c = p[i];
+            switch (c) {
+                case '(':
+                    if (captures >= MAX_CAPTURES) {
+                        throw new LuaError("too many captures");
+                    }
+                    if (i + 1 < p.length && p[i + 1] == ')') {
+                        closed[captures++] = true;
+                        list.add(new Node(OPEN_POSITION));
+                        i += 2;
+                    } else {
+                        open[openCount++] = captures++;
+                        list.add(new Node(OPEN));
+                        i++;
+                    }
+                    continue;
+                case ')':
+                    if (openCount == 0) {
+                        throw new LuaError("invalid pattern capture");
+                    }
+                    closed[open[--openCount]] = true;
+                    list.add(new Node(CLOSE));
+                    i++;
+                    continue;
+                case '$':
+                    if (i + 1 == p.length) {
+                        list.add(new Node(END_ANCHOR));
+                        i++;
+                        continue;
+                    }
+                    break;
+                case '%':
+                    if (i + 1 == p.length) {
+                        throw new LuaError("malformed pattern (ends with '%')");
+                    }
+                    int next = p[i + 1];
+                    if (next == 'b') {
+                        if (i + 3 >= p.length) {
+                            throw new LuaError("malformed pattern (missing arguments to '%b')");
+                        }
+                        Node node = new Node(BALANCE);
+                        node.arg1 = p[i + 2];
+                        node.arg2 = p[i + 3];
+                        list.add(node);
+                        i += 4;
+                        continue;
+                    }
+                    if (next == 'f') {
+                        i += 2;
+                        if (i == p.length || p[i] != '[') {
+                            throw new LuaError("missing '[' after '%f' in pattern");
+                        }
+                        Node node = new Node(FRONTIER);
+                        int setEnd = setEnd(p, i);
+                        node.charClass = new SetClass(p, i, setEnd - 1);
+                        list.add(node);
+                        i = setEnd;
+                        continue;
+                    }
+                    if (next >= '0' && next <= '9') {
+                        int index = next - '1';
+                        if (index < 0 || index >= captures || !closed[index]) {
+                            throw new LuaError("invalid capture index");
+                        }
+                        Node node = new Node(BACK_REFERENCE);
+                        node.arg1 = index;
+                        list.add(node);
+                        i += 2;
+                        continue;
+                    }
+                    break;
+                default:
+                    break;
+            }
+
+            Node node = new Node(SINGLE);
+            if (c == '%') {
+                node.charClass = escapeClass(p[i + 1]);
+                i += 2;
+            } else if (c == '[') {
+                int setEnd = setEnd(p, i);
+                node.charClass = new SetClass(p, i, setEnd - 1);
+                i = setEnd;
+            } else if (c == '.') {
+                node.charClass = ANY;
+                i++;
+            } else {
+                node.charClass = new LiteralClass(c);
+                i++;
+            }
+            if (i < p.length && (p[i] == '*' || p[i] == '+' || p[i] == '-' || p[i] == '?')) {
+                node.quantifier = p[i++];
+            }
+            list.add(node);
+        }
+        if (openCount > 0) {
+            throw new LuaError("unfinished capture");
+        }
+        nodes = list.toArray(new Node[list.size()]);
+
+        int first = -1;
+        if (nodes.length > 0 && nodes[0].type == SINGLE && (nodes[0].quantifier == 0 || nodes[0].quantifier == '+')
+                && nodes[0].charClass instanceof LiteralClass) {
+            first = ((LiteralClass) nodes[0].charClass).codePoint;
+        }
+        firstCodePoint = first;
+    }
+
+    /**
+     * @return the index after the <code>]</code> of the set which starts at
+     *         <code>start</code>
+     */
+    private static int setEnd(int[] p, int start) {
+        int i = start + 1;
+        if (i < p.length && p[i] == '^') {
+            i++;
+        }
+        // the first character of a set is never its end
+        do {
+            if (i >= p.length) {
+                throw new LuaError("malformed pattern (missing ']')");
+            }
+            if (p[i++] == '%' && i < p.length) {
+                i++;
+            }
+            if (i >= p.length) {
+                throw new LuaError("malformed pattern (missing ']')");
+            }
+        } while (p[i] != ']');
+        return i + 1;
+    }
+
+    private static CharClass escapeClass(int c) {
+        if (ClassLetter.isClassLetter(c)) {
+            return new ClassLetter(c);
+        }
+        return new LiteralClass(c);
+    }
+
+    boolean isAnchored() {
+        return anchored;
+    }
+
+    Matcher matcher(CodePointString subject) {
+        return new Matcher(subject);
+    }
+
+    private static final class Node {
+        final int type;
+        int quantifier;
+        CharClass charClass;
+        int arg1;
+        int arg2;
+
+        Node(int type) {
+            this.type = type;
+        }
+    }
+
+    /**
+     * The state of matching the pattern against a subject string.
+     */
+    final class Matcher {
+        private final CodePointString subject;
+        private final int[] s;
+        private final int[] captureStart = new int[MAX_CAPTURES];
+        private final int[] captureLength = new int[MAX_CAPTURES];
+        private int level;
+        private int depth;
+        private int start;
+        private int end;
+
+        private Matcher(CodePointString subject) {
+            this.subject = subject;
+            this.s = subject.codePoints;
+        }
+
+        /**
+         * Find the next match, which starts at or after <code>init</code>.
+         *
+         * @param init
+         *          the 0-based code point index where the search starts
+         * @return <code>true</code> if a match was found
+         */
+        boolean find(int init) {
+            for (int i = init; i <= s.length; i++) {
+                if (firstCodePoint < 0 || anchored || (i < s.length && s[i] == firstCodePoint)) {
+                    level = 0;
+                    depth = 0;
+                    int e = match(i, 0);
+                    if (e != -1) {
+                        start = i;
+                        end = e;
+                        return true;
+                    }
+                }
+                if (anchored) {
+                    break;
+                }
+            }
+            return false;
+        }
+
+        /**
+         * Match the pattern exactly at <code>position</code>.
+         *
+         * @return <code>true</code> if the pattern matches
+         */
+        boolean matchAt(int position) {
+            level = 0;
+            depth = 0;
+            int e = match(position, 0);
+            if (e != -1) {
+                start = position;
+                end = e;
+                return true;
+            }
+            return false;
+        }
+
+        /**
+         * @return the 0-based code point index of the start of the last match
+         */
+        int start() {
+            return start;
+        }
+
+        /**
+         * @return the 0-based code point index after the end of the last match
+         */
+        int end() {
+            return end;
+        }
+
+        /**
+         * @return the last match
+         */
+        LuaString match() {
+            return subject.substring(start, end);
+        }
+
+        /**
+         * @return the number of captures of the last match
+         */
+        int captureCount() {
+            return level;
+        }
+
+        /**
+         * Get a capture of the last match.
+         *
+         * @param i
+         *          the 0-based capture index
+         * @param wholeIfNone
+         *          return the whole match for index 0 if the pattern contains
+         *          no captures
+         */
+        LuaValue capture(int i, boolean wholeIfNone) {
+            if (i >= level) {
+                if (i == 0 && wholeIfNone) {
+                    return subject.substring(start, end);
+                }
+                throw new LuaError("invalid capture index");
+            }
+            int length = captureLength[i];
+            if (length == CAP_UNFINISHED) {
+                throw new LuaError("unfinished capture");
+            }
+            if (length == CAP_POSITION) {
+                return LuaValue.valueOf(captureStart[i] + 1);
+            }
+            return subject.substring(captureStart[i], captureStart[i] + length);
+        }
+
+        private int match(int si, int pi) {
+            if (++depth > MAX_MATCH_DEPTH) {
+                throw new LuaError("pattern too complex");
+            }
+            try {
+                while (true) {
+                    if (pi == nodes.length) {
+                        return si;
+                    }
+                    Node node = nodes[pi];
+                    switch (node.type) {
+                        case OPEN:
+                            return startCapture(si, pi + 1, CAP_UNFINISHED);
+                        case OPEN_POSITION:
+                            return startCapture(si, pi + 1, CAP_POSITION);
+                        case CLOSE:
+                            return endCapture(si, pi + 1);
+                        case END_ANCHOR:
+                            return si == s.length ? si : -1;
+                        case BALANCE:
+                            si = matchBalance(si, node.arg1, node.arg2);
+                            if (si == -1) {
+                                return -1;
+                            }
+                            pi++;
+                            continue;
+                        case FRONTIER: {
+                            int previous = si == 0 ? 0 : s[si - 1];
+                            int current = si < s.length ? s[si] : 0;
+                            if (node.charClass.matches(previous) || !node.charClass.matches(current)) {
+                                return -1;
+                            }
+                            pi++;
+                            continue;
+                        }
+                        case BACK_REFERENCE:
+                            si = matchCapture(si, node.arg1);
+                            if (si == -1) {
+                                return -1;
+                            }
+                            pi++;
+                            continue;
+                        default:
+                            boolean matches = si < s.length && node.charClass.matches(s[si]);
+                            switch (node.quantifier) {
+                                case '?':
+                                    if (matches) {
+                                        int result = match(si + 1, pi + 1);
+                                        if (result != -1) {
+                                            return result;
+                                        }
+                                    }
+                                    pi++;
+                                    continue;
+                                case '+':
+                                    return matches ? maxExpand(si + 1, node.charClass, pi) : -1;
+                                case '*':
+                                    return maxExpand(si, node.charClass, pi);
+                                case '-':
+                                    return minExpand(si, node.charClass, pi);
+                                default:
+                                    if (!matches) {
+                                        return -1;
+                                    }
+                                    si++;
+                                    pi++;
+                            }
+                    }
+                }
+            } finally {
+                depth--;
+            }
+        }
+
+        private int maxExpand(int si, CharClass charClass, int pi) {
+            int i = 0;
+            while (si + i < s.length && charClass.matches(s[si + i])) {
+                i++;
+            }
+            while (i >= 0) {
+                int result = match(si + i, pi + 1);
+                if (result != -1) {
+                    return result;
+                }
+                i--;
+            }
+            return -1;
+        }
+
+        private int minExpand(int si, CharClass charClass, int pi) {
+            while (true) {
+                int result = match(si, pi + 1);
+                if (result != -1) {
+                    return result;
+                }
+                if (si < s.length && charClass.matches(s[si])) {
+                    si++;
+                } else {
+                    return -1;
+                }
+            }
+        }
+
+        private int startCapture(int si, int pi, int what) {
+            captureStart[level] = si;
+            captureLength[level] = what;
+            level++;
+            int result = match(si, pi);
+            if (result == -1) {
+                level--;
+            }
+            return result;
+        }
+
+        private int endCapture(int si, int pi) {
+            int l = captureToClose();
+            captureLength[l] = si - captureStart[l];
+            int result = match(si, pi);
+            if (result == -1) {
+                captureLength[l] = CAP_UNFINISHED;
+            }
+            return result;
+        }
+
+        private int captureToClose() {
+            for (int l = level - 1; l >= 0; l--) {
+                if (captureLength[l] == CAP_UNFINISHED) {
+                    return l;
+                }
+            }
+            throw new LuaError("invalid pattern capture");
+        }
+
+        private int matchBalance(int si, int open, int close) {
+            if (si >= s.length || s[si] != open) {
+                return -1;
+            }
+            int count = 1;
+            for (int i = si + 1; i < s.length; i++) {
+                if (s[i] == close) {
+                    if (--count == 0) {
+                        return i + 1;
+                    }
+                } else if (s[i] == open) {
+                    count++;
+                }
+            }
+            return -1;
+        }
+
+        private int matchCapture(int si, int l) {
+            if (l >= level || captureLength[l] == CAP_UNFINISHED) {
+                throw new LuaError("invalid capture index");
+            }
+            int length = captureLength[l];
+            if (length < 0 || s.length - si < length) {
+                return -1;
+            }
+            int from = captureStart[l];
+            for (int i = 0; i < length; i++) {
+                if (s[from + i] != s[si + i]) {
+                    return -1;
+                }
+            }
+            return si + length;
+        }
+    }
+
+    private abstract static class CharClass {
+        abstract boolean matches(int c);
+    }
+
+    private static final CharClass ANY = new CharClass() {
+        @Override
+        boolean matches(int c) {
+            return true;
+        }
+    };
+
+    private static final class LiteralClass extends CharClass {
+        final int codePoint;
+
+        LiteralClass(int codePoint) {
+            this.codePoint = codePoint;
+        }
+
+        @Override
+        boolean matches(int c) {
+            return c == codePoint;
+        }
+    }
+
+    /**
+     * Base class for classes, which cache the result for ASCII characters.
+     */
+    private abstract static class AsciiCachedClass extends CharClass {
+        private long low;
+        private long high;
+
+        protected void initAsciiCache() {
+            for (int c = 0; c < 128; c++) {
+                if (test(c)) {
+                    if (c < 64) {
+                        low |= 1L << c;
+                    } else {
+                        high |= 1L << (c - 64);
+                    }
+                }
+            }
+        }
+
+        @Override
+        final boolean matches(int c) {
+            if (c < 64) {
+                return (low & (1L << c)) != 0;
+            }
+            if (c < 128) {
+                return (high & (1L << (c - 64))) != 0;
+            }
+            return test(c);
+        }
+
+        abstract boolean test(int c);
+    }
+
+    /**
+     * A <code>%a</code>, <code>%d</code>, ... class and their complements.
+     */
+    private static final class ClassLetter extends AsciiCachedClass {
+        private final int letter;
+
+        ClassLetter(int letter) {
+            this.letter = letter;
+            initAsciiCache();
+        }
+
+        static boolean isClassLetter(int c) {
+            switch (Character.toLowerCase(c)) {
+                case 'a':
+                case 'c':
+                case 'd':
+                case 'l':
+                case 'p':
+                case 's':
+                case 'u':
+                case 'w':
+                case 'x':
+                case 'z':
+                    return c < 128;
+                default:
+                    return false;
+            }
+        }
+
+        @Override
+        boolean test(int c) {
+            return matchClass(letter, c);
+        }
+
+        static boolean matchClass(int letter, int c) {
+            boolean result;
+            switch (letter | 0x20) {
+                case 'a':
+                    result = Character.isLetter(c);
+                    break;
+                case 'c':
+                    result = Character.getType(c) == Character.CONTROL;
+                    break;
+                case 'd':
+                    result = Character.getType(c) == Character.DECIMAL_DIGIT_NUMBER;
+                    break;
+                case 'l':
+                    result = Character.getType(c) == Character.LOWERCASE_LETTER;
+                    break;
+                case 'p':
+                    result = isPunctuation(c);
+                    break;
+                case 's':
+                    result = isSpace(c);
+                    break;
+                case 'u':
+                    result = Character.getType(c) == Character.UPPERCASE_LETTER;
+                    break;
+                case 'w':
+                    result = Character.isLetter(c) || Character.getType(c) == Character.DECIMAL_DIGIT_NUMBER;
+                    break;
+                case 'x':
+                    result = (c >= '0' && c <= '9') || (c >= 'a' && c <= 'f') || (c >= 'A' && c <= 'F')
+                            || (c >= 0xFF10 && c <= 0xFF19) || (c >= 0xFF21 && c <= 0xFF26) || (c >= 0xFF41 && c <= 0xFF46);
+                    break;
+                case 'z':
+                    result = c == 0;
+                    break;
+                default:
+                    return letter == c;
+            }
+            return (letter & 0x20) == 0 ? !result : result;
+        }
+
+        private static boolean isPunctuation(int c) {
+            switch (Character.getType(c)) {
+                case Character.CONNECTOR_PUNCTUATION:
+                case Character.DASH_PUNCTUATION:
+                case Character.START_PUNCTUATION:
+                case Character.END_PUNCTUATION:
+                case Character.INITIAL_QUOTE_PUNCTUATION:
+                case Character.FINAL_QUOTE_PUNCTUATION:
+                case Character.OTHER_PUNCTUATION:
+                    return true;
+                default:
+                    return false;
+            }
+        }
+
+        private static boolean isSpace(int c) {
+            if ((c >= '\t' && c <= '\r') || c == 0x85) {
+                return true;
+            }
+            switch (Character.getType(c)) {
+                case Character.SPACE_SEPARATOR:
+                case Character.LINE_SEPARATOR:
+                case Character.PARAGRAPH_SEPARATOR:
+                    return true;
+                default:
+                    return false;
+            }
+        }
+    }
+
+    /**
+     * A <code>[...]</code> set.
+     */
+    private static final class SetClass extends AsciiCachedClass {
+        private final boolean negated;
+        /** pairs of range bounds, single characters are ranges of length 1 */
+        private final int[] ranges;
+        private final int[] classLetters;
+
+        /**
+         * @param p
+         *          the pattern
+         * @param open
+         *          the index of the <code>[</code>
+         * @param close
+         *          the index of the <code>]</code>
+         */
+        SetClass(int[] p, int open, int close) {
+            int i = open + 1;
+            negated = p[i] == '^';
+            if (negated) {
+                i++;
+            }
+            int[] rangeBuffer = new int[2 * (close - i)];
+            int rangeCount = 0;
+            int[] letterBuffer = new int[close - i];
+            int letterCount = 0;
+            while (i < close) {
+                if (p[i] == '%') {
+                    i++;
+                    if (ClassLetter.isClassLetter(p[i])) {
+                        letterBuffer[letterCount++] = p[i];
+                    } else {
+                        rangeBuffer[rangeCount++] = p[i];
+                        rangeBuffer[rangeCount++] = p[i];
+                    }
+                    i++;
+                } else if (i + 2 < close && p[i + 1] == '-') {
+                    rangeBuffer[rangeCount++] = p[i];
+                    rangeBuffer[rangeCount++] = p[i + 2];
+                    i += 3;
+                } else {
+                    rangeBuffer[rangeCount++] = p[i];
+                    rangeBuffer[rangeCount++] = p[i];
+                    i++;
+                }
+            }
+            ranges = new int[rangeCount];
+            System.arraycopy(rangeBuffer, 0, ranges, 0, rangeCount);
+            classLetters = new int[letterCount];
+            System.arraycopy(letterBuffer, 0, classLetters, 0, letterCount);
+            initAsciiCache();
+        }
+
+        @Override
+        boolean test(int c) {
+            for (int i = 0; i < ranges.length; i += 2) {
+                if (ranges[i] <= c && c <= ranges[i + 1]) {
+                    return !negated;
+                }
+            }
+            for (int letter : classLetters) {
+                if (ClassLetter.matchClass(letter, c)) {
+                    return !negated;
+                }
+            }
+            return negated;
+        }
+    }
+}
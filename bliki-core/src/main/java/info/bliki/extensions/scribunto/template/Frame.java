@@ -4,8 +4,12 @@ import info.bliki.wiki.filter.ParsedPageName;
 import org.luaj.vm2.LuaTable;
 import org.luaj.vm2.LuaValue;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Future;
 
 import static info.bliki.extensions.scribunto.engine.lua.ScribuntoLuaEngine.toLuaString;
 
@@ -13,11 +17,51 @@ import static info.bliki.extensions.scribunto.engine.lua.ScribuntoLuaEngine.toLu
 public class Frame {
     private final ParsedPageName page;
     private final Map<String, String> templateParameters;
+    /**
+     * The arguments which haven't been expanded yet, or <code>null</code>.
+     */
+    private final Map<String, LazyArgument> lazyArguments;
+    /**
+     * The names of the lazy arguments in the order as written, or
+     * <code>null</code>.
+     */
+    private final List<String> lazyArgumentNames;
+    /**
+     * The arguments converted to Lua strings so far.
+     */
+    private final Map<String, LuaValue> luaArguments = new HashMap<>();
     private final Frame parent;
     private boolean isSubst;
+    /**
+     * The results of the <code>#invoke</code> calls of this frame which are
+     * evaluated by the {@link ParallelInvoker}, or <code>null</code>.
+     */
+    private Map<String, Future<ParallelInvoker.Result>> prefetchedInvokes;
+
+    /**
+     * The value of an argument which is only computed when the argument is
+     * accessed the first time.
+     */
+    public interface LazyArgument {
+        /**
+         * @return the value or <code>null</code> if it can't be computed
+         */
+        String expand();
+    }
 
     public Frame(ParsedPageName page, Map<String, String> templateParameters, Frame parent, boolean isSubst) {
         this.templateParameters = templateParameters;
+        this.lazyArguments = null;
+        this.lazyArgumentNames = null;
+        this.page = page;
+        this.parent = parent;
+        this.isSubst = isSubst;
+    }
+
+    private Frame(ParsedPageName page, Frame parent, Map<String, LazyArgument> lazyArguments, boolean isSubst) {
+        this.templateParameters = new LinkedHashMap<>();
+        this.lazyArguments = new LinkedHashMap<>(lazyArguments);
+        this.lazyArgumentNames = new ArrayList<>(lazyArguments.keySet());
         this.page = page;
         this.parent = parent;
         this.isSubst = isSubst;
@@ -27,27 +71,67 @@ public class Frame {
         return new Frame(pageName, templateParameters, this, isSubst);
     }
 
+    /**
+     * Create a child frame whose arguments are computed on first access.
+     */
+    public Frame newLazyChild(ParsedPageName pageName, Map<String, LazyArgument> arguments, boolean isSubst) {
+        return new Frame(pageName, this, arguments, isSubst);
+    }
+
     public LuaValue getArgument(String name) {
-        String value = templateParameters != null ? templateParameters.get(name) : null;
-        if (value != null) {
-            return toLuaString(value);
-        } else {
-            return LuaValue.NIL;
+        LuaValue luaValue = luaArguments.get(name);
+        if (luaValue == null) {
+            final String value = getTemplateParameter(name);
+            luaValue = value != null ? toLuaString(value) : LuaValue.NIL;
+            luaArguments.put(name, luaValue);
+        }
+        return luaValue;
+    }
+
+    private String getTemplateParameter(String name) {
+        if (templateParameters == null) {
+            return null;
+        }
+        String value = templateParameters.get(name);
+        if (value == null && lazyArguments != null) {
+            final LazyArgument argument = lazyArguments.remove(name);
+            if (argument != null) {
+                value = argument.expand();
+                if (value != null) {
+                    templateParameters.put(name, value);
+                }
+            }
+        }
+        return value;
+    }
+
+    private void expandAll() {
+        if (lazyArguments != null && !lazyArguments.isEmpty()) {
+            for (String name : lazyArgumentNames) {
+                final String value = getTemplateParameter(name);
+                if (value != null) {
+                    // keep the order of the arguments as written, like an eager frame
+                    templateParameters.remove(name);
+                    templateParameters.put(name, value);
+                }
+            }
         }
     }
 
     public Map<String, String> getTemplateParameters() {
-        return new HashMap<>(templateParameters);
+        expandAll();
+        return new LinkedHashMap<>(templateParameters);
     }
 
     public LuaValue getAllArguments() {
+        expandAll();
         LuaTable table = new LuaTable();
-        for (Map.Entry<String, String> entry: templateParameters.entrySet()) {
+        for (String name : templateParameters.keySet()) {
             try {
-                final int numberedParam = Integer.parseInt(entry.getKey());
-                table.set(LuaValue.valueOf(numberedParam), toLuaString(entry.getValue()));
+                final int numberedParam = Integer.parseInt(name);
+                table.set(LuaValue.valueOf(numberedParam), getArgument(name));
             } catch (NumberFormatException e) {
-                table.set(toLuaString(entry.getKey()), toLuaString(entry.getValue()));
+                table.set(toLuaString(name), getArgument(name));
             }
         }
         return table;
@@ -69,6 +153,44 @@ public class Frame {
         return isSubst;
     }
 
+    /**
+     * Copy the frame and its parents, so that they can be used by another
+     * thread.
+     *
+     * @return the copy or <code>null</code> if an argument hasn't been
+     *         expanded yet
+     */
+    public Frame snapshot() {
+        if (lazyArguments != null && !lazyArguments.isEmpty()) {
+            return null;
+        }
+        Frame parentSnapshot = null;
+        if (parent != null && (parentSnapshot = parent.snapshot()) == null) {
+            return null;
+        }
+        return new Frame(page,
+            templateParameters == null ? null : new LinkedHashMap<>(templateParameters), parentSnapshot, isSubst);
+    }
+
+    boolean hasPrefetchedInvoke(String key) {
+        return prefetchedInvokes != null && prefetchedInvokes.containsKey(key);
+    }
+
+    /**
+     * @return the result of the call, which is removed from the frame, or
+     *         <code>null</code>
+     */
+    Future<ParallelInvoker.Result> removePrefetchedInvoke(String key) {
+        return prefetchedInvokes == null ? null : prefetchedInvokes.remove(key);
+    }
+
+    void putPrefetchedInvoke(String key, Future<ParallelInvoker.Result> result) {
+        if (prefetchedInvokes == null) {
+            prefetchedInvokes = new HashMap<>();
+        }
+        prefetchedInvokes.put(key, result);
+    }
+
     public String getFrameId() {
         return getClass().getName() + "@" + Integer.toHexString(hashCode());
     }
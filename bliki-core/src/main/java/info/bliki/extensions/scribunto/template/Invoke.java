@@ -15,8 +15,8 @@ import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
-import static info.bliki.wiki.filter.TemplateParser.createSingleParameter;
-import static info.bliki.wiki.filter.TemplateParser.mergeParameters;
+import static info.bliki.wiki.filter.TemplateParser.expandParameterValue;
+import static info.bliki.wiki.filter.TemplateParser.splitSingleParameter;
 
 /**
  * A template parser function for <code>{{ #invoke: ... }}</code> syntax.
@@ -34,6 +34,16 @@ public class Invoke extends AbstractTemplateFunction {
             throw new AssertionError("not enough arguments");
         }
 
+        Frame parent = model.getFrame();
+        final ParallelInvoker parallelInvoker = model.getParallelInvoker();
+        // prefetched calls are evaluated without subst
+        if (parent != null && parallelInvoker != null && !isSubst) {
+            final String result = parallelInvoker.takeResult(parent, parts, model);
+            if (result != null) {
+                return result;
+            }
+        }
+
         ScribuntoEngine engine = model.createScribuntoEngine();
 
         if (engine == null) {
@@ -43,10 +53,9 @@ public class Invoke extends AbstractTemplateFunction {
         final String moduleName   = parts.get(0).trim();  // TODO trim( $frame->expand( $args[0] ) );
         final String functionName = parts.get(1).trim();  // TODO trim( $frame->expand( $args[1] ) );
 
-        Frame parent = model.getFrame();
         try {
             ScribuntoModule module = engine.fetchModuleFromParser(moduleName);
-            final Frame frame = parent.newChild(module.pageName(), getParameters(parts, model), isSubst);
+            final Frame frame = parent.newLazyChild(module.pageName(), getParameters(parts, model), isSubst);
 
             return module.invoke(functionName, frame);
         } catch (ScribuntoException e) {
@@ -58,18 +67,49 @@ public class Invoke extends AbstractTemplateFunction {
         }
     }
 
-    private Map<String, String> getParameters(List<String> parts, IWikiModel model) {
-        LinkedHashMap<String, String> parameterMap = new LinkedHashMap<>();
+    /**
+     * The arguments are only expanded when the module accesses them.
+     */
+    private Map<String, Frame.LazyArgument> getParameters(List<String> parts, IWikiModel model) {
+        LinkedHashMap<String, Frame.LazyArgument> parameterMap = new LinkedHashMap<>();
         if (parts.size() > 2) {
-            List<String> unnamedParameters = new ArrayList<>();
+            List<Frame.LazyArgument> unnamedParameters = new ArrayList<>();
             for (int i = 2; i < parts.size(); i++) {
-                createSingleParameter(parts.get(i), model, parameterMap, unnamedParameters);
+                final String[] parameter = splitSingleParameter(parts.get(i));
+                if (parameter == null) {
+                    continue;
+                }
+                final Frame.LazyArgument argument = lazyArgument(parameter[1], parameter[0] != null, model);
+                if (parameter[0] != null) {
+                    parameterMap.put(parameter[0], argument);
+                } else {
+                    unnamedParameters.add(argument);
+                }
+            }
+            // see TemplateParser#mergeParameters
+            for (int i = 0; i < unnamedParameters.size(); i++) {
+                final String key = Integer.toString(i + 1);
+                if (!parameterMap.containsKey(key)) {
+                    parameterMap.put(key, unnamedParameters.get(i));
+                }
             }
-            mergeParameters(parameterMap, unnamedParameters);
         }
         return parameterMap;
     }
 
+    private static Frame.LazyArgument lazyArgument(final String value, final boolean named, final IWikiModel model) {
+        return new Frame.LazyArgument() {
+            @Override public String expand() {
+                try {
+                    return expandParameterValue(value, named, model);
+                } catch (IOException e) {
+                    logger.error("error expanding argument", e);
+                    return null;
+                }
+            }
+        };
+    }
+
     @Override
     public String getFunctionDoc() {
         return null;
@@ -0,0 +1,285 @@
+package info.bliki.extensions.scribunto.template;
+
+import info.bliki.extensions.scribunto.engine.ScribuntoEngine;
+import info.bliki.extensions.scribunto.engine.ScribuntoUsage;
+import info.bliki.extensions.scribunto.engine.lua.LuaLimits;
+import info.bliki.wiki.filter.TemplateParser;
+import info.bliki.wiki.model.IWikiModel;
+import info.bliki.wiki.model.LimitReport;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static info.bliki.wiki.filter.WikipediaScanner.findNestedTemplateEnd;
+
+/**
+ * Evaluates the independent <code>{{#invoke:}}</code> calls of a template
+ * concurrently.
+ *
+ * Before the template calls of an expanded template are parsed, all
+ * <code>#invoke</code> calls whose arguments don't contain other templates,
+ * parameters or tags are submitted to a thread pool. Each call runs on an
+ * isolated model (and therefore an isolated Lua engine) created by the
+ * {@link ModelFactory}, with a copy of the current frame. The parser still
+ * processes the calls one after the other in document order, and simply picks
+ * up the precomputed result instead of running the module itself.
+ *
+ * The resources used by a call, i.e. the {@link LimitReport} of the isolated
+ * model and the usage of its Lua engine, are added to the model rendering the
+ * page when the result is picked up. If a limit of the page is exceeded then,
+ * or if the result isn't available within the timeout, the call is evaluated
+ * by the parser. Calls with <code>subst:</code> are always evaluated by the
+ * parser. Other side effects of the modules on the model (e.g. templates used
+ * by <code>frame:expandTemplate()</code>) are recorded by the isolated model
+ * and not by the model rendering the page.
+ *
+ * @see info.bliki.wiki.model.IConfiguration#setParallelInvoker(ParallelInvoker)
+ */
+public class ParallelInvoker {
+    private static final Logger logger = LoggerFactory.getLogger(ParallelInvoker.class);
+    private static final String INVOKE = "#invoke";
+
+    /**
+     * The default time in milliseconds the parser waits for the result of a
+     * call.
+     */
+    public static final long DEFAULT_TIMEOUT = 10000;
+
+    /**
+     * Creates the isolated models used to run the modules. The models must be
+     * able to load the same modules and templates as the model rendering the
+     * page.
+     */
+    public interface ModelFactory {
+        IWikiModel createModel();
+    }
+
+    private final ModelFactory factory;
+    private final ExecutorService executor;
+    private final long timeout;
+    private final Queue<IWikiModel> models = new ConcurrentLinkedQueue<>();
+
+    public ParallelInvoker(ModelFactory factory) {
+        this(factory, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * @param factory creates the isolated models
+     * @param threads the number of calls evaluated at the same time
+     */
+    public ParallelInvoker(ModelFactory factory, int threads) {
+        this(factory, threads, DEFAULT_TIMEOUT);
+    }
+
+    /**
+     * @param factory creates the isolated models
+     * @param threads the number of calls evaluated at the same time
+     * @param timeout the time in milliseconds the parser waits for the result
+     *        of a call before it evaluates the call itself
+     */
+    public ParallelInvoker(ModelFactory factory, int threads, long timeout) {
+        this.factory = factory;
+        this.timeout = timeout;
+        final AtomicInteger counter = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+            @Override public Thread newThread(Runnable runnable) {
+                Thread thread = new WorkerThread(runnable, "bliki-invoke-" + counter.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    /**
+     * Stop the worker threads; calls are evaluated by the parser afterwards.
+     */
+    public void shutdown() {
+        executor.shutdownNow();
+        models.clear();
+    }
+
+    /**
+     * Submit the independent <code>#invoke</code> calls of the wikitext.
+     * The results are stored in the current frame of the model.
+     *
+     * @param wikitext the template text after parameter substitution
+     * @param model the model rendering the page
+     */
+    public void prefetch(String wikitext, IWikiModel model) {
+        final Frame frame = model.getFrame();
+        if (frame == null || Thread.currentThread() instanceof WorkerThread
+            || executor.isShutdown() || !wikitext.contains(INVOKE)) {
+            return;
+        }
+        final char[] src = wikitext.toCharArray();
+        int index = 0;
+        while ((index = wikitext.indexOf("{{", index)) >= 0) {
+            final int start = index + 2;
+            final int end = findNestedTemplateEnd(src, start);
+            if (end < 0) {
+                break;
+            }
+            index = end;
+            final List<String> parts = independentInvoke(src, start, end - 2);
+            if (parts == null || frame.hasPrefetchedInvoke(key(parts))) {
+                continue;
+            }
+            // every call gets its own copy, as frames aren't thread-safe
+            final Frame snapshot = frame.snapshot();
+            if (snapshot == null) {
+                // the frame still depends on the model
+                return;
+            }
+            try {
+                frame.putPrefetchedInvoke(key(parts),
+                    executor.submit(new InvokeTask(parts, snapshot, model.getPageName())));
+            } catch (RejectedExecutionException e) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Take the result of a prefetched call and add the resources it used to
+     * the model.
+     *
+     * @param model the model rendering the page
+     * @return the result of the call, or <code>null</code> if the call wasn't
+     *         prefetched, failed, timed out or exceeded a limit of the page
+     */
+    String takeResult(Frame frame, List<String> parts, IWikiModel model) {
+        final Future<Result> future = frame.removePrefetchedInvoke(key(parts));
+        if (future == null) {
+            return null;
+        }
+        final Result result;
+        try {
+            result = future.get(timeout, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (ExecutionException e) {
+            logger.warn("error in parallel invoke, retrying", e.getCause());
+            return null;
+        } catch (TimeoutException e) {
+            future.cancel(true);
+            logger.warn("parallel invoke timed out, retrying: " + parts);
+            return null;
+        }
+        if (!model.getLimitReport().add(result.limitReport) || !addUsage(model, result.usage)) {
+            // the parser reports the exceeded limit
+            return null;
+        }
+        return result.text;
+    }
+
+    private static boolean addUsage(IWikiModel model, ScribuntoUsage usage) {
+        final LuaLimits limits = model.getLuaLimits();
+        if (limits == null || !limits.isEnabled()) {
+            return true;
+        }
+        final ScribuntoEngine engine = model.createScribuntoEngine();
+        return engine == null || engine.addUsage(usage);
+    }
+
+    /**
+     * @return the parts of the call, or <code>null</code> if the template
+     *         isn't an <code>#invoke</code> which can be run in isolation
+     */
+    private static List<String> independentInvoke(char[] src, int start, int end) {
+        for (int i = start; i < end; i++) {
+            if (src[i] == '{' || src[i] == '<') {
+                return null;
+            }
+        }
+        Object[] objs = TemplateParser.createParameterMap(src, start, end - start);
+        @SuppressWarnings("unchecked")
+        List<String> parts = (List<String>) objs[0];
+        String templateName = (String) objs[1];
+        int offset = TemplateParser.checkParserFunction(templateName);
+        if (offset < 0 || !templateName.substring(0, offset - 1).trim().equals(INVOKE) || parts.size() < 2) {
+            return null;
+        }
+        parts.set(0, templateName.substring(offset));
+        return parts;
+    }
+
+    private static String key(List<String> parts) {
+        final StringBuilder buffer = new StringBuilder();
+        for (String part : parts) {
+            buffer.append(part).append('|');
+        }
+        return buffer.toString();
+    }
+
+    private static class WorkerThread extends Thread {
+        WorkerThread(Runnable runnable, String name) {
+            super(runnable, name);
+        }
+    }
+
+    static class Result {
+        final String text;
+        final LimitReport limitReport;
+        final ScribuntoUsage usage;
+
+        Result(String text, LimitReport limitReport, ScribuntoUsage usage) {
+            this.text = text;
+            this.limitReport = limitReport;
+            this.usage = usage;
+        }
+    }
+
+    private class InvokeTask implements Callable<Result> {
+        private final List<String> parts;
+        private final Frame frame;
+        private final String pageName;
+
+        InvokeTask(List<String> parts, Frame frame, String pageName) {
+            this.parts = parts;
+            this.frame = frame;
+            this.pageName = pageName;
+        }
+
+        @Override public Result call() throws Exception {
+            IWikiModel model = models.poll();
+            if (model == null) {
+                model = factory.createModel();
+            }
+            try {
+                model.setUp();
+                if (pageName != null) {
+                    model.setPageName(pageName);
+                }
+                model.setFrame(frame);
+                final long start = System.nanoTime();
+                final String result = Invoke.CONST.parseFunction(parts, model, null, 0, 0, false);
+                if (result == null) {
+                    throw new IllegalStateException("invoke failed: " + parts);
+                }
+                final ScribuntoEngine engine = model.createScribuntoEngine();
+                ScribuntoUsage usage = engine != null ? engine.getUsage() : null;
+                if (usage == null) {
+                    usage = new ScribuntoUsage(0, System.nanoTime() - start, 0);
+                }
+                return new Result(result, model.getLimitReport(), usage);
+            } finally {
+                model.setFrame(null);
+                models.offer(model);
+            }
+        }
+    }
+}
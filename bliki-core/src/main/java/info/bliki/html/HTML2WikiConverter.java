@@ -1,10 +1,15 @@
 package info.bliki.html;
 
+import info.bliki.html.wikipedia.AbstractHTMLToWiki;
 import info.bliki.html.wikipedia.IHTMLToWiki;
 import info.bliki.htmlcleaner.HtmlCleaner;
 import info.bliki.htmlcleaner.TagNode;
 
 import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.Collections;
+import java.util.List;
 
 /**
  * Converts a given HTML string into a wiki text string
@@ -13,14 +18,27 @@ import java.io.IOException;
 public class HTML2WikiConverter {
     String fInputHTML;
 
+    Reader fInputReader;
+
     public HTML2WikiConverter() {
-        this(null);
+        this((String) null);
     }
 
     public HTML2WikiConverter(String inputHTML) {
         fInputHTML = inputHTML;
     }
 
+    /**
+     * Create a converter which reads the HTML from the given reader. The reader
+     * is closed after the conversion.
+     *
+     * @param inputReader
+     *          the HTML source
+     */
+    public HTML2WikiConverter(Reader inputReader) {
+        fInputReader = inputReader;
+    }
+
     /**
      * Converts a given HTML string into a wiki text string
      *
@@ -29,42 +47,50 @@ public class HTML2WikiConverter {
      * @return
      */
     public String toWiki(IHTMLToWiki converter) {
-        HtmlCleaner cleaner = null;
-        StringBuilder resultBuffer = new StringBuilder(fInputHTML.length());
+        StringBuilder resultBuffer = new StringBuilder(fInputHTML != null ? fInputHTML.length() : 1024);
         try {
-            cleaner = new HtmlCleaner(fInputHTML);
-            cleaner.clean();
-            // resultBuffer.append(cleaner.getXmlAsString());
-            TagNode body = cleaner.getBodyNode();
-            converter.nodeToWiki(body, resultBuffer);
+            toWiki(converter, resultBuffer);
         } catch (IOException e) {
         }
-        int indx = resultBuffer.indexOf("<br>");
-        char ch;
-        if (indx >= 0) {
-            int lastIndx = 0;
-            StringBuilder tempBuffer = new StringBuilder(resultBuffer.length() + resultBuffer.length() / 10);
-            while (indx > 0) {
-                indx += 4;
-                tempBuffer.append(resultBuffer.substring(lastIndx, indx));
-                if (indx < resultBuffer.length()) {
-                    ch = resultBuffer.charAt(indx);
-                    if (ch != '\n' && ch != '\r' && ch != ' ' && ch != '#' && ch != '=' && ch != '*' && ch != ':' && ch != ';' && ch != '{'
-                            && ch != '|') {
-                        tempBuffer.append('\n');
-                    }
-                    lastIndx = indx;
-                    indx = resultBuffer.indexOf("<br>", lastIndx);
-                } else {
-                    break;
+        return resultBuffer.toString();
+    }
+
+    /**
+     * Converts the HTML input into wiki text and appends it to the given writer.
+     *
+     * The top level nodes of the HTML body are converted one after the other and
+     * are released after they were written, so only the wiki text of one top
+     * level node has to be buffered.
+     *
+     * @param converter
+     *          for creating the resulting wiki text string
+     * @param writer
+     *          the wiki text output
+     * @throws IOException
+     */
+    public void toWiki(IHTMLToWiki converter, Appendable writer) throws IOException {
+        Reader reader = fInputReader != null ? fInputReader : new StringReader(fInputHTML);
+        HtmlCleaner cleaner = new HtmlCleaner(reader);
+        cleaner.clean();
+        TagNode body = cleaner.getBodyNode();
+
+        LineBreakFilter filter = new LineBreakFilter(writer);
+        StringBuilder buffer = new StringBuilder();
+        if (converter instanceof AbstractHTMLToWiki && ((AbstractHTMLToWiki) converter).isTransparent(body)) {
+            List<Object> children = body.getChildren();
+            for (int i = 0; i < children.size(); i++) {
+                Object child = children.get(i);
+                if (child != null) {
+                    converter.nodesToText(Collections.singletonList(child), buffer);
+                    children.set(i, null);
+                    filter.append(buffer);
+                    buffer.setLength(0);
                 }
             }
-            if (lastIndx < resultBuffer.length()) {
-                tempBuffer.append(resultBuffer.substring(lastIndx));
-            }
-            return tempBuffer.toString();
+        } else {
+            converter.nodeToWiki(body, buffer);
+            filter.append(buffer);
         }
-        return resultBuffer.toString();
     }
 
     public String getInputHTML() {
@@ -73,5 +99,6 @@ public class HTML2WikiConverter {
 
     public void setInputHTML(String inputHTML) {
         this.fInputHTML = inputHTML;
+        this.fInputReader = null;
     }
 }
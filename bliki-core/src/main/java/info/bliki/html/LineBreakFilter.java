@@ -0,0 +1,91 @@
+package info.bliki.html;
+
+import java.io.IOException;
+
+/**
+ * Appends wiki text to another <code>Appendable</code> and inserts a newline
+ * after each <code>&lt;br&gt;</code>, which isn't followed by a newline, a
+ * space or a character which starts wiki block markup.
+ *
+ * The filter works on the stream of appended characters, so the wiki text
+ * doesn't have to be buffered and copied again after the conversion. As
+ * before, no newlines are inserted if the wiki text starts with
+ * <code>&lt;br&gt;</code>.
+ */
+class LineBreakFilter implements Appendable {
+    private static final String BR = "<br>";
+
+    private final Appendable fOut;
+
+    /**
+     * The number of characters of <code>&lt;br&gt;</code> matched so far; if
+     * all characters are matched, the next character decides if a newline has
+     * to be inserted.
+     */
+    private int fMatched = 0;
+
+    /**
+     * The number of characters appended so far.
+     */
+    private long fLength = 0;
+
+    private boolean fDisabled = false;
+
+    LineBreakFilter(Appendable out) {
+        fOut = out;
+    }
+
+    @Override
+    public Appendable append(CharSequence csq) throws IOException {
+        return append(csq, 0, csq.length());
+    }
+
+    @Override
+    public Appendable append(CharSequence csq, int start, int end) throws IOException {
+        if (fDisabled) {
+            fOut.append(csq, start, end);
+            return this;
+        }
+        int runStart = start;
+        for (int i = start; i < end; i++) {
+            if (!fDisabled && fMatched == BR.length() && needsNewline(csq.charAt(i))) {
+                fOut.append(csq, runStart, i);
+                fOut.append('\n');
+                runStart = i;
+            }
+            fMatched = nextMatched(csq.charAt(i));
+        }
+        fOut.append(csq, runStart, end);
+        return this;
+    }
+
+    @Override
+    public Appendable append(char c) throws IOException {
+        if (fDisabled) {
+            fOut.append(c);
+            return this;
+        }
+        if (fMatched == BR.length() && needsNewline(c)) {
+            fOut.append('\n');
+        }
+        fMatched = nextMatched(c);
+        fOut.append(c);
+        return this;
+    }
+
+    private int nextMatched(char c) {
+        fLength++;
+        if (fMatched < BR.length() && BR.charAt(fMatched) == c) {
+            if (fMatched == BR.length() - 1 && fLength == BR.length()) {
+                fDisabled = true;
+            }
+            return fMatched + 1;
+        }
+        return c == '<' ? 1 : 0;
+    }
+
+    private static boolean needsNewline(char ch) {
+        return ch != '\n' && ch != '\r' && ch != ' ' && ch != '#' && ch != '=' && ch != '*' && ch != ':' && ch != ';' && ch != '{'
+                && ch != '|';
+    }
+}
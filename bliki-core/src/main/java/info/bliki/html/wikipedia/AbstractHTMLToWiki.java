@@ -95,6 +95,29 @@ public class AbstractHTMLToWiki {
         }
     }
 
+    /**
+     * Test if the wiki text of the given node is the concatenated wiki text of
+     * its children. The children of such a node can be converted one after the
+     * other.
+     *
+     * @param tagNode
+     *          the HTML node
+     * @return <code>true</code> if the node doesn't add any wiki markup
+     */
+    public boolean isTransparent(TagNode tagNode) {
+        String name = tagNode.getName();
+        HTMLTag tag = fHashMap.get(name);
+        if (tag == null) {
+            return !name.equals("br") && !name.equals("hr");
+        }
+        if (tag.getClass() == OpenCloseTag.class) {
+            OpenCloseTag openCloseTag = (OpenCloseTag) tag;
+            return !openCloseTag.fconvertPlainText && !openCloseTag.formatContent && openCloseTag.getOpenStr().length() == 0
+                    && openCloseTag.getCloseStr().length() == 0;
+        }
+        return false;
+    }
+
     protected void nodesToPlainText(List<Object> nodes, StringBuilder resultBuffer) {
         if (nodes != null && !nodes.isEmpty()) {
             for (Object item : nodes) {
@@ -0,0 +1,266 @@
+package info.bliki.htmlcleaner;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * The attributes of a {@link TagNode} as name/value pairs in one array, which
+ * is sorted by the names.
+ *
+ * A tag has only a few attributes, so a binary search in the array is as fast
+ * as a lookup in a <code>TreeMap</code>, but the map doesn't need an entry
+ * object per attribute. The entries are iterated in the same order as in a
+ * <code>TreeMap</code>. Names and values must not be <code>null</code>.
+ */
+public class AttributeMap extends AbstractMap<String, String> {
+    private static final String[] EMPTY = new String[0];
+
+    /**
+     * The name of the i-th attribute at index <code>2 * i</code> and its value
+     * at index <code>2 * i + 1</code>
+     */
+    private String[] pairs = EMPTY;
+    private int size;
+    private int modCount;
+    private transient EntrySet entrySet;
+
+    public AttributeMap() {
+    }
+
+    public AttributeMap(Map<String, String> map) {
+        if (map instanceof AttributeMap) {
+            AttributeMap attributeMap = (AttributeMap) map;
+            size = attributeMap.size;
+            pairs = size == 0 ? EMPTY : Arrays.copyOf(attributeMap.pairs, 2 * size);
+        } else {
+            putAll(map);
+        }
+    }
+
+    /**
+     * @return the index of the name in the array, or
+     *         <code>-(insertion index) - 1</code> if there is no such name
+     */
+    private int indexOf(Object name) {
+        if (name == null) {
+            throw new NullPointerException();
+        }
+        String key = (String) name;
+        int low = 0;
+        int high = size - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int cmp = pairs[2 * mid].compareTo(key);
+            if (cmp < 0) {
+                low = mid + 1;
+            } else if (cmp > 0) {
+                high = mid - 1;
+            } else {
+                return 2 * mid;
+            }
+        }
+        return -(2 * low) - 1;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return key instanceof String && indexOf(key) >= 0;
+    }
+
+    @Override
+    public String get(Object key) {
+        if (!(key instanceof String)) {
+            return null;
+        }
+        int index = indexOf(key);
+        return index >= 0 ? pairs[index + 1] : null;
+    }
+
+    @Override
+    public String put(String key, String value) {
+        if (value == null) {
+            throw new NullPointerException();
+        }
+        int index = indexOf(key);
+        if (index >= 0) {
+            String oldValue = pairs[index + 1];
+            pairs[index + 1] = value;
+            return oldValue;
+        }
+        index = -index - 1;
+        if (2 * size == pairs.length) {
+            pairs = Arrays.copyOf(pairs, size == 0 ? 8 : 4 * size);
+        }
+        System.arraycopy(pairs, index, pairs, index + 2, 2 * size - index);
+        pairs[index] = key;
+        pairs[index + 1] = value;
+        size++;
+        modCount++;
+        return null;
+    }
+
+    @Override
+    public String remove(Object key) {
+        if (!(key instanceof String)) {
+            return null;
+        }
+        int index = indexOf(key);
+        if (index < 0) {
+            return null;
+        }
+        String oldValue = pairs[index + 1];
+        removeAt(index);
+        return oldValue;
+    }
+
+    private void removeAt(int index) {
+        size--;
+        System.arraycopy(pairs, index + 2, pairs, index, 2 * size - index);
+        pairs[2 * size] = null;
+        pairs[2 * size + 1] = null;
+        modCount++;
+    }
+
+    @Override
+    public void clear() {
+        if (size > 0) {
+            Arrays.fill(pairs, 0, 2 * size, null);
+            size = 0;
+            modCount++;
+        }
+    }
+
+    @Override
+    public Set<Map.Entry<String, String>> entrySet() {
+        if (entrySet == null) {
+            entrySet = new EntrySet();
+        }
+        return entrySet;
+    }
+
+    private class EntrySet extends AbstractSet<Map.Entry<String, String>> {
+        @Override
+        public Iterator<Map.Entry<String, String>> iterator() {
+            return new EntryIterator();
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+
+        @Override
+        public void clear() {
+            AttributeMap.this.clear();
+        }
+    }
+
+    private class EntryIterator implements Iterator<Map.Entry<String, String>> {
+        /**
+         * The index of the next pair
+         */
+        private int next;
+        private int last = -1;
+        private int expectedModCount = modCount;
+
+        @Override
+        public boolean hasNext() {
+            return next < 2 * size;
+        }
+
+        @Override
+        public Map.Entry<String, String> next() {
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+            if (next >= 2 * size) {
+                throw new NoSuchElementException();
+            }
+            last = next;
+            next += 2;
+            return new Entry(last);
+        }
+
+        @Override
+        public void remove() {
+            if (last < 0) {
+                throw new IllegalStateException();
+            }
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+            removeAt(last);
+            next = last;
+            last = -1;
+            expectedModCount = modCount;
+        }
+    }
+
+    /**
+     * An entry which reads and writes the pair in the array of the map.
+     */
+    private class Entry implements Map.Entry<String, String> {
+        private final int index;
+        private final String key;
+
+        Entry(int index) {
+            this.index = index;
+            this.key = pairs[index];
+        }
+
+        @Override
+        public String getKey() {
+            return key;
+        }
+
+        @Override
+        public String getValue() {
+            return key.equals(pairs[index]) ? pairs[index + 1] : AttributeMap.this.get(key);
+        }
+
+        @Override
+        public String setValue(String value) {
+            if (value == null) {
+                throw new NullPointerException();
+            }
+            if (key.equals(pairs[index])) {
+                String oldValue = pairs[index + 1];
+                pairs[index + 1] = value;
+                return oldValue;
+            }
+            return put(key, value);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof Map.Entry)) {
+                return false;
+            }
+            Map.Entry<?, ?> entry = (Map.Entry<?, ?>) obj;
+            String value = getValue();
+            return key.equals(entry.getKey()) && (value == null ? entry.getValue() == null : value.equals(entry.getValue()));
+        }
+
+        @Override
+        public int hashCode() {
+            String value = getValue();
+            return key.hashCode() ^ (value == null ? 0 : value.hashCode());
+        }
+
+        @Override
+        public String toString() {
+            return key + "=" + getValue();
+        }
+    }
+}
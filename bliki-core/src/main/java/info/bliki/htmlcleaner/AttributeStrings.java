@@ -0,0 +1,148 @@
+package info.bliki.htmlcleaner;
+
+/**
+ * Canonical strings for the attribute names and values of the parsed tags.
+ *
+ * The names of the known HTML attributes (see {@link TagNode#ALLOWED_ATTRIBUTES})
+ * are looked up in a static table, so the tags of a page share one string per
+ * name. Short values like the classes <code>wikitable</code> or
+ * <code>infobox</code> are pooled in a bounded cache: each value is stored in
+ * the slot given by its hash code and replaces the value which was in the slot
+ * before, so the pool holds the recently used values. The pool is shared by all
+ * threads; it only contains immutable strings and a thread which doesn't see
+ * the pooled string of another thread simply creates a new one.
+ */
+public class AttributeStrings {
+    public static final int DEFAULT_VALUE_POOL_SIZE = 1024;
+
+    /**
+     * Longer values are rarely repeated and aren't pooled.
+     */
+    public static final int MAX_VALUE_LENGTH = 64;
+
+    /**
+     * Known attribute names which aren't allowed by default.
+     */
+    private static final String[] KNOWN_NAMES = { "style", "group", "role", "target", "nowrap", "background", "reversed",
+            "datetime", "itemprop", "itemscope", "itemtype", "itemid", "aria-hidden", "aria-label", "data-sort-type",
+            "data-sort-value", "typeof", "about", "property", "content", "xml:lang", "rev", "coords", "shape", "hreflang",
+            "selected", "disabled", "checked", "for", "action", "method" };
+
+    /**
+     * Open addressing hash table of the known names, which is probed with the
+     * hash code of the name like {@link String#hashCode()}.
+     */
+    private static final String[] names = new String[256];
+
+    private static volatile String[] values = new String[DEFAULT_VALUE_POOL_SIZE];
+
+    static {
+        for (String name : TagNode.ALLOWED_ATTRIBUTES) {
+            addName(name);
+        }
+        for (String name : KNOWN_NAMES) {
+            addName(name);
+        }
+    }
+
+    private static void addName(String name) {
+        int index = name.hashCode() & (names.length - 1);
+        while (names[index] != null) {
+            if (names[index].equals(name)) {
+                return;
+            }
+            index = (index + 1) & (names.length - 1);
+        }
+        names[index] = name;
+    }
+
+    private AttributeStrings() {
+    }
+
+    private static int hash(char[] text, int start, int end) {
+        int hash = 0;
+        for (int i = start; i < end; i++) {
+            hash = 31 * hash + text[i];
+        }
+        return hash;
+    }
+
+    private static boolean matches(String s, char[] text, int start, int end) {
+        if (s.length() != end - start) {
+            return false;
+        }
+        for (int i = start; i < end; i++) {
+            if (s.charAt(i - start) != text[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Get the attribute name <code>text[start..end-1]</code>.
+     *
+     * @return the canonical string of a known name or a new string
+     */
+    public static String name(char[] text, int start, int end) {
+        int index = hash(text, start, end) & (names.length - 1);
+        String name;
+        while ((name = names[index]) != null) {
+            if (matches(name, text, start, end)) {
+                return name;
+            }
+            index = (index + 1) & (names.length - 1);
+        }
+        return new String(text, start, end - start);
+    }
+
+    /**
+     * Get the canonical string of an attribute name.
+     *
+     * @return the canonical string of a known name or the given name
+     */
+    public static String name(String name) {
+        int index = name.hashCode() & (names.length - 1);
+        String knownName;
+        while ((knownName = names[index]) != null) {
+            if (knownName.equals(name)) {
+                return knownName;
+            }
+            index = (index + 1) & (names.length - 1);
+        }
+        return name;
+    }
+
+    /**
+     * Get the attribute value <code>text[start..end-1]</code>.
+     *
+     * @return the pooled string or a new string
+     */
+    public static String value(char[] text, int start, int end) {
+        String[] pool = values;
+        int length = end - start;
+        if (pool.length == 0 || length > MAX_VALUE_LENGTH) {
+            return new String(text, start, length);
+        }
+        int index = hash(text, start, end) & (pool.length - 1);
+        String value = pool[index];
+        if (value == null || !matches(value, text, start, end)) {
+            value = new String(text, start, length);
+            pool[index] = value;
+        }
+        return value;
+    }
+
+    /**
+     * Set the number of pooled attribute values.
+     *
+     * @param size
+     *          a power of two, or <code>0</code> to disable the pool
+     */
+    public static void setValuePoolSize(int size) {
+        if (size < 0 || (size & (size - 1)) != 0) {
+            throw new IllegalArgumentException("size must be 0 or a power of two: " + size);
+        }
+        values = new String[size];
+    }
+}
@@ -48,7 +48,36 @@ import java.io.IOException;
  * Date: November, 2006.
  */
 public interface BaseToken {
+    /** another token, which is passed to the converter as plain object */
+    int OTHER = 0;
+    /** a {@link ContentToken} */
+    int TEXT = 1;
+    /** a {@link TagNode} which is rendered by the converter */
+    int TAG = 2;
+    /** an {@link info.bliki.wiki.tags.HTMLTag} which renders itself */
+    int HTML_TAG = 3;
+    /** a {@link TagNode} with an {@link info.bliki.wiki.model.ImageFormat} wiki object */
+    int IMAGE = 4;
+    /** a {@link TagNode} with another wiki object */
+    int WIKI_OBJECT = 5;
+    /** an {@link EndTagToken} */
+    int END_TAG = 6;
+    /** a {@link CommentToken} */
+    int COMMENT = 7;
+    /** a {@link DoctypeToken} */
+    int DOCTYPE = 8;
 
     void serialize(XmlSerializer xmlSerializer) throws IOException;
 
+    /**
+     * The kind of the token, which selects the callback of a converter.
+     *
+     * @return one of {@link #TEXT}, {@link #TAG}, {@link #HTML_TAG},
+     *         {@link #IMAGE}, {@link #WIKI_OBJECT}, {@link #END_TAG},
+     *         {@link #COMMENT} or {@link #DOCTYPE}; {@link #OTHER} by default
+     * @see info.bliki.wiki.filter.AbstractTextConverter
+     */
+    default int getKind() {
+        return OTHER;
+    }
 }
@@ -62,6 +62,11 @@ public class CommentToken implements BaseToken {
         return content;
     }
 
+    @Override
+    public int getKind() {
+        return COMMENT;
+    }
+
     @Override
     public void serialize(XmlSerializer xmlSerializer) throws IOException {
         xmlSerializer.getWriter().write( getContent() );
@@ -63,6 +63,11 @@ public class ContentToken implements BaseToken, PlainTextConvertable {
         return content.trim();
     }
 
+    @Override
+    public int getKind() {
+        return TEXT;
+    }
+
     @Override
     public void serialize(XmlSerializer xmlSerializer) throws IOException {
         xmlSerializer.getWriter().write(getContent());
@@ -112,6 +112,11 @@ public class DoctypeToken implements BaseToken {
         return "";
     }
 
+    @Override
+    public int getKind() {
+        return DOCTYPE;
+    }
+
     @Override
     public void serialize(XmlSerializer xmlSerializer) throws IOException {
         xmlSerializer.getWriter().write(getContent() + "\n");
@@ -64,6 +64,11 @@ public class EndTagToken extends TagToken {
         return false;
     }
 
+    @Override
+    public int getKind() {
+        return END_TAG;
+    }
+
     @Override
     public void serialize(XmlSerializer xmlSerializer) {
         // do nothing - simply ignore serialization
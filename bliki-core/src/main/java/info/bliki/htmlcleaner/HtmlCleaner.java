@@ -266,6 +266,27 @@ public class HtmlCleaner {
         this(htmlContent, HtmlTagProvider.getInstance());
     }
 
+    /**
+     * Constructor - creates the instance for the specified reader. The content
+     * is tokenized while reading, the reader is closed after cleaning.
+     *
+     * @param reader
+     * @param tagInfoProvider
+     */
+    public HtmlCleaner(Reader reader, ITagInfoProvider tagInfoProvider) {
+        this.reader = reader;
+        this.tagInfoProvider = tagInfoProvider == null ? HtmlTagProvider.getInstance() : tagInfoProvider;
+    }
+
+    /**
+     * Constructor - creates the instance for the specified reader.
+     *
+     * @param reader
+     */
+    public HtmlCleaner(Reader reader) {
+        this(reader, HtmlTagProvider.getInstance());
+    }
+
     /**
      * Constructor - creates the instance for specified file.
      *
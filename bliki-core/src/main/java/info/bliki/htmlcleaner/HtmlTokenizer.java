@@ -56,7 +56,7 @@ public class HtmlTokenizer {
 
     private final static int WORKING_BUFFER_SIZE = 1024;
 
-    private BufferedReader _reader;
+    private Reader _reader;
 
     private char[] _working = new char[WORKING_BUFFER_SIZE];
 
@@ -87,7 +87,7 @@ public class HtmlTokenizer {
      * @throws IOException
      */
     public HtmlTokenizer(HtmlCleaner cleaner) throws IOException {
-        this._reader = new BufferedReader(cleaner.getReader());
+        this._reader = cleaner.getReader();
         this.cleaner = cleaner;
     }
 
@@ -101,16 +101,36 @@ public class HtmlTokenizer {
             int numToCopy = WORKING_BUFFER_SIZE - _pos;
             System.arraycopy(_working, _pos, _working, 0, numToCopy);
             _pos = 0;
-            int size = _reader.read(_working, numToCopy, WORKING_BUFFER_SIZE - numToCopy);
+            int size = fill(numToCopy);
 
-            if (size < WORKING_BUFFER_SIZE - numToCopy) {
-                _len = (size == -1 && numToCopy == 0) ? 0 : size + numToCopy;
-            } else if (size == -1) {
+            if (size == -1) {
                 _len = numToCopy;
+            } else if (size < WORKING_BUFFER_SIZE - numToCopy) {
+                _len = size + numToCopy;
             }
         }
     }
 
+    /**
+     * Read from the reader into the working buffer, until the buffer is full or
+     * the end of the content is reached. A streaming reader may return less
+     * characters than requested before its end.
+     *
+     * @return the number of characters read or <code>-1</code> if the end of
+     *         the content was already reached
+     */
+    private int fill(int offset) throws IOException {
+        int size = 0;
+        while (offset + size < WORKING_BUFFER_SIZE) {
+            int read = _reader.read(_working, offset + size, WORKING_BUFFER_SIZE - offset - size);
+            if (read == -1) {
+                return size == 0 ? -1 : size;
+            }
+            size += read;
+        }
+        return size;
+    }
+
     List<BaseToken> getTokenList() {
         return this._tokenList;
     }
@@ -306,4 +306,50 @@ public class SpecialEntities {
         entities.put("diams", Integer.valueOf(9830));
     }
 
+    private static final int MAX_NAME_LENGTH = 8;
+
+    /**
+     * Open addressing hash table of the entity names, which is probed with the
+     * hash code of the name like {@link String#hashCode()}.
+     */
+    private static final String[] names = new String[512];
+    private static final int[] codes = new int[names.length];
+
+    static {
+        for (Map.Entry<String, Integer> entry : entities.entrySet()) {
+            int index = entry.getKey().hashCode() & (names.length - 1);
+            while (names[index] != null) {
+                index = (index + 1) & (names.length - 1);
+            }
+            names[index] = entry.getKey();
+            codes[index] = entry.getValue();
+        }
+    }
+
+    /**
+     * Get the unicode of the entity <code>s.substring(start, end)</code>
+     * without creating the substring.
+     *
+     * @return the unicode or <code>-1</code> if there is no such entity
+     */
+    static int get(String s, int start, int end) {
+        int length = end - start;
+        if (length <= 0 || length > MAX_NAME_LENGTH) {
+            return -1;
+        }
+        int hash = 0;
+        for (int i = start; i < end; i++) {
+            hash = 31 * hash + s.charAt(i);
+        }
+        int index = hash & (names.length - 1);
+        String name;
+        while ((name = names[index]) != null) {
+            if (name.length() == length && s.regionMatches(start, name, 0, length)) {
+                return codes[index];
+            }
+            index = (index + 1) & (names.length - 1);
+        }
+        return -1;
+    }
+
 }
@@ -40,6 +40,7 @@ package info.bliki.htmlcleaner;
 import info.bliki.wiki.filter.ITextConverter;
 import info.bliki.wiki.filter.PlainTextConvertable;
 import info.bliki.wiki.model.IWikiModel;
+import info.bliki.wiki.model.ImageFormat;
 
 import java.io.IOException;
 import java.util.ArrayList;
@@ -49,7 +50,6 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.TreeMap;
 
 /**
  * <p>
@@ -97,7 +97,7 @@ public class TagNode extends TagToken implements PlainTextConvertable {
     }
 
     private TagNode parent;
-    private Map<String, String> attributes = new TreeMap<>();
+    private Map<String, String> attributes = new AttributeMap();
     private HashMap<String, Object> objectAttributes;
     private List<Object> children = new ArrayList<>();
     private List<BaseToken> itemsToMove;
@@ -145,7 +145,7 @@ public class TagNode extends TagToken implements PlainTextConvertable {
     public boolean addAttribute(String attName, String attValue, boolean checkXSS) {
         if (attName != null && (!"".equals(attName.trim()) && attValue != null)) {
             boolean checkedAttributes = true;
-            String nameLowerCased = attName.toLowerCase();
+            String nameLowerCased = AttributeStrings.name(attName.toLowerCase());
             String valueLowerCased = attValue.toLowerCase();
             if (checkXSS && (!getAllowedAttributes().contains(nameLowerCased))) {
                 if (!isAllowedAttribute(nameLowerCased)) {
@@ -242,6 +242,14 @@ public class TagNode extends TagToken implements PlainTextConvertable {
         this.isFormed = true;
     }
 
+    @Override
+    public int getKind() {
+        if (objectAttributes != null && !objectAttributes.isEmpty()) {
+            return objectAttributes.get("wikiobject") instanceof ImageFormat ? IMAGE : WIKI_OBJECT;
+        }
+        return TAG;
+    }
+
     @Override
     public void serialize(XmlSerializer xmlSerializer) throws IOException {
         xmlSerializer.serialize(this);
@@ -261,7 +269,7 @@ public class TagNode extends TagToken implements PlainTextConvertable {
         tt.itemsToMove = this.itemsToMove;
         tt.isFormed = this.isFormed;
         tt.children = new ArrayList<>(this.children);
-        tt.attributes = new TreeMap<>(this.attributes);
+        tt.attributes = new AttributeMap(this.attributes);
         if (objectAttributes == null) {
             tt.objectAttributes = null;
         } else {
@@ -277,151 +277,24 @@ public class Utils {
 
     /**
      * Escapes XML string into the given result buffer.
+     *
+     * The runs of characters which don't need escaping are appended as a whole.
      */
     public static void escapeXmlToBuffer(String s, Appendable result, boolean advanced, boolean recognizeUnicodeChars,
             boolean translateSpecialEntities, boolean plainText) throws IOException {
         if (s != null) {
             int len = s.length();
-            for (int i = 0; i < len; i++) {
+            // start of the characters which aren't appended yet
+            int start = 0;
+            int i = 0;
+            while (i < len) {
                 char ch = s.charAt(i);
-
                 if (ch == '&') {
-                    if (recognizeUnicodeChars && (i < len - 1) && (s.charAt(i + 1) == '#')) {
-                        int charIndex = i + 2;
-                        String unicode = "";
-                        while (charIndex < len
-                                && (isHexadecimalDigit(s.charAt(charIndex)) || s.charAt(charIndex) == 'x' || s.charAt(charIndex) == 'X')) {
-                            unicode += s.charAt(charIndex);
-                            charIndex++;
-                        }
-                        if (charIndex == len || !"".equals(unicode)) {
-                            try {
-                                char unicodeChar = unicode.toLowerCase().startsWith("x") ? (char) Integer.parseInt(unicode.substring(1), 16)
-                                        : (char) Integer.parseInt(unicode);
-                                if ("&<>\'\"".indexOf(unicodeChar) < 0) {
-                                    int replaceChunkSize = (charIndex < len && s.charAt(charIndex) == ';') ? unicode.length() + 1 : unicode.length();
-                                    result.append(String.valueOf(unicodeChar));
-                                    i += replaceChunkSize + 1;
-                                } else {
-                                    i = charIndex;
-                                    result.append("&#" + unicode + ";");
-                                }
-                            } catch (NumberFormatException e) {
-                                i = charIndex;
-                                result.append("&amp;#" + unicode + ";");
-                            }
-                        } else {
-                            result.append("&amp;");
-                        }
-                    } else {
-                        if (translateSpecialEntities) {
-                            // get following sequence of most 10 characters
-                            String seq = s.substring(i, i + Math.min(10, len - i));
-                            int semiIndex = seq.indexOf(';');
-                            if (semiIndex > 0) {
-                                String entity = seq.substring(1, semiIndex);
-                                Integer code = SpecialEntities.entities.get(entity);
-                                if (code != null) {
-                                    int entityLen = entity.length();
-                                    if (recognizeUnicodeChars) {
-                                        char unicodeChar = (char) code.intValue();
-                                        if ("&<>\'\"".indexOf(unicodeChar) < 0) {
-                                            result.append(String.valueOf(unicodeChar));
-                                            i += entityLen + 1;
-                                            continue;
-                                        }
-                                    }
-
-                                    result.append("&#");
-                                    result.append(Integer.toString(code.intValue()));
-                                    result.append(";");
-                                    i += entityLen + 1;
-                                    continue;
-                                }
-                            }
-                        }
-
-                        if (advanced) {
-                            String sub = s.substring(i);
-                            if (sub.startsWith("&amp;")) {
-                                // result.append("&amp;");
-                                result.append("&#38;");
-                                i += 4;
-                            } else if (sub.startsWith("&apos;")) {
-                                // result.append("&apos;");
-                                result.append("&#39;");
-                                i += 5;
-                            } else if (sub.startsWith("&gt;")) {
-                                // result.append("&gt;");
-                                result.append("&#62;");
-                                i += 3;
-                            } else if (sub.startsWith("&lt;")) {
-                                // result.append("&lt;");
-                                result.append("&#60;");
-                                i += 3;
-                            } else if (sub.startsWith("&quot;")) {
-                                // result.append("&quot;");
-                                result.append("&#34;");
-                                i += 5;
-                            } else if (sub.startsWith("&nbsp;")) {
-                                result.append("&#160;");
-                                i += 5;
-                            } else {
-                                // result.append("&amp;");
-                                result.append("&#38;");
-                            }
-
-                            continue;
-                        } else if (plainText) {
-                            String sub = s.substring(i);
-                            if (sub.startsWith("&amp;")) {
-                                result.append("&");
-                                i += 4;
-                            } else if (sub.startsWith("&#38;")) {
-                                result.append("&");
-                                i += 4;
-                            } else if (sub.startsWith("&apos;")) {
-                                result.append("\'");
-                                i += 5;
-                            } else if (sub.startsWith("&#39;")) {
-                                result.append("\'");
-                                i += 4;
-                            } else if (sub.startsWith("&gt;")) {
-                                result.append(">");
-                                i += 3;
-                            } else if (sub.startsWith("&#62;")) {
-                                result.append(">");
-                                i += 4;
-                            } else if (sub.startsWith("&lt;")) {
-                                result.append("<");
-                                i += 3;
-                            } else if (sub.startsWith("&#60;")) {
-                                result.append("<");
-                                i += 4;
-                            } else if (sub.startsWith("&quot;")) {
-                                result.append("\"");
-                                i += 5;
-                            } else if (sub.startsWith("&#34;")) {
-                                result.append("\"");
-                                i += 4;
-                            } else if (sub.startsWith("&nbsp;")) {
-                                result.append(" ");
-                                i += 5;
-                            } else if (sub.startsWith("&#160;")) {
-                                result.append(" ");
-                                i += 5;
-                            } else {
-                                result.append("&");
-                            }
-
-                            continue;
-                        }
-
-                        result.append("&amp;");
-                    }
-                } else if (plainText) {
-                    result.append(ch);
-                } else {
+                    result.append(s, start, i);
+                    i = escapeAmpersand(s, i, result, advanced, recognizeUnicodeChars, translateSpecialEntities, plainText);
+                    start = i;
+                } else if (!plainText && (ch == '\'' || ch == '>' || ch == '<' || ch == '\"')) {
+                    result.append(s, start, i);
                     if (ch == '\'') {
                         // result.append("&apos;");
                         result.append("&#39;");
@@ -431,15 +304,172 @@ public class Utils {
                     } else if (ch == '<') {
                         // result.append("&lt;");
                         result.append("&#60;");
-                    } else if (ch == '\"') {
+                    } else {
                         // result.append("&quot;");
                         result.append("&#34;");
+                    }
+                    start = ++i;
+                } else {
+                    i++;
+                }
+            }
+            if (start < len) {
+                result.append(s, start, len);
+            }
+        }
+    }
+
+    /**
+     * Escapes the character reference or entity starting with the
+     * <code>&amp;</code> at <code>pos</code>.
+     *
+     * @return the position behind the escaped characters
+     */
+    private static int escapeAmpersand(String s, int pos, Appendable result, boolean advanced, boolean recognizeUnicodeChars,
+            boolean translateSpecialEntities, boolean plainText) throws IOException {
+        int len = s.length();
+        if (recognizeUnicodeChars && (pos < len - 1) && (s.charAt(pos + 1) == '#')) {
+            int unicodeStart = pos + 2;
+            int charIndex = unicodeStart;
+            while (charIndex < len
+                    && (isHexadecimalDigit(s.charAt(charIndex)) || s.charAt(charIndex) == 'x' || s.charAt(charIndex) == 'X')) {
+                charIndex++;
+            }
+            if (charIndex == len || charIndex > unicodeStart) {
+                int code;
+                if (charIndex > unicodeStart && (s.charAt(unicodeStart) == 'x' || s.charAt(unicodeStart) == 'X')) {
+                    code = parseCodePoint(s, unicodeStart + 1, charIndex, 16);
+                } else {
+                    code = parseCodePoint(s, unicodeStart, charIndex, 10);
+                }
+                if (code < 0) {
+                    result.append("&amp;#").append(s, unicodeStart, charIndex).append(';');
+                } else if ("&<>\'\"".indexOf(code) < 0) {
+                    if (code > Character.MAX_VALUE) {
+                        result.append(Character.highSurrogate(code)).append(Character.lowSurrogate(code));
                     } else {
-                        result.append(ch);
+                        result.append((char) code);
                     }
+                    return (charIndex < len && s.charAt(charIndex) == ';') ? charIndex + 1 : charIndex;
+                } else {
+                    result.append("&#").append(s, unicodeStart, charIndex).append(';');
                 }
+                // the character behind the reference is skipped
+                return Math.min(charIndex + 1, len);
+            }
+            result.append("&amp;");
+            return pos + 1;
+        }
+
+        if (translateSpecialEntities) {
+            // the entity name has at most 8 characters
+            int end = Math.min(pos + 10, len);
+            for (int semiIndex = pos + 1; semiIndex < end; semiIndex++) {
+                if (s.charAt(semiIndex) == ';') {
+                    int code = SpecialEntities.get(s, pos + 1, semiIndex);
+                    if (code >= 0) {
+                        if (recognizeUnicodeChars && "&<>\'\"".indexOf(code) < 0) {
+                            result.append((char) code);
+                        } else {
+                            result.append("&#").append(Integer.toString(code)).append(';');
+                        }
+                        return semiIndex + 1;
+                    }
+                    break;
+                }
+            }
+        }
+
+        if (advanced) {
+            if (s.startsWith("&amp;", pos)) {
+                // result.append("&amp;");
+                result.append("&#38;");
+                return pos + 5;
+            } else if (s.startsWith("&apos;", pos)) {
+                // result.append("&apos;");
+                result.append("&#39;");
+                return pos + 6;
+            } else if (s.startsWith("&gt;", pos)) {
+                // result.append("&gt;");
+                result.append("&#62;");
+                return pos + 4;
+            } else if (s.startsWith("&lt;", pos)) {
+                // result.append("&lt;");
+                result.append("&#60;");
+                return pos + 4;
+            } else if (s.startsWith("&quot;", pos)) {
+                // result.append("&quot;");
+                result.append("&#34;");
+                return pos + 6;
+            } else if (s.startsWith("&nbsp;", pos)) {
+                result.append("&#160;");
+                return pos + 6;
+            }
+            // result.append("&amp;");
+            result.append("&#38;");
+            return pos + 1;
+        } else if (plainText) {
+            if (s.startsWith("&amp;", pos) || s.startsWith("&#38;", pos)) {
+                result.append('&');
+                return pos + 5;
+            } else if (s.startsWith("&apos;", pos)) {
+                result.append('\'');
+                return pos + 6;
+            } else if (s.startsWith("&#39;", pos)) {
+                result.append('\'');
+                return pos + 5;
+            } else if (s.startsWith("&gt;", pos)) {
+                result.append('>');
+                return pos + 4;
+            } else if (s.startsWith("&#62;", pos)) {
+                result.append('>');
+                return pos + 5;
+            } else if (s.startsWith("&lt;", pos)) {
+                result.append('<');
+                return pos + 4;
+            } else if (s.startsWith("&#60;", pos)) {
+                result.append('<');
+                return pos + 5;
+            } else if (s.startsWith("&quot;", pos)) {
+                result.append('\"');
+                return pos + 6;
+            } else if (s.startsWith("&#34;", pos)) {
+                result.append('\"');
+                return pos + 5;
+            } else if (s.startsWith("&nbsp;", pos) || s.startsWith("&#160;", pos)) {
+                result.append(' ');
+                return pos + 6;
+            }
+            result.append('&');
+            return pos + 1;
+        }
+
+        result.append("&amp;");
+        return pos + 1;
+    }
+
+    /**
+     * Parses the digits of a numeric character reference.
+     *
+     * @return the code point or <code>-1</code> if the digits aren't a valid
+     *         code point
+     */
+    private static int parseCodePoint(String s, int start, int end, int radix) {
+        if (start == end) {
+            return -1;
+        }
+        int code = 0;
+        for (int i = start; i < end; i++) {
+            int digit = Character.digit(s.charAt(i), radix);
+            if (digit < 0) {
+                return -1;
+            }
+            code = code * radix + digit;
+            if (code > Character.MAX_CODE_POINT) {
+                return -1;
             }
         }
+        return code;
     }
 
     public static String escapeXmlChars(String s) {
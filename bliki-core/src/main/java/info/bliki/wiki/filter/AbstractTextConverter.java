@@ -0,0 +1,147 @@
+package info.bliki.wiki.filter;
+
+import info.bliki.htmlcleaner.BaseToken;
+import info.bliki.htmlcleaner.CommentToken;
+import info.bliki.htmlcleaner.ContentToken;
+import info.bliki.htmlcleaner.DoctypeToken;
+import info.bliki.htmlcleaner.EndTagToken;
+import info.bliki.htmlcleaner.TagNode;
+import info.bliki.wiki.model.Configuration;
+import info.bliki.wiki.model.IWikiModel;
+import info.bliki.wiki.model.ImageFormat;
+import info.bliki.wiki.tags.HTMLTag;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Base class for converters, which walks the node list and calls a callback
+ * for the kind of each node (see {@link BaseToken#getKind()}).
+ *
+ * Subclasses only implement the callbacks for the kinds of nodes they render;
+ * by default tags render their children and all other nodes are ignored.
+ */
+public abstract class AbstractTextConverter implements ITextConverter {
+
+    @Override
+    public void nodesToText(List<?> nodes, Appendable resultBuffer, IWikiModel model) throws IOException {
+        if (nodes != null && !nodes.isEmpty()) {
+            try {
+                int level = model.incrementRecursionLevel();
+
+                if (level > Configuration.RENDERER_RECURSION_LIMIT) {
+                    recursionLimitExceeded(resultBuffer);
+                    return;
+                }
+                for (Object item : nodes) {
+                    if (item != null) {
+                        nodeToText(item, resultBuffer, model);
+                    }
+                }
+            } finally {
+                model.decrementRecursionLevel();
+            }
+        }
+    }
+
+    /**
+     * Convert a single node of a node list by calling the callback for its
+     * kind.
+     */
+    public void nodeToText(Object item, Appendable resultBuffer, IWikiModel model) throws IOException {
+        if (item instanceof BaseToken) {
+            switch (((BaseToken) item).getKind()) {
+                case BaseToken.TEXT:
+                    visitContent((ContentToken) item, resultBuffer, model);
+                    break;
+                case BaseToken.TAG:
+                    visitTag((TagNode) item, resultBuffer, model);
+                    break;
+                case BaseToken.HTML_TAG:
+                    visitHTMLTag((HTMLTag) item, resultBuffer, model);
+                    break;
+                case BaseToken.IMAGE:
+                    TagNode imageTagNode = (TagNode) item;
+                    visitImage(imageTagNode, (ImageFormat) imageTagNode.getObjectAttributes().get("wikiobject"), resultBuffer,
+                            model);
+                    break;
+                case BaseToken.WIKI_OBJECT:
+                    visitWikiObject((TagNode) item, resultBuffer, model);
+                    break;
+                case BaseToken.END_TAG:
+                    visitEndTag((EndTagToken) item, resultBuffer, model);
+                    break;
+                case BaseToken.COMMENT:
+                    visitComment((CommentToken) item, resultBuffer, model);
+                    break;
+                case BaseToken.DOCTYPE:
+                    visitDoctype((DoctypeToken) item, resultBuffer, model);
+                    break;
+                default:
+                    visitObject(item, resultBuffer, model);
+            }
+        } else if (item instanceof List<?>) {
+            nodesToText((List<?>) item, resultBuffer, model);
+        } else {
+            visitObject(item, resultBuffer, model);
+        }
+    }
+
+    protected abstract void visitContent(ContentToken contentToken, Appendable resultBuffer, IWikiModel model)
+            throws IOException;
+
+    /**
+     * Convert a tag which doesn't render itself; renders the children by default.
+     */
+    protected void visitTag(TagNode node, Appendable resultBuffer, IWikiModel model) throws IOException {
+        List<Object> children = node.getChildren();
+        if (children.size() != 0) {
+            nodesToText(children, resultBuffer, model);
+        }
+    }
+
+    /**
+     * Convert a tag which has its own rendering methods; handled like
+     * {@link #visitTag(TagNode, Appendable, IWikiModel)} by default.
+     */
+    protected void visitHTMLTag(HTMLTag node, Appendable resultBuffer, IWikiModel model) throws IOException {
+        visitTag(node, resultBuffer, model);
+    }
+
+    /**
+     * Convert an image; calls
+     * {@link #imageNodeToText(TagNode, ImageFormat, Appendable, IWikiModel)} by
+     * default.
+     */
+    protected void visitImage(TagNode imageTagNode, ImageFormat imageFormat, Appendable resultBuffer, IWikiModel model)
+            throws IOException {
+        imageNodeToText(imageTagNode, imageFormat, resultBuffer, model);
+    }
+
+    /**
+     * Convert a tag which carries a wiki object other than an image; ignored by
+     * default.
+     */
+    protected void visitWikiObject(TagNode node, Appendable resultBuffer, IWikiModel model) throws IOException {
+    }
+
+    protected void visitEndTag(EndTagToken endTag, Appendable resultBuffer, IWikiModel model) throws IOException {
+    }
+
+    protected void visitComment(CommentToken comment, Appendable resultBuffer, IWikiModel model) throws IOException {
+    }
+
+    protected void visitDoctype(DoctypeToken doctype, Appendable resultBuffer, IWikiModel model) throws IOException {
+    }
+
+    /**
+     * Convert a node which isn't a {@link BaseToken}; ignored by default.
+     */
+    protected void visitObject(Object item, Appendable resultBuffer, IWikiModel model) throws IOException {
+    }
+
+    protected void recursionLimitExceeded(Appendable resultBuffer) throws IOException {
+        resultBuffer.append("Error - recursion limit exceeded rendering tags in " + getClass().getSimpleName()
+                + "#nodesToText().");
+    }
+}
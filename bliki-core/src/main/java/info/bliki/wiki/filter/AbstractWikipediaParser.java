@@ -43,6 +43,7 @@ public abstract class AbstractWikipediaParser extends AbstractParser {
                 return "<span class=\"error\">Error - getting content of redirected link: " + parsedPagename.namespace + ":"
                         + parsedPagename.pagename + "<span>";
             }
+            wikiModel.addDependency(parsedPagename);
             try {
                 return wikiModel.getRawWikiContent(parsedPagename, templateParameters);
             } catch (WikiModelContentException e) {
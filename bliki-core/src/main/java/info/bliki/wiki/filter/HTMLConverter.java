@@ -10,7 +10,6 @@ import info.bliki.wiki.model.ImageFormat;
 import info.bliki.wiki.tags.HTMLTag;
 
 import java.io.IOException;
-import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 
@@ -18,7 +17,7 @@ import java.util.Map;
  * A converter which renders the internal tree node representation as HTML text
  *
  */
-public class HTMLConverter implements ITextConverter {
+public class HTMLConverter extends AbstractTextConverter {
     private boolean renderLinks;
 
     public HTMLConverter(boolean renderLinks) {
@@ -30,53 +29,31 @@ public class HTMLConverter implements ITextConverter {
     }
 
     @Override
-    public void nodesToText(List<? extends Object> nodes, Appendable resultBuffer, IWikiModel model) throws IOException {
-        if (nodes != null && !nodes.isEmpty()) {
-            try {
-                int level = model.incrementRecursionLevel();
-
-                if (level > Configuration.RENDERER_RECURSION_LIMIT) {
-                    resultBuffer
-                            .append("<span class=\"error\">Error - recursion limit exceeded rendering tags in HTMLConverter#nodesToText().</span>");
-                    return;
-                }
-                Iterator<? extends Object> childrenIt = nodes.iterator();
-                while (childrenIt.hasNext()) {
-                    Object item = childrenIt.next();
-                    if (item != null) {
-                        if (item instanceof List) {
-                            @SuppressWarnings("unchecked")
-                            final List<Object> list = (List<Object>) item;
-                            nodesToText(list, resultBuffer, model);
-                        } else if (item instanceof ContentToken) {
-                            ContentToken contentToken = (ContentToken) item;
-                            String content = contentToken.getContent();
-                            Utils.escapeXmlToBuffer(content, resultBuffer, true, true, true);
-                        } else if (item instanceof HTMLTag) {
-                            ((HTMLTag) item).renderHTML(this, resultBuffer, model);
-                        } else if (item instanceof TagNode) {
-                            TagNode node = (TagNode) item;
-                            Map<String, Object> map = node.getObjectAttributes();
-                            if (map != null && map.size() > 0) {
-                                Object attValue = map.get("wikiobject");
-                                if (attValue instanceof ImageFormat) {
-                                    imageNodeToText(node, (ImageFormat) attValue, resultBuffer, model);
-                                }
-                            } else {
-                                nodeToHTML(node, resultBuffer, model);
-                            }
-                        } else if (item instanceof EndTagToken) {
-                            EndTagToken node = (EndTagToken) item;
-                            resultBuffer.append('<');
-                            resultBuffer.append(node.getName());
-                            resultBuffer.append(" />");
-                        }
-                    }
-                }
-            } finally {
-                model.decrementRecursionLevel();
-            }
-        }
+    protected void visitContent(ContentToken contentToken, Appendable resultBuffer, IWikiModel model) throws IOException {
+        Utils.escapeXmlToBuffer(contentToken.getContent(), resultBuffer, true, true, true);
+    }
+
+    @Override
+    protected void visitTag(TagNode node, Appendable resultBuffer, IWikiModel model) throws IOException {
+        nodeToHTML(node, resultBuffer, model);
+    }
+
+    @Override
+    protected void visitHTMLTag(HTMLTag node, Appendable resultBuffer, IWikiModel model) throws IOException {
+        node.renderHTML(this, resultBuffer, model);
+    }
+
+    @Override
+    protected void visitEndTag(EndTagToken endTag, Appendable resultBuffer, IWikiModel model) throws IOException {
+        resultBuffer.append('<');
+        resultBuffer.append(endTag.getName());
+        resultBuffer.append(" />");
+    }
+
+    @Override
+    protected void recursionLimitExceeded(Appendable resultBuffer) throws IOException {
+        resultBuffer
+                .append("<span class=\"error\">Error - recursion limit exceeded rendering tags in HTMLConverter#nodesToText().</span>");
     }
 
     protected void nodeToHTML(TagNode node, Appendable resultBuffer, IWikiModel model) throws IOException {
@@ -21,9 +21,18 @@ import info.bliki.wiki.namespaces.INamespace;
 import info.bliki.wiki.namespaces.INamespace.INamespaceValue;
 import info.bliki.wiki.template.Titleparts;
 
+import java.text.DateFormatSymbols;
 import java.text.SimpleDateFormat;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.IsoFields;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.Locale;
+import java.util.TimeZone;
 
 /**
  * See <a href="https://www.mediawiki.org/wiki/Help:Magic_words">Help:Magic
@@ -200,6 +209,17 @@ public class MagicWord {
      */
     protected final static HashMap<String, MagicWordE> MAGIC_WORDS = new HashMap<>(100);
 
+    // immutable formatters for the date related magic words; dates are rendered in
+    // the time zone of the model's date format (see IWikiModel#getSimpleDateFormat())
+    private static final DateTimeFormatter DAY_FORMAT = DateTimeFormatter.ofPattern("d", Locale.ENGLISH);
+    private static final DateTimeFormatter DAY2_FORMAT = DateTimeFormatter.ofPattern("dd", Locale.ENGLISH);
+    private static final DateTimeFormatter MONTH_FORMAT = DateTimeFormatter.ofPattern("MM", Locale.ENGLISH);
+    private static final DateTimeFormatter MONTH1_FORMAT = DateTimeFormatter.ofPattern("M", Locale.ENGLISH);
+    private static final DateTimeFormatter TIME_FORMAT = DateTimeFormatter.ofPattern("HH:mm", Locale.ENGLISH);
+    private static final DateTimeFormatter HOUR_FORMAT = DateTimeFormatter.ofPattern("HH", Locale.ENGLISH);
+    private static final DateTimeFormatter YEAR_FORMAT = DateTimeFormatter.ofPattern("yyyy", Locale.ENGLISH);
+    private static final DateTimeFormatter TIMESTAMP_FORMAT = DateTimeFormatter.ofPattern("yyyyMMddHHmmss", Locale.ENGLISH);
+
     /**
      * Determine if a template name corresponds to a magic word requiring special
      * handling. See <a
@@ -247,7 +267,6 @@ public class MagicWord {
      */
     public static String processMagicWord(MagicWordE magicWord, String parameter, IWikiModel model) {
         assert(magicWord != null);
-        SimpleDateFormat formatter = model.getSimpleDateFormat();
         // TODO: assume this is non-null!
         Date current = model.getCurrentTimeStamp();
         if (current == null) {
@@ -258,97 +277,67 @@ public class MagicWord {
         // local date values
         switch (magicWord) {
             case MAGIC_LOCAL_DAY:
-                formatter.applyPattern("d");
-                return formatter.format(current);
+                return formatDate(DAY_FORMAT, current, model);
             case MAGIC_LOCAL_DAY2:
-                formatter.applyPattern("dd");
-                return formatter.format(current);
+                return formatDate(DAY2_FORMAT, current, model);
             case MAGIC_LOCAL_DAY_NAME:
-                formatter.applyPattern("EEEE");
-                return formatter.format(current);
+                return formatName(DateName.DAY, current, model);
             case MAGIC_LOCAL_DAY_OF_WEEK:
-                formatter.applyPattern("F");
-                return formatter.format(current);
+                return String.valueOf(dayOfWeek(toDateTime(current, model)));
             case MAGIC_LOCAL_MONTH:
-                formatter.applyPattern("MM");
-                return formatter.format(current);
+                return formatDate(MONTH_FORMAT, current, model);
             case MAGIC_LOCAL_MONTH_ABBR:
-                formatter.applyPattern("MMM");
-                return formatter.format(current);
+                return formatName(DateName.MONTH_ABBR, current, model);
             case MAGIC_LOCAL_MONTH_NAME:
-                formatter.applyPattern("MMMM");
-                return formatter.format(current);
+                return formatName(DateName.MONTH, current, model);
             case MAGIC_LOCAL_TIME:
-                formatter.applyPattern("HH:mm");
-                return formatter.format(current);
+                return formatDate(TIME_FORMAT, current, model);
             case MAGIC_LOCAL_HOUR:
-                formatter.applyPattern("HH");
-                return formatter.format(current);
+                return formatDate(HOUR_FORMAT, current, model);
             case MAGIC_LOCAL_WEEK:
-                formatter.applyPattern("w");
-                return formatter.format(current);
+                return String.valueOf(toDateTime(current, model).get(IsoFields.WEEK_OF_WEEK_BASED_YEAR));
             case MAGIC_LOCAL_YEAR:
-                formatter.applyPattern("yyyy");
-                return formatter.format(current);
+                return formatDate(YEAR_FORMAT, current, model);
             case MAGIC_LOCAL_TIMESTAMP:
-                formatter.applyPattern("yyyyMMddHHmmss");
-                return formatter.format(current);
+                return formatDate(TIMESTAMP_FORMAT, current, model);
                 // current date values
 
             case MAGIC_CURRENT_DAY:
-                formatter.applyPattern("d");
-                return formatter.format(current);
+                return formatDate(DAY_FORMAT, current, model);
             case MAGIC_CURRENT_DAY2:
-                formatter.applyPattern("dd");
-                return formatter.format(current);
+                return formatDate(DAY2_FORMAT, current, model);
             case MAGIC_CURRENT_DAY_NAME:
-                formatter.applyPattern("EEEE");
-                return formatter.format(current);
+                return formatName(DateName.DAY, current, model);
             case MAGIC_CURRENT_DAY_OF_WEEK:
-                formatter.applyPattern("F");
-                return formatter.format(current);
+                return String.valueOf(dayOfWeek(toDateTime(current, model)));
             case MAGIC_CURRENT_MONTH:
-                formatter.applyPattern("MM");
-                return formatter.format(current);
+                return formatDate(MONTH_FORMAT, current, model);
             case MAGIC_CURRENT_MONTH_ABBR:
-                formatter.applyPattern("MMM");
-                return formatter.format(current);
+                return formatName(DateName.MONTH_ABBR, current, model);
             case MAGIC_CURRENT_MONTH_NAME:
-                formatter.applyPattern("MMMM");
-                return formatter.format(current);
+                return formatName(DateName.MONTH, current, model);
             case MAGIC_CURRENT_TIME:
-                formatter.applyPattern("HH:mm");
-                return formatter.format(current);
+                return formatDate(TIME_FORMAT, current, model);
             case MAGIC_CURRENT_HOUR:
-                formatter.applyPattern("HH");
-                return formatter.format(current);
+                return formatDate(HOUR_FORMAT, current, model);
             case MAGIC_CURRENT_WEEK:
-                formatter.applyPattern("w");
-                return formatter.format(current);
+                return String.valueOf(toDateTime(current, model).get(IsoFields.WEEK_OF_WEEK_BASED_YEAR));
             case MAGIC_CURRENT_YEAR:
-                formatter.applyPattern("yyyy");
-                return formatter.format(current);
+                return formatDate(YEAR_FORMAT, current, model);
             case MAGIC_CURRENT_TIMESTAMP:
-                formatter.applyPattern("yyyyMMddHHmmss");
-                return formatter.format(current);
+                return formatDate(TIMESTAMP_FORMAT, current, model);
             case MAGIC_REVISION_YEAR:
-                formatter.applyPattern("yyyy");
-                return formatter.format(revision);
+                return formatDate(YEAR_FORMAT, revision, model);
             case MAGIC_REVISION_DAY:
-                formatter.applyPattern("d");
-                return formatter.format(revision);
+                return formatDate(DAY_FORMAT, revision, model);
             case MAGIC_REVISION_DAY2:
-                formatter.applyPattern("dd");
-                return formatter.format(revision);
+                return formatDate(DAY2_FORMAT, revision, model);
             case MAGIC_REVISION_MONTH:
-                formatter.applyPattern("MM");
-                return formatter.format(revision);
+                return formatDate(MONTH_FORMAT, revision, model);
             case MAGIC_REVISION_MONTH1:
-                formatter.applyPattern("M");
-                return formatter.format(revision);
+                return formatDate(MONTH1_FORMAT, revision, model);
             case MAGIC_REVISION_TIMESTAMP:
-                formatter.applyPattern("yyyyMMddHHmmss");
-                return formatter.format(revision);
+                return formatDate(TIMESTAMP_FORMAT, revision, model);
             case MAGIC_REVISION_USER:
                 return "";
             case MAGIC_PAGE_NAME: {
@@ -496,6 +485,74 @@ public class MagicWord {
         }
     }
 
+    /**
+     * Convert the date to the time zone of the model's date format, or to UTC
+     * if the model has no date format.
+     */
+    private static ZonedDateTime toDateTime(Date date, IWikiModel model) {
+        return toDateTime(date, model.getSimpleDateFormat());
+    }
+
+    private static ZonedDateTime toDateTime(Date date, SimpleDateFormat dateFormat) {
+        ZoneId zone = ZoneOffset.UTC;
+        if (dateFormat != null) {
+            TimeZone timeZone = dateFormat.getTimeZone();
+            if (timeZone != null) {
+                zone = timeZone.toZoneId();
+            }
+        }
+        return ZonedDateTime.ofInstant(Instant.ofEpochMilli(date.getTime()), zone);
+    }
+
+    private static String formatDate(DateTimeFormatter formatter, Date date, IWikiModel model) {
+        return formatter.format(toDateTime(date, model));
+    }
+
+    /**
+     * The day and month names, which are formatted with the symbols of the
+     * model's date format.
+     */
+    private enum DateName {
+        DAY("EEEE"), MONTH_ABBR("MMM"), MONTH("MMMM");
+
+        private final DateTimeFormatter formatter;
+
+        DateName(String pattern) {
+            this.formatter = DateTimeFormatter.ofPattern(pattern, Locale.ENGLISH);
+        }
+
+        String format(DateFormatSymbols symbols, ZonedDateTime dateTime) {
+            switch (this) {
+                case DAY:
+                    // the weekdays start with Calendar.SUNDAY == 1
+                    return symbols.getWeekdays()[dayOfWeek(dateTime) + 1];
+                case MONTH_ABBR:
+                    return symbols.getShortMonths()[dateTime.getMonthValue() - 1];
+                default:
+                    return symbols.getMonths()[dateTime.getMonthValue() - 1];
+            }
+        }
+    }
+
+    /**
+     * Format a day or month name with the symbols of the model's date format.
+     */
+    private static String formatName(DateName name, Date date, IWikiModel model) {
+        SimpleDateFormat dateFormat = model.getSimpleDateFormat();
+        ZonedDateTime dateTime = toDateTime(date, dateFormat);
+        if (dateFormat == null) {
+            return name.formatter.format(dateTime);
+        }
+        return name.format(dateFormat.getDateFormatSymbols(), dateTime);
+    }
+
+    /**
+     * Day of the week (Sunday = 0, Saturday = 6).
+     */
+    private static int dayOfWeek(ZonedDateTime dateTime) {
+        return dateTime.getDayOfWeek().getValue() % 7;
+    }
+
     private static String fullUrl(IWikiModel model, String parameter, boolean encode) {
         final String name = getFullpagename(parameter, model);
         return model.getWikiBaseURL()
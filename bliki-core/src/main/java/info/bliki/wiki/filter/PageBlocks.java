@@ -0,0 +1,175 @@
+package info.bliki.wiki.filter;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Split the raw wiki text of a page into top level blocks, which the parser
+ * can parse one after the other with the same result as the whole page.
+ *
+ * A block ends behind a section header line and behind the first of one or
+ * more empty lines, but only outside of templates, tables and tags with an
+ * end tag (e.g. a <code>&lt;div&gt;</code> or a <code>&lt;ref&gt;</code>
+ * which contains empty lines). Comments and tags whose content isn't parsed
+ * (see {@link PageSections}) are never split; a line which only contains a
+ * comment isn't an empty line, because the comment is removed with its line.
+ * Concatenating the blocks returns the original wiki text.
+ *
+ * @see info.bliki.wiki.model.IncrementalRenderer
+ */
+public class PageBlocks {
+
+    private PageBlocks() {
+    }
+
+    /**
+     * Split the raw wiki text of a page into blocks.
+     *
+     * @param rawWikiText
+     *          the wiki text
+     * @return the blocks, an empty list for an empty text
+     */
+    public static List<String> split(String rawWikiText) {
+        List<String> blocks = new ArrayList<>();
+        int length = rawWikiText.length();
+        int blockStart = 0;
+        int templateDepth = 0;
+        int tableDepth = 0;
+        int tagDepth = 0;
+        boolean startOfLine = true;
+        boolean emptyLine = false;
+        int pos = 0;
+        while (pos < length) {
+            char ch = rawWikiText.charAt(pos);
+            if (startOfLine) {
+                int commentPos = skipBlanks(rawWikiText, pos);
+                if (rawWikiText.startsWith("<!--", commentPos)) {
+                    // comments are removed before the text is parsed, a line with
+                    // only a comment is removed with its newline
+                    int commentEnd = PageSections.skipNoWiki(rawWikiText, commentPos);
+                    int lineEnd = skipBlanks(rawWikiText, commentEnd);
+                    if (lineEnd < length && rawWikiText.charAt(lineEnd) == '\n') {
+                        pos = lineEnd + 1;
+                        continue;
+                    }
+                    if (commentPos == pos) {
+                        pos = commentEnd;
+                        continue;
+                    }
+                }
+                boolean nested = templateDepth > 0 || tableDepth > 0 || tagDepth > 0;
+                if (ch == '\n') {
+                    // the first empty line belongs to the block in front of it
+                    if (!nested && !emptyLine && pos > blockStart && pos + 1 < length) {
+                        blocks.add(rawWikiText.substring(blockStart, pos + 1));
+                        blockStart = pos + 1;
+                    }
+                    emptyLine = true;
+                    pos++;
+                    continue;
+                }
+                if (!nested) {
+                    if (ch == '=') {
+                        int lineEnd = rawWikiText.indexOf('\n', pos);
+                        lineEnd = lineEnd < 0 ? length : lineEnd + 1;
+                        if (PageSections.headerLevel(rawWikiText, pos, lineEnd) > 0) {
+                            blocks.add(rawWikiText.substring(blockStart, lineEnd));
+                            blockStart = lineEnd;
+                            pos = lineEnd;
+                            emptyLine = false;
+                            continue;
+                        }
+                    }
+                }
+                emptyLine = false;
+                startOfLine = false;
+
+                // tables may be indented: ":{|"
+                int tablePos = pos;
+                while (tablePos < length && (rawWikiText.charAt(tablePos) == ':' || rawWikiText.charAt(tablePos) == ' ')) {
+                    tablePos++;
+                }
+                if (rawWikiText.startsWith("{|", tablePos)) {
+                    tableDepth++;
+                    pos = tablePos + 2;
+                    continue;
+                }
+                if (tableDepth > 0 && rawWikiText.startsWith("|}", tablePos)) {
+                    tableDepth--;
+                    pos = tablePos + 2;
+                    continue;
+                }
+            }
+
+            switch (ch) {
+            case '\n':
+                startOfLine = true;
+                break;
+            case '{':
+                if (rawWikiText.startsWith("{{", pos)) {
+                    templateDepth++;
+                    pos += 2;
+                    continue;
+                }
+                break;
+            case '}':
+                if (templateDepth > 0 && rawWikiText.startsWith("}}", pos)) {
+                    templateDepth--;
+                    pos += 2;
+                    continue;
+                }
+                break;
+            case '<':
+                int end = PageSections.skipNoWiki(rawWikiText, pos);
+                if (end > pos) {
+                    pos = end;
+                    continue;
+                }
+                tagDepth += tag(rawWikiText, pos, tagDepth);
+                break;
+            default:
+            }
+            pos++;
+        }
+        if (length > blockStart) {
+            blocks.add(rawWikiText.substring(blockStart));
+        }
+        return blocks;
+    }
+
+    private static int skipBlanks(String text, int pos) {
+        while (pos < text.length() && (text.charAt(pos) == ' ' || text.charAt(pos) == '\t')) {
+            pos++;
+        }
+        return pos;
+    }
+
+    /**
+     * Check if a tag starts at <code>pos</code>.
+     *
+     * @return <code>1</code> for a start tag with a matching end tag,
+     *         <code>-1</code> for an end tag if there are open tags and
+     *         <code>0</code> otherwise
+     */
+    private static int tag(String text, int pos, int tagDepth) {
+        boolean endTag = pos + 1 < text.length() && text.charAt(pos + 1) == '/';
+        int nameStart = endTag ? pos + 2 : pos + 1;
+        int nameEnd = nameStart;
+        while (nameEnd < text.length() && Character.isLetterOrDigit(text.charAt(nameEnd))) {
+            nameEnd++;
+        }
+        if (nameEnd == nameStart) {
+            return 0;
+        }
+        String name = text.substring(nameStart, nameEnd).toLowerCase();
+        if (endTag) {
+            return tagDepth > 0 ? -1 : 0;
+        }
+        int tagEnd = text.indexOf('>', nameEnd);
+        if (tagEnd < 0 || text.charAt(tagEnd - 1) == '/') {
+            return 0;
+        }
+        // tags without an end tag (like <br>) don't contain anything
+        return PageSections.indexOfIgnoreCase(text, "</" + name, tagEnd) < 0 ? 0 : 1;
+    }
+}
@@ -0,0 +1,225 @@
+package info.bliki.wiki.filter;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The sections of a wiki page, split at the section header lines
+ * (<code>== Header ==</code>) of the raw wiki text like the section editing
+ * of MediaWiki.
+ *
+ * Section <code>0</code> is the text in front of the first header (the lead,
+ * which may be empty), each other section starts with its header line and
+ * ends in front of the next header line of any level. Concatenating the text
+ * of all sections returns the original wiki text.
+ *
+ * Header lines in comments and in <code>&lt;nowiki&gt;</code>,
+ * <code>&lt;pre&gt;</code>, <code>&lt;source&gt;</code>,
+ * <code>&lt;syntaxhighlight&gt;</code> and <code>&lt;math&gt;</code> tags
+ * and inside of template calls and parser functions (i.e. between
+ * <code>{{</code> and <code>}}</code>) aren't section headers; headers created
+ * by templates aren't recognized.
+ *
+ * @see info.bliki.wiki.model.SectionRenderer
+ */
+public class PageSections {
+    private static final String[] NOWIKI_TAGS = { "nowiki", "pre", "source", "syntaxhighlight", "math" };
+
+    private final List<String> fTexts;
+    private final int[] fLevels;
+
+    private PageSections(List<String> texts, int[] levels) {
+        fTexts = texts;
+        fLevels = levels;
+    }
+
+    /**
+     * Split the raw wiki text of a page into sections.
+     *
+     * @param rawWikiText
+     *          the wiki text
+     * @return the sections, at least the lead section
+     */
+    public static PageSections split(String rawWikiText) {
+        List<String> texts = new ArrayList<>();
+        List<Integer> levels = new ArrayList<>();
+        levels.add(0);
+        int sectionStart = 0;
+        int length = rawWikiText.length();
+        int pos = 0;
+        int templateDepth = 0;
+        boolean startOfLine = true;
+        while (pos < length) {
+            char ch = rawWikiText.charAt(pos);
+            if (startOfLine && ch == '=' && templateDepth == 0) {
+                int lineEnd = rawWikiText.indexOf('\n', pos);
+                if (lineEnd < 0) {
+                    lineEnd = length;
+                }
+                int level = headerLevel(rawWikiText, pos, lineEnd);
+                if (level > 0) {
+                    texts.add(rawWikiText.substring(sectionStart, pos));
+                    levels.add(level);
+                    sectionStart = pos;
+                }
+                pos = lineEnd;
+                continue;
+            }
+            if (ch == '<') {
+                int end = skipNoWiki(rawWikiText, pos);
+                if (end > pos) {
+                    pos = end;
+                    startOfLine = false;
+                    continue;
+                }
+            } else if (ch == '{' && rawWikiText.startsWith("{{", pos)) {
+                templateDepth++;
+                pos += 2;
+                startOfLine = false;
+                continue;
+            } else if (ch == '}' && templateDepth > 0 && rawWikiText.startsWith("}}", pos)) {
+                templateDepth--;
+                pos += 2;
+                startOfLine = false;
+                continue;
+            }
+            startOfLine = ch == '\n';
+            pos++;
+        }
+        texts.add(rawWikiText.substring(sectionStart));
+
+        int[] levelArray = new int[levels.size()];
+        for (int i = 0; i < levelArray.length; i++) {
+            levelArray[i] = levels.get(i);
+        }
+        return new PageSections(Collections.unmodifiableList(texts), levelArray);
+    }
+
+    /**
+     * Get the header level of the line like
+     * {@link WikipediaParser} does when parsing section headers.
+     *
+     * @return <code>0</code> if the line isn't a header line
+     */
+    static int headerLevel(String text, int lineStart, int lineEnd) {
+        int end = lineEnd - 1;
+        while (end > lineStart && Character.isWhitespace(text.charAt(end))) {
+            end--;
+        }
+        int start = lineStart;
+        int level = 0;
+        while (start < end && text.charAt(start) == '=' && text.charAt(end) == '=') {
+            level++;
+            start++;
+            end--;
+        }
+        return level > 6 ? 6 : level;
+    }
+
+    /**
+     * Skip a comment or a tag whose content isn't parsed.
+     *
+     * @return the position behind the comment or the end tag, or
+     *         <code>pos</code> if there is no such comment or tag at
+     *         <code>pos</code>
+     */
+    static int skipNoWiki(String text, int pos) {
+        if (text.startsWith("<!--", pos)) {
+            int end = text.indexOf("-->", pos + 4);
+            return end < 0 ? text.length() : end + 3;
+        }
+        for (String tag : NOWIKI_TAGS) {
+            int nameEnd = pos + 1 + tag.length();
+            if (text.regionMatches(true, pos + 1, tag, 0, tag.length()) && nameEnd < text.length()) {
+                char ch = text.charAt(nameEnd);
+                if (ch != '>' && ch != '/' && !Character.isWhitespace(ch)) {
+                    continue;
+                }
+                int tagEnd = text.indexOf('>', nameEnd);
+                if (tagEnd < 0) {
+                    return pos;
+                }
+                if (text.charAt(tagEnd - 1) == '/') {
+                    // empty tag
+                    return tagEnd + 1;
+                }
+                int endTag = indexOfIgnoreCase(text, "</" + tag, tagEnd + 1);
+                if (endTag < 0) {
+                    return text.length();
+                }
+                int endTagEnd = text.indexOf('>', endTag);
+                return endTagEnd < 0 ? text.length() : endTagEnd + 1;
+            }
+        }
+        return pos;
+    }
+
+    static int indexOfIgnoreCase(String text, String str, int fromIndex) {
+        for (int i = fromIndex; i <= text.length() - str.length(); i++) {
+            if (text.regionMatches(true, i, str, 0, str.length())) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @return the number of sections including the lead section
+     */
+    public int size() {
+        return fTexts.size();
+    }
+
+    /**
+     * @param section
+     *          the section number, <code>0</code> for the lead
+     * @return the wiki text of the section, starting with its header line
+     */
+    public String getText(int section) {
+        return fTexts.get(section);
+    }
+
+    /**
+     * @param section
+     *          the section number, <code>0</code> for the lead
+     * @return the header level, <code>0</code> for the lead
+     */
+    public int getLevel(int section) {
+        return fLevels[section];
+    }
+
+    /**
+     * @return the wiki text of all sections
+     */
+    public List<String> getTexts() {
+        return fTexts;
+    }
+
+    /**
+     * Create the sections of the page after replacing the text of one
+     * section, for example after the section was edited.
+     *
+     * @param section
+     *          the section number, <code>0</code> for the lead
+     * @param text
+     *          the new wiki text of the section
+     * @return the new sections
+     */
+    public PageSections replace(int section, String text) {
+        StringBuilder buf = new StringBuilder();
+        for (int i = 0; i < fTexts.size(); i++) {
+            buf.append(i == section ? text : fTexts.get(i));
+        }
+        return split(buf.toString());
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder buf = new StringBuilder();
+        for (String text : fTexts) {
+            buf.append(text);
+        }
+        return buf.toString();
+    }
+}
@@ -1,11 +1,11 @@
 package info.bliki.wiki.filter;
 
+import info.bliki.htmlcleaner.ContentToken;
 import info.bliki.htmlcleaner.TagNode;
 import info.bliki.wiki.model.IWikiModel;
 import info.bliki.wiki.model.ImageFormat;
 
 import java.io.IOException;
-import java.util.List;
 
 import static info.bliki.wiki.model.Configuration.RENDERER_RECURSION_LIMIT;
 
@@ -13,7 +13,7 @@ import static info.bliki.wiki.model.Configuration.RENDERER_RECURSION_LIMIT;
  * A converter which renders the internal tree node representation as plain text
  * without HTML tags and images
  */
-public class PlainTextConverter implements ITextConverter {
+public class PlainTextConverter extends AbstractTextConverter {
     private boolean renderLinks;
 
     public PlainTextConverter(boolean renderLinks) {
@@ -24,29 +24,38 @@ public class PlainTextConverter implements ITextConverter {
     }
 
     @Override
-    public void nodesToText(List<?> nodes, Appendable resultBuffer, IWikiModel model) throws IOException {
-        assert (model != null);
-        if (nodes != null && !nodes.isEmpty()) {
-            try {
-                int level = model.incrementRecursionLevel();
-
-                if (level > RENDERER_RECURSION_LIMIT) {
-                    resultBuffer.append("Error - recursion limit exceeded rendering tags in PlainTextConverter#nodesToText().");
-                    return;
-                }
-                for (Object item : nodes) {
-                    if (item instanceof List<?>) {
-                        nodesToText((List<?>) item, resultBuffer, model);
-                    } else if (item instanceof PlainTextConvertable) {
-                        ((PlainTextConvertable) item).renderPlainText(this, resultBuffer, model);
-                    }
-                }
-            } finally {
-                model.decrementRecursionLevel();
-            }
+    protected void visitContent(ContentToken contentToken, Appendable resultBuffer, IWikiModel model) throws IOException {
+        contentToken.renderPlainText(this, resultBuffer, model);
+    }
+
+    @Override
+    protected void visitTag(TagNode node, Appendable resultBuffer, IWikiModel model) throws IOException {
+        node.renderPlainText(this, resultBuffer, model);
+    }
+
+    @Override
+    protected void visitImage(TagNode imageTagNode, ImageFormat imageFormat, Appendable resultBuffer, IWikiModel model)
+            throws IOException {
+        imageTagNode.renderPlainText(this, resultBuffer, model);
+    }
+
+    @Override
+    protected void visitWikiObject(TagNode node, Appendable resultBuffer, IWikiModel model) throws IOException {
+        node.renderPlainText(this, resultBuffer, model);
+    }
+
+    @Override
+    protected void visitObject(Object item, Appendable resultBuffer, IWikiModel model) throws IOException {
+        if (item instanceof PlainTextConvertable) {
+            ((PlainTextConvertable) item).renderPlainText(this, resultBuffer, model);
         }
     }
 
+    @Override
+    protected void recursionLimitExceeded(Appendable resultBuffer) throws IOException {
+        resultBuffer.append("Error - recursion limit exceeded rendering tags in PlainTextConverter#nodesToText().");
+    }
+
     @Override
     public boolean renderLinks() {
         return renderLinks;
@@ -16,6 +16,22 @@ public class SectionHeader extends StringPair {
         this.fEndPosition = endPosition;
     }
 
+    /**
+     * @return the level of the header, i.e. the number of <code>=</code>
+     *         characters
+     */
+    public int getLevel() {
+        return fLevel;
+    }
+
+    public int getStartPosition() {
+        return fStartPosition;
+    }
+
+    public int getEndPosition() {
+        return fEndPosition;
+    }
+
     @Override
     public int hashCode() {
         final int prime = 31;
@@ -12,6 +12,7 @@ import javax.annotation.Nullable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import info.bliki.extensions.scribunto.template.ParallelInvoker;
 import info.bliki.wiki.model.Configuration;
 import info.bliki.wiki.model.IWikiModel;
 import info.bliki.wiki.tags.TemplateTag;
@@ -184,7 +185,12 @@ public class TemplateParser extends AbstractParser {
             // process <math>, <source>, <pre> tags
             parser.runPreprocessParser(sb, true);
 
-            parser = new TemplateParser(sb.toString(), parseOnlySignature, renderTemplate);
+            final String preprocessed = sb.toString();
+            final ParallelInvoker parallelInvoker = wikiModel.getParallelInvoker();
+            if (parallelInvoker != null) {
+                parallelInvoker.prefetch(preprocessed, wikiModel);
+            }
+            parser = new TemplateParser(preprocessed, parseOnlySignature, renderTemplate);
             parser.setModel(wikiModel);
             sb = new StringBuilder(sb.length());
             parser.runParser(sb);
@@ -737,6 +743,11 @@ public class TemplateParser extends AbstractParser {
             }
             ITemplateFunction templateFunction = fWikiModel.getTemplateFunction(function);
             if (templateFunction != null) {
+                if (!fWikiModel.getLimitReport().countNode()) {
+                    fCurrentPosition = endPosition;
+                    writer.append("<span class=\"error\">Node-count limit exceeded</span>");
+                    return true;
+                }
                 // if (function.charAt(0) == '#') {
                 // #if:, #ifeq:,...
                 parts.set(0, templateName.substring(currOffset));
@@ -893,12 +904,35 @@ public class TemplateParser extends AbstractParser {
      */
     public static void createSingleParameter(String srcString, IWikiModel wikiModel, Map<String, String> namedParameterMap,
             List<String> unnamedParams) {
+        final String[] parameter = splitSingleParameter(srcString);
+        if (parameter != null) {
+            try {
+                final String value = expandParameterValue(parameter[1], parameter[0] != null, wikiModel);
+                if (parameter[0] != null) {
+                    namedParameterMap.put(parameter[0], value);
+                } else {
+                    unnamedParams.add(value);
+                }
+            } catch (IOException ignored) {
+            }
+        }
+    }
+
+    /**
+     * Split a single template parameter into its name and its unexpanded
+     * value.
+     *
+     * @param srcString
+     * @return the trimmed name (or <code>null</code> for an unnamed parameter)
+     *         and the value
+     * @see #createSingleParameter(String, IWikiModel, Map, List)
+     */
+    public static String[] splitSingleParameter(String srcString) {
         int currOffset = 0;
         char[] src = srcString.toCharArray();
         int endOffset = srcString.length();
         char ch;
         String parameter = null;
-        String value;
         boolean equalCharParsed = false;
 
         int lastOffset = currOffset;
@@ -942,31 +976,37 @@ public class TemplateParser extends AbstractParser {
 
         } catch (IndexOutOfBoundsException e) {
 
-        } finally {
-            if (currOffset >= lastOffset) {
-                try {
-                    value = srcString.substring(lastOffset, currOffset);
-                    boolean parameterParsingMode = wikiModel.isParameterParsingMode();
-                    try {
-                        wikiModel.setParameterParsingMode(true);
-                        if (parameter != null) {
-                            StringBuilder buf = new StringBuilder(value.length());
-                            TemplateParser.parseRecursive(value, wikiModel, buf, false, false);
-                            value = Util.trimNewlineRight(buf.toString());
-                            namedParameterMap.put(parameter, value);
-                        } else {
-                            // whitespace characters are not automatically stripped from the
-                            // start and end of unnamed parameters!
-                            StringBuilder buf = new StringBuilder(value.length());
-                            TemplateParser.parseRecursive(value, wikiModel, buf, false, false);
-                            unnamedParams.add(buf.toString());
-                        }
-                    } finally {
-                        wikiModel.setParameterParsingMode(parameterParsingMode);
-                    }
-                } catch (IOException ignored) {
-                }
+        }
+        if (currOffset >= lastOffset) {
+            return new String[] { parameter, srcString.substring(lastOffset, currOffset) };
+        }
+        return null;
+    }
+
+    /**
+     * Expand the value of a single template parameter.
+     *
+     * @param value
+     *          the unexpanded value
+     * @param named
+     *          whether the parameter is named; only the values of named
+     *          parameters are trimmed
+     * @see #splitSingleParameter(String)
+     */
+    public static String expandParameterValue(String value, boolean named, IWikiModel wikiModel) throws IOException {
+        boolean parameterParsingMode = wikiModel.isParameterParsingMode();
+        try {
+            wikiModel.setParameterParsingMode(true);
+            StringBuilder buf = new StringBuilder(value.length());
+            TemplateParser.parseRecursive(value, wikiModel, buf, false, false);
+            if (named) {
+                return Util.trimNewlineRight(buf.toString());
             }
+            // whitespace characters are not automatically stripped from the
+            // start and end of unnamed parameters!
+            return buf.toString();
+        } finally {
+            wikiModel.setParameterParsingMode(parameterParsingMode);
         }
     }
 
@@ -0,0 +1,207 @@
+package info.bliki.wiki.filter;
+
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * An <code>Appendable</code> which encodes the appended characters as UTF-8
+ * into a byte buffer and writes the full buffer to an
+ * <code>OutputStream</code> or a <code>WritableByteChannel</code> (e.g. a
+ * <code>FileChannel</code>).
+ *
+ * A converter can render a page directly into this appendable (see
+ * {@link info.bliki.wiki.model.IWikiModel#render(ITextConverter, String, Appendable, boolean, boolean)}),
+ * so the page isn't copied into a string and encoded again by a
+ * <code>Writer</code>. Unpaired surrogates are encoded as <code>?</code> like
+ * <code>String#getBytes()</code> does. Like a <code>Writer</code> this class
+ * isn't thread-safe.
+ */
+public class Utf8Appendable implements Appendable, Flushable, Closeable {
+    public static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+
+    private final OutputStream fOutputStream;
+    private final WritableByteChannel fChannel;
+    private final byte[] fBuffer;
+    private final ByteBuffer fByteBuffer;
+    private int fPosition;
+    /**
+     * A high surrogate at the end of the appended characters, which is encoded
+     * with the next character
+     */
+    private char fHighSurrogate;
+
+    public Utf8Appendable(OutputStream outputStream) {
+        this(outputStream, null, DEFAULT_BUFFER_SIZE);
+    }
+
+    public Utf8Appendable(OutputStream outputStream, int bufferSize) {
+        this(outputStream, null, bufferSize);
+    }
+
+    public Utf8Appendable(WritableByteChannel channel) {
+        this(null, channel, DEFAULT_BUFFER_SIZE);
+    }
+
+    public Utf8Appendable(WritableByteChannel channel, int bufferSize) {
+        this(null, channel, bufferSize);
+    }
+
+    private Utf8Appendable(OutputStream outputStream, WritableByteChannel channel, int bufferSize) {
+        // a character is encoded with at most 4 bytes
+        if (bufferSize < 4) {
+            throw new IllegalArgumentException("bufferSize must be at least 4: " + bufferSize);
+        }
+        fOutputStream = outputStream;
+        fChannel = channel;
+        fBuffer = new byte[bufferSize];
+        fByteBuffer = channel != null ? ByteBuffer.wrap(fBuffer) : null;
+    }
+
+    @Override
+    public Utf8Appendable append(CharSequence csq) throws IOException {
+        if (csq == null) {
+            csq = "null";
+        }
+        return append(csq, 0, csq.length());
+    }
+
+    @Override
+    public Utf8Appendable append(CharSequence csq, int start, int end) throws IOException {
+        if (csq == null) {
+            csq = "null";
+        }
+        if (start < 0 || start > end || end > csq.length()) {
+            throw new IndexOutOfBoundsException("start " + start + ", end " + end + ", length " + csq.length());
+        }
+        int i = start;
+        while (fHighSurrogate != 0 && i < end) {
+            append(csq.charAt(i++));
+        }
+        final byte[] buffer = fBuffer;
+        while (i < end) {
+            // ASCII characters are copied without further checks until the buffer is full
+            int limit = Math.min(end, i + buffer.length - fPosition);
+            int position = fPosition;
+            char ch;
+            while (i < limit && (ch = csq.charAt(i)) < 0x80) {
+                buffer[position++] = (byte) ch;
+                i++;
+            }
+            fPosition = position;
+            if (i < end) {
+                ch = csq.charAt(i);
+                if (ch < 0x80) {
+                    // the buffer is full
+                    writeBuffer();
+                } else if (Character.isHighSurrogate(ch) && i + 1 < end) {
+                    encode(ch, csq.charAt(i + 1));
+                    i += Character.isLowSurrogate(csq.charAt(i + 1)) ? 2 : 1;
+                } else {
+                    append(ch);
+                    i++;
+                }
+            }
+        }
+        return this;
+    }
+
+    @Override
+    public Utf8Appendable append(char ch) throws IOException {
+        if (fHighSurrogate != 0) {
+            char highSurrogate = fHighSurrogate;
+            fHighSurrogate = 0;
+            encode(highSurrogate, ch);
+            if (Character.isLowSurrogate(ch)) {
+                return this;
+            }
+        }
+        if (Character.isHighSurrogate(ch)) {
+            fHighSurrogate = ch;
+        } else {
+            encode(ch, (char) 0);
+        }
+        return this;
+    }
+
+    /**
+     * Encode a character or a surrogate pair. If <code>ch</code> is a high
+     * surrogate without a matching low surrogate, only <code>?</code> is
+     * encoded.
+     */
+    private void encode(char ch, char next) throws IOException {
+        if (fBuffer.length - fPosition < 4) {
+            writeBuffer();
+        }
+        final byte[] buffer = fBuffer;
+        if (ch < 0x80) {
+            buffer[fPosition++] = (byte) ch;
+        } else if (ch < 0x800) {
+            buffer[fPosition++] = (byte) (0xC0 | (ch >> 6));
+            buffer[fPosition++] = (byte) (0x80 | (ch & 0x3F));
+        } else if (Character.isSurrogate(ch)) {
+            if (Character.isHighSurrogate(ch) && Character.isLowSurrogate(next)) {
+                int codePoint = Character.toCodePoint(ch, next);
+                buffer[fPosition++] = (byte) (0xF0 | (codePoint >> 18));
+                buffer[fPosition++] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+                buffer[fPosition++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+                buffer[fPosition++] = (byte) (0x80 | (codePoint & 0x3F));
+            } else {
+                buffer[fPosition++] = '?';
+            }
+        } else {
+            buffer[fPosition++] = (byte) (0xE0 | (ch >> 12));
+            buffer[fPosition++] = (byte) (0x80 | ((ch >> 6) & 0x3F));
+            buffer[fPosition++] = (byte) (0x80 | (ch & 0x3F));
+        }
+    }
+
+    private void writeBuffer() throws IOException {
+        if (fPosition > 0) {
+            if (fChannel != null) {
+                fByteBuffer.clear().limit(fPosition);
+                while (fByteBuffer.hasRemaining()) {
+                    fChannel.write(fByteBuffer);
+                }
+            } else {
+                fOutputStream.write(fBuffer, 0, fPosition);
+            }
+            fPosition = 0;
+        }
+    }
+
+    /**
+     * Write the encoded characters. A high surrogate at the end of the
+     * appended characters is kept until the next character is appended.
+     */
+    @Override
+    public void flush() throws IOException {
+        writeBuffer();
+        if (fOutputStream != null) {
+            fOutputStream.flush();
+        }
+    }
+
+    /**
+     * Write the encoded characters and close the output stream or channel.
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            if (fHighSurrogate != 0) {
+                fHighSurrogate = 0;
+                encode('?', (char) 0);
+            }
+            writeBuffer();
+        } finally {
+            if (fChannel != null) {
+                fChannel.close();
+            } else {
+                fOutputStream.close();
+            }
+        }
+    }
+}
@@ -3,6 +3,9 @@ package info.bliki.wiki.filter;
 import info.bliki.htmlcleaner.TagNode;
 import info.bliki.wiki.tags.util.NodeAttribute;
 
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.List;
 import java.util.Map;
 import java.util.TreeMap;
@@ -229,4 +232,24 @@ public class Util {
         }
         return -1;
     }
+
+    /**
+     * @return the SHA-256 fingerprint of the UTF-8 encoded text as lower case
+     *         hex string
+     */
+    public static String sha256(String text) {
+        final MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            // every Java platform has to support SHA-256
+            throw new IllegalStateException(e);
+        }
+        byte[] hash = digest.digest(text.getBytes(StandardCharsets.UTF_8));
+        StringBuilder buf = new StringBuilder(2 * hash.length);
+        for (byte b : hash) {
+            buf.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return buf.toString();
+    }
 }
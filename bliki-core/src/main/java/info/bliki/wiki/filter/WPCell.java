@@ -2,7 +2,6 @@ package info.bliki.wiki.filter;
 
 import info.bliki.htmlcleaner.BaseToken;
 import info.bliki.htmlcleaner.TagNode;
-import info.bliki.htmlcleaner.Utils;
 import info.bliki.wiki.model.IWikiModel;
 import info.bliki.wiki.tags.HTMLTag;
 import info.bliki.wiki.tags.util.TagStack;
@@ -86,18 +85,18 @@ public class WPCell {
     public void createTagStack(WPTable parent, char[] src, IWikiModel wikiModel, int endPos) {
         fEndPos = endPos;
         if (fEndPos > fStartPos) {
-            String content;
-            if (fAttributesStartPos == (-1) || fAttributesStartPos >= fEndPos) {
-                content = new String(src, fStartPos, fEndPos - fStartPos);
-            } else {
-                content = new String(src, fAttributesStartPos + 1, fEndPos - fAttributesStartPos - 1);
+            int start = fStartPos;
+            if (fAttributesStartPos != (-1) && fAttributesStartPos < fEndPos) {
+                start = fAttributesStartPos + 1;
                 String params = new String(src, fStartPos, fAttributesStartPos - fStartPos);
                 fAttributes = Util.getAttributes(params);
             }
-            String rawWikiText = Utils.ltrimNewline(content);
-
-            AbstractWikipediaParser parser = wikiModel.createNewInstance(rawWikiText);
-            fStack = parser.parseRecursiveInternal(wikiModel, true, false);
+            // trim the whitespace on the left side, but stop at the first newline
+            // (see Utils#ltrimNewline())
+            while (start < fEndPos && src[start] != '\n' && Character.isWhitespace(src[start])) {
+                start++;
+            }
+            fStack = WikipediaParser.parseRegion(src, start, fEndPos, wikiModel, false);
             List<BaseToken> list = fStack.getNodeList();
             for (int i = 0; i < list.size(); i++) {
                 if (list.get(i) instanceof TagNode) {
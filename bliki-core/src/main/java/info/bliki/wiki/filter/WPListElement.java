@@ -41,9 +41,7 @@ public class WPListElement {
     public void createTagStack(char[] src, IWikiModel wikiModel, int endPos) {
         fEndPos = endPos;
         if (fEndPos > fStartPos) {
-            String rawWikiText = new String(src, fStartPos, fEndPos - fStartPos);
-            AbstractWikipediaParser parser = wikiModel.createNewInstance(rawWikiText);
-            fStack = parser.parseRecursiveInternal(wikiModel, true, true);
+            fStack = WikipediaParser.parseRegion(src, fStartPos, fEndPos, wikiModel, true);
         }
     }
 
@@ -1428,6 +1428,71 @@ public class WikipediaParser extends AbstractWikipediaParser {
                 noTOC);
     }
 
+    /**
+     * Parse a region of the source text, i.e. a table cell or a list item, like
+     * {@link #parseRecursive(String, IWikiModel, boolean, boolean)} with a local
+     * stack. This is only a shortcut for plain text: a region which contains
+     * only plain text is appended as a single content token, without creating
+     * a new parser for it. Any other region is copied and parsed by a new
+     * parser, since the scanner detects the end of the text by the bounds of
+     * its source.
+     *
+     * @param src
+     *            the source text
+     * @param start
+     *            the start offset of the region
+     * @param end
+     *            the end offset of the region
+     * @return HTML tags from the parsing process
+     */
+    public static TagStack parseRegion(char[] src, int start, int end,
+            IWikiModel wikiModel, boolean noTOC) {
+        // on the first level the parser would create a paragraph
+        int level = wikiModel.getRecursionLevel();
+        if (level > 0 && level < Configuration.PARSER_RECURSION_LIMIT
+                && isPlainText(src, start, end, wikiModel)) {
+            TagStack localStack = new TagStack();
+            localStack.append(new ContentToken(new String(src, start, end - start)));
+            return localStack;
+        }
+        return parseRecursive(new String(src, start, end - start), wikiModel,
+                true, noTOC);
+    }
+
+    /**
+     * Characters besides letters and digits which aren't parsed in a region
+     */
+    private static final String PLAIN_TEXT_CHARS = " .,%()/+?!\"";
+
+    /**
+     * Check if the region contains only text which the parser would copy
+     * into a single content token (i.e. no markup, no line starting with a
+     * space, no trailing empty lines, no ISBN links or CamelCase links).
+     */
+    private static boolean isPlainText(char[] src, int start, int end,
+            IWikiModel wikiModel) {
+        if (start >= end || src[start] == ' '
+                || wikiModel.isCamelCaseEnabled()) {
+            return false;
+        }
+        for (int i = start; i < end; i++) {
+            char ch = src[i];
+            if (ch == '\n') {
+                // only a single trailing newline
+                return i == end - 1;
+            }
+            if (Character.isLetterOrDigit(ch)) {
+                if ((ch == 'i' || ch == 'I') && i + 4 < end
+                        && String.valueOf(src, i, 5).equalsIgnoreCase("isbn ")) {
+                    return false;
+                }
+            } else if (PLAIN_TEXT_CHARS.indexOf(ch) < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
     /**
      * Determine if the currently parsed wiki text is a template text.
      *
@@ -2,6 +2,10 @@ package info.bliki.wiki.model;
 
 import info.bliki.extensions.scribunto.engine.ScribuntoEngine;
 import info.bliki.extensions.scribunto.engine.lua.CompiledScriptCache;
+import info.bliki.extensions.scribunto.engine.lua.LuaLimits;
+import info.bliki.extensions.scribunto.engine.lua.LuaProfiler;
+import info.bliki.extensions.scribunto.engine.lua.ModuleCompiler;
+import info.bliki.extensions.scribunto.template.ParallelInvoker;
 import info.bliki.extensions.scribunto.engine.lua.ScribuntoLuaEngine;
 import info.bliki.extensions.scribunto.template.Frame;
 import info.bliki.htmlcleaner.*;
@@ -15,6 +19,7 @@ import info.bliki.wiki.tags.HTMLBlockTag;
 import info.bliki.wiki.tags.HTMLTag;
 import info.bliki.wiki.tags.TableOfContentTag;
 import info.bliki.wiki.tags.WPATag;
+import info.bliki.wiki.tags.code.SourceCodeCache;
 import info.bliki.wiki.tags.code.SourceCodeFormatter;
 import info.bliki.wiki.tags.util.TagStack;
 import info.bliki.wiki.template.ITemplateFunction;
@@ -40,6 +45,12 @@ public abstract class AbstractWikiModel implements IWikiModel, IContext {
     private static int fNextNumberCounter = 0;
     protected ArrayList<Reference> fReferences;
     protected Map<String, Integer> fReferenceNames;
+    /**
+     * The references and the reference names of the groups other than the
+     * default group
+     */
+    private Map<String, ArrayList<Reference>> fGroupReferences;
+    private Map<String, Map<String, Integer>> fGroupReferenceNames;
     protected int fRecursionLevel;
     protected int fTemplateRecursionCount;
     protected TagStack fTagStack;
@@ -53,6 +64,13 @@ public abstract class AbstractWikiModel implements IWikiModel, IContext {
     protected String fNamespaceName = "";
 
     protected int fSectionCounter;
+
+    /**
+     * The section counter at the start of a page, see
+     * {@link #renderSection(ITextConverter, String, int)}
+     */
+    private int fFirstSectionCounter;
+
     protected boolean fTemplateTopic;
     protected boolean fParameterParsingMode;
     protected boolean fNoToc;
@@ -63,13 +81,18 @@ public abstract class AbstractWikiModel implements IWikiModel, IContext {
 
     private TableOfContentTag fTableOfContentTag = null;
     private SimpleDateFormat fFormatter = null;
-    private List<Object> fTableOfContent = null;
 
     /**
      * Contains all anchor strings to create unique anchors
      */
     protected HashSet<String> fToCSet;
 
+    /**
+     * The next number for the anchors in {@link #fToCSet} which are used more
+     * than once, so the numbers already used aren't tested again
+     */
+    private Map<String, Integer> fToCAnchorNumbers;
+
     /**
      * Map an attribute name to its value(s). These values are set by outside
      * code via st.setAttribute(name, value). StringTemplate is like self in
@@ -93,8 +116,20 @@ public abstract class AbstractWikiModel implements IWikiModel, IContext {
      */
     private Map<Class<?>, Object> attributeRenderers;
     private Frame fFrame;
+
+    private LimitReport fLimitReport;
+
+    private int fRenderDepth;
     private final InterWikiMap fInterWikiMap;
 
+    /**
+     * The pages, and the magic words and parser functions, which are used while
+     * an {@link IncrementalRenderer} expands a block; <code>null</code> if they
+     * aren't recorded
+     */
+    private Set<String> fUsedPages;
+    private Set<String> fUsedFunctions;
+
     public AbstractWikiModel() {
         this(new Configuration());
     }
@@ -155,6 +190,27 @@ public abstract class AbstractWikiModel implements IWikiModel, IContext {
     public void addInclude(String pageName) {
     }
 
+    @Override
+    public void addDependency(ParsedPageName parsedPagename) {
+        if (fUsedPages != null && parsedPagename.magicWord == null) {
+            fUsedPages.add(parsedPagename.namespace.isType(NamespaceCode.TEMPLATE_NAMESPACE_KEY) ? parsedPagename.pagename
+                    : parsedPagename.fullPagename());
+        }
+    }
+
+    /**
+     * Record the pages, magic words and parser functions which are used until
+     * this method is called with <code>null</code> arguments (see
+     * {@link IncrementalRenderer}). The names of templates are recorded without
+     * the template namespace. The template calls cache isn't used while the
+     * pages are recorded, since the cached calls don't read the pages they
+     * depend on.
+     */
+    void recordDependencies(Set<String> usedPages, Set<String> usedFunctions) {
+        fUsedPages = usedPages;
+        fUsedFunctions = usedFunctions;
+    }
+
     @Override
     public ITemplateFunction addTemplateFunction(String key,
             ITemplateFunction value) {
@@ -168,17 +224,48 @@ public abstract class AbstractWikiModel implements IWikiModel, IContext {
 
     @Override
     public String[] addToReferences(String reference, String nameAttribute) {
+        return addToReferences(reference, nameAttribute, null);
+    }
+
+    @Override
+    public String[] addToReferences(String reference, String nameAttribute, String group) {
         String[] result = new String[2];
         result[1] = null;
-        if (fReferences == null) {
-            fReferences = new ArrayList<>();
-            fReferenceNames = new HashMap<>();
+        if (reference == null) {
+            reference = "";
+        }
+        ArrayList<Reference> references;
+        Map<String, Integer> referenceNames;
+        if (group == null || group.length() == 0) {
+            group = "";
+            if (fReferences == null) {
+                fReferences = new ArrayList<>();
+                fReferenceNames = new HashMap<>();
+            }
+            references = fReferences;
+            referenceNames = fReferenceNames;
+        } else {
+            if (fGroupReferences == null) {
+                fGroupReferences = new HashMap<>();
+                fGroupReferenceNames = new HashMap<>();
+            }
+            references = fGroupReferences.get(group);
+            if (references == null) {
+                references = new ArrayList<>();
+                fGroupReferences.put(group, references);
+                fGroupReferenceNames.put(group, new HashMap<String, Integer>());
+            }
+            referenceNames = fGroupReferenceNames.get(group);
         }
         if (nameAttribute != null) {
-            Integer index = fReferenceNames.get(nameAttribute);
+            Integer index = referenceNames.get(nameAttribute);
             if (index != null) {
                 result[0] = index.toString();
-                Reference ref = fReferences.get(index - 1);
+                Reference ref = references.get(index - 1);
+                if (ref.getRefString().length() == 0) {
+                    // the text of a named reference may be defined by a later ref-Tag
+                    ref.setRefString(reference);
+                }
                 int count = ref.incCounter();
                 if (count >= Reference.CHARACTER_REFS.length()) {
                     result[1] = nameAttribute + '_' + 'Z';
@@ -195,46 +282,35 @@ public abstract class AbstractWikiModel implements IWikiModel, IContext {
         }
 
         if (nameAttribute != null) {
-            fReferences.add(new Reference(reference, nameAttribute));
-            Integer index = fReferences.size();
-            fReferenceNames.put(nameAttribute, index);
+            references.add(new Reference(reference, nameAttribute, group));
+            Integer index = references.size();
+            referenceNames.put(nameAttribute, index);
             result[1] = nameAttribute;
         } else {
-            fReferences.add(new Reference(reference));
+            references.add(new Reference(reference, "", group));
         }
-        result[0] = Integer.toString(fReferences.size());
+        result[0] = Integer.toString(references.size());
         return result;
     }
 
     /**
-     * Add a section header with the given <code>headLevel</code> to the
-     * &quot;table of content&quot;
+     * Add a section header to the &quot;table of content&quot; of this model.
      *
      * @param toc
-     *            the &quot;table of content list&quot;
+     *            ignored, the header is added to the &quot;table of
+     *            content&quot; of this model
      * @param strPair
      *            a new section header
      * @param headLevel
-     *            the level of the new section header
+     *            ignored, the level of the section header is used
+     * @deprecated use {@link TableOfContentTag#addSectionHeader(SectionHeader)}
+     *             instead
      */
+    @Deprecated
     protected void addToTableOfContent(List<Object> toc, SectionHeader strPair,
             int headLevel) {
-        if (headLevel == 1) {
-            toc.add(strPair);
-        } else {
-            if (toc.size() > 0) {
-                if (toc.get(toc.size() - 1) instanceof List) {
-                    @SuppressWarnings("unchecked")
-                    final List<Object> list = (List<Object>) toc
-                            .get(toc.size() - 1);
-                    addToTableOfContent(list, strPair, --headLevel);
-                    return;
-                }
-            }
-            ArrayList<Object> list = new ArrayList<>();
-            toc.add(list);
-            addToTableOfContent(list, strPair, --headLevel);
-        }
+        createTableOfContent(false);
+        fTableOfContentTag.addSectionHeader(strPair);
     }
 
     @Override
@@ -334,19 +410,19 @@ public abstract class AbstractWikiModel implements IWikiModel, IContext {
             fTableOfContentTag.setShowToC(true);
         }
         if (fToCSet.contains(anchor)) {
-            String newAnchor = anchor;
-            for (int i = 2; i < Integer.MAX_VALUE; i++) {
-                newAnchor = anchor + '_' + Integer.toString(i);
-                if (!fToCSet.contains(newAnchor)) {
-                    break;
-                }
+            Integer number = fToCAnchorNumbers.get(anchor);
+            int i = number == null ? 2 : number;
+            String newAnchor = anchor + '_' + Integer.toString(i);
+            while (fToCSet.contains(newAnchor)) {
+                newAnchor = anchor + '_' + Integer.toString(++i);
             }
+            fToCAnchorNumbers.put(anchor, i + 1);
             anchor = newAnchor;
         }
         fToCSet.add(anchor);
         SectionHeader strPair = new SectionHeader(headLevel, startPosition,
                 endPosition, tocHead, anchor);
-        addToTableOfContent(fTableOfContent, strPair, headLevel);
+        fTableOfContentTag.addSectionHeader(strPair);
         if (getRecursionLevel() == 1) {
             buildEditLinkUrl(fSectionCounter++);
         }
@@ -718,18 +794,13 @@ public abstract class AbstractWikiModel implements IWikiModel, IContext {
                 tableOfContentTag.setShowToC(true);
                 tableOfContentTag.setTOCIdentifier(true);
                 fTableOfContentTag = tableOfContentTag;
-                fTableOfContent = null;
                 this.append(fTableOfContentTag);
             }
         }
 
-        if (fTableOfContentTag != null) {
-            if (fTableOfContent == null) {
-                fTableOfContent = fTableOfContentTag.getTableOfContent();
-            }
-        }
         if (fToCSet == null) {
             fToCSet = new HashSet<>();
+            fToCAnchorNumbers = new HashMap<>();
         }
         return fTableOfContentTag;
     }
@@ -899,7 +970,11 @@ public abstract class AbstractWikiModel implements IWikiModel, IContext {
 
     @Override
     public MagicWordE getMagicWord(String name) {
-        return MagicWord.getMagicWord(name);
+        MagicWordE magicWord = MagicWord.getMagicWord(name);
+        if (fUsedFunctions != null && magicWord != null) {
+            fUsedFunctions.add(magicWord.toString());
+        }
+        return magicWord;
     }
 
     @Override
@@ -934,6 +1009,26 @@ public abstract class AbstractWikiModel implements IWikiModel, IContext {
         return fReferences;
     }
 
+    @Override
+    public List<Reference> getReferences(String group) {
+        if (group == null || group.length() == 0) {
+            return fReferences;
+        }
+        return fGroupReferences == null ? null : fGroupReferences.get(group);
+    }
+
+    @Override
+    public Reference getReference(String nameAttribute, String group) {
+        Map<String, Integer> referenceNames;
+        if (group == null || group.length() == 0) {
+            referenceNames = fReferenceNames;
+        } else {
+            referenceNames = fGroupReferenceNames == null ? null : fGroupReferenceNames.get(group);
+        }
+        Integer index = referenceNames == null ? null : referenceNames.get(nameAttribute);
+        return index == null ? null : getReferences(group).get(index - 1);
+    }
+
     @Override
     public ResourceBundle getResourceBundle() {
         return fNamespace.getResourceBundle();
@@ -970,9 +1065,43 @@ public abstract class AbstractWikiModel implements IWikiModel, IContext {
         return fConfiguration.getTemplateCallsCache();
     }
 
+    @Override
+    public SourceCodeCache getSourceCodeCache() {
+        return fConfiguration.getSourceCodeCache();
+    }
+
+    @Override
+    public LuaLimits getLuaLimits() {
+        return fConfiguration.getLuaLimits();
+    }
+
+    @Override
+    public ModuleCompiler getModuleCompiler() {
+        return fConfiguration.getModuleCompiler();
+    }
+
+    @Override
+    public LuaProfiler getLuaProfiler() {
+        return fConfiguration.getLuaProfiler();
+    }
+
+    @Override
+    public TemplateLimits getTemplateLimits() {
+        return fConfiguration.getTemplateLimits();
+    }
+
+    @Override
+    public ParallelInvoker getParallelInvoker() {
+        return fConfiguration.getParallelInvoker();
+    }
+
     @Override
     public ITemplateFunction getTemplateFunction(String name) {
-        return getTemplateMap().get(name);
+        ITemplateFunction templateFunction = getTemplateMap().get(name);
+        if (fUsedFunctions != null && templateFunction != null) {
+            fUsedFunctions.add(name);
+        }
+        return templateFunction;
     }
 
     @Override
@@ -1015,15 +1144,17 @@ public abstract class AbstractWikiModel implements IWikiModel, IContext {
             fWikiListener = null;
             fFormatter = null;
             fToCSet = null;
-            fTableOfContent = null;
+            fToCAnchorNumbers = null;
             fTableOfContentTag = null;
             fTagStack = new TagStack();
             fReferences = null;
             fReferenceNames = null;
+            fGroupReferences = null;
+            fGroupReferenceNames = null;
             fRecursionLevel = 0;
             fTemplateRecursionCount = 0;
             fRedirectLink = null;
-            fSectionCounter = 0;
+            fSectionCounter = fFirstSectionCounter;
             fExternalLinksCounter = 0;
             fInitialized = true;
             fFrame = null;
@@ -1215,16 +1346,98 @@ public abstract class AbstractWikiModel implements IWikiModel, IContext {
             return;
         }
         fTemplateTopic = templateTopic;
-        WikipediaParser.parse(rawWikiText, this, parseTemplates, null);
-        if (converter != null) {
-            List<BaseToken> list = fTagStack.getNodeList();
-            try {
-                converter.nodesToText(list, buf, this);
-            } finally {
-                fInitialized = false;
+        // nested renders, e.g. by frame:preprocess(), don't add a limit report
+        final boolean outermost = fRenderDepth++ == 0;
+        try {
+            WikipediaParser.parse(rawWikiText, this, parseTemplates, null);
+            if (converter != null) {
+                List<BaseToken> list = fTagStack.getNodeList();
+                try {
+                    converter.nodesToText(list, buf, this);
+                } finally {
+                    fInitialized = false;
+                }
+                final TemplateLimits limits = getTemplateLimits();
+                if (outermost && limits != null && limits.isReportComment()
+                        && converter instanceof HTMLConverter) {
+                    buf.append(getLimitReport().toHtmlComment());
+                }
+                return;
             }
-            return;
+            fInitialized = false;
+        } finally {
+            fRenderDepth--;
+        }
+    }
+
+    /**
+     * Render the wiki text of a single section of a page (see
+     * {@link info.bliki.wiki.filter.PageSections}) on its own. The section
+     * number is used for the edit links of the section headers.
+     *
+     * @param converter
+     *          a text converter
+     * @param sectionText
+     *          the wiki text of the section
+     * @param section
+     *          the section number, <code>0</code> for the lead
+     * @return the rendered section
+     * @see SectionRenderer
+     */
+    public String renderSection(ITextConverter converter, String sectionText, int section) throws IOException {
+        fFirstSectionCounter = section > 0 ? section - 1 : 0;
+        try {
+            return render(converter, sectionText, false);
+        } finally {
+            fFirstSectionCounter = 0;
+        }
+    }
+
+    /**
+     * Start rendering a page block by block (see {@link IncrementalRenderer}).
+     * The state of the page is kept between the blocks until
+     * {@link #endBlocks()} is called.
+     */
+    void startBlocks() {
+        initialize();
+        setUp();
+        fTemplateTopic = false;
+    }
+
+    /**
+     * Parse a block of the page with expanded templates like the top level
+     * of the whole page.
+     *
+     * @return the nodes of the block
+     */
+    List<BaseToken> parseBlock(String expandedWikiText) {
+        return WikipediaParser.parseRecursive(expandedWikiText, this, true, false).getNodeList();
+    }
+
+    /**
+     * Get the state of the page which the parsed blocks have changed, i.e. the
+     * references, numbered external links, section headers and the table of
+     * contents.
+     */
+    List<Object> getBlockState() {
+        return Arrays.<Object>asList(fReferences == null ? 0 : fReferences.size(), fExternalLinksCounter,
+                fSectionCounter, fToCSet == null ? 0 : fToCSet.size(), System.identityHashCode(fTableOfContentTag),
+                fNoToc, fRedirectLink);
+    }
+
+    /**
+     * Called after all blocks are parsed. Show the table of contents if the
+     * page has more than three section headers like the parser does for a
+     * whole page.
+     */
+    void finishBlocks() {
+        if (fTableOfContentTag != null && fSectionCounter > 3) {
+            fTableOfContentTag.setShowToC(true);
         }
+    }
+
+    void endBlocks() {
+        tearDown();
         fInitialized = false;
     }
 
@@ -1354,22 +1567,58 @@ public abstract class AbstractWikiModel implements IWikiModel, IContext {
         fConfiguration.setTemplateCallsCache(map);
     }
 
+    @Override
+    public void setSourceCodeCache(SourceCodeCache cache) {
+        fConfiguration.setSourceCodeCache(cache);
+    }
+
+    @Override
+    public void setLuaLimits(LuaLimits limits) {
+        fConfiguration.setLuaLimits(limits);
+    }
+
+    @Override
+    public void setModuleCompiler(ModuleCompiler compiler) {
+        fConfiguration.setModuleCompiler(compiler);
+    }
+
+    @Override
+    public void setLuaProfiler(LuaProfiler profiler) {
+        fConfiguration.setLuaProfiler(profiler);
+    }
+
+    @Override
+    public void setTemplateLimits(TemplateLimits limits) {
+        fConfiguration.setTemplateLimits(limits);
+    }
+
+    @Override
+    public void setParallelInvoker(ParallelInvoker invoker) {
+        fConfiguration.setParallelInvoker(invoker);
+    }
+
     @Override
     public void setUp() {
         fFormatter = null;
         fToCSet = null;
-        fTableOfContent = null;
+        fToCAnchorNumbers = null;
         fTableOfContentTag = null;
         fTagStack = new TagStack();
         fReferences = null;
         fReferenceNames = null;
+        fGroupReferences = null;
+        fGroupReferenceNames = null;
         fRecursionLevel = 0;
         fTemplateRecursionCount = 0;
         fRedirectLink = null;
-        fSectionCounter = 0;
+        fSectionCounter = fFirstSectionCounter;
         fExternalLinksCounter = 0;
         fTemplates = new HashMap<>();
         fParameterParsingMode = false;
+        fLimitReport = null;
+        if (fScribuntoEngine != null) {
+            fScribuntoEngine.resetUsage();
+        }
     }
 
     @Override
@@ -1420,11 +1669,22 @@ public abstract class AbstractWikiModel implements IWikiModel, IContext {
                       .append(fullTemplateStr).append("</strong></span>");
                 return;
             }
+            final LimitReport limitReport = getLimitReport();
+            if (!limitReport.countNode()) {
+                writer.append("<span class=\"error\">Node-count limit exceeded</span>");
+                return;
+            }
+            if (!limitReport.addTemplateArguments(parameterMap)) {
+                writer.append("[[:").append(fullTemplateStr)
+                      .append("]]<!-- WARNING: template omitted, template argument size too large -->");
+                return;
+            }
 
+            addDependency(parsedPagename);
             Map<String, String> templateCallsCache;
             String cacheKey = null;
             int cacheKeyLength = 0;
-            templateCallsCache = fConfiguration.getTemplateCallsCache();
+            templateCallsCache = fUsedPages == null ? fConfiguration.getTemplateCallsCache() : null;
             if (templateCallsCache != null) {
                 cacheKeyLength += fullTemplateStr.length() + 1;
                 for (Entry<String, String> entry : parameterMap.entrySet()) {
@@ -1447,7 +1707,7 @@ public abstract class AbstractWikiModel implements IWikiModel, IContext {
                     String value = templateCallsCache.get(cacheKey);
                     if (value != null) {
                         // System.out.println("Cache key: " + cacheKey);
-                        writer.append(value);
+                        appendTemplateExpansion(fullTemplateStr, value, writer);
                         if (Configuration.TEMPLATE_NAMES) {
                             System.out.println("Cached: " + fullTemplateStr
                                     + "-" + cacheKey);
@@ -1475,34 +1735,41 @@ public abstract class AbstractWikiModel implements IWikiModel, IContext {
                 templateCallsCache = null;
             }
 
-            String plainContent;
-            try {
-                plainContent = getRawWikiContent(parsedPagename, parameterMap);
-            } catch (WikiModelContentException wme) {
-                writer.append(wme.getMessage());
+            if (!limitReport.enterTemplate(fullTemplateStr)) {
+                writer.append("<span class=\"error\">Expansion depth limit exceeded</span>");
                 return;
             }
-            if (plainContent == null) {
-                // content of this transclusion is missing => render as link:
-                plainContent = "[[:" + fullTemplateStr + "]]";
-            }
-
-            StringBuilder templateBuffer = new StringBuilder(
-                    plainContent.length());
+            StringBuilder templateBuffer;
+            try {
+                String plainContent;
+                try {
+                    plainContent = getRawWikiContent(parsedPagename, parameterMap);
+                } catch (WikiModelContentException wme) {
+                    writer.append(wme.getMessage());
+                    return;
+                }
+                if (plainContent == null) {
+                    // content of this transclusion is missing => render as link:
+                    plainContent = "[[:" + fullTemplateStr + "]]";
+                }
 
+                templateBuffer = new StringBuilder(plainContent.length());
 
-            final Frame currentFrame = getFrame();
-            setFrame(new Frame(parsedPagename, parameterMap, currentFrame, false));
-            TemplateParser.parseRecursive(plainContent.trim(), this, templateBuffer, false, false, parameterMap);
-            setFrame(currentFrame);
+                final Frame currentFrame = getFrame();
+                setFrame(new Frame(parsedPagename, parameterMap, currentFrame, false));
+                TemplateParser.parseRecursive(plainContent.trim(), this, templateBuffer, false, false, parameterMap);
+                setFrame(currentFrame);
+            } finally {
+                limitReport.exitTemplate();
+            }
 
             if (templateCallsCache != null && cacheKey != null) {
                 // save this template call in the cache
                 String cacheValue = templateBuffer.toString();
                 templateCallsCache.put(cacheKey, cacheValue);
-                writer.append(cacheValue);
+                appendTemplateExpansion(fullTemplateStr, cacheValue, writer);
             } else {
-                writer.append(templateBuffer);
+                appendTemplateExpansion(fullTemplateStr, templateBuffer, writer);
             }
         } finally {
             if (val != null) {
@@ -1511,6 +1778,20 @@ public abstract class AbstractWikiModel implements IWikiModel, IContext {
         }
     }
 
+    /**
+     * Append the expanded template, unless the post-expand include size limit
+     * is exceeded.
+     */
+    private void appendTemplateExpansion(String fullTemplateStr, CharSequence expansion, Appendable writer)
+            throws IOException {
+        if (getLimitReport().addPostExpandInclude(expansion.length())) {
+            writer.append(expansion);
+        } else {
+            writer.append("[[:").append(fullTemplateStr)
+                  .append("]]<!-- WARNING: template omitted, post-expand include size too large -->");
+        }
+    }
+
     @Override
     public TagStack swapStack(TagStack stack) {
         TagStack temp = fTagStack;
@@ -1631,6 +1912,14 @@ public abstract class AbstractWikiModel implements IWikiModel, IContext {
         fFrame = frame;
     }
 
+    @Override
+    public LimitReport getLimitReport() {
+        if (fLimitReport == null) {
+            fLimitReport = new LimitReport(getTemplateLimits());
+        }
+        return fLimitReport;
+    }
+
     @Override
     public ScribuntoEngine createScribuntoEngine() {
         if (null == fScribuntoEngine)
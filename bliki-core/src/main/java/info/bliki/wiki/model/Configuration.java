@@ -1,6 +1,10 @@
 package info.bliki.wiki.model;
 
+import info.bliki.extensions.scribunto.engine.lua.LuaLimits;
+import info.bliki.extensions.scribunto.engine.lua.LuaProfiler;
+import info.bliki.extensions.scribunto.engine.lua.ModuleCompiler;
 import info.bliki.extensions.scribunto.template.Invoke;
+import info.bliki.extensions.scribunto.template.ParallelInvoker;
 import info.bliki.htmlcleaner.TagToken;
 import info.bliki.wiki.filter.ParsedPageName;
 import info.bliki.wiki.tags.ATag;
@@ -23,6 +27,7 @@ import info.bliki.wiki.tags.code.JavaScriptCodeFilter;
 import info.bliki.wiki.tags.code.PHPCodeFilter;
 import info.bliki.wiki.tags.code.PythonCodeFilter;
 import info.bliki.wiki.tags.code.SQLCodeFilter;
+import info.bliki.wiki.tags.code.SourceCodeCache;
 import info.bliki.wiki.tags.code.SourceCodeFormatter;
 import info.bliki.wiki.tags.code.XMLCodeFilter;
 import info.bliki.wiki.template.Anchorencode;
@@ -172,6 +177,18 @@ public class Configuration implements IConfiguration {
     // private static Map<String, String> TEMPLATE_CALLS_CACHE = null;
     private Map<String, String> fTemplateCache = null;
 
+    private SourceCodeCache fSourceCodeCache = null;
+
+    private LuaLimits fLuaLimits = null;
+
+    private ModuleCompiler fModuleCompiler = null;
+
+    private LuaProfiler fLuaProfiler = null;
+
+    private TemplateLimits fTemplateLimits = null;
+
+    private ParallelInvoker fParallelInvoker = null;
+
     /**
      * Map from the interwiki shortcut to the real Interwiki-URL
      */
@@ -457,6 +474,66 @@ public class Configuration implements IConfiguration {
         fTemplateCache = map;
     }
 
+    @Override
+    public SourceCodeCache getSourceCodeCache() {
+        return fSourceCodeCache;
+    }
+
+    @Override
+    public void setSourceCodeCache(SourceCodeCache cache) {
+        fSourceCodeCache = cache;
+    }
+
+    @Override
+    public LuaLimits getLuaLimits() {
+        return fLuaLimits;
+    }
+
+    @Override
+    public void setLuaLimits(LuaLimits limits) {
+        fLuaLimits = limits;
+    }
+
+    @Override
+    public ModuleCompiler getModuleCompiler() {
+        return fModuleCompiler;
+    }
+
+    @Override
+    public void setModuleCompiler(ModuleCompiler compiler) {
+        fModuleCompiler = compiler;
+    }
+
+    @Override
+    public LuaProfiler getLuaProfiler() {
+        return fLuaProfiler;
+    }
+
+    @Override
+    public void setLuaProfiler(LuaProfiler profiler) {
+        fLuaProfiler = profiler;
+    }
+
+    @Override
+    public TemplateLimits getTemplateLimits() {
+        return fTemplateLimits;
+    }
+
+    @Override
+    public void setTemplateLimits(TemplateLimits limits) {
+        fTemplateLimits = limits;
+    }
+
+    @Override
+    public ParallelInvoker getParallelInvoker() {
+        return fParallelInvoker;
+    }
+
+    @Override
+    public void setParallelInvoker(ParallelInvoker invoker) {
+        fParallelInvoker = invoker;
+    }
+
     @Override
     public Casing casing() {
         return casing;
@@ -1,6 +1,11 @@
 package info.bliki.wiki.model;
 
+import info.bliki.extensions.scribunto.engine.lua.LuaLimits;
+import info.bliki.extensions.scribunto.engine.lua.LuaProfiler;
+import info.bliki.extensions.scribunto.engine.lua.ModuleCompiler;
+import info.bliki.extensions.scribunto.template.ParallelInvoker;
 import info.bliki.htmlcleaner.TagToken;
+import info.bliki.wiki.tags.code.SourceCodeCache;
 import info.bliki.wiki.tags.code.SourceCodeFormatter;
 import info.bliki.wiki.template.ITemplateFunction;
 
@@ -59,6 +64,54 @@ public interface IConfiguration {
      */
     Map<String, SourceCodeFormatter> getCodeFormatterMap();
 
+    /**
+     * Get the currently configured cache for highlighted source code.
+     *
+     * @return <code>null</code> if no cache implementation is set.
+     * @see IConfiguration#setSourceCodeCache(SourceCodeCache)
+     */
+    SourceCodeCache getSourceCodeCache();
+
+    /**
+     * Get the resource limits for Lua modules.
+     *
+     * @return <code>null</code> if no limits are enforced.
+     * @see IConfiguration#setLuaLimits(LuaLimits)
+     */
+    LuaLimits getLuaLimits();
+
+    /**
+     * Get the compiler for frequently used Lua modules.
+     *
+     * @return <code>null</code> if all modules are interpreted.
+     * @see IConfiguration#setModuleCompiler(ModuleCompiler)
+     */
+    ModuleCompiler getModuleCompiler();
+
+    /**
+     * Get the profiler for Lua modules.
+     *
+     * @return <code>null</code> if modules aren't profiled.
+     * @see IConfiguration#setLuaProfiler(LuaProfiler)
+     */
+    LuaProfiler getLuaProfiler();
+
+    /**
+     * Get the limits for the template expansion of a page.
+     *
+     * @return <code>null</code> if no limits are enforced.
+     * @see IConfiguration#setTemplateLimits(TemplateLimits)
+     */
+    TemplateLimits getTemplateLimits();
+
+    /**
+     * Get the executor for independent <code>#invoke</code> calls.
+     *
+     * @return <code>null</code> if all calls are evaluated by the parser.
+     * @see IConfiguration#setParallelInvoker(ParallelInvoker)
+     */
+    ParallelInvoker getParallelInvoker();
+
     /**
      * Get the currently configured cache implementation for template calls.
      *
@@ -100,6 +153,67 @@ public interface IConfiguration {
      */
     void setTemplateCallsCache(Map<String, String> map);
 
+    /**
+     * Set a cache for the highlighted output of <code>&lt;source&gt;</code>
+     * tags. The cached output only depends on the language and the source code,
+     * so the same cache can be shared between models.
+     *
+     * @param cache
+     *          the cache implementation or <code>null</code> to disable caching
+     * @see info.bliki.wiki.tags.code.BoundedSourceCodeCache
+     */
+    void setSourceCodeCache(SourceCodeCache cache);
+
+    /**
+     * Set the instruction, time and memory limits for Lua modules. The limits
+     * are read when the Scribunto engine of a model is created. Checking the
+     * limits slows down all Lua modules, so they are disabled by default.
+     *
+     * @param limits
+     *          the limits or <code>null</code> to disable the limits
+     */
+    void setLuaLimits(LuaLimits limits);
+
+    /**
+     * Set a compiler which translates frequently used Lua modules to JVM
+     * bytecode. Compiled code isn't covered by the {@link LuaLimits}, so the
+     * compiler is only used if all limits are disabled, as they are by
+     * default; otherwise a warning is logged and all modules are interpreted.
+     *
+     * @param compiler
+     *          the compiler or <code>null</code> to interpret all modules
+     */
+    void setModuleCompiler(ModuleCompiler compiler);
+
+    /**
+     * Set a profiler which records the time spent in each module and
+     * function. The numbers are accumulated over all pages rendered with this
+     * configuration.
+     *
+     * @param profiler
+     *          the profiler or <code>null</code> to disable profiling
+     */
+    void setLuaProfiler(LuaProfiler profiler);
+
+    /**
+     * Set the limits for the template expansion of a page, which are enforced
+     * like the MediaWiki limits and shown in the {@link LimitReport}.
+     *
+     * @param limits
+     *          the limits or <code>null</code> to not enforce any limits
+     */
+    void setTemplateLimits(TemplateLimits limits);
+
+    /**
+     * Set an executor which evaluates the independent <code>#invoke</code>
+     * calls of a template concurrently on isolated models.
+     *
+     * @param invoker
+     *          the executor or <code>null</code> to evaluate all calls in the
+     *          parser thread
+     */
+    void setParallelInvoker(ParallelInvoker invoker);
+
     /**
      * @return the default casing, defaults to {@link Casing#FirstLetter}.
      */
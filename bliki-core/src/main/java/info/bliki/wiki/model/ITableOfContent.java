@@ -1,6 +1,7 @@
 package info.bliki.wiki.model;
 
 import info.bliki.wiki.filter.SectionHeader;
+import info.bliki.wiki.tags.TableOfContentTag;
 
 import java.util.List;
 
@@ -27,4 +28,21 @@ public interface ITableOfContent {
      * @return a list with the section headers.
      */
     public List<SectionHeader> getSectionHeaders();
+
+    /**
+     * Get the HTML list of the section headers without the title of the
+     * &quot;table of content&quot;. The default implementation renders the list
+     * from {@link #getSectionHeaders()} on each call,
+     * {@link TableOfContentTag} reuses the list until a new section header is
+     * added.
+     *
+     * @return the HTML list or an empty string if there are no section headers
+     */
+    default String getHTML() {
+        TableOfContentTag toc = new TableOfContentTag("div");
+        for (SectionHeader header : getSectionHeaders()) {
+            toc.addSectionHeader(header);
+        }
+        return toc.getHTML();
+    }
 }
@@ -110,6 +110,18 @@ public interface IWikiModel extends IConfiguration {
      */
     void addInclude(String pageName);
 
+    /**
+     * When the content of a template, page or module is read while the wiki
+     * text is expanded, this method should be called before the content is
+     * read, even if it's read from a cache.
+     *
+     * @param parsedPagename
+     *            the parsed name of the page
+     *
+     * @see IncrementalRenderer
+     */
+    void addDependency(ParsedPageName parsedPagename);
+
     /**
      * Add a reference (i.e. footnote) to the internal list
      *
@@ -122,6 +134,25 @@ public interface IWikiModel extends IConfiguration {
      */
     String[] addToReferences(String reference, String nameAttribute);
 
+    /**
+     * Add a reference (i.e. footnote) of a group to the internal list of the
+     * group
+     *
+     * @param reference
+     *            the rendered HTML code of the ref-Tag body or
+     *            <code>null</code> if the body of a reused named reference
+     *            wasn't rendered
+     * @param nameAttribute
+     *            the value of the <code>name</code> attribute or
+     *            <code>null</code>
+     * @param group
+     *            the value of the <code>group</code> attribute or
+     *            <code>null</code> for the default group
+     * @return the number of the reference in its group and the id of the
+     *         reference link of a named reference
+     */
+    String[] addToReferences(String reference, String nameAttribute, String group);
+
     /**
      * Append the content as a child on the top node of the internal stack
      *
@@ -482,6 +513,14 @@ public interface IWikiModel extends IConfiguration {
 
     ScribuntoEngine createScribuntoEngine();
 
+    /**
+     * Get the resources used by the template expansion since the last
+     * {@link #setUp()}.
+     *
+     * @return the limit report
+     */
+    LimitReport getLimitReport();
+
     /**
      * Get the title of the current wiki article.
      *
@@ -534,6 +573,31 @@ public interface IWikiModel extends IConfiguration {
      */
     List<Reference> getReferences();
 
+    /**
+     * Get the internal list of references (i.e. footnotes) of a group
+     *
+     * @param group
+     *            the value of the <code>group</code> attribute or
+     *            <code>null</code> for the default group
+     * @return the list of references or <code>null</code> if no reference
+     *         of the group exists
+     * @see Reference
+     */
+    List<Reference> getReferences(String group);
+
+    /**
+     * Get a named reference (i.e. footnote) of a group
+     *
+     * @param nameAttribute
+     *            the value of the <code>name</code> attribute
+     * @param group
+     *            the value of the <code>group</code> attribute or
+     *            <code>null</code> for the default group
+     * @return the reference or <code>null</code> if no reference with this
+     *         name exists
+     */
+    Reference getReference(String nameAttribute, String group);
+
     /**
      * Get the resource bundle associated with this model for I18N support
      *
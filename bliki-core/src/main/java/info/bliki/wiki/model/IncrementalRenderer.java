@@ -0,0 +1,392 @@
+package info.bliki.wiki.model;
+
+import info.bliki.htmlcleaner.BaseToken;
+import info.bliki.htmlcleaner.TagNode;
+import info.bliki.wiki.filter.HTMLConverter;
+import info.bliki.wiki.filter.ITextConverter;
+import info.bliki.wiki.filter.MagicWord.MagicWordE;
+import info.bliki.wiki.filter.PageBlocks;
+import info.bliki.wiki.filter.TemplateParser;
+import info.bliki.wiki.filter.Util;
+import info.bliki.wiki.filter.WikipediaParser;
+import info.bliki.wiki.tags.RefTag;
+import info.bliki.wiki.tags.ReferencesTag;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Render a page block by block (see {@link PageBlocks}) and reuse the rendered
+ * blocks which didn't change since the page was rendered before.
+ *
+ * The cache key of a block is the page name and a SHA-256 fingerprint of its
+ * wiki text. While a block is expanded, the model records the templates, pages
+ * and modules which are read, also by the nested template calls, and the
+ * cached block is stored with their fingerprints (see
+ * {@link #getTemplateFingerprint(String)}). A cached block is only reused if
+ * none of these fingerprints has changed. Only the blocks which aren't cached
+ * are expanded and parsed; the cache holds at most <code>maxEntries</code>
+ * blocks and evicts the least recently used blocks first.
+ *
+ * The page state is kept while the parsed blocks are parsed one after the
+ * other, and the blocks are converted after all of them are parsed, like the
+ * whole page is converted after it is parsed. Blocks which depend on the page
+ * state - section headers, references, numbered external links and the table
+ * of contents - or which use magic words or parser functions depending on the
+ * time or the page (see {@link #isPageDependent(String)}) are parsed again for
+ * each page and never cached. A block depends on the references, if its nodes
+ * contain a {@link RefTag} or a {@link ReferencesTag}, which are numbered and
+ * rendered when the page is converted. If the
+ * page is a redirect or contains a <code>__TOC__</code>,
+ * <code>__NOTOC__</code> or <code>__FORCETOC__</code> switch, the whole page
+ * is rendered.
+ *
+ * The rendered page is the same as the page rendered as a whole, except for
+ * the whitespace between the block level elements at the boundaries of the
+ * blocks, which isn't significant in HTML.
+ *
+ * <b>Note:</b> the links, categories and templates collected by the wiki model
+ * only contain the parsed blocks. Call {@link #clear()} if the configuration
+ * of the model changes. Like the wiki model this class isn't thread-safe.
+ */
+public class IncrementalRenderer {
+    public static final int DEFAULT_MAX_ENTRIES = 10000;
+
+    private static final String[] TOC_SWITCHES = { "__TOC__", "__NOTOC__", "__FORCETOC__" };
+
+    /**
+     * The magic words whose value doesn't depend on the time or the page
+     */
+    private static final EnumSet<MagicWordE> CONSTANT_MAGIC_WORDS = EnumSet.of(MagicWordE.MAGIC_BANG,
+            MagicWordE.MAGIC_SITE_NAME, MagicWordE.MAGIC_SERVER, MagicWordE.MAGIC_SERVER_NAME,
+            MagicWordE.MAGIC_SCRIPT_PATH, MagicWordE.MAGIC_STYLE_PATH, MagicWordE.MAGIC_CONTENT_LANGUAGE,
+            MagicWordE.MAGIC_CONTENT_LANG, MagicWordE.MAGIC_CURRENT_VERSION);
+
+    /**
+     * The magic words and parser functions whose value depends on the time or
+     * the page
+     */
+    private static final Set<String> PAGE_DEPENDENT_FUNCTIONS = new HashSet<>();
+
+    static {
+        for (MagicWordE magicWord : EnumSet.complementOf(CONSTANT_MAGIC_WORDS)) {
+            PAGE_DEPENDENT_FUNCTIONS.add(magicWord.toString());
+        }
+        PAGE_DEPENDENT_FUNCTIONS.add("#time");
+        PAGE_DEPENDENT_FUNCTIONS.add("#timel");
+    }
+
+    private final AbstractWikiModel fWikiModel;
+    private final ITextConverter fConverter;
+    /**
+     * The rendered blocks which don't depend on the page state
+     */
+    private final Map<String, CachedBlock> fCache;
+    private final Map<String, Integer> fTemplateVersions = new HashMap<>();
+    private long fHits;
+    private long fMisses;
+    private long fFullRenders;
+
+    public IncrementalRenderer(AbstractWikiModel wikiModel) {
+        this(wikiModel, new HTMLConverter(), DEFAULT_MAX_ENTRIES);
+    }
+
+    /**
+     * @param wikiModel
+     *          the model which renders the blocks
+     * @param converter
+     *          the converter for the rendered blocks
+     * @param maxEntries
+     *          the maximum number of cached blocks
+     */
+    public IncrementalRenderer(AbstractWikiModel wikiModel, ITextConverter converter, final int maxEntries) {
+        if (maxEntries <= 0) {
+            throw new IllegalArgumentException("maxEntries must be positive: " + maxEntries);
+        }
+        fWikiModel = wikiModel;
+        fConverter = converter;
+        fCache = new LinkedHashMap<String, CachedBlock>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CachedBlock> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    /**
+     * Render the page and reuse the cached blocks.
+     *
+     * @param rawWikiText
+     *          the wiki text of the page
+     * @return the rendered page
+     */
+    public String render(String rawWikiText) throws IOException {
+        if (rawWikiText == null) {
+            return "";
+        }
+        if (isRedirect(rawWikiText)) {
+            return renderPage(rawWikiText);
+        }
+        List<String> blocks = PageBlocks.split(rawWikiText);
+        int size = blocks.size();
+        String[] keys = new String[size];
+        String[] results = new String[size];
+        boolean[] dependsOnPage = new boolean[size];
+        boolean[] startsParagraph = new boolean[size];
+        List<Map<String, String>> fingerprints = new ArrayList<>(size);
+        List<List<BaseToken>> nodes = new ArrayList<>(size);
+        StringBuilder buf = new StringBuilder(rawWikiText.length() + rawWikiText.length() / 10);
+
+        fWikiModel.startBlocks();
+        try {
+            for (int i = 0; i < size; i++) {
+                String block = blocks.get(i);
+                keys[i] = fWikiModel.getPageName() + ":" + Util.sha256(block);
+                CachedBlock cachedBlock = fCache.get(keys[i]);
+                if (cachedBlock != null && isValid(cachedBlock)) {
+                    fHits++;
+                    results[i] = cachedBlock.html;
+                    startsParagraph[i] = cachedBlock.startsParagraph;
+                    nodes.add(null);
+                    fingerprints.add(null);
+                    continue;
+                }
+                fMisses++;
+                Set<String> usedPages = new LinkedHashSet<>();
+                Set<String> usedFunctions = new HashSet<>();
+                fWikiModel.recordDependencies(usedPages, usedFunctions);
+                String expandedBlock;
+                try {
+                    expandedBlock = expand(block);
+                } finally {
+                    fWikiModel.recordDependencies(null, null);
+                }
+                if (containsTOCSwitch(expandedBlock)) {
+                    // the switches change the table of contents of the whole page
+                    buf = null;
+                    break;
+                }
+                List<Object> state = fWikiModel.getBlockState();
+                List<BaseToken> blockNodes = fWikiModel.parseBlock(expandedBlock);
+                nodes.add(blockNodes);
+                startsParagraph[i] = startsParagraph(blockNodes);
+                dependsOnPage[i] = !state.equals(fWikiModel.getBlockState()) || containsReferences(blockNodes)
+                        || usesPageDependentFunction(usedFunctions);
+                fingerprints.add(getFingerprints(usedPages));
+            }
+            if (buf != null) {
+                fWikiModel.finishBlocks();
+                for (int i = 0; i < size; i++) {
+                    if (results[i] == null) {
+                        StringBuilder blockBuf = new StringBuilder();
+                        fConverter.nodesToText(nodes.get(i), blockBuf, fWikiModel);
+                        results[i] = blockBuf.toString();
+                        if (!dependsOnPage[i]) {
+                            fCache.put(keys[i], new CachedBlock(results[i], startsParagraph[i], fingerprints.get(i)));
+                        }
+                    }
+                }
+                for (int i = 0; i < size; i++) {
+                    String result = results[i];
+                    if (i + 1 < size && startsParagraph[i + 1] && result.endsWith("\n")) {
+                        // the parser drops the newline in front of a new paragraph,
+                        // but appends it at the end of the text
+                        buf.append(result, 0, result.length() - 1);
+                    } else {
+                        buf.append(result);
+                    }
+                }
+            }
+        } finally {
+            fWikiModel.endBlocks();
+        }
+        return buf != null ? buf.toString() : renderPage(rawWikiText);
+    }
+
+    private String renderPage(String rawWikiText) throws IOException {
+        fFullRenders++;
+        return fWikiModel.render(fConverter, rawWikiText, false);
+    }
+
+    private static boolean isRedirect(String rawWikiText) {
+        String text = rawWikiText.trim();
+        return text.length() > 9 && text.charAt(0) == '#' && text.regionMatches(true, 1, "redirect", 0, 8);
+    }
+
+    private static boolean containsTOCSwitch(String text) {
+        for (String tocSwitch : TOC_SWITCHES) {
+            if (text.contains(tocSwitch)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Expand the templates of a block like
+     * {@link WikipediaParser#parse(String, IWikiModel, boolean, Appendable)}
+     * does for the whole page.
+     */
+    private String expand(String block) {
+        StringBuilder buf = new StringBuilder(block.length() + block.length() / 10);
+        try {
+            TemplateParser.parseRecursive(block, fWikiModel, buf, false, false, null);
+            return buf.toString();
+        } catch (Exception ioe) {
+            ioe.printStackTrace();
+            return "<span class=\"error\">TemplateParser exception: " + ioe.getClass().getSimpleName() + "</span>";
+        }
+    }
+
+    /**
+     * Check if the block starts with a new paragraph, which the converter
+     * renders with a leading newline.
+     */
+    private static boolean startsParagraph(List<BaseToken> nodes) {
+        if (nodes.isEmpty() || !(nodes.get(0) instanceof TagNode)) {
+            return false;
+        }
+        return "p".equals(((TagNode) nodes.get(0)).getName());
+    }
+
+    private static boolean containsReferences(List<?> nodes) {
+        for (Object node : nodes) {
+            if (node instanceof RefTag || node instanceof ReferencesTag) {
+                return true;
+            }
+            if (node instanceof TagNode && containsReferences(((TagNode) node).getChildren())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private Map<String, String> getFingerprints(Set<String> usedPages) {
+        Map<String, String> fingerprints = new HashMap<>();
+        for (String pageName : usedPages) {
+            fingerprints.put(pageName, getTemplateFingerprint(pageName));
+        }
+        return fingerprints;
+    }
+
+    private boolean isValid(CachedBlock cachedBlock) {
+        for (Map.Entry<String, String> entry : cachedBlock.fingerprints.entrySet()) {
+            if (!entry.getValue().equals(getTemplateFingerprint(entry.getKey()))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean usesPageDependentFunction(Set<String> usedFunctions) {
+        for (String name : usedFunctions) {
+            if (isPageDependent(name)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Check if the result of a magic word or parser function depends on the
+     * time or the page, e.g. <code>CURRENTTIME</code>, <code>PAGENAME</code>
+     * or <code>#time</code>. The blocks using them aren't cached. Subclasses
+     * may add their own magic words or parser functions.
+     *
+     * @param name
+     *          the name of the magic word or parser function
+     */
+    protected boolean isPageDependent(String name) {
+        return PAGE_DEPENDENT_FUNCTIONS.contains(name);
+    }
+
+    /**
+     * Get the fingerprint of a template, page or module, which is stored with
+     * the cached blocks reading the page while they are expanded. By default
+     * the fingerprint changes, if {@link #invalidateTemplate(String)} is
+     * called for the page. Subclasses may return e.g. the revision of the
+     * page.
+     *
+     * @param templateName
+     *          the template name without the template namespace, or the full
+     *          name of other pages like <code>Module:Infobox</code>
+     */
+    protected String getTemplateFingerprint(String templateName) {
+        Integer version = fTemplateVersions.get(templateName);
+        return version == null ? "0" : version.toString();
+    }
+
+    /**
+     * Render the blocks reading the template again, also through other
+     * templates, e.g. after the template was edited.
+     *
+     * @param templateName
+     *          the template name without the template namespace, or the full
+     *          name of other pages like <code>Module:Infobox</code>
+     */
+    public void invalidateTemplate(String templateName) {
+        Integer version = fTemplateVersions.get(templateName);
+        fTemplateVersions.put(templateName, version == null ? 1 : version + 1);
+    }
+
+    /**
+     * Remove all blocks from the cache.
+     */
+    public void clear() {
+        fCache.clear();
+    }
+
+    /**
+     * @return the number of cached blocks
+     */
+    public int size() {
+        return fCache.size();
+    }
+
+    /**
+     * @return the number of reused blocks
+     */
+    public long getHitCount() {
+        return fHits;
+    }
+
+    /**
+     * @return the number of parsed blocks
+     */
+    public long getMissCount() {
+        return fMisses;
+    }
+
+    /**
+     * @return the number of pages which were rendered as a whole
+     */
+    public long getFullRenderCount() {
+        return fFullRenders;
+    }
+
+    /**
+     * A rendered block and the fingerprints of the pages which were read while
+     * the block was expanded.
+     */
+    private static class CachedBlock {
+        final String html;
+        final boolean startsParagraph;
+        final Map<String, String> fingerprints;
+
+        CachedBlock(String html, boolean startsParagraph, Map<String, String> fingerprints) {
+            this.html = html;
+            this.startsParagraph = startsParagraph;
+            this.fingerprints = fingerprints;
+        }
+    }
+}
@@ -0,0 +1,282 @@
+package info.bliki.wiki.model;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import static info.bliki.wiki.model.TemplateLimits.exceeds;
+
+/**
+ * The resources used by the template expansion of a page, like the
+ * "NewPP limit report" of MediaWiki, and the time spent in each template.
+ *
+ * The report is reset by {@link IWikiModel#setUp()}. The limits are only
+ * enforced if {@link TemplateLimits} are configured.
+ *
+ * @see IWikiModel#getLimitReport()
+ */
+public class LimitReport {
+    private final TemplateLimits limits;
+    private int nodeCount;
+    private long postExpandIncludeSize;
+    private long templateArgumentSize;
+    private int expansionDepth;
+    private int highestExpansionDepth;
+    private int expensiveFunctionCount;
+    private long totalNanos;
+    private final Map<String, TemplateProfile> templates = new HashMap<>();
+    private final Deque<Expansion> expansions = new ArrayDeque<>();
+
+    /**
+     * @param limits the limits to enforce, or <code>null</code>
+     */
+    public LimitReport(TemplateLimits limits) {
+        this.limits = limits;
+    }
+
+    /**
+     * Count the expansion of a template or parser function.
+     *
+     * @return <code>false</code> if the node count limit is exceeded
+     */
+    public boolean countNode() {
+        nodeCount++;
+        return limits == null || !exceeds(nodeCount, limits.getMaxNodeCount());
+    }
+
+    /**
+     * @return <code>false</code> if the template argument size limit is
+     *         exceeded
+     */
+    public boolean addTemplateArguments(Map<String, String> parameterMap) {
+        for (String value : parameterMap.values()) {
+            templateArgumentSize += value.length();
+        }
+        return limits == null || !exceeds(templateArgumentSize, limits.getMaxTemplateArgumentSize());
+    }
+
+    /**
+     * @param length the length of an expanded template
+     * @return <code>false</code> if the post-expand include size limit is
+     *         exceeded and the expansion must be omitted
+     */
+    public boolean addPostExpandInclude(int length) {
+        if (limits != null && exceeds(postExpandIncludeSize + length, limits.getMaxPostExpandIncludeSize())) {
+            return false;
+        }
+        postExpandIncludeSize += length;
+        return true;
+    }
+
+    /**
+     * @return <code>false</code> if the expensive parser function limit is
+     *         exceeded
+     */
+    public boolean incrementExpensiveFunctionCount() {
+        expensiveFunctionCount++;
+        return limits == null || !exceeds(expensiveFunctionCount, limits.getMaxExpensiveFunctions());
+    }
+
+    /**
+     * Start the expansion of a template; must be followed by
+     * {@link #exitTemplate()} if <code>true</code> is returned.
+     *
+     * @return <code>false</code> if the expansion depth limit is exceeded
+     */
+    public boolean enterTemplate(String templateName) {
+        if (limits != null && exceeds(expansionDepth + 1, limits.getMaxExpansionDepth())) {
+            return false;
+        }
+        highestExpansionDepth = Math.max(highestExpansionDepth, ++expansionDepth);
+        expansions.push(new Expansion(templateName));
+        return true;
+    }
+
+    public void exitTemplate() {
+        final Expansion expansion = expansions.pop();
+        expansionDepth--;
+        final long nanos = System.nanoTime() - expansion.start;
+        TemplateProfile profile = templates.get(expansion.templateName);
+        if (profile == null) {
+            profile = new TemplateProfile(expansion.templateName);
+            templates.put(expansion.templateName, profile);
+        }
+        profile.calls++;
+        profile.selfNanos += nanos - expansion.childNanos;
+        final Expansion parent = expansions.peek();
+        if (parent != null) {
+            parent.childNanos += nanos;
+        } else {
+            totalNanos += nanos;
+        }
+        // recursive calls are only counted once in the total time
+        if (!isExpanding(expansion.templateName)) {
+            profile.totalNanos += nanos;
+        }
+    }
+
+    /**
+     * Add the resources used by the template expansion of another model, e.g.
+     * of an <code>#invoke</code> which was evaluated by the
+     * {@link info.bliki.extensions.scribunto.template.ParallelInvoker}, as if
+     * the expansion was part of the current template.
+     *
+     * @return <code>false</code> if a limit is exceeded
+     */
+    public boolean add(LimitReport report) {
+        nodeCount += report.nodeCount;
+        postExpandIncludeSize += report.postExpandIncludeSize;
+        templateArgumentSize += report.templateArgumentSize;
+        expensiveFunctionCount += report.expensiveFunctionCount;
+        highestExpansionDepth = Math.max(highestExpansionDepth, expansionDepth + report.highestExpansionDepth);
+        for (TemplateProfile added : report.templates.values()) {
+            TemplateProfile profile = templates.get(added.templateName);
+            if (profile == null) {
+                profile = new TemplateProfile(added.templateName);
+                templates.put(added.templateName, profile);
+            }
+            profile.calls += added.calls;
+            profile.selfNanos += added.selfNanos;
+            profile.totalNanos += added.totalNanos;
+        }
+        return limits == null
+            || !exceeds(nodeCount, limits.getMaxNodeCount())
+            && !exceeds(postExpandIncludeSize, limits.getMaxPostExpandIncludeSize())
+            && !exceeds(templateArgumentSize, limits.getMaxTemplateArgumentSize())
+            && !exceeds(expensiveFunctionCount, limits.getMaxExpensiveFunctions())
+            && !exceeds(highestExpansionDepth, limits.getMaxExpansionDepth());
+    }
+
+    public int getNodeCount() {
+        return nodeCount;
+    }
+
+    public long getPostExpandIncludeSize() {
+        return postExpandIncludeSize;
+    }
+
+    public long getTemplateArgumentSize() {
+        return templateArgumentSize;
+    }
+
+    public int getHighestExpansionDepth() {
+        return highestExpansionDepth;
+    }
+
+    public int getExpensiveFunctionCount() {
+        return expensiveFunctionCount;
+    }
+
+    /**
+     * @return the time spent expanding the templates of the page
+     */
+    public long getTotalNanos() {
+        return totalNanos;
+    }
+
+    /**
+     * @return the templates, the slowest (by self time) first
+     */
+    public List<TemplateProfile> getTemplateProfiles() {
+        List<TemplateProfile> result = new ArrayList<>(templates.values());
+        Collections.sort(result, new Comparator<TemplateProfile>() {
+            @Override public int compare(TemplateProfile p1, TemplateProfile p2) {
+                return Long.compare(p2.selfNanos, p1.selfNanos);
+            }
+        });
+        return result;
+    }
+
+    /**
+     * @return the report in the format of the MediaWiki limit report comment
+     */
+    public String toHtmlComment() {
+        final TemplateLimits reportLimits = limits != null ? limits : new TemplateLimits();
+        final StringBuilder buffer = new StringBuilder();
+        buffer.append("<!-- \nNewPP limit report\n");
+        buffer.append("Preprocessor visited node count: ").append(nodeCount)
+            .append('/').append(reportLimits.getMaxNodeCount()).append('\n');
+        buffer.append("Post-expand include size: ").append(postExpandIncludeSize)
+            .append('/').append(reportLimits.getMaxPostExpandIncludeSize()).append(" characters\n");
+        buffer.append("Template argument size: ").append(templateArgumentSize)
+            .append('/').append(reportLimits.getMaxTemplateArgumentSize()).append(" characters\n");
+        buffer.append("Highest expansion depth: ").append(highestExpansionDepth)
+            .append('/').append(reportLimits.getMaxExpansionDepth()).append('\n');
+        buffer.append("Expensive parser function count: ").append(expensiveFunctionCount)
+            .append('/').append(reportLimits.getMaxExpensiveFunctions()).append('\n');
+        buffer.append("-->\n");
+
+        buffer.append("<!--\nTransclusion expansion time report (%,ms self,ms total,calls,template)\n");
+        buffer.append(String.format(Locale.ROOT, "100.00%% %8.3f %8.3f %6d -total\n",
+            totalNanos / 1e6, totalNanos / 1e6, 1));
+        final List<TemplateProfile> profiles = getTemplateProfiles();
+        for (int i = 0; i < profiles.size() && i < reportLimits.getReportedTemplates(); i++) {
+            final TemplateProfile profile = profiles.get(i);
+            buffer.append(String.format(Locale.ROOT, "%6.2f%% %8.3f %8.3f %6d %s\n",
+                totalNanos == 0 ? 0.0 : 100.0 * profile.selfNanos / totalNanos,
+                profile.selfNanos / 1e6, profile.totalNanos / 1e6, profile.calls,
+                profile.templateName.replace("--", "-&#45;")));
+        }
+        buffer.append("-->\n");
+        return buffer.toString();
+    }
+
+    private boolean isExpanding(String templateName) {
+        for (Expansion expansion : expansions) {
+            if (expansion.templateName.equals(templateName)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * The time spent in a template, over all of its calls.
+     */
+    public static class TemplateProfile {
+        private final String templateName;
+        private int calls;
+        private long selfNanos;
+        private long totalNanos;
+
+        TemplateProfile(String templateName) {
+            this.templateName = templateName;
+        }
+
+        public String getTemplateName() {
+            return templateName;
+        }
+
+        public int getCalls() {
+            return calls;
+        }
+
+        /**
+         * @return the time spent in the template, without the templates it
+         *         calls
+         */
+        public long getSelfNanos() {
+            return selfNanos;
+        }
+
+        public long getTotalNanos() {
+            return totalNanos;
+        }
+    }
+
+    private static class Expansion {
+        final String templateName;
+        final long start = System.nanoTime();
+        long childNanos;
+
+        Expansion(String templateName) {
+            this.templateName = templateName;
+        }
+    }
+}
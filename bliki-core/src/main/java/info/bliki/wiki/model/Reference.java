@@ -10,6 +10,7 @@ public class Reference {
 
     private String fReference;
     private String fNameAttribute;
+    private String fGroup;
     private int fCounter;
 
     public Reference(String reference) {
@@ -17,8 +18,22 @@ public class Reference {
     }
 
     public Reference(String reference, String nameAttribute) {
+        this(reference, nameAttribute, "");
+    }
+
+    /**
+     * @param reference
+     *          the rendered HTML code of the ref-Tag body
+     * @param nameAttribute
+     *          the value of the <code>name</code> attribute
+     * @param group
+     *          the value of the <code>group</code> attribute or
+     *          <code>""</code> for the default group
+     */
+    public Reference(String reference, String nameAttribute, String group) {
         fReference = reference;
         fNameAttribute = nameAttribute;
+        fGroup = group;
         fCounter = 0;
     }
 
@@ -26,6 +41,10 @@ public class Reference {
         return fReference;
     }
 
+    void setRefString(String reference) {
+        fReference = reference;
+    }
+
     public int incCounter() {
         return ++fCounter;
     }
@@ -37,4 +56,20 @@ public class Reference {
     public String getAttribute() {
         return fNameAttribute;
     }
+
+    public String getGroup() {
+        return fGroup;
+    }
+
+    /**
+     * Get the prefix of the HTML ids of the references of a group, so the ids
+     * of different groups don't collide.
+     *
+     * @param group
+     *          the group or <code>null</code> for the default group
+     * @return <code>""</code> for the default group
+     */
+    public static String getIdPrefix(String group) {
+        return group == null || group.length() == 0 ? "" : group + '_';
+    }
 }
@@ -0,0 +1,145 @@
+package info.bliki.wiki.model;
+
+import info.bliki.wiki.filter.HTMLConverter;
+import info.bliki.wiki.filter.ITextConverter;
+import info.bliki.wiki.filter.PageSections;
+import info.bliki.wiki.filter.Util;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Render single sections of a page (see {@link PageSections}) and cache the
+ * rendered sections.
+ *
+ * Only the requested sections are parsed and converted. The cache key is the
+ * page name of the model (see {@link IWikiModel#getPageName()}), the section
+ * number and a SHA-256 fingerprint of the section text, so after editing a
+ * section the other sections of the page are still cached and a renderer can
+ * be used for several pages. The
+ * cache holds at most <code>maxEntries</code> sections; the least recently
+ * used sections are evicted first.
+ *
+ * <b>Note:</b> each section is rendered on its own, so references of other
+ * sections, the table of contents and the numbering of duplicate header
+ * anchors aren't available in the rendered section. The cached sections are
+ * only valid as long as the configuration of the model and the included
+ * templates don't change; call {@link #clear()} otherwise. Like the wiki model
+ * this class isn't thread-safe.
+ */
+public class SectionRenderer {
+    public static final int DEFAULT_MAX_ENTRIES = 1000;
+
+    private final AbstractWikiModel fWikiModel;
+    private final ITextConverter fConverter;
+    private final Map<String, String> fCache;
+    private long fHits;
+    private long fMisses;
+
+    public SectionRenderer(AbstractWikiModel wikiModel) {
+        this(wikiModel, new HTMLConverter(), DEFAULT_MAX_ENTRIES);
+    }
+
+    /**
+     * @param wikiModel
+     *          the model which renders the sections
+     * @param converter
+     *          the converter for the rendered sections
+     * @param maxEntries
+     *          the maximum number of cached sections
+     */
+    public SectionRenderer(AbstractWikiModel wikiModel, ITextConverter converter, final int maxEntries) {
+        if (maxEntries <= 0) {
+            throw new IllegalArgumentException("maxEntries must be positive: " + maxEntries);
+        }
+        fWikiModel = wikiModel;
+        fConverter = converter;
+        fCache = new LinkedHashMap<String, String>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    /**
+     * Render a single section of the page.
+     *
+     * @param rawWikiText
+     *          the wiki text of the page
+     * @param section
+     *          the section number, <code>0</code> for the lead
+     * @return the rendered section
+     */
+    public String renderSection(String rawWikiText, int section) throws IOException {
+        return renderSection(PageSections.split(rawWikiText), section);
+    }
+
+    /**
+     * Render a single section of the page.
+     *
+     * @param sections
+     *          the sections of the page
+     * @param section
+     *          the section number, <code>0</code> for the lead
+     * @return the rendered section
+     */
+    public String renderSection(PageSections sections, int section) throws IOException {
+        String text = sections.getText(section);
+        String key = key(fWikiModel.getPageName(), section, text);
+        String result = fCache.get(key);
+        if (result == null) {
+            fMisses++;
+            result = fWikiModel.renderSection(fConverter, text, section);
+            fCache.put(key, result);
+        } else {
+            fHits++;
+        }
+        return result;
+    }
+
+    /**
+     * Render all sections of the page one after the other, using the cached
+     * sections.
+     *
+     * @param sections
+     *          the sections of the page
+     * @return the rendered sections
+     */
+    public String render(PageSections sections) throws IOException {
+        StringBuilder buf = new StringBuilder();
+        for (int i = 0; i < sections.size(); i++) {
+            buf.append(renderSection(sections, i));
+        }
+        return buf.toString();
+    }
+
+    /**
+     * Remove all sections from the cache.
+     */
+    public void clear() {
+        fCache.clear();
+    }
+
+    /**
+     * @return the number of cached sections
+     */
+    public int size() {
+        return fCache.size();
+    }
+
+    public long getHitCount() {
+        return fHits;
+    }
+
+    public long getMissCount() {
+        return fMisses;
+    }
+
+    private static String key(String pageName, int section, String text) {
+        return pageName + ":" + section + ":" + Util.sha256(text);
+    }
+}
@@ -0,0 +1,113 @@
+package info.bliki.wiki.model;
+
+/**
+ * Limits for the expansion of templates and parser functions of a page, with
+ * the MediaWiki defaults. A limit of <code>0</code> disables the check.
+ *
+ * See <a href="https://www.mediawiki.org/wiki/Manual:$wgMaxPPNodeCount">$wgMaxPPNodeCount</a>,
+ * <a href="https://www.mediawiki.org/wiki/Manual:$wgMaxArticleSize">$wgMaxArticleSize</a>,
+ * <a href="https://www.mediawiki.org/wiki/Manual:$wgMaxPPExpandDepth">$wgMaxPPExpandDepth</a> and
+ * <a href="https://www.mediawiki.org/wiki/Manual:$wgExpensiveParserFunctionLimit">$wgExpensiveParserFunctionLimit</a>.
+ *
+ * @see IConfiguration#setTemplateLimits(TemplateLimits)
+ */
+public class TemplateLimits {
+    public static final int DEFAULT_MAX_NODE_COUNT = 1000000;
+    public static final int DEFAULT_MAX_INCLUDE_SIZE = 2048 * 1024;
+    public static final int DEFAULT_MAX_EXPANSION_DEPTH = 40;
+    public static final int DEFAULT_MAX_EXPENSIVE_FUNCTIONS = 500;
+
+    private int maxNodeCount = DEFAULT_MAX_NODE_COUNT;
+    private int maxPostExpandIncludeSize = DEFAULT_MAX_INCLUDE_SIZE;
+    private int maxTemplateArgumentSize = DEFAULT_MAX_INCLUDE_SIZE;
+    private int maxExpansionDepth = DEFAULT_MAX_EXPANSION_DEPTH;
+    private int maxExpensiveFunctions = DEFAULT_MAX_EXPENSIVE_FUNCTIONS;
+    private boolean reportComment;
+    private int reportedTemplates = 10;
+
+    public int getMaxNodeCount() {
+        return maxNodeCount;
+    }
+
+    /**
+     * @param maxNodeCount the number of templates and parser functions a
+     *        page may expand
+     */
+    public void setMaxNodeCount(int maxNodeCount) {
+        this.maxNodeCount = maxNodeCount;
+    }
+
+    public int getMaxPostExpandIncludeSize() {
+        return maxPostExpandIncludeSize;
+    }
+
+    /**
+     * @param maxSize the total number of characters all expanded templates
+     *        of a page may produce
+     */
+    public void setMaxPostExpandIncludeSize(int maxSize) {
+        this.maxPostExpandIncludeSize = maxSize;
+    }
+
+    public int getMaxTemplateArgumentSize() {
+        return maxTemplateArgumentSize;
+    }
+
+    /**
+     * @param maxSize the total number of characters of the arguments passed
+     *        to the templates of a page
+     */
+    public void setMaxTemplateArgumentSize(int maxSize) {
+        this.maxTemplateArgumentSize = maxSize;
+    }
+
+    public int getMaxExpansionDepth() {
+        return maxExpansionDepth;
+    }
+
+    /**
+     * @param maxDepth the number of nested template calls
+     */
+    public void setMaxExpansionDepth(int maxDepth) {
+        this.maxExpansionDepth = maxDepth;
+    }
+
+    public int getMaxExpensiveFunctions() {
+        return maxExpensiveFunctions;
+    }
+
+    /**
+     * @param maxCount the number of expensive parser functions (e.g.
+     *        <code>#ifexist</code>) a page may call
+     */
+    public void setMaxExpensiveFunctions(int maxCount) {
+        this.maxExpensiveFunctions = maxCount;
+    }
+
+    public boolean isReportComment() {
+        return reportComment;
+    }
+
+    /**
+     * @param reportComment append the {@link LimitReport} as an HTML comment
+     *        to the rendered HTML
+     */
+    public void setReportComment(boolean reportComment) {
+        this.reportComment = reportComment;
+    }
+
+    public int getReportedTemplates() {
+        return reportedTemplates;
+    }
+
+    /**
+     * @param count the number of templates in the expansion time report
+     */
+    public void setReportedTemplates(int count) {
+        this.reportedTemplates = count;
+    }
+
+    static boolean exceeds(long value, int limit) {
+        return limit > 0 && value > limit;
+    }
+}
@@ -46,6 +46,11 @@ public class HTMLTag extends TagNode {
         appendEscapedAttributes(buf, tagAtttributes);
     }
 
+    @Override
+    public int getKind() {
+        return HTML_TAG;
+    }
+
     public void renderHTML(ITextConverter converter, Appendable buf, IWikiModel model) throws IOException {
         boolean newLinesAfterTag = false;
         boolean newLinesAfterChildren = false;
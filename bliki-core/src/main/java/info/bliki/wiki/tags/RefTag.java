@@ -1,9 +1,10 @@
 package info.bliki.wiki.tags;
 
-import info.bliki.htmlcleaner.TagNode;
+import info.bliki.htmlcleaner.Utils;
 import info.bliki.wiki.filter.Encoder;
 import info.bliki.wiki.filter.ITextConverter;
 import info.bliki.wiki.model.IWikiModel;
+import info.bliki.wiki.model.Reference;
 import info.bliki.wiki.tags.util.IBodyTag;
 
 import java.io.IOException;
@@ -23,26 +24,36 @@ public class RefTag extends HTMLTag implements IBodyTag {
 
     @Override
     public void renderHTML(ITextConverter converter, Appendable writer, IWikiModel model) throws IOException {
-        TagNode node = this;
-        List<Object> children = node.getChildren();
-        int len = children.size();
-        len = len == 0 ? 16 : len * 64;
-        StringBuilder buf = new StringBuilder(len);
-        renderHTMLWithoutTag(converter, buf, model);
         Map<String, String> map = getAttributes();
         String value = map.get("name");
-        String reference = buf.toString();
-        String[] offset = model.addToReferences(reference, value);
+        String group = map.get("group");
+        String reference = null;
+        Reference namedReference = value == null ? null : model.getReference(value, group);
+        if (namedReference == null || namedReference.getRefString().length() == 0) {
+            // the body of a reused named reference is only rendered once
+            List<Object> children = getChildren();
+            int len = children.size();
+            len = len == 0 ? 16 : len * 64;
+            StringBuilder buf = new StringBuilder(len);
+            renderHTMLWithoutTag(converter, buf, model);
+            reference = buf.toString();
+        }
+        String[] offset = model.addToReferences(reference, value, group);
         if (null == value) {
             value = offset[0];
         }
         String ref = (null == offset[1]) ? offset[0] : offset[1];
+        String idPrefix = Reference.getIdPrefix(group);
 
         writer.append("<sup id=\"_ref-");
-        writer.append(Encoder.encodeDotUrl(ref));
+        writer.append(Encoder.encodeDotUrl(idPrefix + ref));
         writer.append("\" class=\"reference\"><a href=\"#_note-");
-        writer.append(Encoder.encodeDotUrl(value));
+        writer.append(Encoder.encodeDotUrl(idPrefix + value));
         writer.append("\" title=\"\">[");
+        if (idPrefix.length() > 0) {
+            Utils.escapeXmlToBuffer(group, writer, false, false, false);
+            writer.append(' ');
+        }
         writer.append(offset[0]);
         writer.append("]</a></sup>");
     }
@@ -51,6 +62,11 @@ public class RefTag extends HTMLTag implements IBodyTag {
     public void renderPlainText(ITextConverter converter, Appendable buf, IWikiModel wikiModel) throws IOException {
     }
 
+    @Override
+    public boolean isAllowedAttribute(String attName) {
+        return "group".equals(attName);
+    }
+
     @Override
     public boolean isReduceTokenStack() {
         return false;
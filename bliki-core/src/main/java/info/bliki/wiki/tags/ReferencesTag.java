@@ -21,7 +21,25 @@ public class ReferencesTag extends HTMLTag {
 
     @Override
     public void renderHTML(ITextConverter converter, Appendable writer, IWikiModel model) throws IOException {
-        List<Reference> list = model.getReferences();
+        renderReferences(model.getReferences(getAttributes().get("group")), writer);
+    }
+
+    /**
+     * Render a list of references (i.e. footnotes). The list may also be
+     * rendered after the body of a page is rendered, e.g. for a page without
+     * a <code>&lt;references /&gt;</code> tag:
+     *
+     * <pre>
+     * model.render(converter, rawWikiText, writer, false, true);
+     * ReferencesTag.renderReferences(model.getReferences(), writer);
+     * </pre>
+     *
+     * @param list
+     *          the references of a group or <code>null</code>
+     * @param writer
+     *          the writer for the rendered list
+     */
+    public static void renderReferences(List<Reference> list, Appendable writer) throws IOException {
         if (list != null) {
             Reference ref;
             int counter;
@@ -30,10 +48,14 @@ public class ReferencesTag extends HTMLTag {
                 ref = list.get(i);
                 counter = ref.getCounter();
                 writer.append("<li id=\"_note-");
-                String nameAttribute = Encoder.encodeDotUrl(ref.getAttribute());
+                String idPrefix = Reference.getIdPrefix(ref.getGroup());
+                String nameAttribute = ref.getAttribute();
+                if (nameAttribute.length() > 0) {
+                    nameAttribute = Encoder.encodeDotUrl(idPrefix + nameAttribute);
+                }
                 if (counter == 0) {
                     if (nameAttribute.length() == 0) {
-                        String i1 = Integer.toString(i + 1);
+                        String i1 = Encoder.encodeDotUrl(idPrefix + (i + 1));
                         writer.append(i1);
                         writer.append("\"><b><a href=\"#_ref-");
                         writer.append(i1);
@@ -73,6 +95,11 @@ public class ReferencesTag extends HTMLTag {
         }
     }
 
+    @Override
+    public boolean isAllowedAttribute(String attName) {
+        return "group".equals(attName);
+    }
+
     @Override
     public boolean isReduceTokenStack() {
         return false;
@@ -3,6 +3,7 @@ package info.bliki.wiki.tags;
 import info.bliki.wiki.filter.ITextConverter;
 import info.bliki.wiki.model.Configuration;
 import info.bliki.wiki.model.IWikiModel;
+import info.bliki.wiki.tags.code.SourceCodeCache;
 import info.bliki.wiki.tags.code.SourceCodeFormatter;
 import info.bliki.wiki.tags.util.INoBodyParsingTag;
 
@@ -48,7 +49,17 @@ public class SourceTag extends HTMLBlockTag implements INoBodyParsingTag {
                 String result;
                 SourceCodeFormatter formatter = model.getCodeFormatterMap().get(sourceCodeLanguage);
                 if (formatter != null) {
-                    result = formatter.filter(content);
+                    SourceCodeCache cache = model.getSourceCodeCache();
+                    if (cache != null) {
+                        String key = SourceCodeCache.key(sourceCodeLanguage, content);
+                        result = cache.get(key);
+                        if (result == null) {
+                            result = formatter.filter(content);
+                            cache.put(key, result);
+                        }
+                    } else {
+                        result = formatter.filter(content);
+                    }
                     writer.append(SOURCE_START_1);
                     writer.append(sourceCodeLanguage);
                     writer.append(SOURCE_START_2);
@@ -21,6 +21,16 @@ public class TableOfContentTag extends HTMLTag implements IBodyTag,
         ITableOfContent {
     private List<Object> fTableOfContent = null;
 
+    /**
+     * The section headers in the order of the page
+     */
+    private List<SectionHeader> fSectionHeaders = null;
+
+    /**
+     * The rendered list of the section headers, see {@link #getHTML()}
+     */
+    private String fHTML = null;
+
     private boolean fShowToC;
 
     private boolean fIsTOCIdentifier;
@@ -46,14 +56,26 @@ public class TableOfContentTag extends HTMLTag implements IBodyTag,
                         + "<div id=\"toctitle\">\n" + "<h2>");
                 writer.append(contentString);
                 writer.append("</h2>\n</div>");
-                renderToC(writer, fTableOfContent, 0);
+                writer.append(getHTML());
                 writer.append("</td></tr></table><hr/>\n");
             }
         }
     }
 
-    private void renderToC(Appendable writer, List<Object> toc, int level)
-            throws IOException {
+    @Override
+    public String getHTML() {
+        if (fHTML == null) {
+            if (fTableOfContent == null || fTableOfContent.size() == 0) {
+                return "";
+            }
+            StringBuilder buf = new StringBuilder(fSectionHeaders.size() * 80);
+            renderToC(buf, fTableOfContent, 0);
+            fHTML = buf.toString();
+        }
+        return fHTML;
+    }
+
+    private void renderToC(StringBuilder writer, List<Object> toc, int level) {
         writer.append("\n<ul>");
         boolean counted = false;
         boolean setLI = false;
@@ -119,15 +141,56 @@ public class TableOfContentTag extends HTMLTag implements IBodyTag,
         tocTag.fIsTOCIdentifier = this.fIsTOCIdentifier;
         if (this.fTableOfContent == null) {
             tocTag.fTableOfContent = null;
+            tocTag.fSectionHeaders = null;
         } else {
             tocTag.fTableOfContent = new ArrayList<>(this.fTableOfContent);
+            tocTag.fSectionHeaders = new ArrayList<>(this.fSectionHeaders);
         }
+        tocTag.fHTML = null;
         return tocTag;
     }
 
+    /**
+     * Add a section header to the end of the &quot;table of content&quot;.
+     *
+     * @param header
+     *            the section header
+     */
+    public void addSectionHeader(SectionHeader header) {
+        addToTableOfContent(getTableOfContent(), header, header.getLevel());
+        fSectionHeaders.add(header);
+        fHTML = null;
+    }
+
+    private static void addToTableOfContent(List<Object> toc, SectionHeader header, int headLevel) {
+        // the header is added to the last list of each level
+        while (headLevel > 1) {
+            Object last = toc.size() > 0 ? toc.get(toc.size() - 1) : null;
+            if (last instanceof List) {
+                @SuppressWarnings("unchecked")
+                final List<Object> list = (List<Object>) last;
+                toc = list;
+            } else {
+                List<Object> list = new ArrayList<>();
+                toc.add(list);
+                toc = list;
+            }
+            headLevel--;
+        }
+        toc.add(header);
+    }
+
+    /**
+     * Get the tree of the section headers. Use
+     * {@link #addSectionHeader(SectionHeader)} to add a section header.
+     *
+     * @return a list of the section headers and of the lists of the next
+     *         level
+     */
     public List<Object> getTableOfContent() {
         if (fTableOfContent == null) {
             fTableOfContent = new ArrayList<>();
+            fSectionHeaders = new ArrayList<>();
         }
         return fTableOfContent;
     }
@@ -142,22 +205,9 @@ public class TableOfContentTag extends HTMLTag implements IBodyTag,
 
     @Override
     public List<SectionHeader> getSectionHeaders() {
-        List<SectionHeader> resultList = new ArrayList<>();
-        extractSectionHeaders(fTableOfContent, resultList);
-        return resultList;
-    }
-
-    private void extractSectionHeaders(List<Object> toc,
-            List<SectionHeader> resultList) {
-        for (Object tocItem : toc) {
-            if (tocItem instanceof SectionHeader) {
-                SectionHeader header = (SectionHeader) tocItem;
-                resultList.add(header);
-            } else {
-                @SuppressWarnings("unchecked")
-                final List<Object> list = (List<Object>) tocItem;
-                extractSectionHeaders(list, resultList);
-            }
+        if (fSectionHeaders == null) {
+            return new ArrayList<>();
         }
+        return new ArrayList<>(fSectionHeaders);
     }
 }
@@ -87,61 +87,39 @@ public class ABAPCodeFilter extends AbstractCodeFormatter {
     // AbstractCPPBasedCodeFilter.FONT_END);
     // }
 
-    private int appendIdentifier(String input, int identStart, int currentPosition, HashMap<String, String> keywords,
-            HashMap<String, String> objectWords, StringBuilder result) {
-        String originalIdent = input.substring(identStart, --currentPosition);
-        String keywordIdent = originalIdent;
-        if (!isKeywordLowerCase()) {
-            keywordIdent = keywordIdent.toLowerCase();
-        }
-        String keywordValue = keywords.get(keywordIdent);
-        if (keywordValue != null) {
-            result.append(keywordValue);
-            // } else if (objectWords != null && objectWords.contains(originalIdent))
-            // {
-            // result.append("<font color=\"#7F9FBF\">");
-            // result.append(originalIdent);
-            // result.append("</font>");
-        } else {
-            result.append(originalIdent);
-        }
-        return currentPosition;
-    }
-
     @Override
     public String filter(String input) {
-        char[] source = input.toCharArray();
         int currentPosition = 0;
         int identStart = 0;
         char currentChar = ' ';
 
-        HashMap<String, String> keywordsSet = getKeywordSet();
-        HashMap<String, String> objectsSet = getObjectSet();
+        KeywordTrie keywords = getKeywordTrie();
+        boolean ignoreCase = !isKeywordLowerCase();
         StringBuilder result = new StringBuilder(input.length() + input.length() / 4);
         boolean identFound = false;
         // result.append("<font color=\"#000000\">");
         try {
             while (true) {
-                currentChar = source[currentPosition++];
+                currentChar = input.charAt(currentPosition++);
                 if ((currentChar >= 'A' && currentChar <= 'Z') || (currentChar >= 'a' && currentChar <= 'z')) {
                     identStart = currentPosition - 1;
                     identFound = true;
                     // start of identifier ?
                     while ((currentChar >= 'a' && currentChar <= 'z') || (currentChar >= 'A' && currentChar <= 'Z') || currentChar == '-'
                             || currentChar == '_') {
-                        currentChar = source[currentPosition++];
+                        currentChar = input.charAt(currentPosition++);
                     }
-                    currentPosition = appendIdentifier(input, identStart, currentPosition, keywordsSet, objectsSet, result);
+                    appendIdentifier(input, identStart, --currentPosition, keywords, null, ignoreCase, result);
                     identFound = false;
                     continue; // while loop
                 } else if (currentChar == '\'') { // strings
                     result.append(AbstractCPPBasedCodeFilter.FONT_STRINGS);
                     appendChar(result, currentChar);
                     while (currentPosition < input.length()) {
-                        currentChar = source[currentPosition++];
+                        currentChar = input.charAt(currentPosition++);
                         appendChar(result, currentChar);
                         if (currentChar == '\'') {
-                            if (currentPosition < input.length() && source[currentPosition] != '\'') {
+                            if (currentPosition < input.length() && input.charAt(currentPosition) != '\'') {
                                 break;
                             } else {
                                 appendChar(result, currentChar);
@@ -154,13 +132,13 @@ public class ABAPCodeFilter extends AbstractCodeFormatter {
                     }
                     result.append(AbstractCPPBasedCodeFilter.FONT_END);
                     continue;
-                } else if (currentChar == '\n' && currentPosition < input.length() && source[currentPosition] == '*') {
+                } else if (currentChar == '\n' && currentPosition < input.length() && input.charAt(currentPosition) == '*') {
                     // line comment
                     result.append(AbstractCPPBasedCodeFilter.FONT_COMMENT);
                     appendChar(result, currentChar);
-                    appendChar(result, source[currentPosition++]);
+                    appendChar(result, input.charAt(currentPosition++));
                     while (currentPosition < input.length()) {
-                        currentChar = source[currentPosition++];
+                        currentChar = input.charAt(currentPosition++);
                         appendChar(result, currentChar);
                         if (currentChar == '\n') {
                             currentPosition--;
@@ -173,9 +151,9 @@ public class ABAPCodeFilter extends AbstractCodeFormatter {
                     // line comment until \n
                     result.append(AbstractCPPBasedCodeFilter.FONT_COMMENT);
                     appendChar(result, currentChar);
-                    appendChar(result, source[currentPosition++]);
+                    appendChar(result, input.charAt(currentPosition++));
                     while (currentPosition < input.length()) {
-                        currentChar = source[currentPosition++];
+                        currentChar = input.charAt(currentPosition++);
                         appendChar(result, currentChar);
                         if (currentChar == '\n') {
                             break;
@@ -189,7 +167,7 @@ public class ABAPCodeFilter extends AbstractCodeFormatter {
             }
         } catch (IndexOutOfBoundsException e) {
             if (identFound) {
-                currentPosition = appendIdentifier(input, identStart, currentPosition, keywordsSet, null, result);
+                appendIdentifier(input, identStart, input.length(), keywords, null, ignoreCase, result);
             }
         }
         // result.append("</font>");
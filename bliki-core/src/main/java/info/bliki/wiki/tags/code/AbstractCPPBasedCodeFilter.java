@@ -1,157 +1,158 @@
 package info.bliki.wiki.tags.code;
 
-import java.util.HashMap;
-
 /**
  * Syntax highlighting support for C++ based source codes
  *
+ * This class contains the lexer shared by all C++ like languages. Identifiers
+ * are looked up in the {@link KeywordTrie}s of the filter directly in the
+ * input string; language specific tokens are handled by overriding
+ * {@link #filterToken(String, char, int, StringBuilder)}.
  */
 abstract public class AbstractCPPBasedCodeFilter extends AbstractCodeFormatter {
 
     public AbstractCPPBasedCodeFilter() {
     }
 
-    protected int appendIdentifier(String input, int identifierStart, int currentPosition, HashMap<String, String> keyWords,
-            HashMap<String, String> objectWords, StringBuilder result) {
-        String originalIdent = input.substring(identifierStart, --currentPosition);
-        String keywordIdent = originalIdent;
-        if (!isKeywordCaseSensitive()) {
-            keywordIdent = keywordIdent.toLowerCase();
-        }
-        String keywordValue = keyWords.get(keywordIdent);
-        if (keywordValue != null) {
-            result.append(keywordValue);
-        } else {
-            if (objectWords == null) {
-                result.append(originalIdent);
-                return currentPosition;
-            }
-            String objectValue = objectWords.get(keywordIdent);
-            if (objectValue != null) {
-                result.append(objectValue);
-            } else {
-                result.append(originalIdent);
-            }
-        }
-        return currentPosition;
-    }
-
     @Override
     public String filter(String input) {
-        char[] source = input.toCharArray();
         int currentPosition = 0;
         int identStart = 0;
         char currentChar = ' ';
 
-        HashMap<String, String> keywordsSet = getKeywordSet();
-        HashMap<String, String> objectsSet = getObjectSet();
+        KeywordTrie keywords = getKeywordTrie();
+        KeywordTrie objects = getObjectTrie();
+        boolean ignoreCase = !isKeywordCaseSensitive();
         StringBuilder result = new StringBuilder(input.length() + input.length() / 4);
         boolean identFound = false;
-        // result.append("<font color=\"#000000\">");
         try {
             while (true) {
-                currentChar = source[currentPosition++];
+                currentChar = input.charAt(currentPosition++);
                 if ((currentChar >= 'A' && currentChar <= 'Z') || (currentChar == '_') || (currentChar >= 'a' && currentChar <= 'z')) {
                     identStart = currentPosition - 1;
                     identFound = true;
                     // start of identifier ?
                     while ((currentChar >= 'a' && currentChar <= 'z') || (currentChar >= 'A' && currentChar <= 'Z') || currentChar == '_') {
-                        currentChar = source[currentPosition++];
+                        currentChar = input.charAt(currentPosition++);
                     }
-                    currentPosition = appendIdentifier(input, identStart, currentPosition, keywordsSet, objectsSet, result);
+                    appendIdentifier(input, identStart, --currentPosition, keywords, objects, ignoreCase, result);
                     identFound = false;
                     continue; // while loop
-                } else if (currentChar == '\"') { // strings
-                    result.append(FONT_STRINGS);
-                    appendChar(result, currentChar);
-                    while (currentPosition < input.length()) {
-                        currentChar = source[currentPosition++];
-                        appendChar(result, currentChar);
-                        if (currentChar == '\\') {
-                            currentChar = source[currentPosition++];
-                            appendChar(result, currentChar);
-                            continue;
-                        }
-                        if (currentChar == '\"') {
-                            break;
-                        }
-                    }
-                    result.append(FONT_END);
-                    continue;
-                } else if (currentChar == '\'') { // characters
-                    result.append(FONT_STRINGS);
-                    appendChar(result, currentChar);
-                    while (currentPosition < input.length()) {
-                        currentChar = source[currentPosition++];
-                        appendChar(result, currentChar);
-                        if (currentChar == '\\') {
-                            currentChar = source[currentPosition++];
-                            appendChar(result, currentChar);
-                            continue;
-                        }
-                        if (currentChar == '\'') {
-                            break;
-                        }
-                    }
-                    result.append(FONT_END);
-                    continue;
-                } else if (currentChar == '/' && currentPosition < input.length() && source[currentPosition] == '/') {
-                    // line comment
-                    result.append(FONT_COMMENT);
-                    appendChar(result, currentChar);
-                    appendChar(result, source[currentPosition++]);
-                    while (currentPosition < input.length()) {
-                        currentChar = source[currentPosition++];
-                        appendChar(result, currentChar);
-                        if (currentChar == '\n') {
-                            break;
-                        }
-                    }
-                    result.append(FONT_END);
-                    continue;
-                } else if (currentChar == '/' && currentPosition < input.length() && source[currentPosition] == '*') {
-                    if (currentPosition < (input.length() - 1) && source[currentPosition + 1] == '*') {
-                        // javadoc style
-                        result.append(FONT_JAVADOC);
-                    } else {
-                        // multiline comment
-                        result.append(FONT_COMMENT);
-                    }
-                    appendChar(result, currentChar);
-                    appendChar(result, source[currentPosition++]);
-                    while (currentPosition < input.length()) {
-                        currentChar = source[currentPosition++];
-                        appendChar(result, currentChar);
-                        if (currentChar == '/' && source[currentPosition - 2] == '*') {
-                            break;
-                        }
-                    }
-                    result.append(FONT_END);
-                    continue;
-                } else if (currentChar == '<' && isPHPTag() && currentPosition + 3 < input.length() && source[currentPosition] == '?'
-                        && source[currentPosition + 1] == 'p' && source[currentPosition + 2] == 'h' && source[currentPosition + 3] == 'p') {
-                    // php start tag
-                    currentPosition += 4;
-                    result.append(FONT_KEYWORD + "&#60;?php" + FONT_END);
-                    continue;
-                } else if (currentChar == '?' && isPHPTag() && currentPosition < input.length() && source[currentPosition] == '>') {
-                    // php start tag
-                    currentPosition++;
-                    result.append(FONT_KEYWORD + "?&#62;" + FONT_END);
+                }
+                int tokenEnd = filterToken(input, currentChar, currentPosition, result);
+                if (tokenEnd >= 0) {
+                    currentPosition = tokenEnd;
                     continue;
                 }
                 appendChar(result, currentChar);
-
             }
         } catch (IndexOutOfBoundsException e) {
             if (identFound) {
-                currentPosition = appendIdentifier(input, identStart, currentPosition, keywordsSet, null, result);
+                appendIdentifier(input, identStart, input.length(), keywords, null, ignoreCase, result);
             }
         }
-        // result.append(FONT_END);
         return result.toString();
     }
 
+    /**
+     * Highlight the token starting with <code>currentChar</code>, if there is
+     * one. Handles strings, C style comments and PHP tags by default.
+     *
+     * @param input the source code
+     * @param currentChar the current character
+     * @param currentPosition the position after the current character
+     * @param result the result buffer
+     * @return the position after the token or <code>-1</code> if the
+     *         current character doesn't start a token
+     */
+    protected int filterToken(String input, char currentChar, int currentPosition, StringBuilder result) {
+        if (currentChar == '\"' || currentChar == '\'') { // strings and characters
+            return appendString(input, currentChar, currentPosition, result);
+        }
+        if (isCStyleComment() && currentChar == '/' && currentPosition < input.length()) {
+            if (input.charAt(currentPosition) == '/') {
+                return appendLineComment(input, currentChar, currentPosition, result);
+            }
+            if (input.charAt(currentPosition) == '*') {
+                if (currentPosition < (input.length() - 1) && input.charAt(currentPosition + 1) == '*') {
+                    // javadoc style
+                    result.append(FONT_JAVADOC);
+                } else {
+                    // multiline comment
+                    result.append(FONT_COMMENT);
+                }
+                appendChar(result, currentChar);
+                appendChar(result, input.charAt(currentPosition++));
+                while (currentPosition < input.length()) {
+                    currentChar = input.charAt(currentPosition++);
+                    appendChar(result, currentChar);
+                    if (currentChar == '/' && input.charAt(currentPosition - 2) == '*') {
+                        break;
+                    }
+                }
+                result.append(FONT_END);
+                return currentPosition;
+            }
+        }
+        if (isPHPTag()) {
+            if (currentChar == '<' && input.startsWith("?php", currentPosition)) {
+                // php start tag
+                result.append(FONT_KEYWORD + "&#60;?php" + FONT_END);
+                return currentPosition + 4;
+            }
+            if (currentChar == '?' && currentPosition < input.length() && input.charAt(currentPosition) == '>') {
+                // php end tag
+                result.append(FONT_KEYWORD + "?&#62;" + FONT_END);
+                return currentPosition + 1;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Append a string delimited by <code>quote</code>, which may contain
+     * backslash escapes.
+     *
+     * @return the position after the closing quote
+     */
+    protected static int appendString(String input, char quote, int currentPosition, StringBuilder result) {
+        result.append(FONT_STRINGS);
+        appendChar(result, quote);
+        while (currentPosition < input.length()) {
+            char currentChar = input.charAt(currentPosition++);
+            appendChar(result, currentChar);
+            if (currentChar == '\\') {
+                appendChar(result, input.charAt(currentPosition++));
+                continue;
+            }
+            if (currentChar == quote) {
+                break;
+            }
+        }
+        result.append(FONT_END);
+        return currentPosition;
+    }
+
+    /**
+     * Append a comment which starts with <code>currentChar</code> and the
+     * following character and ends at the next newline.
+     *
+     * @return the position after the newline
+     */
+    protected static int appendLineComment(String input, char currentChar, int currentPosition, StringBuilder result) {
+        result.append(FONT_COMMENT);
+        appendChar(result, currentChar);
+        appendChar(result, input.charAt(currentPosition++));
+        while (currentPosition < input.length()) {
+            currentChar = input.charAt(currentPosition++);
+            appendChar(result, currentChar);
+            if (currentChar == '\n') {
+                break;
+            }
+        }
+        result.append(FONT_END);
+        return currentPosition;
+    }
+
     /**
      * Test if the keywords are case sensitive. Returns <code>true</code> by
      * default.
@@ -162,6 +163,16 @@ abstract public class AbstractCPPBasedCodeFilter extends AbstractCodeFormatter {
         return true;
     }
 
+    /**
+     * Test if <code>//</code> and <code>/* ... *&#47;</code> comments are
+     * highlighted. Returns <code>true</code> by default.
+     *
+     * @return <code>true</code> if the language uses C style comments
+     */
+    public boolean isCStyleComment() {
+        return true;
+    }
+
     /**
      *
      */
@@ -24,6 +24,10 @@ abstract public class AbstractCodeFormatter implements SourceCodeFormatter {
 
     public final static String FONT_END = "</span>";
 
+    private volatile KeywordTrie keywordTrie;
+
+    private volatile KeywordTrie objectTrie;
+
     public static void appendChar(StringBuilder result, char currentChar) {
         switch (currentChar) {
         case '\"': // special html escape character
@@ -54,6 +58,60 @@ abstract public class AbstractCodeFormatter implements SourceCodeFormatter {
         map.put(str, FONT_OBJECTS + str + FONT_END);
     }
 
+    /**
+     * Append the highlighted form of the identifier in the given region of the
+     * input if it's a keyword or object word, or the identifier itself
+     * otherwise.
+     *
+     * @param input the source code
+     * @param identStart the start index of the identifier
+     * @param identEnd the end index of the identifier (exclusive)
+     * @param keywords the keywords
+     * @param objectWords the object words, may be <code>null</code>
+     * @param ignoreCase if <code>true</code> the identifier is matched
+     *            case-insensitive
+     * @param result the result buffer
+     */
+    protected static void appendIdentifier(String input, int identStart, int identEnd, KeywordTrie keywords,
+            KeywordTrie objectWords, boolean ignoreCase, StringBuilder result) {
+        String value = keywords.get(input, identStart, identEnd, ignoreCase);
+        if (value == null && objectWords != null) {
+            value = objectWords.get(input, identStart, identEnd, ignoreCase);
+        }
+        if (value != null) {
+            result.append(value);
+        } else {
+            result.append(input, identStart, identEnd);
+        }
+    }
+
+    /**
+     * @return the keyword trie built from {@link #getKeywordSet()}
+     */
+    protected KeywordTrie getKeywordTrie() {
+        KeywordTrie trie = keywordTrie;
+        if (trie == null) {
+            keywordTrie = trie = new KeywordTrie(getKeywordSet());
+        }
+        return trie;
+    }
+
+    /**
+     * @return the object trie built from {@link #getObjectSet()} or
+     *         <code>null</code> if there are no object words
+     */
+    protected KeywordTrie getObjectTrie() {
+        KeywordTrie trie = objectTrie;
+        if (trie == null) {
+            HashMap<String, String> objectSet = getObjectSet();
+            if (objectSet == null) {
+                return null;
+            }
+            objectTrie = trie = new KeywordTrie(objectSet);
+        }
+        return trie;
+    }
+
     /**
      * @return Returns the KEYWORD_SET.
      */
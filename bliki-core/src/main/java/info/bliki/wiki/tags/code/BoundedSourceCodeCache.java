@@ -0,0 +1,118 @@
+package info.bliki.wiki.tags.code;
+
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Default in-memory {@link SourceCodeCache}.
+ *
+ * The cache holds at most <code>maxEntries</code> entries; if it is full the
+ * oldest entries are evicted first. Formatted snippets longer than
+ * <code>maxEntryLength</code> characters aren't cached. Hit, miss and eviction
+ * counters can be used to monitor the effectiveness of the cache.
+ */
+public class BoundedSourceCodeCache implements SourceCodeCache {
+    public static final int DEFAULT_MAX_ENTRIES = 1000;
+    public static final int DEFAULT_MAX_ENTRY_LENGTH = 64 * 1024;
+
+    private final int maxEntries;
+    private final int maxEntryLength;
+    private final Map<String, String> entries = new ConcurrentHashMap<>();
+    private final Queue<String> insertionOrder = new ConcurrentLinkedQueue<>();
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    public BoundedSourceCodeCache() {
+        this(DEFAULT_MAX_ENTRIES, DEFAULT_MAX_ENTRY_LENGTH);
+    }
+
+    /**
+     * @param maxEntries
+     *          the maximum number of cached snippets
+     * @param maxEntryLength
+     *          the maximum length of a cached formatted snippet
+     */
+    public BoundedSourceCodeCache(int maxEntries, int maxEntryLength) {
+        if (maxEntries <= 0) {
+            throw new IllegalArgumentException("maxEntries must be positive: " + maxEntries);
+        }
+        this.maxEntries = maxEntries;
+        this.maxEntryLength = maxEntryLength;
+    }
+
+    @Override
+    public String get(String key) {
+        String formattedCode = entries.get(key);
+        if (formattedCode == null) {
+            misses.incrementAndGet();
+        } else {
+            hits.incrementAndGet();
+        }
+        return formattedCode;
+    }
+
+    @Override
+    public void put(String key, String formattedCode) {
+        if (formattedCode.length() > maxEntryLength) {
+            return;
+        }
+        if (entries.putIfAbsent(key, formattedCode) == null) {
+            insertionOrder.add(key);
+            while (entries.size() > maxEntries) {
+                String eldest = insertionOrder.poll();
+                if (eldest == null) {
+                    break;
+                }
+                if (entries.remove(eldest) != null) {
+                    evictions.incrementAndGet();
+                }
+            }
+        }
+    }
+
+    @Override
+    public void clear() {
+        entries.clear();
+        insertionOrder.clear();
+    }
+
+    /**
+     * @return the number of cached snippets
+     */
+    public int size() {
+        return entries.size();
+    }
+
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    public long getMissCount() {
+        return misses.get();
+    }
+
+    public long getEvictionCount() {
+        return evictions.get();
+    }
+
+    /**
+     * @return the ratio of hits to lookups or <code>0.0</code> if there were no
+     *         lookups yet
+     */
+    public double getHitRatio() {
+        long hitCount = hits.get();
+        long lookups = hitCount + misses.get();
+        return lookups == 0 ? 0.0 : (double) hitCount / lookups;
+    }
+
+    @Override
+    public String toString() {
+        return "BoundedSourceCodeCache[size=" + size() + ", hits=" + getHitCount() + ", misses=" + getMissCount() + ", evictions="
+                + getEvictionCount() + "]";
+    }
+}
@@ -0,0 +1,109 @@
+package info.bliki.wiki.tags.code;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Immutable trie which maps keywords to their highlighted HTML form.
+ *
+ * Lookups are done directly against a region of the source text, so no
+ * substring has to be created for each identifier of the filtered source
+ * code.
+ */
+public final class KeywordTrie {
+    // the children of node n are stored in childLabels / childNodes from
+    // childStart[n] to childStart[n + 1] - 1, sorted by label
+    private final int[] childStart;
+    private final char[] childLabels;
+    private final int[] childNodes;
+    private final String[] values;
+
+    /**
+     * Create a trie from a keyword to value map.
+     *
+     * @param map the keywords and their highlighted values
+     */
+    public KeywordTrie(Map<String, String> map) {
+        List<TreeMap<Character, Integer>> children = new ArrayList<>();
+        List<String> nodeValues = new ArrayList<>();
+        children.add(new TreeMap<Character, Integer>());
+        nodeValues.add(null);
+        int edges = 0;
+        for (Map.Entry<String, String> entry : map.entrySet()) {
+            String key = entry.getKey();
+            int node = 0;
+            for (int i = 0; i < key.length(); i++) {
+                TreeMap<Character, Integer> nodeChildren = children.get(node);
+                Integer child = nodeChildren.get(key.charAt(i));
+                if (child == null) {
+                    child = children.size();
+                    nodeChildren.put(key.charAt(i), child);
+                    children.add(new TreeMap<Character, Integer>());
+                    nodeValues.add(null);
+                    edges++;
+                }
+                node = child;
+            }
+            nodeValues.set(node, entry.getValue());
+        }
+
+        childStart = new int[children.size() + 1];
+        childLabels = new char[edges];
+        childNodes = new int[edges];
+        values = nodeValues.toArray(new String[nodeValues.size()]);
+        int edge = 0;
+        for (int node = 0; node < children.size(); node++) {
+            childStart[node] = edge;
+            for (Map.Entry<Character, Integer> child : children.get(node).entrySet()) {
+                childLabels[edge] = child.getKey();
+                childNodes[edge++] = child.getValue();
+            }
+        }
+        childStart[children.size()] = edge;
+    }
+
+    /**
+     * Get the value of the keyword in the given region of the source.
+     *
+     * @param source the source code
+     * @param start the start index of the keyword (inclusive)
+     * @param end the end index of the keyword (exclusive)
+     * @param ignoreCase if <code>true</code> upper case ASCII letters of the
+     *            source are converted to lower case before matching
+     * @return the value or <code>null</code> if the region doesn't contain a
+     *         keyword
+     */
+    public String get(CharSequence source, int start, int end, boolean ignoreCase) {
+        int node = 0;
+        for (int i = start; i < end; i++) {
+            char ch = source.charAt(i);
+            if (ignoreCase && ch >= 'A' && ch <= 'Z') {
+                ch += 'a' - 'A';
+            }
+            node = child(node, ch);
+            if (node < 0) {
+                return null;
+            }
+        }
+        return values[node];
+    }
+
+    private int child(int node, char ch) {
+        int low = childStart[node];
+        int high = childStart[node + 1] - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            char label = childLabels[mid];
+            if (label < ch) {
+                low = mid + 1;
+            } else if (label > ch) {
+                high = mid - 1;
+            } else {
+                return childNodes[mid];
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,59 @@
+package info.bliki.wiki.tags.code;
+
+import info.bliki.wiki.filter.Util;
+
+/**
+ * Cache for the highlighted HTML output of <code>&lt;source&gt;</code> tags.
+ *
+ * The same code snippets often appear on many wiki pages; a cache avoids
+ * running the {@link SourceCodeFormatter} for each of them again.
+ * Implementations must be thread-safe and should be bounded. They may keep the
+ * entries off-heap or in an external cache (for example based on <a
+ * href="https://jcp.org/en/jsr/detail?id=107">JSR 107</a>), the keys are short
+ * strings built by {@link #key(String, String)}.
+ *
+ * <b>Note:</b> the cached output is only valid as long as the formatters in
+ * the configuration don't change; clear the cache after adding or replacing a
+ * formatter.
+ *
+ * @see BoundedSourceCodeCache
+ */
+public interface SourceCodeCache {
+    /**
+     * Get the highlighted HTML for the given key.
+     *
+     * @param key
+     *          the key created by {@link #key(String, String)}
+     * @return <code>null</code> if the cache doesn't contain the key
+     */
+    String get(String key);
+
+    /**
+     * Store the highlighted HTML for the given key.
+     *
+     * @param key
+     *          the key created by {@link #key(String, String)}
+     * @param formattedCode
+     *          the output of the source code formatter
+     */
+    void put(String key, String formattedCode);
+
+    /**
+     * Remove all entries from the cache.
+     */
+    void clear();
+
+    /**
+     * Create the cache key for a source code snippet from the language and a
+     * SHA-256 fingerprint of the snippet.
+     *
+     * @param language
+     *          the source code language
+     * @param content
+     *          the source code
+     * @return the key, which doesn't contain the source code itself
+     */
+    static String key(String language, String content) {
+        return language + ':' + Util.sha256(content);
+    }
+}
@@ -1,5 +1,6 @@
 package info.bliki.wiki.tags.util;
 
+import info.bliki.htmlcleaner.AttributeStrings;
 
 /**
  * An attribute within a tag on a page. This attribute is similar to Attribute
@@ -71,14 +72,14 @@ public class NodeAttribute extends Attribute {
         mNameStart = name_start;
         mNameEnd = name_end;
         if (name_end > name_start) {
-            mName = new String(mText, name_start, name_end - name_start);
+            mName = AttributeStrings.name(mText, name_start, name_end);
         } else {
             mName = null;
         }
         mValueStart = value_start;
         mValueEnd = value_end;
         if (value_end > value_start) {
-            mValue = new String(mText, value_start, value_end - value_start);
+            mValue = AttributeStrings.value(mText, value_start, value_end);
             mAssignment = "=";
         } else {
             mValue = null;
@@ -212,7 +213,7 @@ public class NodeAttribute extends Attribute {
             // setName (ret); // cache the value
             // }
             if ((null != mText) && (0 <= mNameStart)) {
-                ret = new String(mText, mNameStart, mNameEnd - mNameStart);
+                ret = AttributeStrings.name(mText, mNameStart, mNameEnd);
                 setName(ret); // cache the value
             }
         }
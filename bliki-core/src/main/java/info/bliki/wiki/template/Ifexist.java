@@ -28,7 +28,9 @@ public class Ifexist extends AbstractTemplateFunction {
             String rawWikiContent = null;
             // if parsing failed, e.g. double "::" at the page titles beginning, this
             // is the same as if the page does not exist.
-            if (parsedPagename.valid) {
+            // the page is treated as missing once too many expensive functions have been called
+            if (parsedPagename.valid && model.getLimitReport().incrementExpensiveFunctionCount()) {
+                model.addDependency(parsedPagename);
                 try {
                     rawWikiContent = model.getRawWikiContent(parsedPagename, null);
                 } catch (WikiModelContentException e) {
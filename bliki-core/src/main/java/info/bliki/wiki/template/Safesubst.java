@@ -58,6 +58,7 @@ public class Safesubst extends AbstractTemplateFunction {
         }
 
         String plainContent = null;
+        model.addDependency(parsedPagename);
         try {
             plainContent = model.getRawWikiContent(parsedPagename, parameterMap);
         } catch (WikiModelContentException e) {
@@ -18,10 +18,11 @@ import static java.util.Locale.ENGLISH;
  */
 public class PHPDate {
     private static final DateTimeFormatter RFC_2822 = DateTimeFormatter.ofPattern("EEE, dd MMM yyyy HH:mm:ss Z", ENGLISH);
-    private Map<Character, String> formatMapping;
+    private static final DateTimeFormatter AM_PM = DateTimeFormatter.ofPattern("a", ENGLISH);
+    private static final Map<Character, DateTimeFormatter> FORMATTERS = new HashMap<>();
 
-    public PHPDate() {
-        this.formatMapping = new HashMap<>();
+    static {
+        Map<Character, String> formatMapping = new HashMap<>();
 
         // Day of the month, 2 digits with leading zeros, 01 to 31
         formatMapping.put('d', "dd");
@@ -136,6 +137,12 @@ public class PHPDate {
 
         // Seconds since the Unix Epoch.
         formatMapping.put('U', null);
+
+        for (Map.Entry<Character, String> entry : formatMapping.entrySet()) {
+            if (entry.getValue() != null) {
+                FORMATTERS.put(entry.getKey(), DateTimeFormatter.ofPattern(entry.getValue(), ENGLISH));
+            }
+        }
     }
 
     public String format(String format, ZonedDateTime time) {
@@ -148,9 +155,9 @@ public class PHPDate {
                     builder.append(format.charAt(++i));
                 }
             } else {
-                String mapping = formatMapping.get(current);
-                if (mapping != null) {
-                    builder.append(time.format(DateTimeFormatter.ofPattern(mapping, ENGLISH)));
+                DateTimeFormatter formatter = FORMATTERS.get(current);
+                if (formatter != null) {
+                    formatter.formatTo(time, builder);
                 } else {
                     builder.append(format(time, current));
                 }
@@ -162,7 +169,7 @@ public class PHPDate {
     private String format(ZonedDateTime time, char format) {
         switch (format) {
             case 'a':
-                return DateTimeFormatter.ofPattern("a", ENGLISH).format(time).toLowerCase();
+                return AM_PM.format(time).toLowerCase();
             case 'U':
                 return String.valueOf(time.toEpochSecond());
             case 'r':
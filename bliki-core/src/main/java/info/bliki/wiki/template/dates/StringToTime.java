@@ -3,10 +3,14 @@ package info.bliki.wiki.template.dates;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.util.Calendar;
+import java.util.Collections;
 import java.util.Date;
+import java.util.GregorianCalendar;
 import java.util.Locale;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.TimeZone;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -87,6 +91,14 @@ import java.util.regex.Pattern;
  * </ul>
  *
  * <p>
+ * The most frequent absolute expressions (e.g. <code>1981-10-26</code>,
+ * <code>26 Oct 1981</code> or <code>19811026</code>) are recognized in a
+ * single pass without trying the regular expressions below, and the parsed
+ * timestamps of all expressions that don't depend on the current time are
+ * kept in a bounded LRU cache.
+ * </p>
+ *
+ * <p>
  * Copied from <a href="https://github.com/collegeman/stringtotime/blob/master/src/main/java/com/clutch/dates/StringToTime.java"
  * >github.com/collegeman/stringtotime</a >
  * </p>
@@ -196,6 +208,34 @@ public class StringToTime extends Date {
 
     };
 
+    /** Maximum number of entries of {@link #parseCache}. */
+    private static final int PARSE_CACHE_SIZE = 1024;
+
+    /**
+     * Timestamps of expressions which don't depend on the current time, keyed
+     * by expression and default time zone.
+     */
+    private static final Map<String, Long> parseCache = Collections.synchronizedMap(
+            new LinkedHashMap<String, Long>(64, 0.75f, true) {
+                private static final long serialVersionUID = 1L;
+
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, Long> eldest) {
+                    return size() > PARSE_CACHE_SIZE;
+                }
+            });
+
+    private static final Map<String, Integer> MONTHS = new HashMap<>();
+
+    static {
+        String[] months = { "january", "february", "march", "april", "may", "june", "july", "august", "september",
+                "october", "november", "december" };
+        for (int i = 0; i < months.length; i++) {
+            MONTHS.put(months[i], i);
+            MONTHS.put(months[i].substring(0, 3), i);
+        }
+    }
+
     /** Date/Time string parsed */
     private Object dateTimeString;
 
@@ -305,12 +345,28 @@ public class StringToTime extends Date {
                 return Boolean.FALSE;
             else {
                 String trimmed = String.valueOf(dateTimeString).trim();
+                if ("now".equalsIgnoreCase(trimmed)) {
+                    return now != null ? now.getTime() : System.currentTimeMillis();
+                }
+                TimeZone timeZone = TimeZone.getDefault();
+                String cacheKey = trimmed + '\u0000' + timeZone.getID();
+                Long time = parseCache.get(cacheKey);
+                if (time != null) {
+                    return time;
+                }
+                time = parseAbsolute(trimmed, timeZone);
+                if (time != null) {
+                    parseCache.put(cacheKey, time);
+                    return time;
+                }
                 for (PatternAndFormat paf : known) {
                     Matcher m = paf.matches(trimmed);
                     if (m.matches()) {
-                        Long time = paf.parse(trimmed, now, m);
-                        // System.out.println(String.format("[%s] triggered format [%s]: %s",
-                        // dateTimeString, paf.f, new Date(time)));
+                        time = paf.parse(trimmed, now, m);
+                        if (paf.f.sdf != null) {
+                            // simple date formats don't depend on now
+                            parseCache.put(cacheKey, time);
+                        }
                         return time;
                     }
                 }
@@ -326,6 +382,111 @@ public class StringToTime extends Date {
         }
     }
 
+    /**
+     * Single pass recognizer for the most common absolute expressions. Only
+     * accepts input for which the first matching entry of {@link #known} is a
+     * simple date format, and returns the same timestamp as that format would.
+     *
+     * @return the timestamp or <code>null</code> if the expression isn't
+     *         recognized
+     */
+    private static Long parseAbsolute(String str, TimeZone timeZone) {
+        final int length = str.length();
+        int pos = 0;
+        int[] numbers = new int[3];
+        int[] digits = new int[3];
+        int count = 0;
+        char separator = 0;
+        int monthIndex = -1;
+        while (pos < length && count < 3) {
+            char ch = str.charAt(pos);
+            if (ch >= '0' && ch <= '9') {
+                int start = pos;
+                int value = 0;
+                while (pos < length && (ch = str.charAt(pos)) >= '0' && ch <= '9') {
+                    if (pos - start == 8) {
+                        return null;
+                    }
+                    value = value * 10 + (ch - '0');
+                    pos++;
+                }
+                numbers[count] = value;
+                digits[count++] = pos - start;
+            } else if (count == 1 && separator == ' ' && Character.isLetter(ch)) {
+                // "26 Oct 1981" or "26 October 1981"
+                int start = pos;
+                while (pos < length && Character.isLetter(str.charAt(pos))) {
+                    pos++;
+                }
+                Integer month = MONTHS.get(str.substring(start, pos).toLowerCase(DEFAULT_LOCALE));
+                if (month == null) {
+                    return null;
+                }
+                monthIndex = month;
+                numbers[count] = month + 1;
+                digits[count++] = 0;
+            } else {
+                return null;
+            }
+            if (pos < length) {
+                ch = str.charAt(pos++);
+                if ((ch != '-' && ch != '/' && ch != ' ') || (separator != 0 && ch != separator) || count == 3) {
+                    return null;
+                }
+                separator = ch;
+                if (pos == length) {
+                    // trailing separator
+                    return null;
+                }
+            }
+        }
+        if (pos < length) {
+            return null;
+        }
+
+        int year, month, day;
+        if (count == 1 && digits[0] == 8) {
+            // yyyyMMdd
+            year = numbers[0] / 10000;
+            month = numbers[0] / 100 % 100;
+            day = numbers[0] % 100;
+        } else if (count == 2 && separator == '-' && digits[0] == 4 && digits[1] == 2) {
+            // yyyy-MM
+            year = numbers[0];
+            month = numbers[1];
+            day = 1;
+        } else if (count == 3 && separator == ' ') {
+            // d MMM y
+            if (monthIndex < 0 || digits[0] > 2 || digits[2] != 4) {
+                return null;
+            }
+            year = numbers[2];
+            month = numbers[1];
+            day = numbers[0];
+        } else if (count == 3 && digits[0] == 4 && digits[1] <= 2 && digits[2] <= 2) {
+            // y-M-d or y/M/d
+            year = numbers[0];
+            month = numbers[1];
+            day = numbers[2];
+        } else if (count == 3 && digits[0] <= 2 && digits[1] <= 2 && digits[2] == 4) {
+            // M-d-y or M/d/y
+            year = numbers[2];
+            month = numbers[0];
+            day = numbers[1];
+        } else {
+            return null;
+        }
+        if (monthIndex < 0 && separator == ' ') {
+            return null;
+        }
+
+        // lenient, like the SimpleDateFormat instances in known
+        Calendar cal = new GregorianCalendar(timeZone, DEFAULT_LOCALE);
+        cal.clear();
+        cal.set(year, month - 1, day);
+        return cal.getTimeInMillis();
+    }
+
     private static ParserResult getParserResult(String trimmedDateTimeString, Date now) throws ParseException {
         for (PatternAndFormat paf : known) {
             Matcher m = paf.matches(trimmedDateTimeString);
@@ -0,0 +1,275 @@
+package info.bliki.wiki.template.dates;
+
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A compiled <code>{{#time: ... }}</code> format string.
+ *
+ * The format is split once into a list of immutable emitters (literal text,
+ * {@link DateTimeFormatter}s and computed fields), so formatting a date
+ * doesn't create any formatter instances. Compiled formats are cached per
+ * (format, locale) and may be shared between threads.
+ *
+ * See <a
+ * href="https://www.mediawiki.org/wiki/Help:Extension:ParserFunctions#.23time">
+ * Mediwiki's Help:Extension:ParserFunctions - #time</a>
+ */
+public final class TimeFormat {
+    /**
+     * Maximum number of compiled formats kept in the cache.
+     */
+    private static final int MAX_CACHE_SIZE = 1024;
+
+    /**
+     * Longer format strings are compiled but not cached.
+     */
+    private static final int MAX_CACHED_FORMAT_LENGTH = 256;
+
+    private static final Map<Key, TimeFormat> CACHE = new ConcurrentHashMap<>();
+
+    private static final Map<Character, String> FORMAT_WIKI_TO_JAVA = new HashMap<>();
+
+    private static final DateTimeFormatter RFC822_DATE_FORMAT = DateTimeFormatter.ofPattern(
+            "EEE', 'dd' 'MMM' 'yyyy' 'HH:mm:ss' +0000'", Locale.US);
+
+    static {
+        // year
+        FORMAT_WIKI_TO_JAVA.put('Y', "yyyy"); // 4-digit year, e.g. "2011"
+        FORMAT_WIKI_TO_JAVA.put('y', "yy"); // 2-digit year, e.g. "11"
+        FORMAT_WIKI_TO_JAVA.put('o', "yyyy"); // ISO-8601 year number, e.g. "2011"
+
+        // month
+        FORMAT_WIKI_TO_JAVA.put('n', "M"); // month index, not zero-padded, e.g. "10"
+        FORMAT_WIKI_TO_JAVA.put('m', "MM"); // month index, zero-padded, e.g. "10"
+        FORMAT_WIKI_TO_JAVA.put('M', "MMM"); // an abbreviation of the month name, e.g. "Oct"
+        FORMAT_WIKI_TO_JAVA.put('F', "MMMM"); // the full month name, e.g. "October"
+
+        // day
+        FORMAT_WIKI_TO_JAVA.put('j', "d"); // Day of the month, not zero-padded, e.g. "6"
+        FORMAT_WIKI_TO_JAVA.put('d', "dd"); // Day of the month, zero-padded, e.g. "06"
+        FORMAT_WIKI_TO_JAVA.put('D', "EEE"); // An abbreviation for the day of the week, e.g. "Thu"
+        FORMAT_WIKI_TO_JAVA.put('l', "EEEE"); // The full weekday name, e.g. "Thursday"
+
+        // hour
+        FORMAT_WIKI_TO_JAVA.put('A', "a"); // "AM" or "PM"
+        FORMAT_WIKI_TO_JAVA.put('g', "h"); // Hour in 12-hour format, not zero-padded, e.g. "3"
+        FORMAT_WIKI_TO_JAVA.put('h', "hh"); // Hour in 12-hour format, zero-padded, e.g. "03"
+        FORMAT_WIKI_TO_JAVA.put('G', "H"); // Hour in 24-hour format, not zero-padded, e.g. "15"
+        FORMAT_WIKI_TO_JAVA.put('H', "HH"); // Hour in 24-hour format, zero-padded, e.g. "15"
+
+        // minutes, seconds
+        FORMAT_WIKI_TO_JAVA.put('i', "mm"); // Minutes past the hour, zero-padded, e.g. "07"
+        FORMAT_WIKI_TO_JAVA.put('s', "ss"); // Seconds past the minute, zero-padded, e.g. "30"
+
+        // misc.
+        // note: assume date is in GMT+00:00:
+        FORMAT_WIKI_TO_JAVA.put('c', "yyyy-MM-dd'T'HH:mm:ss'+00:00'"); // ISO 8601 formatted date
+    }
+
+    private final List<Emitter> emitters;
+
+    private TimeFormat(List<Emitter> emitters) {
+        this.emitters = emitters;
+    }
+
+    /**
+     * Get the compiled form of a <code>#time</code> format string.
+     *
+     * @param format the wiki format string
+     * @param locale the locale used for month and day names
+     * @return the (possibly cached) compiled format
+     */
+    public static TimeFormat compile(String format, Locale locale) {
+        if (format.length() > MAX_CACHED_FORMAT_LENGTH) {
+            return new TimeFormat(parse(format, locale));
+        }
+        final Key key = new Key(format, locale);
+        TimeFormat timeFormat = CACHE.get(key);
+        if (timeFormat == null) {
+            if (CACHE.size() >= MAX_CACHE_SIZE) {
+                CACHE.clear();
+            }
+            timeFormat = new TimeFormat(parse(format, locale));
+            CACHE.put(key, timeFormat);
+        }
+        return timeFormat;
+    }
+
+    public String format(Date date, ZoneId zone) {
+        return format(ZonedDateTime.ofInstant(Instant.ofEpochMilli(date.getTime()), zone));
+    }
+
+    public String format(ZonedDateTime time) {
+        StringBuilder buffer = new StringBuilder(32);
+        formatTo(time, buffer);
+        return buffer.toString();
+    }
+
+    public void formatTo(ZonedDateTime time, StringBuilder buffer) {
+        for (Emitter emitter : emitters) {
+            emitter.appendTo(time, buffer);
+        }
+    }
+
+    private static List<Emitter> parse(String format, Locale locale) {
+        List<Emitter> result = new ArrayList<>();
+        StringBuilder literal = new StringBuilder();
+        boolean inDoubleQuotes = false;
+        for (int curPos = 0; curPos < format.length(); ++curPos) {
+            char curCh = format.charAt(curPos);
+            if (curPos == 0 || !inDoubleQuotes || format.charAt(curPos - 1) == '\\') {
+                Emitter field = fieldEmitter(curCh, locale);
+                if (field != null) {
+                    if (literal.length() > 0) {
+                        result.add(new Literal(literal.toString()));
+                        literal.setLength(0);
+                    }
+                    result.add(field);
+                    continue;
+                }
+            }
+            if (curCh == '"') {
+                inDoubleQuotes = !inDoubleQuotes;
+            }
+            literal.append(curCh);
+        }
+        if (literal.length() > 0) {
+            result.add(new Literal(literal.toString()));
+        }
+        return Collections.unmodifiableList(result);
+    }
+
+    // TODO:
+    // "xg" Output the full month name in the genitive form for site languages
+    // that distinguish between genitive and nominative forms.
+    // "xij", "xiF", "xin", "xiY" Iranian calendar
+    // "xjj", "xjF", "xjx", "xjn", "xjY" Hebrew calendar
+    // "xkY" Thai solar calendar
+    // "xn", "xN" Format numeric codes as raw ASCII numbers
+    // "xr" Format the next number as a roman numeral
+    private static Emitter fieldEmitter(char formatCh, Locale locale) {
+        String pattern = FORMAT_WIKI_TO_JAVA.get(formatCh);
+        if (pattern != null) {
+            return new Formatted(DateTimeFormatter.ofPattern(pattern, locale));
+        }
+        switch (formatCh) {
+            case 'a': // "am" during the morning (00:00:00 -> 11:59:59), "pm" otherwise
+                return new LowerCaseFormatted(DateTimeFormatter.ofPattern("a", locale));
+            case 'r': // RFC 5322 formatted date, with weekday name and month name not internationalised
+                return new Formatted(RFC822_DATE_FORMAT);
+            case 'L': // 1 or 0 whether it's a leap year or not
+            case 'z': // Day of the year (January 1 = 0)
+            case 'N': // ISO 8601 day of the week (Monday = 1, Sunday = 7)
+            case 'w': // Number of the day of the week (Sunday = 0, Saturday = 6)
+            case 'U': // Seconds since January 1 1970 00:00:00 GMT
+            case 't': // Number of days in the current month
+                return new Computed(formatCh);
+            default:
+                return null;
+        }
+    }
+
+    private abstract static class Emitter {
+        abstract void appendTo(ZonedDateTime time, StringBuilder buffer);
+    }
+
+    private static final class Literal extends Emitter {
+        private final String text;
+
+        Literal(String text) {
+            this.text = text;
+        }
+
+        @Override void appendTo(ZonedDateTime time, StringBuilder buffer) {
+            buffer.append(text);
+        }
+    }
+
+    private static class Formatted extends Emitter {
+        protected final DateTimeFormatter formatter;
+
+        Formatted(DateTimeFormatter formatter) {
+            this.formatter = formatter;
+        }
+
+        @Override void appendTo(ZonedDateTime time, StringBuilder buffer) {
+            formatter.formatTo(time, buffer);
+        }
+    }
+
+    private static final class LowerCaseFormatted extends Formatted {
+        LowerCaseFormatted(DateTimeFormatter formatter) {
+            super(formatter);
+        }
+
+        @Override void appendTo(ZonedDateTime time, StringBuilder buffer) {
+            buffer.append(formatter.format(time).toLowerCase());
+        }
+    }
+
+    private static final class Computed extends Emitter {
+        private final char formatCh;
+
+        Computed(char formatCh) {
+            this.formatCh = formatCh;
+        }
+
+        @Override void appendTo(ZonedDateTime time, StringBuilder buffer) {
+            switch (formatCh) {
+                case 'L':
+                    buffer.append(time.toLocalDate().isLeapYear() ? 1 : 0);
+                    break;
+                case 'z':
+                    buffer.append(time.getDayOfYear() - 1);
+                    break;
+                case 'N':
+                    buffer.append(time.getDayOfWeek().getValue());
+                    break;
+                case 'w':
+                    buffer.append(time.getDayOfWeek().getValue() % 7);
+                    break;
+                case 'U':
+                    buffer.append(time.toInstant().toEpochMilli() / 1000);
+                    break;
+                case 't':
+                    buffer.append(time.toLocalDate().lengthOfMonth());
+                    break;
+                default:
+                    buffer.append(formatCh);
+            }
+        }
+    }
+
+    private static final class Key {
+        private final String format;
+        private final Locale locale;
+
+        Key(String format, Locale locale) {
+            this.format = format;
+            this.locale = locale;
+        }
+
+        @Override public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Key)) return false;
+            Key other = (Key) o;
+            return format.equals(other.format) && Objects.equals(locale, other.locale);
+        }
+
+        @Override public int hashCode() {
+            return 31 * format.hashCode() + Objects.hashCode(locale);
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package info.bliki.extensions.scribunto.engine.lua;
+
+import info.bliki.extensions.scribunto.template.Frame;
+import info.bliki.wiki.filter.ParsedPageName;
+import info.bliki.wiki.namespaces.Namespace;
+import org.junit.Before;
+import org.junit.Test;
+import org.luaj.vm2.LuaError;
+
+import java.util.Collections;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.fail;
+
+public class ChildFramesTest {
+    private ChildFrames subject;
+    private Frame frame;
+
+    @Before public void setUp() {
+        subject = new ChildFrames();
+        frame = new Frame(new ParsedPageName(new Namespace().getModule(), "Test", true),
+            Collections.<String, String>emptyMap(), null, false);
+    }
+
+    @Test public void testFramesAreReleasedAfterInvoke() {
+        subject.enter();
+        String id = subject.add(frame);
+        assertThat(subject.get(id)).isSameAs(frame);
+        subject.exit();
+
+        assertThat(subject.get(id)).isNull();
+        assertThat(subject.size()).isEqualTo(0);
+    }
+
+    @Test public void testIdsAreReusedByTheNextInvoke() {
+        subject.enter();
+        assertThat(subject.add(frame)).isEqualTo("frame1");
+        assertThat(subject.add(frame)).isEqualTo("frame2");
+        subject.exit();
+
+        subject.enter();
+        assertThat(subject.add(frame)).isEqualTo("frame1");
+        subject.exit();
+    }
+
+    @Test public void testNestedInvokeOnlyReleasesItsOwnFrames() {
+        subject.enter();
+        String outer = subject.add(frame);
+        subject.enter();
+        String inner = subject.add(frame);
+        assertThat(inner).isNotEqualTo(outer);
+        subject.exit();
+
+        assertThat(subject.get(inner)).isNull();
+        assertThat(subject.get(outer)).isSameAs(frame);
+        subject.exit();
+        assertThat(subject.size()).isEqualTo(0);
+    }
+
+    @Test public void testTooManyFrames() {
+        subject.enter();
+        for (int i = 0; i < ChildFrames.MAX_FRAMES; i++) {
+            subject.add(frame);
+        }
+        try {
+            subject.add(frame);
+            fail("expected LuaError");
+        } catch (LuaError e) {
+            assertThat(e.getMessage()).contains("newChild: too many frames");
+        }
+        subject.exit();
+
+        subject.enter();
+        subject.add(frame);
+        subject.exit();
+    }
+}
@@ -0,0 +1,102 @@
+package info.bliki.extensions.scribunto.engine.lua;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.luaj.vm2.Globals;
+import org.luaj.vm2.lib.jse.JsePlatform;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ExecutionLimiterTest {
+    private static final String LOOP = "local n = 0 for i = 1, %d do n = n + i end return n";
+    private static final String PROTECTED_INFINITE_LOOP = "while true do pcall(function() while true do end end) end";
+
+    private LuaLimits limits;
+    private Globals globals;
+
+    @Before public void setUp() {
+        limits = new LuaLimits();
+        globals = JsePlatform.standardGlobals();
+    }
+
+    @Test public void testInstructionLimitPerInvoke() {
+        limits.setMaxInstructionsPerInvoke(10000);
+        ExecutionLimiter limiter = install();
+
+        assertThat(invoke(limiter, String.format(LOOP, 100))).isNull();
+        assertThat(invoke(limiter, String.format(LOOP, 100000))).isEqualTo(LuaLimitError.INSTRUCTIONS_EXCEEDED);
+        assertThat(invoke(limiter, String.format(LOOP, 100))).isNull();
+    }
+
+    @Test public void testInstructionLimitPerPage() {
+        limits.setMaxInstructionsPerPage(5000);
+        ExecutionLimiter limiter = install();
+
+        assertThat(invoke(limiter, String.format(LOOP, 2000))).isNull();
+        assertThat(invoke(limiter, String.format(LOOP, 2000))).isEqualTo(LuaLimitError.INSTRUCTIONS_EXCEEDED);
+
+        limiter.resetPage();
+        assertThat(invoke(limiter, String.format(LOOP, 2000))).isNull();
+    }
+
+    @Test public void testTimeLimitCannotBeCaught() {
+        limits.setMaxTimePerInvoke(50);
+        ExecutionLimiter limiter = install();
+
+        assertThat(invoke(limiter, PROTECTED_INFINITE_LOOP)).isEqualTo(LuaLimitError.TIME_EXPIRED);
+    }
+
+    @Test public void testNestedInvokesShareTheLimit() {
+        limits.setMaxInstructionsPerInvoke(10000);
+        ExecutionLimiter limiter = install();
+
+        limiter.startInvoke();
+        try {
+            assertThat(invoke(limiter, String.format(LOOP, 3000))).isNull();
+            assertThat(invoke(limiter, String.format(LOOP, 3000))).isEqualTo(LuaLimitError.INSTRUCTIONS_EXCEEDED);
+        } finally {
+            limiter.endInvoke();
+        }
+    }
+
+    @Test public void testNoLimitsOutsideOfInvoke() {
+        limits.setMaxInstructionsPerInvoke(10);
+        install();
+
+        assertThat(globals.load(String.format(LOOP, 1000)).call().toint()).isEqualTo(500500);
+    }
+
+    @Test public void testErrorMessage() {
+        assertThat(new LuaLimitError(LuaLimitError.TIME_EXPIRED).toWikiText()).isEqualTo(
+            "<strong class=\"error\"><span class=\"scribunto-error\">" +
+                "Lua error: the time allocated for running scripts has expired.</span></strong>");
+    }
+
+    @Test public void testLimitsAreDisabledWithZero() {
+        assertThat(limits.isEnabled()).isFalse();
+        limits.setMaxInstructionsPerPage(1);
+        assertThat(limits.isEnabled()).isTrue();
+    }
+
+    private ExecutionLimiter install() {
+        ExecutionLimiter limiter = new ExecutionLimiter(limits);
+        globals.load(limiter);
+        return limiter;
+    }
+
+    /**
+     * @return the reason of the limit error, or <code>null</code> if the code
+     *         completed
+     */
+    private String invoke(ExecutionLimiter limiter, String code) {
+        limiter.startInvoke();
+        try {
+            globals.load(code).call();
+            return null;
+        } catch (LuaLimitError e) {
+            return e.getReason();
+        } finally {
+            limiter.endInvoke();
+        }
+    }
+}
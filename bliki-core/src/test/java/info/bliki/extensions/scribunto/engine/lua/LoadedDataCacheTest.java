@@ -0,0 +1,92 @@
+package info.bliki.extensions.scribunto.engine.lua;
+
+import info.bliki.wiki.filter.ParsedPageName;
+import info.bliki.wiki.namespaces.Namespace;
+import org.junit.Before;
+import org.junit.Test;
+import org.luaj.vm2.Globals;
+import org.luaj.vm2.LuaError;
+import org.luaj.vm2.LuaValue;
+import org.luaj.vm2.lib.jse.JsePlatform;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.fail;
+
+public class LoadedDataCacheTest {
+    private static final String SOURCE = "local shared = {'x'} return { a = 1, b = { 'c', 'd' }, s1 = shared, s2 = shared }";
+
+    private LoadedDataCache subject;
+    private Globals globals;
+    private ParsedPageName pageName;
+
+    @Before public void setUp() {
+        subject = new LoadedDataCache(2);
+        globals = JsePlatform.standardGlobals();
+        pageName = new ParsedPageName(new Namespace().getModule(), "data", true);
+    }
+
+    @Test public void testDataIsCopiedAndCached() {
+        LuaValue data = subject.put(pageName, SOURCE.getBytes(UTF_8), execute(SOURCE));
+        assertThat(data.get("a").toint()).isEqualTo(1);
+        assertThat(data.get("b").length()).isEqualTo(2);
+        assertThat(data.get("b").get(2).tojstring()).isEqualTo("d");
+        assertThat(data.get("s1")).isSameAs(data.get("s2"));
+
+        assertThat(subject.get(pageName, SOURCE.getBytes(UTF_8))).isSameAs(data);
+    }
+
+    @Test public void testChangedSourceInvalidatesEntry() {
+        subject.put(pageName, SOURCE.getBytes(UTF_8), execute(SOURCE));
+        assertThat(subject.get(pageName, "return {}".getBytes(UTF_8))).isNull();
+        assertThat(subject.get(pageName, SOURCE.getBytes(UTF_8))).isNull();
+        assertThat(subject.size()).isZero();
+    }
+
+    @Test public void testCacheIsBounded() {
+        for (int i = 0; i < 3; i++) {
+            subject.put(new ParsedPageName(pageName.namespace, "data" + i, true), SOURCE.getBytes(UTF_8), execute(SOURCE));
+        }
+        assertThat(subject.size()).isEqualTo(2);
+    }
+
+    @Test public void testDataIsReadOnly() {
+        globals.set("data", subject.put(pageName, SOURCE.getBytes(UTF_8), execute(SOURCE)));
+        assertReadOnly("data.a = 2");
+        assertReadOnly("data.b[3] = 'e'");
+        assertReadOnly("rawset(data, 'x', 1)");
+        assertReadOnly("table.insert(data.b, 'e')");
+        assertReadOnly("table.sort(data.b)");
+        assertReadOnly("setmetatable(data, {})");
+        assertThat(globals.load("local n = 0 for _ in pairs(data) do n = n + 1 end return n").call().toint()).isEqualTo(4);
+        assertThat(globals.load("local s = '' for _, v in ipairs(data.b) do s = s .. v end return s").call().tojstring()).isEqualTo("cd");
+    }
+
+    @Test public void testUnsupportedData() {
+        assertUnsupported("return { f = function() end }", "data for mw.loadData contains unsupported data type 'function'");
+        assertUnsupported("return setmetatable({}, {})", "data for mw.loadData contains a table with a metatable");
+    }
+
+    private LuaValue execute(String source) {
+        return globals.load(source).call();
+    }
+
+    private void assertReadOnly(String code) {
+        try {
+            globals.load(code).call();
+            fail("expected LuaError");
+        } catch (LuaError e) {
+            assertThat(e.getMessage()).contains("table from mw.loadData is read-only");
+        }
+    }
+
+    private void assertUnsupported(String source, String message) {
+        try {
+            subject.put(pageName, source.getBytes(UTF_8), execute(source));
+            fail("expected LuaError");
+        } catch (LuaError e) {
+            assertThat(e.getMessage()).isEqualTo(message);
+            assertThat(subject.size()).isZero();
+        }
+    }
+}
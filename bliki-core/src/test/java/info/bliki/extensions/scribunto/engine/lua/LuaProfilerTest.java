@@ -0,0 +1,73 @@
+package info.bliki.extensions.scribunto.engine.lua;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class LuaProfilerTest {
+    private LuaProfiler subject;
+
+    @Before public void setUp() {
+        subject = new LuaProfiler();
+    }
+
+    @Test public void testCallsAreCounted() throws Exception {
+        for (int i = 0; i < 3; i++) {
+            subject.exit(subject.enter("Module:Foo", "bar"));
+        }
+        subject.exit(subject.enter("Module:Foo", "baz"));
+
+        LuaProfiler.ModuleProfile module = subject.getModuleProfile("Module:Foo");
+        assertThat(module.getCalls()).isEqualTo(4);
+        assertThat(module.getFunctionProfiles().get("bar").getCalls()).isEqualTo(3);
+        assertThat(module.getFunctionProfiles().get("baz").getCalls()).isEqualTo(1);
+    }
+
+    @Test public void testCallbacksAreExcludedFromSelfTime() throws Exception {
+        LuaProfiler.Call call = subject.enter("Module:Foo", "bar");
+        Thread.sleep(5);
+        call.expandTemplate(1000000000L);
+        call.preprocess(1000000000L);
+        subject.exit(call);
+
+        LuaProfiler.FunctionProfile profile = subject.getFunctionProfiles().get(0);
+        assertThat(profile.getExpandTemplateCalls()).isEqualTo(1);
+        assertThat(profile.getPreprocessCalls()).isEqualTo(1);
+        assertThat(profile.getCallbackNanos()).isEqualTo(2000000000L);
+        assertThat(profile.getSelfNanos()).isEqualTo(profile.getTotalNanos() - 2000000000L);
+    }
+
+    @Test public void testCompileTime() {
+        subject.compiled("Module:Foo", 1000);
+        subject.compiled("Module:Foo", 500);
+
+        assertThat(subject.getModuleProfile("Module:Foo").getCompiles()).isEqualTo(2);
+        assertThat(subject.getModuleProfile("Module:Foo").getCompileNanos()).isEqualTo(1500);
+        assertThat(subject.getModuleProfile("Module:Bar")).isNull();
+    }
+
+    @Test public void testProfilesAreSnapshots() {
+        subject.exit(subject.enter("Module:Foo", "bar"));
+        LuaProfiler.FunctionProfile function = subject.getFunctionProfiles().get(0);
+        LuaProfiler.ModuleProfile module = subject.getModuleProfiles().get(0);
+        subject.exit(subject.enter("Module:Foo", "bar"));
+
+        assertThat(function.getCalls()).isEqualTo(1);
+        assertThat(module.getCalls()).isEqualTo(1);
+        assertThat(subject.getFunctionProfiles().get(0).getCalls()).isEqualTo(2);
+    }
+
+    @Test public void testReportListsSlowestFunctionsFirst() throws Exception {
+        subject.exit(subject.enter("Module:Fast", "f"));
+        LuaProfiler.Call call = subject.enter("Module:Slow", "f");
+        Thread.sleep(5);
+        subject.exit(call);
+
+        String report = subject.getReport(1);
+        assertThat(report).startsWith("Lua Profile:\n").contains("Module:Slow.f").doesNotContain("Module:Fast");
+
+        subject.reset();
+        assertThat(subject.getModuleProfiles()).isEmpty();
+    }
+}
@@ -0,0 +1,61 @@
+package info.bliki.extensions.scribunto.engine.lua;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.luaj.vm2.Globals;
+import org.luaj.vm2.LuaClosure;
+import org.luaj.vm2.LuaFunction;
+import org.luaj.vm2.Prototype;
+import org.luaj.vm2.lib.jse.JsePlatform;
+
+import java.io.ByteArrayInputStream;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.luaj.vm2.LuaValue.valueOf;
+
+public class ModuleCompilerTest {
+    private static final String MODULE =
+        "local p = {} " +
+        "function p.fib(n) if n < 2 then return n end return p.fib(n - 1) + p.fib(n - 2) end " +
+        "function p.join(t) return table.concat(t, ',') end " +
+        "return p";
+
+    private ModuleCompiler subject;
+    private Globals globals;
+    private Prototype prototype;
+
+    @Before public void setUp() throws Exception {
+        subject = new ModuleCompiler(2);
+        globals = JsePlatform.standardGlobals();
+        prototype = globals.compilePrototype(new ByteArrayInputStream(MODULE.getBytes(UTF_8)), "Module:Fib");
+    }
+
+    @After public void tearDown() {
+        subject.shutdown();
+    }
+
+    @Test public void testModuleIsInterpretedUntilThresholdIsReached() {
+        assertThat(subject.load(prototype, globals)).isNull();
+        assertThat(subject.isCompiled(prototype)).isFalse();
+    }
+
+    @Test public void testHotModuleIsCompiled() throws Exception {
+        assertThat(ModuleCompiler.isSupported()).isTrue();
+        subject.load(prototype, globals);
+        subject.load(prototype, globals);
+        for (int i = 0; i < 500 && !subject.isCompiled(prototype); i++) {
+            Thread.sleep(10);
+        }
+        assertThat(subject.isCompiled(prototype)).isTrue();
+
+        LuaFunction compiled = subject.load(prototype, globals);
+        assertThat(compiled).isNotNull().isNotInstanceOf(LuaClosure.class);
+        assertThat(compiled.call().get("fib").call(valueOf(20)).toint()).isEqualTo(6765);
+        assertThat(compiled.call().get("join").call(globals.load("return {'a', 'b'}").call()).tojstring()).isEqualTo("a,b");
+
+        Globals otherGlobals = JsePlatform.standardGlobals();
+        assertThat(subject.load(prototype, otherGlobals).call().get("fib").call(valueOf(10)).toint()).isEqualTo(55);
+    }
+}
@@ -10,7 +10,12 @@ import info.bliki.wiki.namespaces.Namespace;
 import org.junit.Before;
 import org.junit.Test;
 import org.luaj.vm2.LuaError;
+import org.luaj.vm2.LuaValue;
+import org.luaj.vm2.Prototype;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
 
 import java.util.Map;
 
@@ -20,6 +25,10 @@ import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.anyMap;
 import static org.mockito.Matchers.isNull;
 import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.mockito.MockitoAnnotations.initMocks;
 
@@ -99,4 +108,51 @@ public class ScribuntoLuaEngineTest {
             // expected
         }
     }
+
+    @Test public void testLoadDataIsReloadedForTheNextPageAfterTheDataModuleChanged() throws Exception {
+        subject = new ScribuntoLuaEngine(model, CompiledScriptCache.DONT_CACHE, new LoadedDataCache(8), false);
+        final String[] data = { "return { value = 'old' }" };
+        when(model.getRawWikiContent(any(ParsedPageName.class), anyMap())).thenAnswer(new Answer<String>() {
+            @Override public String answer(InvocationOnMock invocation) {
+                ParsedPageName pageName = (ParsedPageName) invocation.getArguments()[0];
+                return pageName.pagename.equals("data") ? data[0]
+                    : "return { value = function() return mw.loadData('Module:data').value end }";
+            }
+        });
+        ScribuntoModule module = subject.fetchModuleFromParser("testModule");
+        assertThat(module.invoke("value", new Frame(null, null, null, false))).isEqualTo("old");
+
+        data[0] = "return { value = 'new' }";
+        assertThat(module.invoke("value", new Frame(null, null, null, false))).isEqualTo("old");
+        subject.resetUsage();
+        assertThat(module.invoke("value", new Frame(null, null, null, false))).isEqualTo("new");
+    }
+
+    @Test public void testModuleCompilerIsUsedWithTheDefaultLimits() throws Exception {
+        ModuleCompiler compiler = mock(ModuleCompiler.class);
+        when(model.getModuleCompiler()).thenReturn(compiler);
+        when(model.getLuaLimits()).thenReturn(new LuaLimits());
+        subject = new ScribuntoLuaEngine(model, CompiledScriptCache.DONT_CACHE);
+        when(model.getRawWikiContent(any(ParsedPageName.class), anyMap())).thenReturn(
+            "return { test_function = function() return 'result' end }");
+
+        ScribuntoModule module = subject.fetchModuleFromParser("testModule");
+        assertThat(module.invoke("test_function", new Frame(null, null, null, false))).isEqualTo("result");
+
+        ArgumentCaptor<Prototype> prototypes = ArgumentCaptor.forClass(Prototype.class);
+        verify(compiler, atLeastOnce()).load(prototypes.capture(), any(LuaValue.class));
+        assertThat(prototypes.getAllValues().get(prototypes.getAllValues().size() - 1).source.tojstring())
+            .isEqualTo("Module:testModule");
+    }
+
+    @Test public void testModuleCompilerIsNotUsedWithLimits() throws Exception {
+        ModuleCompiler compiler = mock(ModuleCompiler.class);
+        LuaLimits limits = new LuaLimits();
+        limits.setMaxTimePerPage(10000);
+        when(model.getModuleCompiler()).thenReturn(compiler);
+        when(model.getLuaLimits()).thenReturn(limits);
+        subject = new ScribuntoLuaEngine(model, CompiledScriptCache.DONT_CACHE);
+
+        verify(compiler, never()).load(any(Prototype.class), any(LuaValue.class));
+    }
 }
@@ -0,0 +1,67 @@
+package info.bliki.extensions.scribunto.engine.lua.interfaces;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.luaj.vm2.Globals;
+import org.luaj.vm2.LuaError;
+import org.luaj.vm2.LuaTable;
+import org.luaj.vm2.lib.jse.JsePlatform;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.fail;
+
+public class MwHtmlJavaTest {
+    private Globals globals;
+
+    @Before public void setUp() {
+        globals = JsePlatform.standardGlobals();
+        LuaTable html = new LuaTable();
+        new MwHtml().replaceLuaFunctions(html);
+        LuaTable mw = new LuaTable();
+        mw.set("html", html);
+        globals.set("mw", mw);
+    }
+
+    @Test public void testBuilder() {
+        assertThat(run("return tostring(mw.html.create('div'):attr('id', 'x'):addClass('a'):addClass('b')" +
+            ":tag('span'):wikitext('foo', 1):done():newline():tag('br'):allDone())"))
+            .isEqualTo("<div id=\"x\" class=\"a b\"><span>foo1</span>\n<br /></div>");
+    }
+
+    @Test public void testFragmentAndNode() {
+        assertThat(run("local inner = mw.html.create('b'):wikitext('x') " +
+            "return tostring(mw.html.create():node(inner):node(nil):wikitext('<y>'))"))
+            .isEqualTo("<b>x</b><y>");
+    }
+
+    @Test public void testAttributesAreEscaped() {
+        assertThat(run("return tostring(mw.html.create('a'):attr({title = '\"<&>'}):attr('title', nil):attr('href', 'x&y'))"))
+            .isEqualTo("<a href=\"x&amp;y\"></a>");
+        assertThat(run("return mw.html.create('a'):attr('href', 'x'):getAttr('href')")).isEqualTo("x");
+    }
+
+    @Test public void testCss() {
+        assertThat(run("return tostring(mw.html.create('td'):css('color', 'red'):css('width', nil)" +
+            ":cssText('a:b'):css('color', 'blue'):css({['font-family'] = 'x;y'}))"))
+            .isEqualTo("<td style=\"color:blue;a:b;font-family:x\\3B y\"></td>");
+        assertThat(run("return tostring(mw.html.create('td'):css('color', 'red'):attr('style', 'x'))"))
+            .isEqualTo("<td style=\"x\"></td>");
+    }
+
+    @Test public void testSelfClosing() {
+        assertThat(run("return tostring(mw.html.create('span', {selfClosing = true}))")).isEqualTo("<span />");
+    }
+
+    @Test public void testInvalidTagName() {
+        try {
+            run("return mw.html.create('<div>')");
+            fail("expected LuaError");
+        } catch (LuaError e) {
+            assertThat(e.getMessage()).contains("invalid tag name '<div>'");
+        }
+    }
+
+    private String run(String code) {
+        return globals.load(code).call().tojstring();
+    }
+}
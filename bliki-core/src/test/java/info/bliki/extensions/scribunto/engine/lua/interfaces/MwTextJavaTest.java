@@ -0,0 +1,85 @@
+package info.bliki.extensions.scribunto.engine.lua.interfaces;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.luaj.vm2.LuaError;
+import org.luaj.vm2.LuaTable;
+import org.luaj.vm2.LuaValue;
+import org.luaj.vm2.Varargs;
+import org.luaj.vm2.lib.VarArgFunction;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.fail;
+import static org.luaj.vm2.LuaValue.NIL;
+import static org.luaj.vm2.LuaValue.TRUE;
+import static org.luaj.vm2.LuaValue.valueOf;
+import static org.luaj.vm2.LuaValue.varargsOf;
+
+public class MwTextJavaTest {
+    private static final LuaValue LUA_VERSION = valueOf("lua version");
+    private LuaTable text;
+
+    @Before public void setUp() {
+        text = new LuaTable();
+        VarArgFunction luaFunction = new VarArgFunction() {
+            @Override public Varargs invoke(Varargs args) {
+                return LUA_VERSION;
+            }
+        };
+        text.set("split", luaFunction);
+        text.set("trim", luaFunction);
+        new MwText().replaceLuaFunctions(text);
+    }
+
+    @Test public void testSplit() {
+        assertThat(split(valueOf("a, b,, c"), valueOf(","))).containsExactly("a", " b", "", " c");
+        assertThat(split(valueOf("Größe"), valueOf("ö"))).containsExactly("Gr", "ße");
+        assertThat(split(valueOf(""), valueOf(","))).containsExactly("");
+        assertThat(split(valueOf("a%sb"), valueOf("%s"), TRUE)).containsExactly("a", "b");
+    }
+
+    @Test public void testSplitWithPatternUsesLuaVersion() {
+        assertThat(text.get("split").invoke(varargsOf(valueOf("a b"), valueOf("%s"))).arg1()).isEqualTo(LUA_VERSION);
+        assertThat(text.get("split").invoke(varargsOf(valueOf("abc"), valueOf(""))).arg1()).isEqualTo(LUA_VERSION);
+    }
+
+    @Test public void testSplitChecksArguments() {
+        try {
+            text.get("split").call(NIL, valueOf(","));
+            fail("expected LuaError");
+        } catch (LuaError e) {
+            assertThat(e.getMessage()).isEqualTo("bad argument #1 to 'split' (string expected, got nil)");
+        }
+    }
+
+    @Test public void testTrim() {
+        assertThat(text.get("trim").call(valueOf(" \t a b \r\n\f")).tojstring()).isEqualTo("a b");
+        assertThat(text.get("trim").call(valueOf("   ")).tojstring()).isEmpty();
+        assertThat(text.get("trim").call(valueOf(" a")).tojstring()).isEqualTo(" a");
+        assertThat(text.get("trim").call(valueOf("xax"), valueOf("x"))).isEqualTo(LUA_VERSION);
+    }
+
+    @Test public void testNowiki() {
+        assertThat(nowiki("<b>'x' & [[y]] {{z|a=b}}</b>")).isEqualTo(
+            "&#60;b&#62;&#39;x&#39; &#38; &#91;&#91;y&#93;&#93; &#123;&#123;z&#124;a&#61;b&#125;&#125;&#60;/b&#62;");
+        assertThat(nowiki("#a\n*b\r:c\n;d e#f")).isEqualTo("&#35;a\n&#42;b\r&#58;c\n&#59;d e#f");
+        assertThat(nowiki("----\n-----x --")).isEqualTo("&#45;---\n&#45;----x --");
+        assertThat(nowiki("__TOC__ ___")).isEqualTo("_&#95;TOC_&#95; _&#95;_");
+        assertThat(nowiki("http://example.com")).isEqualTo("http&#58;//example.com");
+        assertThat(nowiki("ISBN 123 RFC\t1 PMID\n#2 ISBNx")).isEqualTo("ISBN&#32;123 RFC&#9;1 PMID&#10;&#35;2 ISBNx");
+        assertThat(nowiki("Größe")).isEqualTo("Größe");
+    }
+
+    private String[] split(LuaValue... args) {
+        LuaTable table = text.get("split").invoke(varargsOf(args)).arg1().checktable();
+        String[] result = new String[table.length()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = table.get(i + 1).tojstring();
+        }
+        return result;
+    }
+
+    private String nowiki(String s) {
+        return text.get("nowiki").call(valueOf(s)).tojstring();
+    }
+}
@@ -0,0 +1,168 @@
+package info.bliki.extensions.scribunto.engine.lua.interfaces;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.luaj.vm2.LuaError;
+import org.luaj.vm2.LuaTable;
+import org.luaj.vm2.LuaValue;
+import org.luaj.vm2.Varargs;
+import org.luaj.vm2.lib.OneArgFunction;
+
+import static info.bliki.extensions.scribunto.engine.lua.ScribuntoLuaEngine.toLuaString;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.fail;
+import static org.luaj.vm2.LuaValue.NIL;
+import static org.luaj.vm2.LuaValue.valueOf;
+import static org.luaj.vm2.LuaValue.varargsOf;
+
+public class MwUstringJavaTest {
+    private LuaTable ustring;
+
+    @Before public void setUp() {
+        ustring = new MwUstring(100, 20).getInterface();
+    }
+
+    @Test public void testLen() {
+        assertThat(call("len", "Größe").arg1().toint()).isEqualTo(5);
+        assertThat(call("len", "😀").arg1().toint()).isEqualTo(1);
+        assertThat(ustring.get("len").invoke(LuaValue.valueOf(new byte[]{(byte) 0xC0, (byte) 0x80})).arg1().isnil()).isTrue();
+    }
+
+    @Test public void testSub() {
+        assertThat(call("sub", "Größe", 2, 3).arg1().tojstring()).isEqualTo("rö");
+        assertThat(call("sub", "Größe", -2).arg1().tojstring()).isEqualTo("ße");
+        assertThat(call("sub", "Größe", 4, 2).arg1().tojstring()).isEmpty();
+    }
+
+    @Test public void testUpperLowerAndChar() {
+        assertThat(call("upper", "größe").arg1().tojstring()).isEqualTo("GRÖßE");
+        assertThat(call("lower", "ÄÖÜ").arg1().tojstring()).isEqualTo("äöü");
+        assertThat(call("char", 72, 0xE9, 0x1F600).arg1()).isEqualTo(toLuaString("Hé😀"));
+        Varargs codepoints = call("codepoint", "aé", 1, -1);
+        assertThat(codepoints.narg()).isEqualTo(2);
+        assertThat(codepoints.arg(2).toint()).isEqualTo(0xE9);
+    }
+
+    @Test public void testCodepointOutOfRange() {
+        assertThat(call("codepoint", "").narg()).isEqualTo(0);
+        assertThat(call("codepoint", "abc", 0).narg()).isEqualTo(0);
+        assertThat(call("codepoint", "abc", 0, 2).narg()).isEqualTo(2);
+        assertThat(call("codepoint", "abc", 3, 10).arg1().toint()).isEqualTo('c');
+        assertThat(call("codepoint", "abc", 4).narg()).isEqualTo(0);
+    }
+
+    @Test public void testFindReturnsCodePointPositions() {
+        Varargs result = call("find", "äöü abc", "(%a+)$");
+        assertThat(result.arg(1).toint()).isEqualTo(5);
+        assertThat(result.arg(2).toint()).isEqualTo(7);
+        assertThat(result.arg(3).tojstring()).isEqualTo("abc");
+
+        result = call("find", "äöü.abc", ".", 1, true);
+        assertThat(result.arg(1).toint()).isEqualTo(4);
+        assertThat(call("find", "abc", "^b").arg1().isnil()).isTrue();
+    }
+
+    @Test public void testUnicodeClasses() {
+        assertThat(call("match", "Ελληνικά 123", "%a+").arg1().tojstring()).isEqualTo("Ελληνικά");
+        assertThat(call("match", "x ١٢٣", "%d+").arg1().tojstring()).isEqualTo("١٢٣");
+        assertThat(call("match", "abcÄÖÜdef", "[^a-z]+").arg1().tojstring()).isEqualTo("ÄÖÜ");
+        assertThat(call("match", "«quoted»", "%p(.-)%p").arg1().tojstring()).isEqualTo("quoted");
+    }
+
+    @Test public void testMatchCaptures() {
+        Varargs result = call("match", "key = välue", "(%w+)%s*=%s*()(%w+)");
+        assertThat(result.narg()).isEqualTo(3);
+        assertThat(result.arg(1).tojstring()).isEqualTo("key");
+        assertThat(result.arg(2).toint()).isEqualTo(7);
+        assertThat(result.arg(3).tojstring()).isEqualTo("välue");
+        assertThat(call("match", "f(a(b)c)d", "%b()").arg1().tojstring()).isEqualTo("(a(b)c)");
+        assertThat(call("match", "THE (quick) fox", "%f[%a]%a+%f[%A]", 5).arg1().tojstring()).isEqualTo("quick");
+        assertThat(call("match", "aXbXXc", "(X+).-%1").arg1().tojstring()).isEqualTo("X");
+    }
+
+    @Test public void testGsub() {
+        Varargs result = call("gsub", "hällo wörld", "(%w+)", "<%1>");
+        assertThat(result.arg(1).tojstring()).isEqualTo("<hällo> <wörld>");
+        assertThat(result.arg(2).toint()).isEqualTo(2);
+
+        assertThat(call("gsub", "abc", "", "-").arg1().tojstring()).isEqualTo("-a-b-c-");
+        assertThat(call("gsub", "aaa", "a", "b", 2).arg1().tojstring()).isEqualTo("bba");
+        assertThat(call("gsub", "aaa", "^a", "b").arg1().tojstring()).isEqualTo("baa");
+
+        LuaTable table = new LuaTable();
+        table.set("ä", "ae");
+        assertThat(call("gsub", "bär", "[äöü]", table).arg1().tojstring()).isEqualTo("baer");
+
+        OneArgFunction upper = new OneArgFunction() {
+            @Override
+            public LuaValue call(LuaValue arg) {
+                return arg.tojstring().equals("x") ? NIL : toLuaString(arg.tojstring().toUpperCase());
+            }
+        };
+        assertThat(call("gsub", "axb", ".", upper).arg1().tojstring()).isEqualTo("AxB");
+    }
+
+    @Test public void testGmatch() {
+        Varargs init = call("gmatch_init", "ä=1, ö=2", "(%a)=(%d)");
+        LuaValue s = toLuaString("ä=1, ö=2");
+        Varargs next = ustring.get("gmatch_callback").invoke(varargsOf(new LuaValue[]{s, init.arg(1), init.arg(2), valueOf(0)}));
+        assertThat(next.arg(1).toint()).isEqualTo(3);
+        assertThat(next.arg(2).get(1).tojstring()).isEqualTo("ä");
+        assertThat(next.arg(2).get(2).tojstring()).isEqualTo("1");
+        next = ustring.get("gmatch_callback").invoke(varargsOf(new LuaValue[]{s, init.arg(1), init.arg(2), next.arg(1)}));
+        assertThat(next.arg(2).get(1).tojstring()).isEqualTo("ö");
+        next = ustring.get("gmatch_callback").invoke(varargsOf(new LuaValue[]{s, init.arg(1), init.arg(2), next.arg(1)}));
+        assertThat(next.arg(2).length()).isZero();
+    }
+
+    @Test public void testMalformedPatterns() {
+        assertError("find", "malformed pattern (ends with '%')", "abc", "a%");
+        assertError("find", "malformed pattern (missing ']')", "abc", "[a");
+        assertError("find", "invalid capture index", "abc", "(a)%2");
+        assertError("find", "unfinished capture", "abc", "(a");
+        assertError("find", "invalid pattern capture", "abc", "a)");
+    }
+
+    @Test public void testLimits() {
+        assertError("find", "bad argument #2 to 'find' (pattern is longer than 20 bytes)", "abc", "aaaaaaaaaaaaaaaaaaaaa");
+        StringBuilder longString = new StringBuilder();
+        for (int i = 0; i < 101; i++) {
+            longString.append('a');
+        }
+        assertError("len", "bad argument #1 to 'len' (string is longer than 100 bytes)", longString.toString());
+        assertError("find", "bad argument #1 to 'find' (string expected, got nil)", NIL, "a");
+    }
+
+    @Test public void testCompiledPatternsAreCached() {
+        assertThat(UstringPattern.compile(toLuaString("(%a+)"))).isSameAs(UstringPattern.compile(toLuaString("(%a+)")));
+        assertThat(UstringPattern.compileUnanchored(toLuaString("^a")))
+            .isSameAs(UstringPattern.compileUnanchored(toLuaString("^a")))
+            .isNotSameAs(UstringPattern.compile(toLuaString("^a")));
+    }
+
+    private void assertError(String function, String message, Object... args) {
+        try {
+            call(function, args);
+            fail("expected LuaError");
+        } catch (LuaError e) {
+            assertThat(e.getMessage()).isEqualTo(message);
+        }
+    }
+
+    private Varargs call(String function, Object... args) {
+        LuaValue[] values = new LuaValue[args.length];
+        for (int i = 0; i < args.length; i++) {
+            Object arg = args[i];
+            if (arg instanceof String) {
+                values[i] = toLuaString((String) arg);
+            } else if (arg instanceof Integer) {
+                values[i] = valueOf((Integer) arg);
+            } else if (arg instanceof Boolean) {
+                values[i] = valueOf((Boolean) arg);
+            } else {
+                values[i] = (LuaValue) arg;
+            }
+        }
+        return ustring.get(function).invoke(varargsOf(values));
+    }
+}
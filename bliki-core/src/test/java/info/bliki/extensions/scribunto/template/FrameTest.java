@@ -35,4 +35,34 @@ public class FrameTest {
         assertThat(arguments.get("b").toString()).isEqualTo("b value");
         assertThat(arguments.get(LuaValue.valueOf(1)).toString()).isEqualTo("numbered param");
     }
+
+    @Test public void testArgumentsAreMemoised() {
+        assertThat(subject.getArgument("a")).isSameAs(subject.getArgument("a"));
+        assertThat(subject.getArgument("missing").isnil()).isTrue();
+    }
+
+    @Test public void testLazyArgumentsAreExpandedOnFirstAccess() {
+        final Map<String, Integer> expansions = new LinkedHashMap<>();
+        Map<String, Frame.LazyArgument> arguments = new LinkedHashMap<>();
+        for (final String name : new String[]{"1", "named", "failing"}) {
+            arguments.put(name, new Frame.LazyArgument() {
+                @Override public String expand() {
+                    Integer count = expansions.get(name);
+                    expansions.put(name, count == null ? 1 : count + 1);
+                    return name.equals("failing") ? null : name + " value";
+                }
+            });
+        }
+        Frame child = subject.newLazyChild(subject.getPage(), arguments, false);
+
+        assertThat(child.getArgument("named").tojstring()).isEqualTo("named value");
+        assertThat(child.getArgument("named").tojstring()).isEqualTo("named value");
+        assertThat(expansions).containsOnlyKeys("named");
+
+        LuaValue all = child.getAllArguments();
+        assertThat(all.get(1).tojstring()).isEqualTo("1 value");
+        assertThat(all.get("failing").isnil()).isTrue();
+        assertThat(child.getTemplateParameters().keySet()).containsExactly("1", "named");
+        assertThat(expansions).containsEntry("1", 1).containsEntry("named", 1).containsEntry("failing", 1);
+    }
 }
@@ -0,0 +1,163 @@
+package info.bliki.extensions.scribunto.template;
+
+import info.bliki.extensions.scribunto.engine.ScribuntoEngine;
+import info.bliki.extensions.scribunto.engine.ScribuntoModule;
+import info.bliki.wiki.model.IWikiModel;
+import info.bliki.wiki.model.LimitReport;
+import info.bliki.wiki.model.TemplateLimits;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class ParallelInvokerTest {
+    private ParallelInvoker subject;
+    private IWikiModel model;
+    private ScribuntoEngine engine;
+
+    @Before public void setUp() throws Exception {
+        subject = new ParallelInvoker(new ParallelInvoker.ModelFactory() {
+            @Override public IWikiModel createModel() {
+                try {
+                    return mockModel();
+                } catch (Exception e) {
+                    throw new AssertionError(e);
+                }
+            }
+        }, 2, 200);
+        model = mockModel();
+        engine = model.createScribuntoEngine();
+        model.setFrame(new Frame(null, new HashMap<String, String>(), null, false));
+        when(model.getParallelInvoker()).thenReturn(subject);
+    }
+
+    @After public void tearDown() {
+        subject.shutdown();
+    }
+
+    @Test public void testIndependentInvokesAreEvaluatedByWorkers() throws Exception {
+        subject.prefetch("a {{#invoke:Module|first|x}} b {{ #invoke: Module |second}}", model);
+
+        assertThat(invoke("Module", "first", "x")).startsWith("first in bliki-invoke-");
+        assertThat(invoke(" Module", "second")).startsWith("second in bliki-invoke-");
+        verify(engine, never()).fetchModuleFromParser(anyString());
+    }
+
+    @Test public void testDependentInvokesAreEvaluatedByTheParser() throws Exception {
+        subject.prefetch("{{#invoke:Module|first|{{PAGENAME}}}} {{#invoke:Module|second|<nowiki>|</nowiki>}}", model);
+
+        assertThat(invoke("Module", "first", "{{PAGENAME}}")).isEqualTo("first in " + Thread.currentThread().getName());
+    }
+
+    @Test public void testOtherCallsAreEvaluatedByTheParser() throws Exception {
+        subject.prefetch("{{#invoke:Module|first}}", model);
+
+        assertThat(invoke("Module", "second")).isEqualTo("second in " + Thread.currentThread().getName());
+    }
+
+    @Test public void testNoPrefetchAfterShutdown() throws Exception {
+        subject.shutdown();
+        subject.prefetch("{{#invoke:Module|first}}", model);
+
+        assertThat(invoke("Module", "first")).isEqualTo("first in " + Thread.currentThread().getName());
+    }
+
+    @Test public void testTakenResultsAreRemoved() throws Exception {
+        subject.prefetch("{{#invoke:Module|first}}", model);
+
+        assertThat(invoke("Module", "first")).startsWith("first in bliki-invoke-");
+        assertThat(invoke("Module", "first")).isEqualTo("first in " + Thread.currentThread().getName());
+    }
+
+    @Test public void testTimedOutInvokesAreEvaluatedByTheParser() throws Exception {
+        subject.prefetch("{{#invoke:Module|slow}}", model);
+
+        assertThat(invoke("Module", "slow")).isEqualTo("slow in " + Thread.currentThread().getName());
+    }
+
+    @Test public void testSubstInvokesAreEvaluatedByTheParser() throws Exception {
+        subject.prefetch("{{#invoke:Module|first}}", model);
+
+        assertThat(Invoke.CONST.parseFunction(Arrays.asList("Module", "first"), model, null, 0, 0, true))
+            .isEqualTo("first in " + Thread.currentThread().getName());
+    }
+
+    @Test public void testInvokesAreChargedToThePage() throws Exception {
+        subject.prefetch("{{#invoke:Module|first}} {{#invoke:Module|second}}", model);
+
+        invoke("Module", "first");
+        invoke("Module", "second");
+        assertThat(model.getLimitReport().getExpensiveFunctionCount()).isEqualTo(2);
+    }
+
+    @Test public void testInvokesExceedingTheLimitsOfThePageAreEvaluatedByTheParser() throws Exception {
+        TemplateLimits limits = new TemplateLimits();
+        limits.setMaxExpensiveFunctions(1);
+        when(model.getLimitReport()).thenReturn(new LimitReport(limits));
+        subject.prefetch("{{#invoke:Module|first}} {{#invoke:Module|second}}", model);
+
+        assertThat(invoke("Module", "first")).startsWith("first in bliki-invoke-");
+        assertThat(invoke("Module", "second")).isEqualTo("second in " + Thread.currentThread().getName());
+    }
+
+    private String invoke(String... parts) throws Exception {
+        return Invoke.CONST.parseFunction(Arrays.asList(parts), model, null, 0, 0, false);
+    }
+
+    private static IWikiModel mockModel() throws Exception {
+        final IWikiModel model = mock(IWikiModel.class);
+        final AtomicReference<Frame> frame = new AtomicReference<>();
+        doAnswer(new Answer<Void>() {
+            @Override public Void answer(InvocationOnMock invocation) {
+                frame.set((Frame) invocation.getArguments()[0]);
+                return null;
+            }
+        }).when(model).setFrame(any(Frame.class));
+        when(model.getFrame()).thenAnswer(new Answer<Frame>() {
+            @Override public Frame answer(InvocationOnMock invocation) {
+                return frame.get();
+            }
+        });
+        final AtomicReference<LimitReport> limitReport = new AtomicReference<>(new LimitReport(null));
+        doAnswer(new Answer<Void>() {
+            @Override public Void answer(InvocationOnMock invocation) {
+                limitReport.set(new LimitReport(null));
+                return null;
+            }
+        }).when(model).setUp();
+        when(model.getLimitReport()).thenAnswer(new Answer<LimitReport>() {
+            @Override public LimitReport answer(InvocationOnMock invocation) {
+                return limitReport.get();
+            }
+        });
+        ScribuntoEngine engine = mock(ScribuntoEngine.class);
+        ScribuntoModule module = mock(ScribuntoModule.class);
+        when(model.createScribuntoEngine()).thenReturn(engine);
+        when(engine.fetchModuleFromParser(anyString())).thenReturn(module);
+        when(module.invoke(anyString(), any(Frame.class))).thenAnswer(new Answer<String>() {
+            @Override public String answer(InvocationOnMock invocation) throws InterruptedException {
+                final String threadName = Thread.currentThread().getName();
+                if ("slow".equals(invocation.getArguments()[0]) && threadName.startsWith("bliki-invoke-")) {
+                    Thread.sleep(2000);
+                }
+                model.getLimitReport().incrementExpensiveFunctionCount();
+                return invocation.getArguments()[0] + " in " + threadName;
+            }
+        });
+        return model;
+    }
+}
@@ -3,6 +3,11 @@ package info.bliki.html;
 import info.bliki.html.wikipedia.ToWikipedia;
 import org.junit.Test;
 
+import java.io.FilterReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+
 import static org.assertj.core.api.Assertions.assertThat;
 
 public class HTML2WikipediaTest {
@@ -181,6 +186,35 @@ public class HTML2WikipediaTest {
                 "").isEqualTo(result);
     }
 
+    @Test public void testLineBreakNewline() {
+        HTML2WikiConverter conv = new HTML2WikiConverter();
+        conv.setInputHTML("first<br>second<br>\nthird<br><br>* fourth");
+        String result = conv.toWiki(new ToWikipedia());
+        assertThat(result).isEqualTo("first<br>\nsecond<br>\nthird<br>\n<br>* fourth");
+    }
+
+    @Test public void testReader() throws Exception {
+        StringBuilder html = new StringBuilder();
+        StringBuilder wiki = new StringBuilder();
+        for (int i = 0; i < 500; i++) {
+            html.append("<b>line ").append(i).append("</b><br>");
+            wiki.append("'''line ").append(i).append("'''<br>");
+            if (i < 499) {
+                wiki.append('\n');
+            }
+        }
+        // a reader which returns one character at a time
+        Reader reader = new FilterReader(new StringReader(html.toString())) {
+            @Override
+            public int read(char[] cbuf, int off, int len) throws IOException {
+                return super.read(cbuf, off, Math.min(len, 1));
+            }
+        };
+        StringBuilder result = new StringBuilder();
+        new HTML2WikiConverter(reader).toWiki(new ToWikipedia(), result);
+        assertThat(result.toString()).isEqualTo(wiki.toString());
+    }
+
     public static void main(String[] args) {
         try {
             HTML2WikiConverter conv = new HTML2WikiConverter();
@@ -0,0 +1,81 @@
+package info.bliki.htmlcleaner;
+
+import org.junit.Test;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class AttributeMapTest {
+
+    @Test public void testSortedByName() {
+        AttributeMap map = new AttributeMap();
+        map.put("style", "color:red");
+        map.put("class", "wikitable");
+        map.put("id", "a");
+        map.put("align", "left");
+        map.put("class", "infobox");
+        assertThat(map).hasSize(4);
+        assertThat(map.keySet()).containsExactly("align", "class", "id", "style");
+        assertThat(map.get("class")).isEqualTo("infobox");
+        assertThat(map.get("width")).isNull();
+        assertThat(map.remove("id")).isEqualTo("a");
+        assertThat(map.keySet()).containsExactly("align", "class", "style");
+    }
+
+    @Test public void testSameAsTreeMap() {
+        Random random = new Random(42);
+        AttributeMap map = new AttributeMap();
+        Map<String, String> expected = new TreeMap<>();
+        for (int i = 0; i < 1000; i++) {
+            String key = "a" + random.nextInt(20);
+            if (random.nextInt(3) == 0) {
+                assertThat(map.remove(key)).isEqualTo(expected.remove(key));
+            } else {
+                assertThat(map.put(key, "v" + i)).isEqualTo(expected.put(key, "v" + i));
+            }
+            assertThat(map).isEqualTo(expected);
+            assertThat(map.keySet()).containsExactlyElementsOf(expected.keySet());
+        }
+        assertThat(new AttributeMap(map)).isEqualTo(expected);
+        assertThat(new AttributeMap(expected)).isEqualTo(expected);
+    }
+
+    @Test public void testIterator() {
+        AttributeMap map = new AttributeMap();
+        map.put("b", "2");
+        map.put("a", "1");
+        map.put("c", "3");
+        Iterator<Map.Entry<String, String>> iterator = map.entrySet().iterator();
+        assertThat(iterator.next().getKey()).isEqualTo("a");
+        Map.Entry<String, String> entry = iterator.next();
+        entry.setValue("two");
+        iterator.remove();
+        assertThat(iterator.next().getKey()).isEqualTo("c");
+        assertThat(iterator.hasNext()).isFalse();
+        assertThat(map.keySet()).containsExactly("a", "c");
+
+        AttributeMap copy = new AttributeMap(map);
+        copy.put("d", "4");
+        assertThat(map).hasSize(2);
+        copy.clear();
+        assertThat(copy).isEmpty();
+    }
+
+    @Test public void testAttributeStrings() {
+        char[] text = "class=\"wikitable\" data-x=\"wikitable\"".toCharArray();
+        assertThat(AttributeStrings.name(text, 0, 5)).isSameAs("class");
+        assertThat(AttributeStrings.name(new String("style"))).isSameAs("style");
+        assertThat(AttributeStrings.name(text, 18, 24)).isEqualTo("data-x");
+        String value = AttributeStrings.value(text, 7, 16);
+        assertThat(value).isEqualTo("wikitable");
+        assertThat(AttributeStrings.value(text, 26, 35)).isSameAs(value);
+
+        TagNode node = new TagNode("table");
+        node.addAttribute("CLASS", value, true);
+        assertThat(node.getAttributes().keySet().iterator().next()).isSameAs("class");
+    }
+}
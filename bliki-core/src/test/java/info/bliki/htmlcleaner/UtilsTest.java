@@ -0,0 +1,42 @@
+package info.bliki.htmlcleaner;
+
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class UtilsTest {
+
+    @Test public void testEscapeXml() {
+        assertThat(Utils.escapeXml("a <b> 'c' \"d\" & e", false, false, false))
+            .isEqualTo("a &#60;b&#62; &#39;c&#39; &#34;d&#34; &amp; e");
+        assertThat(Utils.escapeXml("plain text", true, true, true)).isEqualTo("plain text");
+        assertThat(Utils.escapeXml("", true, true, true)).isEqualTo("");
+    }
+
+    @Test public void testCharacterReferences() {
+        assertThat(Utils.escapeXml("&#233;t&#xE9;", true, true, true)).isEqualTo("été");
+        assertThat(Utils.escapeXml("&#60; &#x3C;", true, true, true)).isEqualTo("&#60; &#x3C;");
+        assertThat(Utils.escapeXml("&#xZ", true, true, true)).isEqualTo("&amp;#x;");
+        assertThat(Utils.escapeXml("&#", true, true, true)).isEqualTo("&amp;#;");
+    }
+
+    @Test public void testSupplementaryCharacterReferences() {
+        assertThat(Utils.escapeXml("&#x1F600;", true, true, true)).isEqualTo("😀");
+        assertThat(Utils.escapeXml("&#128512;", true, true, true)).isEqualTo("😀");
+        assertThat(Utils.escapeXml("&#x110000;", true, true, true)).isEqualTo("&amp;#x110000;");
+    }
+
+    @Test public void testSpecialEntities() {
+        assertThat(Utils.escapeXml("caf&eacute; &thetasym; &lt;", true, true, true)).isEqualTo("café ϑ &#60;");
+        assertThat(Utils.escapeXml("caf&eacute;", true, false, true)).isEqualTo("caf&#233;");
+        assertThat(Utils.escapeXml("&unknown; &amp; &nbsp", true, true, true)).isEqualTo("&#38;unknown; &#38; &#38;nbsp");
+        assertThat(SpecialEntities.get("x&hearts;", 2, 8)).isEqualTo(9829);
+        assertThat(SpecialEntities.get("heart", 0, 5)).isEqualTo(-1);
+    }
+
+    @Test public void testPlainText() throws Exception {
+        StringBuilder buf = new StringBuilder();
+        Utils.escapeXmlToBuffer("&lt;a&#62; &amp; 'b' &quot;&foo", buf, false, false, false, true);
+        assertThat(buf.toString()).isEqualTo("<a> & 'b' \"&foo");
+    }
+}
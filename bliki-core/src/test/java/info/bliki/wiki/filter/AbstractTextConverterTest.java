@@ -0,0 +1,95 @@
+package info.bliki.wiki.filter;
+
+import info.bliki.htmlcleaner.BaseToken;
+import info.bliki.htmlcleaner.CommentToken;
+import info.bliki.htmlcleaner.ContentToken;
+import info.bliki.htmlcleaner.EndTagToken;
+import info.bliki.htmlcleaner.TagNode;
+import info.bliki.htmlcleaner.XmlSerializer;
+import info.bliki.wiki.model.IWikiModel;
+import info.bliki.wiki.model.ImageFormat;
+import info.bliki.wiki.tags.HTMLTag;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class AbstractTextConverterTest extends FilterTestSupport {
+
+    /**
+     * A converter which only lists the visited nodes.
+     */
+    private static class TracingConverter extends AbstractTextConverter {
+        @Override
+        protected void visitContent(ContentToken contentToken, Appendable resultBuffer, IWikiModel model) throws IOException {
+            resultBuffer.append("text(").append(contentToken.getContent()).append(')');
+        }
+
+        @Override
+        protected void visitHTMLTag(HTMLTag node, Appendable resultBuffer, IWikiModel model) throws IOException {
+            resultBuffer.append(node.getName()).append('[');
+            super.visitHTMLTag(node, resultBuffer, model);
+            resultBuffer.append(']');
+        }
+
+        @Override
+        protected void visitEndTag(EndTagToken endTag, Appendable resultBuffer, IWikiModel model) throws IOException {
+            resultBuffer.append("end(").append(endTag.getName()).append(')');
+        }
+
+        @Override
+        public void imageNodeToText(TagNode imageTagNode, ImageFormat imageFormat, Appendable resultBuffer, IWikiModel model)
+                throws IOException {
+            resultBuffer.append("image");
+        }
+
+        @Override
+        public boolean renderLinks() {
+            return false;
+        }
+    }
+
+    @Test public void testKinds() {
+        assertThat(new ContentToken("a").getKind()).isEqualTo(BaseToken.TEXT);
+        assertThat(new TagNode("a").getKind()).isEqualTo(BaseToken.TAG);
+        assertThat(new HTMLTag("a").getKind()).isEqualTo(BaseToken.HTML_TAG);
+        assertThat(new EndTagToken("br").getKind()).isEqualTo(BaseToken.END_TAG);
+        assertThat(new CommentToken("a").getKind()).isEqualTo(BaseToken.COMMENT);
+        assertThat(new BaseToken() {
+            @Override
+            public void serialize(XmlSerializer xmlSerializer) {
+            }
+        }.getKind()).isEqualTo(BaseToken.OTHER);
+
+        TagNode node = new TagNode("div");
+        node.addObjectAttribute("wikiobject", "other");
+        assertThat(node.getKind()).isEqualTo(BaseToken.WIKI_OBJECT);
+        node.addObjectAttribute("wikiobject", ImageFormat.getImageFormat("Foo.png", "Image"));
+        assertThat(node.getKind()).isEqualTo(BaseToken.IMAGE);
+    }
+
+    @Test public void testTraversal() throws Exception {
+        HTMLTag bold = new HTMLTag("b");
+        bold.addChild(new ContentToken("bold"));
+        TagNode div = new TagNode("div");
+        div.addChild(bold);
+        div.addChild(new CommentToken("ignored"));
+        TagNode image = new TagNode("div");
+        image.addObjectAttribute("wikiobject", ImageFormat.getImageFormat("Foo.png", "Image"));
+
+        StringBuilder buffer = new StringBuilder();
+        new TracingConverter().nodesToText(Arrays.asList(new ContentToken("a"),
+            Collections.singletonList(div), new EndTagToken("br"), image, null), buffer, wikiModel);
+
+        assertThat(buffer.toString()).isEqualTo("text(a)b[text(bold)]end(br)image");
+    }
+
+    @Test public void testParsedPage() throws Exception {
+        String result = wikiModel.render(new TracingConverter(), "'''x'''<br/>y", false);
+
+        assertThat(result).isEqualTo("p[b[text(x)]end(br)text(y)]");
+    }
+}
@@ -1,7 +1,14 @@
 package info.bliki.wiki.filter;
 
+import info.bliki.wiki.model.IWikiModel;
+import info.bliki.wiki.model.WikiModel;
 import org.junit.Test;
 
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.TimeZone;
+
 import static org.assertj.core.api.Assertions.assertThat;
 
 public class MagicWordTest extends FilterTestSupport {
@@ -30,4 +37,26 @@ public class MagicWordTest extends FilterTestSupport {
         final String result = MagicWord.processMagicWord(MagicWord.MagicWordE.MAGIC_FULL_URL_E, "Category:Name With Space", wikiModel);
         assertThat(result).isEqualTo("//www.bliki.info/wiki/Category:Name_With_Space");
     }
+
+    @Test public void testDatesUseTheTimeZoneOfTheModel() throws Exception {
+        // 2011-12-31 20:00 UTC
+        final Date timestamp = new Date(1325361600000L);
+        IWikiModel model = new WikiModel("${image}", "${title}") {
+            @Override
+            public Date getCurrentTimeStamp() {
+                return timestamp;
+            }
+
+            @Override
+            public SimpleDateFormat getSimpleDateFormat() {
+                SimpleDateFormat format = new SimpleDateFormat("", Locale.GERMAN);
+                format.setTimeZone(TimeZone.getTimeZone("GMT+05:30"));
+                return format;
+            }
+        };
+        assertThat(MagicWord.processMagicWord(MagicWord.MagicWordE.MAGIC_CURRENT_TIMESTAMP, null, model)).isEqualTo("20120101013000");
+        assertThat(MagicWord.processMagicWord(MagicWord.MagicWordE.MAGIC_CURRENT_DAY_OF_WEEK, null, model)).isEqualTo("0");
+        assertThat(MagicWord.processMagicWord(MagicWord.MagicWordE.MAGIC_CURRENT_DAY_NAME, null, model)).isEqualTo("Sonntag");
+        assertThat(MagicWord.processMagicWord(MagicWord.MagicWordE.MAGIC_CURRENT_MONTH_NAME, null, model)).isEqualTo("Januar");
+    }
 }
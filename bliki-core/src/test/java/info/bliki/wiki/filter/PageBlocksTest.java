@@ -0,0 +1,28 @@
+package info.bliki.wiki.filter;
+
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class PageBlocksTest {
+
+    @Test public void testSplit() {
+        String text = "first\nparagraph\n\n\nsecond\n== A ==\nthird\n";
+
+        assertThat(PageBlocks.split(text)).containsExactly("first\nparagraph\n\n", "\nsecond\n== A ==\n", "third\n");
+        assertThat(PageBlocks.split("")).isEmpty();
+    }
+
+    @Test public void testNestedEmptyLines() {
+        assertThat(PageBlocks.split("{{T|\n\nx}}\n\nb")).containsExactly("{{T|\n\nx}}\n\n", "b");
+        assertThat(PageBlocks.split("{|\n|a\n\n|b\n|}\n\nb")).containsExactly("{|\n|a\n\n|b\n|}\n\n", "b");
+        assertThat(PageBlocks.split("a<div>\n\n</div>\n\nb")).containsExactly("a<div>\n\n</div>\n\n", "b");
+        assertThat(PageBlocks.split("a<pre>\n\n== A ==\n</pre>")).containsExactly("a<pre>\n\n== A ==\n</pre>");
+        assertThat(PageBlocks.split("a<br>\n\nb")).containsExactly("a<br>\n\n", "b");
+    }
+
+    @Test public void testComments() {
+        assertThat(PageBlocks.split("a\n<!-- c -->\nb\n\nc")).containsExactly("a\n<!-- c -->\nb\n\n", "c");
+        assertThat(PageBlocks.split("a<!--\n\n== A ==\n-->b")).containsExactly("a<!--\n\n== A ==\n-->b");
+    }
+}
@@ -0,0 +1,49 @@
+package info.bliki.wiki.filter;
+
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class PageSectionsTest {
+
+    @Test public void testSplit() {
+        String text = "lead\n== A ==\na\n=== B ===  \nb\n=C=\n";
+        PageSections sections = PageSections.split(text);
+
+        assertThat(sections.getTexts()).containsExactly("lead\n", "== A ==\na\n", "=== B ===  \nb\n", "=C=\n");
+        assertThat(sections.getLevel(0)).isEqualTo(0);
+        assertThat(sections.getLevel(1)).isEqualTo(2);
+        assertThat(sections.getLevel(2)).isEqualTo(3);
+        assertThat(sections.getLevel(3)).isEqualTo(1);
+        assertThat(sections.toString()).isEqualTo(text);
+    }
+
+    @Test public void testNoHeaders() {
+        assertThat(PageSections.split("").getTexts()).containsExactly("");
+        assertThat(PageSections.split("== A ==").getTexts()).containsExactly("", "== A ==");
+        assertThat(PageSections.split("a\n = A =\n=\nb == c ==\n").size()).isEqualTo(1);
+    }
+
+    @Test public void testHeadersInNoWikiAreIgnored() {
+        String text = "<!--\n== A ==\n-->\n<pre>\n== B ==\n</pre>\n<nowiki/>\n== C ==\n<NOWIKI>\n== D ==\n</nowiki>";
+        PageSections sections = PageSections.split(text);
+
+        assertThat(sections.size()).isEqualTo(2);
+        assertThat(sections.getText(1)).startsWith("== C ==\n");
+    }
+
+    @Test public void testHeadersInTemplatesAreIgnored() {
+        String text = "lead\n{{#if:x|\n== In ==\nbody\n}}\n== B ==\nb\n{{{1|\n== C ==\n}}}\n";
+        PageSections sections = PageSections.split(text);
+
+        assertThat(sections.getTexts()).containsExactly("lead\n{{#if:x|\n== In ==\nbody\n}}\n",
+                "== B ==\nb\n{{{1|\n== C ==\n}}}\n");
+    }
+
+    @Test public void testReplace() {
+        PageSections sections = PageSections.split("lead\n== A ==\na\n== B ==\nb\n");
+
+        PageSections edited = sections.replace(1, "== A ==\nx\n== A2 ==\ny\n");
+        assertThat(edited.getTexts()).containsExactly("lead\n", "== A ==\nx\n", "== A2 ==\ny\n", "== B ==\nb\n");
+    }
+}
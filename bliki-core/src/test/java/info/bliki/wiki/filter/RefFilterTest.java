@@ -1,6 +1,7 @@
 package info.bliki.wiki.filter;
 
 import info.bliki.wiki.model.Reference;
+import info.bliki.wiki.tags.ReferencesTag;
 import org.junit.Test;
 
 import java.util.List;
@@ -109,4 +110,35 @@ public class RefFilterTest extends FilterTestSupport {
                 "<ol class=\"references\">\n" +
                 "<li id=\"_note-RFC_2295\"><b><a href=\"#_ref-RFC_2295\" title=\"\">&#8593;</a></b> RFC 2295</li>\n</ol>");
     }
+
+    @Test public void testRefGroups() throws Exception {
+        assertThat(wikiModel.render("A<ref group=\"note\">first note</ref> B<ref>reference</ref> C<ref group=\"note\" name=\"n\">second note</ref>"
+                + "\n\n<references/>\n<references group=\"note\"/>", false))
+            .isEqualTo("\n" +
+                "<p>A<sup id=\"_ref-note_1\" class=\"reference\"><a href=\"#_note-note_1\" title=\"\">[note 1]</a></sup> B<sup id=\"_ref-1\" class=\"reference\"><a href=\"#_note-1\" title=\"\">[1]</a></sup> C<sup id=\"_ref-note_n\" class=\"reference\"><a href=\"#_note-note_n\" title=\"\">[note 2]</a></sup></p><ol class=\"references\">\n" +
+                "<li id=\"_note-1\"><b><a href=\"#_ref-1\" title=\"\">&#8593;</a></b> reference</li>\n</ol><ol class=\"references\">\n" +
+                "<li id=\"_note-note_1\"><b><a href=\"#_ref-note_1\" title=\"\">&#8593;</a></b> first note</li><li id=\"_note-note_n\"><b><a href=\"#_ref-note_n\" title=\"\">&#8593;</a></b> second note</li>\n</ol>");
+        assertThat(wikiModel.getReferences()).hasSize(1);
+        assertThat(wikiModel.getReferences("note")).hasSize(2);
+        assertThat(wikiModel.getReference("n", "note").getRefString()).isEqualTo("second note");
+        assertThat(wikiModel.getReference("n", null)).isNull();
+    }
+
+    @Test public void testNamedRefDefinedLater() throws Exception {
+        assertThat(wikiModel.render("A<ref name=\"a\"/> B<ref name=\"a\">text</ref> C<ref name=\"a\">other text</ref>\n\n<references/>", false))
+            .isEqualTo("\n" +
+                "<p>A<sup id=\"_ref-a\" class=\"reference\"><a href=\"#_note-a\" title=\"\">[1]</a></sup> B<sup id=\"_ref-a_b\" class=\"reference\"><a href=\"#_note-a\" title=\"\">[1]</a></sup> C<sup id=\"_ref-a_c\" class=\"reference\"><a href=\"#_note-a\" title=\"\">[1]</a></sup></p><ol class=\"references\">\n" +
+                "<li id=\"_note-a\">&#8593; <a href=\"#_ref-a\" title=\"\"><sup><i><b>a</b></i></sup></a> <a href=\"#_ref-a_b\" title=\"\"><sup><i><b>b</b></i></sup></a> <a href=\"#_ref-a_c\" title=\"\"><sup><i><b>c</b></i></sup></a> text</li>\n</ol>");
+        assertThat(wikiModel.getReferences()).hasSize(1);
+        assertThat(wikiModel.getReference("a", null).getRefString()).isEqualTo("text");
+    }
+
+    @Test public void testRenderReferencesAfterBody() throws Exception {
+        StringBuilder buf = new StringBuilder();
+        wikiModel.render(new HTMLConverter(), "A<ref>reference</ref>", buf, false, true);
+        ReferencesTag.renderReferences(wikiModel.getReferences(), buf);
+        assertThat(buf.toString()).isEqualTo("\n" +
+                "<p>A<sup id=\"_ref-1\" class=\"reference\"><a href=\"#_note-1\" title=\"\">[1]</a></sup></p><ol class=\"references\">\n" +
+                "<li id=\"_note-1\"><b><a href=\"#_ref-1\" title=\"\">&#8593;</a></b> reference</li>\n</ol>");
+    }
 }
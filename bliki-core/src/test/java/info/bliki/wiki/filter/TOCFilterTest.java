@@ -1,8 +1,11 @@
 package info.bliki.wiki.filter;
 
 import info.bliki.wiki.events.EventListener;
+import info.bliki.wiki.model.ITableOfContent;
 import org.junit.Test;
 
+import java.util.List;
+
 import static org.assertj.core.api.Assertions.assertThat;
 
 public class TOCFilterTest extends FilterTestSupport {
@@ -166,4 +169,45 @@ public class TOCFilterTest extends FilterTestSupport {
         wikiModel.parseEvents(listener, rawWikiText);
         assertThat(listener.getCollectorBuffer().toString()).isEqualTo("=hello world 1=\n" + "==hello world 2==\n" + "");
     }
+
+    @Test public void testDuplicateAnchors() throws Exception {
+        assertThat(wikiModel.render("==A==\n==A 2==\n==A==\n==A==\n", false))
+            .contains("id=\"A\"", "id=\"A_2\"", "id=\"A_3\"", "id=\"A_4\"");
+
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 5000; i++) {
+            text.append("==Notes==\n");
+        }
+        wikiModel.render(text.toString(), false);
+        List<SectionHeader> headers = wikiModel.getTableOfContent().getSectionHeaders();
+        assertThat(headers).hasSize(5000);
+        assertThat(headers.get(4999).getSecond()).isEqualTo("Notes_5000");
+    }
+
+    @Test public void testSectionHeaders() throws Exception {
+        String html = wikiModel.render("==A==\n===B===\n==C==\n==D==\n==E==\n", false);
+        ITableOfContent toc = wikiModel.getTableOfContent();
+        List<SectionHeader> headers = toc.getSectionHeaders();
+
+        assertThat(headers).hasSize(5);
+        assertThat(headers.get(1).getFirst()).isEqualTo("B");
+        assertThat(headers.get(1).getLevel()).isEqualTo(3);
+        assertThat(toc.getHTML()).startsWith("\n<ul>").isSameAs(toc.getHTML());
+        assertThat(html).contains(toc.getHTML());
+    }
+
+    @Test public void testDefaultHTML() throws Exception {
+        wikiModel.render("==A==\n===B===\n==C==\n==D==\n==E==\n", false);
+        final ITableOfContent toc = wikiModel.getTableOfContent();
+        ITableOfContent other = new ITableOfContent() {
+            @Override public void setShowToC(boolean showToC) {
+            }
+
+            @Override public List<SectionHeader> getSectionHeaders() {
+                return toc.getSectionHeaders();
+            }
+        };
+
+        assertThat(other.getHTML()).isEqualTo(toc.getHTML());
+    }
 }
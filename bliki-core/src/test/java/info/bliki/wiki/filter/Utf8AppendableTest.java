@@ -0,0 +1,65 @@
+package info.bliki.wiki.filter;
+
+import info.bliki.wiki.model.WikiModel;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.channels.Channels;
+import java.util.Random;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class Utf8AppendableTest {
+    private static final String TEXT = "ascii äöü € 😀 end";
+
+    @Test public void testEncode() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (Utf8Appendable appendable = new Utf8Appendable(out, 5)) {
+            appendable.append(TEXT).append('!').append(TEXT, 0, 5);
+        }
+        assertThat(out.toByteArray()).isEqualTo((TEXT + "!ascii").getBytes(UTF_8));
+    }
+
+    @Test public void testSurrogatesAcrossAppends() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (Utf8Appendable appendable = new Utf8Appendable(Channels.newChannel(out), 4)) {
+            for (int i = 0; i < TEXT.length(); i++) {
+                appendable.append(TEXT, i, i + 1);
+            }
+            // unpaired surrogates
+            appendable.append("\uDE00a\uD83D").append('b').append('\uD83D');
+        }
+        assertThat(new String(out.toByteArray(), UTF_8)).isEqualTo(TEXT + "?a?b?");
+    }
+
+    @Test public void testRandomText() throws Exception {
+        Random random = new Random(17);
+        char[] chars = { 'a', '<', '\n', 'ä', '€', '\uD83D', '\uDE00', '߿', 'ࠀ', '￿' };
+        for (int n = 0; n < 200; n++) {
+            StringBuilder text = new StringBuilder();
+            for (int i = random.nextInt(300); i > 0; i--) {
+                text.append(chars[random.nextInt(chars.length)]);
+            }
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            try (Utf8Appendable appendable = new Utf8Appendable(out, 4 + random.nextInt(20))) {
+                int pos = 0;
+                while (pos < text.length()) {
+                    int end = Math.min(text.length(), pos + random.nextInt(10));
+                    appendable.append(text, pos, end);
+                    pos = end;
+                }
+            }
+            assertThat(out.toByteArray()).isEqualTo(text.toString().getBytes(UTF_8));
+        }
+    }
+
+    @Test public void testRender() throws Exception {
+        String wikiText = "'''bold''' äöü [[Link]] &nbsp; &#x1F600;";
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (Utf8Appendable appendable = new Utf8Appendable(out)) {
+            new WikiModel("${image}", "${title}").render(new HTMLConverter(), wikiText, appendable, false, true);
+        }
+        assertThat(new String(out.toByteArray(), UTF_8)).isEqualTo(new WikiModel("${image}", "${title}").render(wikiText));
+    }
+}
@@ -0,0 +1,58 @@
+package info.bliki.wiki.filter;
+
+import info.bliki.htmlcleaner.ContentToken;
+import info.bliki.wiki.tags.WPTag;
+import info.bliki.wiki.tags.util.TagStack;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class WikipediaParserTest extends FilterTestSupport {
+
+    @Test public void testPlainRegionIsNotParsed() {
+        char[] src = "|x 1,234 (12%)\n|".toCharArray();
+        wikiModel.incrementRecursionLevel();
+        try {
+            TagStack stack = WikipediaParser.parseRegion(src, 1, src.length - 1, wikiModel, true);
+            assertThat(stack.getNodeList()).hasSize(1);
+            assertThat(((ContentToken) stack.getNodeList().get(0)).getContent()).isEqualTo("x 1,234 (12%)\n");
+        } finally {
+            wikiModel.decrementRecursionLevel();
+        }
+    }
+
+    @Test public void testRegionWithMarkupIsParsed() {
+        char[] src = "a ''b''".toCharArray();
+        wikiModel.incrementRecursionLevel();
+        try {
+            TagStack stack = WikipediaParser.parseRegion(src, 2, src.length, wikiModel, true);
+            assertThat(stack.getNodeList().get(0)).isInstanceOf(WPTag.class);
+        } finally {
+            wikiModel.decrementRecursionLevel();
+        }
+    }
+
+    @Test public void testISBNIsNotPlainText() {
+        char[] src = "ISBN 0123456789".toCharArray();
+        wikiModel.incrementRecursionLevel();
+        try {
+            TagStack stack = WikipediaParser.parseRegion(src, 0, src.length, wikiModel, true);
+            assertThat(stack.getNodeList().get(0)).isNotInstanceOf(ContentToken.class);
+        } finally {
+            wikiModel.decrementRecursionLevel();
+        }
+    }
+
+    @Test public void testDataTable() throws Exception {
+        assertThat(wikiModel.render("{|\n| 1,234 || Foo bar\n|-\n| 12% ||  (3)\n|}", false)).isEqualTo(
+            "\n" +
+            "<div style=\"page-break-inside: avoid;\">\n" +
+            "<table>\n" +
+            "<tr>\n" +
+            "<td>1,234 </td>\n" +
+            "<td>Foo bar</td></tr>\n" +
+            "<tr>\n" +
+            "<td>12% </td>\n" +
+            "<td>(3)</td></tr></table></div>");
+    }
+}
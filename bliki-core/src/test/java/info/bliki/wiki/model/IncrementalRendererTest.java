@@ -0,0 +1,163 @@
+package info.bliki.wiki.model;
+
+import info.bliki.wiki.filter.HTMLConverter;
+import info.bliki.wiki.filter.ParsedPageName;
+import info.bliki.wiki.namespaces.INamespace.NamespaceCode;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class IncrementalRendererTest {
+    private static final String PAGE = "lead '''text'''\n\n== A ==\nsection a<ref>note</ref>\n\n"
+            + "{{Greeting}} [http://example.com] link\n\n== B ==\nsection b\n\n<references/>\n";
+
+    private final Map<String, String> templateTexts = new HashMap<>();
+
+    private WikiModel newWikiModel() {
+        templateTexts.put("Greeting", "hello");
+        return new WikiModel("${image}", "${title}") {
+            @Override
+            public String getRawWikiContent(ParsedPageName parsedPagename, Map<String, String> templateParameters)
+                    throws WikiModelContentException {
+                if (parsedPagename.magicWord == null && parsedPagename.namespace.isType(NamespaceCode.TEMPLATE_NAMESPACE_KEY)) {
+                    return templateTexts.get(parsedPagename.pagename);
+                }
+                return super.getRawWikiContent(parsedPagename, templateParameters);
+            }
+        };
+    }
+
+    private static String normalize(String html) {
+        return html.replaceAll("\\s+", " ").replaceAll(" ?([<>]) ?", "$1").trim();
+    }
+
+    @Test public void testRender() throws Exception {
+        IncrementalRenderer renderer = new IncrementalRenderer(newWikiModel());
+        String html = renderer.render(PAGE);
+
+        assertThat(normalize(html)).isEqualTo(normalize(newWikiModel().render(PAGE)));
+        assertThat(html).contains("hello").contains("note").contains("[1]");
+        assertThat(renderer.render(PAGE)).isEqualTo(html);
+        assertThat(renderer.getFullRenderCount()).isEqualTo(0);
+    }
+
+    @Test public void testEditedBlockOnlyIsParsedAgain() throws Exception {
+        IncrementalRenderer renderer = new IncrementalRenderer(newWikiModel());
+        renderer.render(PAGE);
+        long misses = renderer.getMissCount();
+        renderer.render(PAGE);
+        // only the blocks with headers, references and numbered links are parsed again
+        assertThat(renderer.getHitCount()).isEqualTo(2);
+        assertThat(renderer.getMissCount()).isEqualTo(2 * misses - 2);
+
+        String edited = PAGE.replace("lead '''text'''", "edited lead");
+        String html = renderer.render(edited);
+        assertThat(html).contains("edited lead").doesNotContain("<b>text</b>");
+        assertThat(renderer.getHitCount()).isEqualTo(3);
+        assertThat(normalize(html)).isEqualTo(normalize(newWikiModel().render(edited)));
+    }
+
+    @Test public void testTableOfContents() throws Exception {
+        String page = "lead\n\n== A ==\na\n\n== B ==\nb\n\n== C ==\nc\n\n== D ==\nd\n";
+        IncrementalRenderer renderer = new IncrementalRenderer(newWikiModel());
+
+        String html = renderer.render(page);
+        assertThat(html).contains("id=\"toc\"");
+        assertThat(normalize(html)).isEqualTo(normalize(newWikiModel().render(page)));
+        assertThat(renderer.getFullRenderCount()).isEqualTo(0);
+
+        html = renderer.render("__NOTOC__\n" + page);
+        assertThat(html).doesNotContain("id=\"toc\"");
+        assertThat(renderer.getFullRenderCount()).isEqualTo(1);
+    }
+
+    @Test public void testInvalidateTemplate() throws Exception {
+        IncrementalRenderer renderer = new IncrementalRenderer(newWikiModel());
+        String page = "a\n\n{{Greeting}}\n\nb";
+        assertThat(renderer.render(page)).contains("hello");
+
+        templateTexts.put("Greeting", "bye");
+        assertThat(renderer.render(page)).contains("hello");
+        renderer.invalidateTemplate("Greeting");
+        assertThat(renderer.render(page)).contains("bye").doesNotContain("hello");
+    }
+
+    @Test public void testInvalidateNestedTemplate() throws Exception {
+        IncrementalRenderer renderer = new IncrementalRenderer(newWikiModel());
+        templateTexts.put("Outer", "[{{Inner}}]");
+        templateTexts.put("Inner", "one");
+        String page = "a\n\n{{Outer}}\n\nb";
+        assertThat(renderer.render(page)).contains("[one]");
+
+        templateTexts.put("Inner", "two");
+        renderer.invalidateTemplate("Inner");
+        assertThat(renderer.render(page)).contains("[two]").doesNotContain("[one]");
+        assertThat(renderer.render(page)).contains("[two]");
+        assertThat(renderer.getMissCount()).isEqualTo(4);
+    }
+
+    @Test public void testPageDependentBlocksAreNotCached() throws Exception {
+        WikiModel model = newWikiModel();
+        IncrementalRenderer renderer = new IncrementalRenderer(model);
+        templateTexts.put("Page", "{{#if:x|{{PAGENAME}}}}");
+        String page = "a\n\n{{CURRENTTIME}}\n\n{{#time:Y}}\n\n{{Page}}\n\n{{!}}";
+        model.setPageName("First");
+        assertThat(renderer.render(page)).contains("First");
+        assertThat(renderer.render(page)).contains("First");
+        // only the blocks with plain text and with {{!}} are reused
+        assertThat(renderer.getHitCount()).isEqualTo(2);
+        assertThat(renderer.getMissCount()).isEqualTo(8);
+        assertThat(renderer.size()).isEqualTo(2);
+    }
+
+    @Test public void testReferencesAreFoundInTheParsedBlock() throws Exception {
+        templateTexts.put("Note", "<REF>note</REF>");
+        IncrementalRenderer renderer = new IncrementalRenderer(newWikiModel());
+        String page = "a{{Note}}\n\nb<ref>other</ref>\n\n<references />";
+        String html = renderer.render(page);
+
+        assertThat(renderer.size()).isEqualTo(0);
+        assertThat(renderer.render(page)).isEqualTo(html).contains("note").contains("other");
+        assertThat(normalize(html)).isEqualTo(normalize(newWikiModel().render(page)));
+    }
+
+    @Test public void testParagraphsAtTheBlockBoundaries() throws Exception {
+        String page = "a\n\nb\n\n* c\n\nd\n\n== E ==\ne\n\n<div>f</div>\n\ng";
+        IncrementalRenderer renderer = new IncrementalRenderer(newWikiModel());
+        String expected = newWikiModel().render(page);
+
+        assertThat(renderer.render(page)).isEqualTo(expected);
+        assertThat(renderer.render(page)).isEqualTo(expected);
+        assertThat(renderer.getHitCount()).isGreaterThan(0);
+    }
+
+    @Test public void testRandomPages() throws Exception {
+        templateTexts.put("Outer", "[{{Inner}}]");
+        templateTexts.put("Inner", "'''inner'''");
+        String[] blocks = { "lead '''text'''", "plain [[Link|link]] text", "== Header ==", "=== Sub ===\ntext",
+            "* item\n* item", "# one\n# two", ": indented", "{{Greeting}} text", "{{Outer}}", "text<ref>note</ref>",
+            "text<ref name=\"n\">named</ref>", "again<ref name=\"n\"/>",
+            "[http://example.com] link", "{|\n| cell\n|}", "<div>div</div>", " pre", "----", "''italic''\ntext" };
+        Random random = new Random(42);
+        WikiModel model = newWikiModel();
+        IncrementalRenderer renderer = new IncrementalRenderer(model, new HTMLConverter(), 100);
+        for (int i = 0; i < 1000; i++) {
+            StringBuilder page = new StringBuilder();
+            int size = 1 + random.nextInt(8);
+            for (int j = 0; j < size; j++) {
+                page.append(blocks[random.nextInt(blocks.length)]).append(random.nextBoolean() ? "\n\n" : "\n");
+            }
+            if (random.nextBoolean()) {
+                // the parser drops the text after <references/>
+                page.append("\n<references/>\n");
+            }
+            String expected = normalize(newWikiModel().render(page.toString()));
+            assertThat(normalize(renderer.render(page.toString()))).as(page.toString()).isEqualTo(expected);
+        }
+        assertThat(renderer.getHitCount()).isGreaterThan(0);
+    }
+}
@@ -0,0 +1,127 @@
+package info.bliki.wiki.model;
+
+import org.junit.Test;
+
+import java.util.Collections;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class LimitReportTest {
+
+    @Test public void testNoLimitsAreEnforcedByDefault() {
+        LimitReport subject = new LimitReport(null);
+        for (int i = 0; i < 1000; i++) {
+            assertThat(subject.countNode()).isTrue();
+            assertThat(subject.incrementExpensiveFunctionCount()).isTrue();
+            assertThat(subject.enterTemplate("Template:Foo")).isTrue();
+        }
+        assertThat(subject.getNodeCount()).isEqualTo(1000);
+        assertThat(subject.getExpensiveFunctionCount()).isEqualTo(1000);
+        assertThat(subject.getHighestExpansionDepth()).isEqualTo(1000);
+    }
+
+    @Test public void testLimits() {
+        TemplateLimits limits = new TemplateLimits();
+        limits.setMaxNodeCount(2);
+        limits.setMaxExpensiveFunctions(1);
+        limits.setMaxExpansionDepth(1);
+        limits.setMaxPostExpandIncludeSize(10);
+        limits.setMaxTemplateArgumentSize(3);
+        LimitReport subject = new LimitReport(limits);
+
+        assertThat(subject.countNode()).isTrue();
+        assertThat(subject.countNode()).isTrue();
+        assertThat(subject.countNode()).isFalse();
+
+        assertThat(subject.incrementExpensiveFunctionCount()).isTrue();
+        assertThat(subject.incrementExpensiveFunctionCount()).isFalse();
+
+        assertThat(subject.enterTemplate("Template:Foo")).isTrue();
+        assertThat(subject.enterTemplate("Template:Bar")).isFalse();
+        subject.exitTemplate();
+        assertThat(subject.enterTemplate("Template:Bar")).isTrue();
+
+        assertThat(subject.addPostExpandInclude(8)).isTrue();
+        assertThat(subject.addPostExpandInclude(3)).isFalse();
+        assertThat(subject.addPostExpandInclude(2)).isTrue();
+        assertThat(subject.getPostExpandIncludeSize()).isEqualTo(10);
+
+        assertThat(subject.addTemplateArguments(Collections.singletonMap("1", "abc"))).isTrue();
+        assertThat(subject.addTemplateArguments(Collections.singletonMap("1", "d"))).isFalse();
+    }
+
+    @Test public void testAddReport() {
+        TemplateLimits limits = new TemplateLimits();
+        limits.setMaxExpensiveFunctions(2);
+        LimitReport subject = new LimitReport(limits);
+        LimitReport other = new LimitReport(null);
+        other.countNode();
+        other.incrementExpensiveFunctionCount();
+        other.enterTemplate("Template:Foo");
+        other.exitTemplate();
+
+        subject.enterTemplate("Template:Bar");
+        assertThat(subject.add(other)).isTrue();
+        assertThat(subject.getNodeCount()).isEqualTo(1);
+        assertThat(subject.getHighestExpansionDepth()).isEqualTo(2);
+        assertThat(subject.add(other)).isTrue();
+        assertThat(subject.add(other)).isFalse();
+        assertThat(subject.getExpensiveFunctionCount()).isEqualTo(3);
+    }
+
+    @Test public void testSelfTimeExcludesNestedTemplates() throws Exception {
+        LimitReport subject = new LimitReport(null);
+        subject.enterTemplate("Template:Outer");
+        subject.enterTemplate("Template:Inner");
+        Thread.sleep(5);
+        subject.exitTemplate();
+        subject.exitTemplate();
+
+        assertThat(subject.getTemplateProfiles()).hasSize(2);
+        LimitReport.TemplateProfile inner = subject.getTemplateProfiles().get(0);
+        LimitReport.TemplateProfile outer = subject.getTemplateProfiles().get(1);
+        assertThat(inner.getTemplateName()).isEqualTo("Template:Inner");
+        assertThat(outer.getTemplateName()).isEqualTo("Template:Outer");
+        assertThat(outer.getTotalNanos()).isGreaterThanOrEqualTo(inner.getTotalNanos());
+        assertThat(outer.getSelfNanos()).isLessThan(inner.getSelfNanos());
+        assertThat(subject.getTotalNanos()).isEqualTo(outer.getTotalNanos());
+    }
+
+    @Test public void testRecursiveCallsAreCountedOnceInTotalTime() {
+        LimitReport subject = new LimitReport(null);
+        subject.enterTemplate("Template:Foo");
+        subject.enterTemplate("Template:Foo");
+        subject.exitTemplate();
+        subject.exitTemplate();
+
+        LimitReport.TemplateProfile profile = subject.getTemplateProfiles().get(0);
+        assertThat(profile.getCalls()).isEqualTo(2);
+        assertThat(profile.getTotalNanos()).isEqualTo(subject.getTotalNanos());
+    }
+
+    @Test public void testHtmlComment() {
+        LimitReport subject = new LimitReport(null);
+        subject.countNode();
+        subject.enterTemplate("Template:A--B");
+        subject.exitTemplate();
+
+        assertThat(subject.toHtmlComment())
+            .startsWith("<!-- \nNewPP limit report\n")
+            .contains("Preprocessor visited node count: 1/1000000\n")
+            .contains("Highest expansion depth: 1/40\n")
+            .contains("Transclusion expansion time report")
+            .contains("Template:A-&#45;B")
+            .endsWith("-->\n");
+    }
+
+    @Test public void testReportIsAppendedToHtml() throws Exception {
+        WikiModel model = new WikiModel("${image}", "${title}");
+        TemplateLimits limits = new TemplateLimits();
+        limits.setReportComment(true);
+        model.setTemplateLimits(limits);
+
+        String html = model.render("{{#if:x|y}}", false);
+        assertThat(html).contains("NewPP limit report").contains("Preprocessor visited node count: 1/");
+        assertThat(model.getLimitReport().getNodeCount()).isEqualTo(1);
+    }
+}
@@ -0,0 +1,68 @@
+package info.bliki.wiki.model;
+
+import info.bliki.wiki.filter.HTMLConverter;
+import info.bliki.wiki.filter.PageSections;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class SectionRendererTest {
+    private static final String PAGE = "lead '''text'''\n== A ==\nsection a\n== B ==\nsection b\n";
+
+    @Test public void testRenderSection() throws Exception {
+        SectionRenderer renderer = new SectionRenderer(new WikiModel("${image}", "${title}"));
+        PageSections sections = PageSections.split(PAGE);
+
+        for (int i = 0; i < sections.size(); i++) {
+            assertThat(renderer.renderSection(sections, i))
+                .isEqualTo(new WikiModel("${image}", "${title}").render(sections.getText(i)));
+        }
+        assertThat(renderer.renderSection(PAGE, 2)).contains("section b").doesNotContain("section a");
+    }
+
+    @Test public void testEditedSectionOnlyIsRenderedAgain() throws Exception {
+        SectionRenderer renderer = new SectionRenderer(new WikiModel("${image}", "${title}"));
+        PageSections sections = PageSections.split(PAGE);
+        renderer.render(sections);
+        assertThat(renderer.getMissCount()).isEqualTo(3);
+
+        String html = renderer.render(sections.replace(2, "== B ==\nedited\n"));
+        assertThat(html).contains("edited").contains("section a");
+        assertThat(renderer.getMissCount()).isEqualTo(4);
+        assertThat(renderer.getHitCount()).isEqualTo(2);
+    }
+
+    @Test public void testPageNameIsPartOfTheKey() throws Exception {
+        WikiModel model = new WikiModel("${image}", "${title}");
+        SectionRenderer renderer = new SectionRenderer(model);
+        String page = "== A ==\n{{PAGENAME}}\n";
+
+        model.setPageName("First");
+        assertThat(renderer.renderSection(page, 1)).contains("First");
+        model.setPageName("Second");
+        assertThat(renderer.renderSection(page, 1)).contains("Second").doesNotContain("First");
+        assertThat(renderer.getMissCount()).isEqualTo(2);
+    }
+
+    @Test public void testEditLinks() throws Exception {
+        final StringBuilder editLinks = new StringBuilder();
+        WikiModel model = new WikiModel("${image}", "${title}") {
+            @Override
+            public void buildEditLinkUrl(int section) {
+                editLinks.append(section).append(' ');
+            }
+        };
+        SectionRenderer renderer = new SectionRenderer(model);
+        renderer.renderSection(PAGE, 2);
+        renderer.renderSection(PAGE, 1);
+
+        assertThat(editLinks.toString()).isEqualTo("1 0 ");
+    }
+
+    @Test public void testEviction() throws Exception {
+        SectionRenderer renderer = new SectionRenderer(new WikiModel("${image}", "${title}"), new HTMLConverter(), 2);
+        renderer.render(PageSections.split(PAGE));
+
+        assertThat(renderer.size()).isEqualTo(2);
+    }
+}
@@ -0,0 +1,51 @@
+package info.bliki.wiki.tags.code;
+
+import info.bliki.wiki.filter.FilterTestSupport;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class BoundedSourceCodeCacheTest extends FilterTestSupport {
+
+    @Test public void testKeyDependsOnLanguageAndContent() {
+        assertThat(SourceCodeCache.key("java", "int i;")).isEqualTo(SourceCodeCache.key("java", "int i;"));
+        assertThat(SourceCodeCache.key("java", "int i;")).isNotEqualTo(SourceCodeCache.key("csharp", "int i;"));
+        assertThat(SourceCodeCache.key("java", "int i;")).isNotEqualTo(SourceCodeCache.key("java", "int j;"));
+        assertThat(SourceCodeCache.key("java", "int i;")).startsWith("java:").hasSize(5 + 64);
+    }
+
+    @Test public void testEvictsOldestEntries() {
+        BoundedSourceCodeCache cache = new BoundedSourceCodeCache(2, 100);
+        cache.put("a", "1");
+        cache.put("b", "2");
+        cache.put("c", "3");
+
+        assertThat(cache.size()).isEqualTo(2);
+        assertThat(cache.getEvictionCount()).isEqualTo(1);
+        assertThat(cache.get("a")).isNull();
+        assertThat(cache.get("c")).isEqualTo("3");
+        assertThat(cache.getHitCount()).isEqualTo(1);
+        assertThat(cache.getMissCount()).isEqualTo(1);
+    }
+
+    @Test public void testLongEntriesAreNotCached() {
+        BoundedSourceCodeCache cache = new BoundedSourceCodeCache(2, 3);
+        cache.put("a", "1234");
+
+        assertThat(cache.size()).isZero();
+    }
+
+    @Test public void testSourceTagUsesCache() throws Exception {
+        BoundedSourceCodeCache cache = new BoundedSourceCodeCache();
+        wikiModel.setSourceCodeCache(cache);
+        String wikiText = "<source lang=java>public class Test {}</source>";
+
+        String first = wikiModel.render(wikiText, false);
+        String second = wikiModel.render(wikiText, false);
+
+        assertThat(second).isEqualTo(first).contains("<pre class=\"java\">");
+        assertThat(cache.size()).isEqualTo(1);
+        assertThat(cache.getMissCount()).isEqualTo(1);
+        assertThat(cache.getHitCount()).isEqualTo(1);
+    }
+}
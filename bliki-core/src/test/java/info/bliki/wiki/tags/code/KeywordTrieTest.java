@@ -0,0 +1,38 @@
+package info.bliki.wiki.tags.code;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.HashMap;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class KeywordTrieTest {
+    private KeywordTrie trie;
+
+    @Before
+    public void setUp() throws Exception {
+        HashMap<String, String> map = new HashMap<>();
+        map.put("for", "FOR");
+        map.put("format", "FORMAT");
+        map.put("if", "IF");
+        trie = new KeywordTrie(map);
+    }
+
+    @Test public void testLookupInRegion() {
+        assertThat(trie.get("x format y", 2, 8, false)).isEqualTo("FORMAT");
+        assertThat(trie.get("x format y", 2, 5, false)).isEqualTo("FOR");
+        assertThat(trie.get("x format y", 2, 6, false)).isNull();
+        assertThat(trie.get("if", 0, 2, false)).isEqualTo("IF");
+    }
+
+    @Test public void testUnknownKeyword() {
+        assertThat(trie.get("while", 0, 5, false)).isNull();
+        assertThat(trie.get("", 0, 0, false)).isNull();
+    }
+
+    @Test public void testIgnoreCase() {
+        assertThat(trie.get("ForMat", 0, 6, false)).isNull();
+        assertThat(trie.get("ForMat", 0, 6, true)).isEqualTo("FORMAT");
+    }
+}
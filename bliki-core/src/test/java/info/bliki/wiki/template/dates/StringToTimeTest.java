@@ -277,6 +277,27 @@ public class StringToTimeTest {
         assertEquals(new SimpleDateFormat("M/y").parse("10/1981"), new StringToTime("1981-10"));
     }
 
+    @Test public void testAbsoluteDatesMatchSimpleDateFormat() throws Exception {
+        assertEquals(new SimpleDateFormat("y-M-d").parse("2011-10-06"), new StringToTime("2011-10-06"));
+        assertEquals(new SimpleDateFormat("y-M-d").parse("2011-2-30"), new StringToTime("2011-2-30"));
+        assertEquals(new SimpleDateFormat("y/M/d").parse("2011/13/1"), new StringToTime("2011/13/1"));
+        assertEquals(new SimpleDateFormat("M-d-y").parse("10-26-1981"), new StringToTime("10-26-1981"));
+        assertEquals(new SimpleDateFormat("yyyyMMdd").parse("20110229"), new StringToTime("20110229"));
+        assertEquals(new SimpleDateFormat("d MMM y").parse("19 Oct 2011"), new StringToTime("19 OCTOBER 2011"));
+        assertEquals(new SimpleDateFormat("d MMM y").parse("1 May 2011"), new StringToTime("1 may 2011"));
+    }
+
+    @Test public void testInvalidAbsoluteDates() throws Exception {
+        assertEquals(Boolean.FALSE, StringToTime.date("2011-10-"));
+        assertEquals(Boolean.FALSE, StringToTime.date("2011-10/06"));
+        assertEquals(Boolean.FALSE, StringToTime.date("19 Octob 2011"));
+    }
+
+    @Test public void testCachedDatesDontDependOnNow() throws Exception {
+        assertEquals(new StringToTime("2011-10-06", now()), new StringToTime("2011-10-06", new Date()));
+        assertEquals(new StringToTime("Oct 26, 1981", now()), new StringToTime("Oct 26, 1981", new Date()));
+    }
+
     // e.g., October 26 and Oct 26
     @Ignore @Test public void testMonthAndDate() throws Exception {
         Date now = now();
@@ -0,0 +1,60 @@
+package info.bliki.wiki.template.dates;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.time.ZonedDateTime;
+import java.util.Locale;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class TimeFormatTest {
+    private ZonedDateTime referenceDate;
+
+    @Before
+    public void setUp() throws Exception {
+        referenceDate = ZonedDateTime.parse("2011-10-06T15:07:30Z");
+    }
+
+    @Test public void testDate() {
+        assertThat(format("Y-m-d")).isEqualTo("2011-10-06");
+        assertThat(format("j F Y")).isEqualTo("6 October 2011");
+        assertThat(format("D, M y")).isEqualTo("Thu, Oct 11");
+    }
+
+    @Test public void testTime() {
+        assertThat(format("H:i:s")).isEqualTo("15:07:30");
+        assertThat(format("g a")).isEqualTo("3 pm");
+        assertThat(format("h A")).isEqualTo("03 PM");
+    }
+
+    @Test public void testComputedFields() {
+        assertThat(format("L")).isEqualTo("0");
+        assertThat(format("z")).isEqualTo("278");
+        assertThat(format("N w")).isEqualTo("4 4");
+        assertThat(format("t")).isEqualTo("31");
+        assertThat(format("U")).isEqualTo("1317913650");
+    }
+
+    @Test public void testISOAndRFCDates() {
+        assertThat(format("c")).isEqualTo("2011-10-06T15:07:30+00:00");
+        assertThat(format("r")).isEqualTo("Thu, 06 Oct 2011 15:07:30 +0000");
+    }
+
+    @Test public void testQuotedLiterals() {
+        assertThat(format("Y \"(year)\"")).isEqualTo("2011 \"(year)\"");
+    }
+
+    @Test public void testLocalizedNames() {
+        assertThat(TimeFormat.compile("l j F", Locale.GERMAN).format(referenceDate)).isEqualTo("Donnerstag 6 Oktober");
+    }
+
+    @Test public void testCompiledFormatsAreCached() {
+        assertThat(TimeFormat.compile("Y-m-d", Locale.ENGLISH)).isSameAs(TimeFormat.compile("Y-m-d", Locale.ENGLISH));
+        assertThat(TimeFormat.compile("Y-m-d", Locale.ENGLISH)).isNotSameAs(TimeFormat.compile("Y-m-d", Locale.GERMAN));
+    }
+
+    private String format(String format) {
+        return TimeFormat.compile(format, Locale.ENGLISH).format(referenceDate);
+    }
+}
@@ -6,14 +6,12 @@ import info.bliki.pdf.PDFGenerator;
 import info.bliki.wiki.filter.HTMLConverter;
 import info.bliki.wiki.filter.ITextConverter;
 import info.bliki.wiki.filter.PDFConverter;
+import info.bliki.wiki.filter.Utf8Appendable;
 import info.bliki.wiki.model.IWikiModel;
 
-import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.OutputStreamWriter;
-import java.io.Writer;
 import java.net.URL;
 import java.util.List;
 
@@ -70,7 +68,7 @@ public class DocumentCreator {
                 // print page information
                 String rawWikiText = page.getCurrentContent();
                 fModel.setPageName(page.getTitle());
-                appendable.append(fModel.render(converter, rawWikiText, false));
+                fModel.render(converter, rawWikiText, appendable, false, true);
             }
             if (fFooter != null) {
                 appendable.append(fFooter);
@@ -85,8 +83,7 @@ public class DocumentCreator {
             }
 
             fModel.setPageName(title);
-            String htmlText = fModel.render(converter, rawWikiText, false);
-            appendable.append(htmlText);
+            fModel.render(converter, rawWikiText, appendable, false, true);
 
             if (fFooter != null) {
                 appendable.append(fFooter);
@@ -101,11 +98,11 @@ public class DocumentCreator {
             if (parent != null && !parent.exists()) {
                 parent.mkdirs();
             }
-            Writer fw = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), "UTF-8"));
+            Utf8Appendable out = new Utf8Appendable(new FileOutputStream(file));
             try {
-                render(rawWikiText, title, converter, fw);
+                render(rawWikiText, title, converter, out);
             } finally {
-                fw.close();
+                out.close();
             }
         }
     }
@@ -139,11 +136,11 @@ public class DocumentCreator {
         if (parent != null && !parent.exists()) {
             parent.mkdirs();
         }
-        Writer fw = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), "UTF-8"));
+        Utf8Appendable out = new Utf8Appendable(new FileOutputStream(file));
         try {
-            render(converter, fw);
+            render(converter, out);
         } finally {
-            fw.close();
+            out.close();
         }
     }
 
@@ -5,14 +5,12 @@ import info.bliki.wiki.dump.WikiArticle;
 import info.bliki.wiki.filter.HTMLConverter;
 import info.bliki.wiki.filter.ITextConverter;
 import info.bliki.wiki.filter.PDFConverter;
+import info.bliki.wiki.filter.Utf8Appendable;
 import info.bliki.wiki.model.IWikiModel;
 
-import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.OutputStreamWriter;
-import java.io.Writer;
 import java.net.URL;
 
 /**
@@ -63,7 +61,7 @@ public class DumpDocumentCreator {
         String rawWikiText = fArticle.getText();
         fModel.setPageName(fArticle.getTitle());
         // System.out.println(rawWikiText);
-        appendable.append(fModel.render(converter, rawWikiText, false));
+        fModel.render(converter, rawWikiText, appendable, false, true);
 
         if (fFooter != null) {
             appendable.append(fFooter);
@@ -98,11 +96,11 @@ public class DumpDocumentCreator {
         if (parent != null && !parent.exists()) {
             parent.mkdirs();
         }
-        Writer fw = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), "UTF-8"));
+        Utf8Appendable out = new Utf8Appendable(new FileOutputStream(file));
         try {
-            render(converter, fw);
+            render(converter, out);
         } finally {
-            fw.close();
+            out.close();
         }
     }
 